@@ -0,0 +1,156 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging;
+
+import javax.annotation.Nullable;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * The compression applied to build cache entries, consisting of a codec and an optional codec specific level.
+ *
+ * <p>The string form is {@code <codec>[:<level>]}, e.g. {@code gzip}, {@code gzip:1}, {@code lz4} or {@code none}.</p>
+ */
+public final class BuildCacheEntryCompression {
+
+    public enum Codec {
+        /**
+         * Entries are stored uncompressed. Useful for local caches on fast disks.
+         */
+        NONE((byte) 0),
+        /**
+         * Entries are stored as GZIP streams. This is the format used by all previous Gradle versions.
+         */
+        GZIP((byte) 1),
+        /**
+         * Entries are stored in the LZ4 frame format, trading compression ratio for much cheaper compression.
+         */
+        LZ4((byte) 2);
+
+        private final byte id;
+
+        Codec(byte id) {
+            this.id = id;
+        }
+
+        public byte getId() {
+            return id;
+        }
+
+        public static Codec forId(byte id) {
+            for (Codec codec : values()) {
+                if (codec.id == id) {
+                    return codec;
+                }
+            }
+            throw new IllegalStateException("Cached entry format error, unknown compression codec id: " + id);
+        }
+    }
+
+    private static final int NO_LEVEL = -1;
+
+    public static final BuildCacheEntryCompression NONE = new BuildCacheEntryCompression(Codec.NONE, NO_LEVEL);
+    public static final BuildCacheEntryCompression GZIP = new BuildCacheEntryCompression(Codec.GZIP, Deflater.DEFAULT_COMPRESSION);
+    public static final BuildCacheEntryCompression LZ4 = new BuildCacheEntryCompression(Codec.LZ4, NO_LEVEL);
+
+    public static final BuildCacheEntryCompression DEFAULT = GZIP;
+
+    private final Codec codec;
+    private final int level;
+
+    private BuildCacheEntryCompression(Codec codec, int level) {
+        this.codec = codec;
+        this.level = level;
+    }
+
+    public static BuildCacheEntryCompression gzip(int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("GZIP compression level must be between " + Deflater.NO_COMPRESSION + " and " + Deflater.BEST_COMPRESSION + ", but was " + level);
+        }
+        return new BuildCacheEntryCompression(Codec.GZIP, level);
+    }
+
+    /**
+     * Parses a compression specification of the form {@code <codec>[:<level>]}.
+     */
+    public static BuildCacheEntryCompression parse(String spec) {
+        String trimmed = spec.trim().toLowerCase(Locale.ROOT);
+        int separator = trimmed.indexOf(':');
+        String codecName = separator < 0 ? trimmed : trimmed.substring(0, separator);
+        String levelValue = separator < 0 ? null : trimmed.substring(separator + 1);
+        switch (codecName) {
+            case "gzip":
+                return levelValue == null ? GZIP : gzip(parseLevel(spec, levelValue));
+            case "lz4":
+                checkNoLevel(spec, levelValue);
+                return LZ4;
+            case "none":
+                checkNoLevel(spec, levelValue);
+                return NONE;
+            default:
+                throw new IllegalArgumentException("Unknown build cache compression '" + spec + "'. Supported values are 'gzip[:<level>]', 'lz4' and 'none'.");
+        }
+    }
+
+    private static int parseLevel(String spec, String levelValue) {
+        try {
+            return Integer.parseInt(levelValue);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid compression level in build cache compression '" + spec + "'.", e);
+        }
+    }
+
+    private static void checkNoLevel(String spec, @Nullable String levelValue) {
+        if (levelValue != null) {
+            throw new IllegalArgumentException("Build cache compression '" + spec + "' does not support a compression level.");
+        }
+    }
+
+    public Codec getCodec() {
+        return codec;
+    }
+
+    /**
+     * The codec specific compression level, or -1 when the codec uses its default.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BuildCacheEntryCompression that = (BuildCacheEntryCompression) o;
+        return level == that.level && codec == that.codec;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * codec.hashCode() + level;
+    }
+
+    @Override
+    public String toString() {
+        String name = codec.name().toLowerCase(Locale.ROOT);
+        return level == NO_LEVEL ? name : name + ":" + level;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryCompression;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses build cache entries produced by a delegate packer.
+ *
+ * <p>GZIP entries are written as plain GZIP streams, so they stay readable by previous Gradle versions.
+ * Entries using any other codec start with a short header identifying the codec, which allows
+ * entries written with different codecs to be mixed in the same cache.</p>
+ */
+public class CompressingBuildCacheEntryPacker implements BuildCacheEntryPacker {
+    private static final byte[] HEADER_MAGIC = {'G', 'B', 'C'};
+    private static final int HEADER_LENGTH = HEADER_MAGIC.length + 1;
+    private static final int GZIP_MAGIC_FIRST_BYTE = 0x1f;
+    private static final int GZIP_MAGIC_SECOND_BYTE = 0x8b;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BuildCacheEntryPacker delegate;
+    private final Supplier<BuildCacheEntryCompression> compression;
+
+    public CompressingBuildCacheEntryPacker(BuildCacheEntryPacker delegate, Supplier<BuildCacheEntryCompression> compression) {
+        this.delegate = delegate;
+        this.compression = compression;
+    }
+
+    @Override
+    public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+        try (OutputStream compressedOutput = compress(compression.get(), output)) {
+            return delegate.pack(entity, snapshots, compressedOutput, writeOrigin);
+        }
+    }
+
+    @Override
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+        try (InputStream decompressedInput = decompress(input)) {
+            return delegate.unpack(entity, decompressedInput, readOrigin);
+        }
+    }
+
+    /**
+     * Wraps the given stream so that data written to it is compressed with the given compression, including the codec header if needed.
+     */
+    public static OutputStream compress(BuildCacheEntryCompression compression, OutputStream output) throws IOException {
+        BuildCacheEntryCompression.Codec codec = compression.getCodec();
+        if (codec == BuildCacheEntryCompression.Codec.GZIP) {
+            return new LeveledGZIPOutputStream(output, compression.getLevel());
+        }
+        output.write(HEADER_MAGIC);
+        output.write(codec.getId());
+        switch (codec) {
+            case NONE:
+                return output;
+            case LZ4:
+                return new FramedLZ4CompressorOutputStream(output);
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    /**
+     * Wraps the given stream of a compressed build cache entry so that data read from it is decompressed, detecting the codec from the stream.
+     */
+    public static InputStream decompress(InputStream input) throws IOException {
+        BufferedInputStream bufferedInput = new BufferedInputStream(input, BUFFER_SIZE);
+        bufferedInput.mark(HEADER_LENGTH);
+        int first = bufferedInput.read();
+        int second = bufferedInput.read();
+        if (second < 0) {
+            // Same failure as reading an empty or truncated GZIP stream
+            throw new EOFException("Cached entry format error, unexpected end of entry.");
+        }
+        if (first == GZIP_MAGIC_FIRST_BYTE && second == GZIP_MAGIC_SECOND_BYTE) {
+            bufferedInput.reset();
+            return new GZIPInputStream(bufferedInput, BUFFER_SIZE);
+        }
+        if (first != HEADER_MAGIC[0] || second != HEADER_MAGIC[1] || bufferedInput.read() != HEADER_MAGIC[2]) {
+            throw new IllegalStateException("Cached entry format error, unknown compression header.");
+        }
+        int codecId = bufferedInput.read();
+        if (codecId < 0) {
+            throw new EOFException("Cached entry format error, missing compression codec.");
+        }
+        switch (BuildCacheEntryCompression.Codec.forId((byte) codecId)) {
+            case NONE:
+                return bufferedInput;
+            case LZ4:
+                return new FramedLZ4CompressorInputStream(bufferedInput);
+            case GZIP:
+                return new GZIPInputStream(bufferedInput, BUFFER_SIZE);
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+        public LeveledGZIPOutputStream(OutputStream output, int level) throws IOException {
+            super(output, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+}
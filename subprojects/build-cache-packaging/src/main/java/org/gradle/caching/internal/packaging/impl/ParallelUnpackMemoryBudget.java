@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounds the memory used for files buffered while they wait to be written by parallel build cache entry unpacking.
+ *
+ * <p>A single budget is shared by all packers in the process, so entries unpacked at the same time don't each get their own allowance.</p>
+ */
+public class ParallelUnpackMemoryBudget {
+    public static final int DEFAULT_MAX_PENDING_BYTES = 64 * 1024 * 1024;
+
+    private final int maxPendingBytes;
+    private final Semaphore pendingBytes;
+
+    public ParallelUnpackMemoryBudget(int maxPendingBytes) {
+        this.maxPendingBytes = maxPendingBytes;
+        this.pendingBytes = new Semaphore(maxPendingBytes);
+    }
+
+    /**
+     * Reserves budget for buffering a file of the given size, blocking until enough budget is available.
+     *
+     * @return the reserved amount, to be passed to {@link #release(int)}.
+     */
+    int reserve(long bytes) throws InterruptedIOException {
+        // Account for at least one byte per file, so we don't queue an unbounded number of empty files,
+        // and for at most the whole budget, so a single file can always be buffered
+        int permits = (int) Math.max(1, Math.min(bytes, maxPendingBytes));
+        try {
+            pendingBytes.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while unpacking build cache entry");
+        }
+        return permits;
+    }
+
+    void release(int reserved) {
+        pendingBytes.release(reserved);
+    }
+
+    int getAvailableBytes() {
+        return pendingBytes.availablePermits();
+    }
+}
@@ -32,6 +32,7 @@
 import org.gradle.caching.internal.origin.OriginWriter;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
 import org.gradle.internal.RelativePathSupplier;
+import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.file.FileType;
 import org.gradle.internal.file.TreeType;
 import org.gradle.internal.file.impl.DefaultFileMetadata;
@@ -39,6 +40,7 @@
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.snapshot.DirectorySnapshot;
 import org.gradle.internal.snapshot.DirectorySnapshotBuilder;
+import org.gradle.internal.snapshot.FileSystemLeafSnapshot;
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot.FileSystemLocationSnapshotVisitor;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
@@ -51,6 +53,7 @@
 
 import javax.annotation.Nullable;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -64,9 +67,16 @@
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -93,21 +103,49 @@ private interface UnixPermissions {
     private static final int BUFFER_SIZE = 64 * 1024;
     private static final ThreadLocal<byte[]> COPY_BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
 
+    /**
+     * Files up to this size are buffered in memory and written by the unpack executor, larger files are written while reading the archive.
+     */
+    private static final int MAX_PARALLEL_UNPACK_FILE_SIZE = 1024 * 1024;
+
     private final TarPackerFileSystemSupport fileSystemSupport;
     private final FilePermissionAccess filePermissionAccess;
     private final StreamHasher streamHasher;
     private final Interner<String> stringInterner;
+    @Nullable
+    private final Executor unpackExecutor;
+    private final ParallelUnpackMemoryBudget unpackMemoryBudget;
 
     public TarBuildCacheEntryPacker(
         TarPackerFileSystemSupport fileSystemSupport,
         FilePermissionAccess filePermissionAccess,
         StreamHasher streamHasher,
         Interner<String> stringInterner
+    ) {
+        this(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, null, new ParallelUnpackMemoryBudget(ParallelUnpackMemoryBudget.DEFAULT_MAX_PENDING_BYTES));
+    }
+
+    /**
+     * Creates a packer which writes and hashes the files of unpacked directory trees using the given executor.
+     *
+     * The archive is still read sequentially on the calling thread, only the writing and hashing of the files is done in parallel.
+     * Files waiting to be written are buffered within the given memory budget.
+     * When no executor is given, the files are unpacked on the calling thread.
+     */
+    public TarBuildCacheEntryPacker(
+        TarPackerFileSystemSupport fileSystemSupport,
+        FilePermissionAccess filePermissionAccess,
+        StreamHasher streamHasher,
+        Interner<String> stringInterner,
+        @Nullable Executor unpackExecutor,
+        ParallelUnpackMemoryBudget unpackMemoryBudget
     ) {
         this.fileSystemSupport = fileSystemSupport;
         this.filePermissionAccess = filePermissionAccess;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
+        this.unpackExecutor = unpackExecutor;
+        this.unpackMemoryBudget = unpackMemoryBudget;
     }
 
     @Override
@@ -263,7 +301,7 @@ private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File tree
         return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName);
     }
 
-    private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+    private RegularFileSnapshot unpackFile(InputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
         try (CountingOutputStream output = new CountingOutputStream(new FileOutputStream(file))) {
             HashCode hash = streamHasher.hashCopy(input, output);
             chmodUnpackedFile(entry, file);
@@ -275,16 +313,52 @@ private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEn
 
     @Nullable
     private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, FileSystemLocationSnapshot> snapshots, AtomicLong entries, File treeRoot, String treeName) throws IOException {
+        DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+        if (unpackExecutor == null) {
+            FileUnpacker fileUnpacker = (fileInput, entry, file, fileName) -> {
+                RegularFileSnapshot snapshot = unpackFile(fileInput, entry, file, fileName);
+                return snapshotBuilder -> snapshotBuilder.visitLeafElement(snapshot);
+            };
+            TarArchiveEntry nextEntry = unpackDirectoryTree(input, rootEntry, entries, treeRoot, operation -> operation.accept(builder), fileUnpacker);
+            snapshots.put(treeName, builder.getResult());
+            return nextEntry;
+        }
+
+        // Record the builder operations while files are still being written, and replay them in archive order once all files are available
+        List<Consumer<DirectorySnapshotBuilder>> deferredOperations = new ArrayList<>();
+        ParallelFileUnpacker fileUnpacker = new ParallelFileUnpacker(unpackExecutor);
+        TarArchiveEntry nextEntry;
+        try {
+            nextEntry = unpackDirectoryTree(input, rootEntry, entries, treeRoot, deferredOperations::add, fileUnpacker);
+        } catch (IOException | RuntimeException e) {
+            // Make sure no files are written after we report the failure
+            try {
+                fileUnpacker.awaitCompletion();
+            } catch (IOException | RuntimeException pendingFailure) {
+                e.addSuppressed(pendingFailure);
+            }
+            throw e;
+        }
+        fileUnpacker.awaitCompletion();
+        deferredOperations.forEach(operation -> operation.accept(builder));
+        snapshots.put(treeName, builder.getResult());
+        return nextEntry;
+    }
+
+    @Nullable
+    private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, AtomicLong entries, File treeRoot, Consumer<Consumer<DirectorySnapshotBuilder>> builderOperations, FileUnpacker fileUnpacker) throws IOException {
         RelativePathParser parser = new RelativePathParser(rootEntry.getName());
+        Runnable leaveDirectory = () -> builderOperations.accept(DirectorySnapshotBuilder::leaveDirectory);
 
-        DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
-        builder.enterDirectory(DIRECT, stringInterner.intern(treeRoot.getAbsolutePath()), stringInterner.intern(treeRoot.getName()), INCLUDE_EMPTY_DIRS);
+        String internedRootPath = stringInterner.intern(treeRoot.getAbsolutePath());
+        String internedRootName = stringInterner.intern(treeRoot.getName());
+        builderOperations.accept(builder -> builder.enterDirectory(DIRECT, internedRootPath, internedRootName, INCLUDE_EMPTY_DIRS));
 
         TarArchiveEntry entry;
 
         while ((entry = input.getNextTarEntry()) != null) {
             boolean isDir = entry.isDirectory();
-            boolean outsideOfRoot = parser.nextPath(entry.getName(), isDir, builder::leaveDirectory);
+            boolean outsideOfRoot = parser.nextPath(entry.getName(), isDir, leaveDirectory);
             if (outsideOfRoot) {
                 break;
             }
@@ -296,20 +370,95 @@ private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArch
                 chmodUnpackedFile(entry, file);
                 String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
                 String internedName = stringInterner.intern(parser.getName());
-                builder.enterDirectory(DIRECT, internedAbsolutePath, internedName, INCLUDE_EMPTY_DIRS);
+                builderOperations.accept(builder -> builder.enterDirectory(DIRECT, internedAbsolutePath, internedName, INCLUDE_EMPTY_DIRS));
             } else {
-                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName());
-                builder.visitLeafElement(fileSnapshot);
+                builderOperations.accept(fileUnpacker.unpack(input, entry, file, parser.getName()));
             }
         }
 
-        parser.exitToRoot(builder::leaveDirectory);
-        builder.leaveDirectory();
+        parser.exitToRoot(leaveDirectory);
+        leaveDirectory.run();
 
-        snapshots.put(treeName, builder.getResult());
         return entry;
     }
 
+    private interface FileUnpacker {
+        /**
+         * Unpacks the file, returning the operation which adds its snapshot to the directory snapshot.
+         */
+        Consumer<DirectorySnapshotBuilder> unpack(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException;
+    }
+
+    /**
+     * Buffers small files in memory and writes and hashes them on the unpack executor.
+     *
+     * The amount of buffered data is bounded by the shared memory budget, so reading the archive blocks when the executor cannot keep up.
+     */
+    private class ParallelFileUnpacker implements FileUnpacker {
+        private final Executor executor;
+        private final List<CompletableFuture<RegularFileSnapshot>> pendingFiles = new ArrayList<>();
+
+        public ParallelFileUnpacker(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public Consumer<DirectorySnapshotBuilder> unpack(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+            long size = entry.getSize();
+            if (size > MAX_PARALLEL_UNPACK_FILE_SIZE) {
+                RegularFileSnapshot snapshot = unpackFile(input, entry, file, fileName);
+                return builder -> builder.visitLeafElement(snapshot);
+            }
+            int permits = unpackMemoryBudget.reserve(size);
+            byte[] content;
+            try {
+                content = IOUtils.toByteArray(input, size);
+            } catch (IOException | RuntimeException e) {
+                unpackMemoryBudget.release(permits);
+                throw e;
+            }
+            CompletableFuture<RegularFileSnapshot> snapshot = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return unpackFile(new ByteArrayInputStream(content), entry, file, fileName);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    unpackMemoryBudget.release(permits);
+                }
+            }, executor);
+            pendingFiles.add(snapshot);
+            return builder -> builder.visitLeafElement(snapshot.join());
+        }
+
+        /**
+         * Waits for all files to be written, rethrowing the first failure.
+         */
+        public void awaitCompletion() throws IOException {
+            Throwable failure = null;
+            for (CompletableFuture<RegularFileSnapshot> pendingFile : pendingFiles) {
+                try {
+                    pendingFile.join();
+                } catch (CompletionException | CancellationException e) {
+                    if (failure == null) {
+                        failure = e.getCause() == null ? e : e.getCause();
+                    }
+                }
+            }
+            if (failure instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) failure).getCause();
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+        }
+    }
+
     private void chmodUnpackedFile(TarArchiveEntry entry, File file) {
         filePermissionAccess.chmod(file, entry.getMode() & UnixPermissions.PERM_MASK);
     }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging
+
+import spock.lang.Specification
+
+class BuildCacheEntryCompressionTest extends Specification {
+
+    def "can parse '#spec'"() {
+        expect:
+        BuildCacheEntryCompression.parse(spec) == expected
+        BuildCacheEntryCompression.parse(expected.toString()) == expected
+
+        where:
+        spec     | expected
+        "gzip"   | BuildCacheEntryCompression.GZIP
+        "GZIP:9" | BuildCacheEntryCompression.gzip(9)
+        "gzip:0" | BuildCacheEntryCompression.gzip(0)
+        "lz4"    | BuildCacheEntryCompression.LZ4
+        "none"   | BuildCacheEntryCompression.NONE
+    }
+
+    def "rejects invalid compression '#spec'"() {
+        when:
+        BuildCacheEntryCompression.parse(spec)
+
+        then:
+        thrown IllegalArgumentException
+
+        where:
+        spec << ["brotli", "gzip:10", "gzip:fast", "lz4:3", "none:1"]
+    }
+}
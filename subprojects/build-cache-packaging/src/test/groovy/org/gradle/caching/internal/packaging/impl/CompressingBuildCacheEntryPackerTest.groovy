@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import org.gradle.caching.internal.CacheableEntity
+import org.gradle.caching.internal.origin.OriginReader
+import org.gradle.caching.internal.origin.OriginWriter
+import org.gradle.caching.internal.packaging.BuildCacheEntryCompression
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
+import org.gradle.internal.snapshot.FileSystemSnapshot
+import spock.lang.Specification
+
+import java.util.zip.GZIPInputStream
+
+class CompressingBuildCacheEntryPackerTest extends Specification {
+    def entity = Stub(CacheableEntity)
+    def writeOrigin = Stub(OriginWriter)
+    def readOrigin = Stub(OriginReader)
+    def delegate = new EchoPacker()
+
+    def "can round-trip entry compressed with #compression"() {
+        def output = new ByteArrayOutputStream()
+
+        when:
+        new CompressingBuildCacheEntryPacker(delegate, { compression }).pack(entity, [:], output, writeOrigin)
+        new CompressingBuildCacheEntryPacker(delegate, { BuildCacheEntryCompression.DEFAULT }).unpack(entity, new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        delegate.unpacked == EchoPacker.CONTENT
+
+        where:
+        compression << [
+            BuildCacheEntryCompression.GZIP,
+            BuildCacheEntryCompression.gzip(1),
+            BuildCacheEntryCompression.LZ4,
+            BuildCacheEntryCompression.NONE
+        ]
+    }
+
+    def "writes plain gzip streams for gzip compression"() {
+        def output = new ByteArrayOutputStream()
+
+        when:
+        new CompressingBuildCacheEntryPacker(delegate, { BuildCacheEntryCompression.GZIP }).pack(entity, [:], output, writeOrigin)
+
+        then:
+        new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).bytes == EchoPacker.CONTENT
+    }
+
+    def "records codec in header for #compression"() {
+        def output = new ByteArrayOutputStream()
+
+        when:
+        new CompressingBuildCacheEntryPacker(delegate, { compression }).pack(entity, [:], output, writeOrigin)
+
+        then:
+        def bytes = output.toByteArray()
+        new String(bytes, 0, 3, "US-ASCII") == "GBC"
+        bytes[3] == compression.codec.id
+
+        where:
+        compression << [BuildCacheEntryCompression.LZ4, BuildCacheEntryCompression.NONE]
+    }
+
+    def "fails on unknown compression header"() {
+        when:
+        new CompressingBuildCacheEntryPacker(delegate, { BuildCacheEntryCompression.DEFAULT }).unpack(entity, new ByteArrayInputStream("unknown".bytes), readOrigin)
+
+        then:
+        def ex = thrown IllegalStateException
+        ex.message == "Cached entry format error, unknown compression header."
+    }
+
+    def "fails with EOFException on empty entry"() {
+        when:
+        new CompressingBuildCacheEntryPacker(delegate, { BuildCacheEntryCompression.DEFAULT }).unpack(entity, new ByteArrayInputStream(new byte[0]), readOrigin)
+
+        then:
+        thrown EOFException
+    }
+
+    private static class EchoPacker implements BuildCacheEntryPacker {
+        static final byte[] CONTENT = ("build cache entry content " * 100).bytes
+
+        byte[] unpacked
+
+        @Override
+        PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+            output.write(CONTENT)
+            return new PackResult(1)
+        }
+
+        @Override
+        UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+            unpacked = input.bytes
+            return new UnpackResult(null, 1, [:])
+        }
+    }
+}
@@ -19,9 +19,13 @@ package org.gradle.caching.internal.packaging.impl
 import org.gradle.api.internal.file.TestFiles
 import org.gradle.internal.file.Deleter
 import org.gradle.internal.nativeintegration.filesystem.FileSystem
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.SnapshotVisitResult
 import org.gradle.util.Requires
 import org.gradle.util.TestPrecondition
 
+import java.util.concurrent.Executors
+
 import static org.gradle.internal.file.TreeType.DIRECTORY
 import static org.gradle.internal.file.TreeType.FILE
 
@@ -237,4 +241,70 @@ class TarBuildCacheEntryPackerTest extends AbstractTarBuildCacheEntryPackerSpec
         then:
         targetDir.assertIsEmptyDir()
     }
+
+    def "parallel unpacking produces the same snapshots as sequential unpacking"() {
+        def sourceDir = temporaryFolder.file("source").createDir()
+        (1..20).each { dirIndex ->
+            def subDir = sourceDir.file("dir-$dirIndex").createDir()
+            (1..10).each { fileIndex ->
+                subDir.file("file-${fileIndex}.txt") << "content $dirIndex/$fileIndex" * fileIndex
+            }
+            subDir.file("empty").createDir()
+        }
+        sourceDir.file("large.bin").bytes = new byte[2 * 1024 * 1024]
+        def targetDir = temporaryFolder.file("target")
+        def output = new ByteArrayOutputStream()
+        pack output, prop(DIRECTORY, sourceDir)
+        def executor = Executors.newFixedThreadPool(4)
+        def parallelPacker = new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, executor, new ParallelUnpackMemoryBudget(ParallelUnpackMemoryBudget.DEFAULT_MAX_PENDING_BYTES))
+
+        when:
+        def sequentialResult = unpack new ByteArrayInputStream(output.toByteArray()), prop(DIRECTORY, targetDir)
+        def parallelResult = parallelPacker.unpack(entity(prop(DIRECTORY, targetDir)), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        parallelResult.entries == sequentialResult.entries
+        parallelResult.snapshots.keySet() == sequentialResult.snapshots.keySet()
+        parallelResult.snapshots["test"].hash == sequentialResult.snapshots["test"].hash
+        visitedPaths(parallelResult.snapshots["test"]) == visitedPaths(sequentialResult.snapshots["test"])
+        targetDir.file("dir-3/file-2.txt").text == "content 3/2" * 2
+
+        cleanup:
+        executor?.shutdownNow()
+    }
+
+    def "parallel unpacking shares the memory budget and releases it when done"() {
+        def sourceDir = temporaryFolder.file("source").createDir()
+        (1..50).each { fileIndex ->
+            sourceDir.file("file-${fileIndex}.txt") << "content $fileIndex" * 10
+        }
+        def output = new ByteArrayOutputStream()
+        pack output, prop(DIRECTORY, sourceDir)
+        def executor = Executors.newFixedThreadPool(4)
+        // Smaller than most files, so unpacking only proceeds when reservations are capped and released
+        def budget = new ParallelUnpackMemoryBudget(64)
+        def firstPacker = new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, executor, budget)
+        def secondPacker = new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, executor, budget)
+
+        when:
+        def firstResult = firstPacker.unpack(entity(prop(DIRECTORY, temporaryFolder.file("first"))), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+        def secondResult = secondPacker.unpack(entity(prop(DIRECTORY, temporaryFolder.file("second"))), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        firstResult.snapshots["test"].hash == secondResult.snapshots["test"].hash
+        temporaryFolder.file("second/file-7.txt").text == "content 7" * 10
+        budget.availableBytes == 64
+
+        cleanup:
+        executor?.shutdownNow()
+    }
+
+    private static List<String> visitedPaths(FileSystemLocationSnapshot snapshot) {
+        def paths = []
+        snapshot.accept { FileSystemLocationSnapshot entry ->
+            paths << "${entry.type}:${entry.absolutePath}".toString()
+            SnapshotVisitResult.CONTINUE
+        }
+        return paths
+    }
 }
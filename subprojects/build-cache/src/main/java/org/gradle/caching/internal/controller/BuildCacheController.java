@@ -38,7 +38,26 @@ public interface BuildCacheController extends Closeable {
 
     boolean isEmitDebugLogging();
 
+    /**
+     * Hints that the entry for the given key is likely to be loaded soon.
+     *
+     * Implementations may start fetching the entry from a remote cache in the background, so that a subsequent {@link #load(BuildCacheKey, CacheableEntity)} does not have to wait for it.
+     */
+    void prefetch(BuildCacheKey cacheKey);
+
+    /**
+     * Hints that the entry for the given key is not going to be loaded after all.
+     *
+     * Implementations should stop fetching the entry and drop anything already fetched for it that has not been loaded.
+     */
+    void discardPrefetched(BuildCacheKey cacheKey);
+
     Optional<BuildCacheLoadResult> load(BuildCacheKey cacheKey, CacheableEntity cacheableEntity);
 
+    /**
+     * Returns whether the entry for the given key has been loaded from the remote cache during this build.
+     */
+    boolean isLoadedFromRemote(BuildCacheKey cacheKey);
+
     void store(BuildCacheKey cacheKey, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime);
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.packaging.BuildCacheEntryCompression;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+
+import java.util.Locale;
+
+/**
+ * The key under which an entry compressed with something else than GZIP is stored.
+ *
+ * <p>Gradle versions before 7.5 can only read GZIP compressed entries and fail the build when they load anything else.
+ * Storing other entries under a different key ensures those versions never see them.</p>
+ */
+class CompressionScopedBuildCacheKey implements BuildCacheKey {
+    private final HashCode hashCode;
+
+    private CompressionScopedBuildCacheKey(HashCode hashCode) {
+        this.hashCode = hashCode;
+    }
+
+    static BuildCacheKey scope(BuildCacheKey key, BuildCacheEntryCompression compression) {
+        BuildCacheEntryCompression.Codec codec = compression.getCodec();
+        if (codec == BuildCacheEntryCompression.Codec.GZIP) {
+            return key;
+        }
+        Hasher hasher = Hashing.newHasher();
+        hasher.putBytes(key.toByteArray());
+        hasher.putString(codec.name().toLowerCase(Locale.ROOT));
+        return new CompressionScopedBuildCacheKey(hasher.hash());
+    }
+
+    @Override
+    public String getHashCode() {
+        return hashCode.toString();
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        return hashCode.toByteArray();
+    }
+
+    @Override
+    public String getDisplayName() {
+        return getHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getHashCode();
+    }
+}
@@ -28,6 +28,8 @@
 import org.gradle.caching.internal.CacheableEntity;
 import org.gradle.caching.internal.controller.operations.PackOperationDetails;
 import org.gradle.caching.internal.controller.operations.PackOperationResult;
+import org.gradle.caching.internal.controller.operations.RemotePrefetchBuildOperationType;
+import org.gradle.caching.internal.controller.operations.RemoteStoreQueueBuildOperationType;
 import org.gradle.caching.internal.controller.operations.UnpackOperationDetails;
 import org.gradle.caching.internal.controller.operations.UnpackOperationResult;
 import org.gradle.caching.internal.controller.service.BuildCacheLoadResult;
@@ -41,10 +43,12 @@
 import org.gradle.caching.internal.controller.service.OpFiringRemoteBuildCacheServiceHandle;
 import org.gradle.caching.internal.origin.OriginMetadata;
 import org.gradle.caching.internal.origin.OriginMetadataFactory;
+import org.gradle.caching.internal.packaging.BuildCacheEntryCompression;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
 import org.gradle.caching.local.internal.BuildCacheTempFileStore;
 import org.gradle.caching.local.internal.DefaultBuildCacheTempFileStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.file.FileType;
 import org.gradle.internal.file.TreeType;
@@ -57,6 +61,7 @@
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.snapshot.MissingFileSnapshot;
 import org.gradle.internal.vfs.FileSystemAccess;
+import org.gradle.util.internal.GFileUtils;
 
 import javax.annotation.Nullable;
 import java.io.File;
@@ -64,13 +69,24 @@
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 public class DefaultBuildCacheController implements BuildCacheController {
 
+    private static final RemoteStoreQueueBuildOperationType.Details REMOTE_STORE_QUEUE_DETAILS = new RemoteStoreQueueBuildOperationType.Details() {
+    };
+    private static final RemotePrefetchBuildOperationType.Details REMOTE_PREFETCH_DETAILS = new RemotePrefetchBuildOperationType.Details() {
+    };
+
     @VisibleForTesting
     final RemoteBuildCacheServiceHandle remote;
 
@@ -78,8 +94,16 @@ public class DefaultBuildCacheController implements BuildCacheController {
     final LocalBuildCacheServiceHandle local;
 
     private final BuildCacheTempFileStore tmp;
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final BuildOperationExecutor buildOperationExecutor;
     private final boolean emitDebugLogging;
     private final PackOperationExecutor packExecutor;
+    private final Supplier<BuildCacheEntryCompression> compression;
+    @Nullable
+    private final RemoteBuildCacheEntryPrefetcher prefetcher;
+    @Nullable
+    private final RemoteBuildCacheEntryUploader uploader;
+    private final Set<String> remotelyLoadedKeys = ConcurrentHashMap.newKeySet();
 
     private boolean closed;
 
@@ -90,8 +114,13 @@ public DefaultBuildCacheController(
         boolean logStackTraces,
         boolean emitDebugLogging,
         boolean disableRemoteOnError,
+        boolean prefetchRemote,
+        boolean storeRemoteAsynchronously,
+        long remoteStoreByteBudget,
+        ExecutorFactory executorFactory,
         FileSystemAccess fileSystemAccess,
         BuildCacheEntryPacker packer,
+        Supplier<BuildCacheEntryCompression> compression,
         OriginMetadataFactory originMetadataFactory,
         StringInterner stringInterner
     ) {
@@ -99,6 +128,8 @@ public DefaultBuildCacheController(
         this.local = toLocalHandle(config.getLocal(), config.isLocalPush());
         this.remote = toRemoteHandle(config.getRemote(), config.isRemotePush(), buildOperationExecutor, logStackTraces, disableRemoteOnError);
         this.tmp = toTempFileStore(config.getLocal(), temporaryFileProvider);
+        this.temporaryFileProvider = temporaryFileProvider;
+        this.buildOperationExecutor = buildOperationExecutor;
         this.packExecutor = new PackOperationExecutor(
             buildOperationExecutor,
             fileSystemAccess,
@@ -106,6 +137,13 @@ public DefaultBuildCacheController(
             originMetadataFactory,
             stringInterner
         );
+        this.compression = compression;
+        this.prefetcher = prefetchRemote && remote.canLoad()
+            ? new RemoteBuildCacheEntryPrefetcher(local, remote, temporaryFileProvider, executorFactory)
+            : null;
+        this.uploader = storeRemoteAsynchronously && remote.canStore()
+            ? new RemoteBuildCacheEntryUploader(remote, remoteStoreByteBudget, executorFactory)
+            : null;
     }
 
     @Override
@@ -119,12 +157,40 @@ public boolean isEmitDebugLogging() {
     }
 
     @Override
-    public Optional<BuildCacheLoadResult> load(BuildCacheKey key, CacheableEntity entity) {
+    public Optional<BuildCacheLoadResult> load(BuildCacheKey cacheKey, CacheableEntity entity) {
+        BuildCacheKey key = scopeToCompression(cacheKey);
         Optional<BuildCacheLoadResult> result = loadLocal(key, entity);
         if (result.isPresent()) {
             return result;
         }
-        return loadRemoteAndStoreResultLocally(key, entity);
+        result = loadRemoteAndStoreResultLocally(key, entity);
+        if (result.isPresent()) {
+            remotelyLoadedKeys.add(cacheKey.getHashCode());
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isLoadedFromRemote(BuildCacheKey cacheKey) {
+        return remotelyLoadedKeys.contains(cacheKey.getHashCode());
+    }
+
+    @Override
+    public void prefetch(BuildCacheKey cacheKey) {
+        if (prefetcher != null) {
+            prefetcher.prefetch(scopeToCompression(cacheKey));
+        }
+    }
+
+    @Override
+    public void discardPrefetched(BuildCacheKey cacheKey) {
+        if (prefetcher != null) {
+            prefetcher.discard(scopeToCompression(cacheKey));
+        }
+    }
+
+    private BuildCacheKey scopeToCompression(BuildCacheKey key) {
+        return CompressionScopedBuildCacheKey.scope(key, compression.get());
     }
 
     private Optional<BuildCacheLoadResult> loadLocal(BuildCacheKey key, CacheableEntity entity) {
@@ -139,6 +205,17 @@ private Optional<BuildCacheLoadResult> loadRemoteAndStoreResultLocally(BuildCach
         if (!remote.canLoad()) {
             return Optional.empty();
         }
+        RemoteBuildCacheEntryPrefetcher.PrefetchedEntry prefetched = prefetcher == null ? null : prefetcher.take(key);
+        if (prefetched != null) {
+            File prefetchedFile = prefetched.getFile().orElse(null);
+            try {
+                return remote.maybeLoadPrefetched(key, prefetchedFile, file -> unpackPrefetchedAndStoreLocally(key, entity, file));
+            } finally {
+                if (prefetchedFile != null) {
+                    GFileUtils.deleteQuietly(prefetchedFile);
+                }
+            }
+        }
         AtomicReference<Optional<BuildCacheLoadResult>> result = new AtomicReference<>(Optional.empty());
         tmp.withTempFile(key, file -> {
             Optional<BuildCacheLoadResult> remoteResult;
@@ -155,25 +232,95 @@ private Optional<BuildCacheLoadResult> loadRemoteAndStoreResultLocally(BuildCach
         return result.get();
     }
 
+    private BuildCacheLoadResult unpackPrefetchedAndStoreLocally(BuildCacheKey key, CacheableEntity entity, File file) {
+        BuildCacheLoadResult result;
+        try {
+            result = packExecutor.unpack(key, entity, file);
+        } catch (Exception e) {
+            throw new GradleException("Build cache entry " + key.getHashCode() + " from remote build cache is invalid", e);
+        }
+        local.maybeStore(key, file);
+        return result;
+    }
+
     @Override
-    public void store(BuildCacheKey key, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime) {
+    public void store(BuildCacheKey cacheKey, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime) {
         if (!local.canStore() && !remote.canStore()) {
             return;
         }
+        BuildCacheKey key = scopeToCompression(cacheKey);
         tmp.withTempFile(key, file -> {
             packExecutor.pack(file, key, entity, snapshots, executionTime);
-            remote.maybeStore(key, file);
+            if (uploader != null && remote.canStore()) {
+                uploader.upload(key, fileForUpload(file));
+            } else {
+                remote.maybeStore(key, file);
+            }
             local.maybeStore(key, file);
         });
     }
 
+    private File fileForUpload(File file) {
+        File uploadFile = temporaryFileProvider.createTemporaryFile("build-cache-", ".upload");
+        try {
+            // The local cache takes ownership of the packed file, so the upload needs its own copy
+            if (local.canStore()) {
+                Files.copy(file.toPath(), uploadFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.move(file.toPath(), uploadFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            GFileUtils.deleteQuietly(uploadFile);
+            throw new UncheckedIOException(e);
+        }
+        return uploadFile;
+    }
+
+    private void finishRemoteStores(RemoteBuildCacheEntryUploader uploader) {
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                context.setResult(uploader.finish());
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Wait for remote build cache stores")
+                    .details(REMOTE_STORE_QUEUE_DETAILS)
+                    .progressDisplayName("Uploading to remote build cache");
+            }
+        });
+    }
+
+    private void finishPrefetches(RemoteBuildCacheEntryPrefetcher prefetcher) {
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                context.setResult(prefetcher.finish());
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Finish remote build cache prefetches")
+                    .details(REMOTE_PREFETCH_DETAILS);
+            }
+        });
+    }
+
     @Override
     public void close() throws IOException {
         if (!closed) {
             closed = true;
             Closer closer = Closer.create();
+            // Closed in reverse order: outstanding remote requests complete before the services are closed
             closer.register(local);
             closer.register(remote);
+            if (prefetcher != null) {
+                closer.register(() -> finishPrefetches(prefetcher));
+            }
+            if (uploader != null) {
+                closer.register(() -> finishRemoteStores(uploader));
+            }
             closer.close();
         }
     }
@@ -42,11 +42,26 @@ public boolean isEmitDebugLogging() {
         return false;
     }
 
+    @Override
+    public void prefetch(BuildCacheKey cacheKey) {
+
+    }
+
+    @Override
+    public void discardPrefetched(BuildCacheKey cacheKey) {
+
+    }
+
     @Override
     public Optional<BuildCacheLoadResult> load(BuildCacheKey cacheKey, CacheableEntity cacheableEntity) {
         return Optional.empty();
     }
 
+    @Override
+    public boolean isLoadedFromRemote(BuildCacheKey cacheKey) {
+        return false;
+    }
+
     @Override
     public void store(BuildCacheKey cacheKey, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime) {
 
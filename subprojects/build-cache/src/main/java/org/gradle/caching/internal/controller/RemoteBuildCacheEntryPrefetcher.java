@@ -0,0 +1,294 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.api.internal.file.temp.TemporaryFileProvider;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.operations.RemotePrefetchBuildOperationType;
+import org.gradle.caching.internal.controller.service.LocalBuildCacheServiceHandle;
+import org.gradle.caching.internal.controller.service.RemoteBuildCacheServiceHandle;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.util.internal.GFileUtils;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads remote build cache entries on a background pool, so that the round trip to the remote cache
+ * is off the critical path by the time the entry is actually loaded.
+ *
+ * <p>Prefetched entries are downloaded without being unpacked. Each prefetched entry is handed out at most once
+ * via {@link #take(BuildCacheKey)}. Entries that are not going to be taken can be dropped via {@link #discard(BuildCacheKey)},
+ * entries that are never taken are deleted when the prefetcher is closed.</p>
+ *
+ * <p>The prefetcher counts how many prefetches were used by loads, so {@link #finish()} can report whether prefetching paid off.</p>
+ */
+class RemoteBuildCacheEntryPrefetcher implements Closeable {
+
+    /**
+     * Stays below the number of connections the HTTP build cache client keeps per route,
+     * so that prefetching never starves regular loads and stores.
+     */
+    private static final int MAX_CONCURRENT_DOWNLOADS = 8;
+
+    private final LocalBuildCacheServiceHandle local;
+    private final RemoteBuildCacheServiceHandle remote;
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final ManagedExecutor executor;
+    private final ConcurrentMap<String, PrefetchedDownload> downloads = new ConcurrentHashMap<>();
+    private final AtomicLong prefetchedEntryCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong unusedEntryCount = new AtomicLong();
+    private volatile boolean closed;
+
+    RemoteBuildCacheEntryPrefetcher(LocalBuildCacheServiceHandle local, RemoteBuildCacheServiceHandle remote, TemporaryFileProvider temporaryFileProvider, ExecutorFactory executorFactory) {
+        this.local = local;
+        this.remote = remote;
+        this.temporaryFileProvider = temporaryFileProvider;
+        this.executor = executorFactory.create("Build cache prefetch", MAX_CONCURRENT_DOWNLOADS);
+    }
+
+    /**
+     * Starts downloading the entry for the given key in the background, unless a download has already been started.
+     *
+     * Does not block, so it can be called while the execution plan is locked.
+     */
+    void prefetch(BuildCacheKey key) {
+        if (closed || !remote.canLoad()) {
+            return;
+        }
+        downloads.computeIfAbsent(key.getHashCode(), hashCode -> {
+            PrefetchedDownload download = new PrefetchedDownload(key);
+            prefetchedEntryCount.incrementAndGet();
+            try {
+                executor.execute(download);
+            } catch (RejectedExecutionException e) {
+                // Closed concurrently, the entry will be loaded on demand
+                download.discard();
+            }
+            return download;
+        });
+    }
+
+    /**
+     * Returns the outcome of the prefetch for the given key, waiting for the download to finish if it is running.
+     *
+     * A download which has not started yet is dropped instead of waited for, since it may be queued behind other prefetches.
+     *
+     * @return {@code null} when no prefetch has been started or completed for the key.
+     */
+    @Nullable
+    PrefetchedEntry take(BuildCacheKey key) {
+        PrefetchedDownload download = downloads.remove(key.getHashCode());
+        if (download == null) {
+            return null;
+        }
+        PrefetchedEntry entry = download.startedOrDiscard() ? waitFor(download) : null;
+        (entry == null ? missCount : hitCount).incrementAndGet();
+        return entry;
+    }
+
+    @Nullable
+    private static PrefetchedEntry waitFor(PrefetchedDownload download) {
+        try {
+            return download.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            // Download failures have already been reported by the remote handle, fall back to a regular load
+            return null;
+        }
+    }
+
+    /**
+     * Drops the prefetch for the given key if it has not been taken yet.
+     *
+     * A download which has not started yet is skipped, a running download is deleted once it completes.
+     */
+    void discard(BuildCacheKey key) {
+        PrefetchedDownload download = downloads.remove(key.getHashCode());
+        if (download != null) {
+            unusedEntryCount.incrementAndGet();
+            download.discard();
+        }
+    }
+
+    @Nullable
+    private PrefetchedEntry download(BuildCacheKey key) {
+        if (local.contains(key)) {
+            // The entry will be loaded from the local cache
+            return null;
+        }
+        File file = temporaryFileProvider.createTemporaryFile("build-cache-", ".prefetched");
+        boolean downloaded = false;
+        try {
+            downloaded = remote.maybeDownload(key, file);
+            return new PrefetchedEntry(downloaded ? file : null);
+        } finally {
+            if (!downloaded) {
+                GFileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+    /**
+     * Discards the prefetches that have not been taken and waits for running downloads to finish.
+     */
+    RemotePrefetchBuildOperationType.Result finish() {
+        close();
+        return new PrefetchResult(prefetchedEntryCount.get(), hitCount.get(), missCount.get(), unusedEntryCount.get());
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        unusedEntryCount.addAndGet(downloads.size());
+        downloads.values().forEach(PrefetchedDownload::discard);
+        executor.stop();
+        downloads.clear();
+    }
+
+    private class PrefetchedDownload implements Runnable {
+        private final BuildCacheKey key;
+        private final CompletableFuture<PrefetchedEntry> result = new CompletableFuture<>();
+        private boolean started;
+        private boolean discarded;
+
+        PrefetchedDownload(BuildCacheKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (discarded) {
+                    return;
+                }
+                started = true;
+            }
+            PrefetchedEntry entry;
+            try {
+                entry = download(key);
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+                return;
+            }
+            synchronized (this) {
+                if (discarded) {
+                    deleteDownloaded(entry);
+                    result.complete(null);
+                } else {
+                    result.complete(entry);
+                }
+            }
+        }
+
+        /**
+         * Discards the download unless it has started already.
+         *
+         * @return whether the download has started.
+         */
+        synchronized boolean startedOrDiscard() {
+            if (!started) {
+                discard();
+            }
+            return started;
+        }
+
+        synchronized void discard() {
+            discarded = true;
+            if (result.isDone()) {
+                if (!result.isCompletedExceptionally()) {
+                    deleteDownloaded(result.getNow(null));
+                }
+            } else {
+                // Nobody waits for a discarded download anymore, but complete it in case it never runs
+                result.complete(null);
+            }
+        }
+
+        private void deleteDownloaded(@Nullable PrefetchedEntry entry) {
+            if (entry != null) {
+                entry.getFile().ifPresent(GFileUtils::deleteQuietly);
+            }
+        }
+    }
+
+    private static class PrefetchResult implements RemotePrefetchBuildOperationType.Result {
+        private final long prefetchedEntryCount;
+        private final long hitCount;
+        private final long missCount;
+        private final long unusedEntryCount;
+
+        PrefetchResult(long prefetchedEntryCount, long hitCount, long missCount, long unusedEntryCount) {
+            this.prefetchedEntryCount = prefetchedEntryCount;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.unusedEntryCount = unusedEntryCount;
+        }
+
+        @Override
+        public long getPrefetchedEntryCount() {
+            return prefetchedEntryCount;
+        }
+
+        @Override
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        @Override
+        public long getMissCount() {
+            return missCount;
+        }
+
+        @Override
+        public long getUnusedEntryCount() {
+            return unusedEntryCount;
+        }
+    }
+
+    static class PrefetchedEntry {
+        private final File file;
+
+        private PrefetchedEntry(@Nullable File file) {
+            this.file = file;
+        }
+
+        /**
+         * The downloaded entry, or empty if the remote cache did not have an entry for the key.
+         */
+        Optional<File> getFile() {
+            return Optional.ofNullable(file);
+        }
+    }
+}
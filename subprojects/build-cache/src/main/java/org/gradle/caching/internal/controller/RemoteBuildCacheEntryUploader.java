@@ -0,0 +1,189 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.operations.RemoteStoreQueueBuildOperationType;
+import org.gradle.caching.internal.controller.service.RemoteBuildCacheServiceHandle;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.operations.CurrentBuildOperationPreservingRunnable;
+import org.gradle.util.internal.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores entries in the remote build cache on a background pool, so that work does not wait for its outputs to be uploaded.
+ *
+ * <p>The queue is bounded: when {@value #MAX_QUEUED_UPLOADS} entries are waiting or being uploaded, {@link #upload(BuildCacheKey, File)}
+ * stores the entry on the calling thread instead. That way the caller does not sit idle while holding its worker lease,
+ * and the stores still slow the build down when the remote cache cannot keep up. The total number of bytes queued over the lifetime of the uploader is limited by a byte budget,
+ * entries that would exceed the budget are not uploaded.</p>
+ */
+class RemoteBuildCacheEntryUploader implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteBuildCacheEntryUploader.class);
+
+    private static final int MAX_CONCURRENT_UPLOADS = 4;
+    private static final int MAX_QUEUED_UPLOADS = 32;
+
+    private final RemoteBuildCacheServiceHandle remote;
+    private final long byteBudget;
+    private final ManagedExecutor executor;
+    private final Semaphore queueSlots = new Semaphore(MAX_QUEUED_UPLOADS);
+
+    private final AtomicLong queuedEntryCount = new AtomicLong();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicLong skippedEntryCount = new AtomicLong();
+    private final AtomicLong inlineEntryCount = new AtomicLong();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicBoolean budgetExhaustedReported = new AtomicBoolean();
+    private volatile boolean closed;
+
+    RemoteBuildCacheEntryUploader(RemoteBuildCacheServiceHandle remote, long byteBudget, ExecutorFactory executorFactory) {
+        this.remote = remote;
+        this.byteBudget = byteBudget;
+        this.executor = executorFactory.create("Build cache upload", MAX_CONCURRENT_UPLOADS);
+    }
+
+    /**
+     * Queues the given file for upload, or uploads it right away when the queue is full. The uploader takes ownership of the file and deletes it once it has been uploaded.
+     */
+    void upload(BuildCacheKey key, File file) {
+        long size = file.length();
+        if (closed || !reserveBudget(key, size)) {
+            GFileUtils.deleteQuietly(file);
+            return;
+        }
+        if (!queueSlots.tryAcquire()) {
+            inlineEntryCount.incrementAndGet();
+            try {
+                remote.maybeStore(key, file);
+            } finally {
+                GFileUtils.deleteQuietly(file);
+            }
+            return;
+        }
+        maxQueueDepth.accumulateAndGet(queueDepth.incrementAndGet(), Math::max);
+        queuedEntryCount.incrementAndGet();
+        try {
+            // Keep the store operations under the operation which produced the entry
+            executor.execute(new CurrentBuildOperationPreservingRunnable(() -> {
+                try {
+                    remote.maybeStore(key, file);
+                } finally {
+                    GFileUtils.deleteQuietly(file);
+                    queueDepth.decrementAndGet();
+                    queueSlots.release();
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            // Closed concurrently
+            GFileUtils.deleteQuietly(file);
+            queueDepth.decrementAndGet();
+            queueSlots.release();
+        }
+    }
+
+    private boolean reserveBudget(BuildCacheKey key, long size) {
+        if (queuedBytes.addAndGet(size) <= byteBudget) {
+            return true;
+        }
+        queuedBytes.addAndGet(-size);
+        skippedEntryCount.incrementAndGet();
+        if (budgetExhaustedReported.compareAndSet(false, true)) {
+            LOGGER.warn("Not storing entry {} and further entries in the remote build cache, the upload budget of {} bytes for this build has been exhausted.", key.getDisplayName(), byteBudget);
+        } else {
+            LOGGER.info("Not storing entry {} in the remote build cache, the upload budget for this build has been exhausted.", key.getDisplayName());
+        }
+        return false;
+    }
+
+    /**
+     * Waits for all queued uploads to finish.
+     */
+    RemoteStoreQueueBuildOperationType.Result finish() {
+        int pendingEntryCount = queueDepth.get();
+        close();
+        return new QueueResult(queuedEntryCount.get(), queuedBytes.get(), skippedEntryCount.get(), inlineEntryCount.get(), maxQueueDepth.get(), pendingEntryCount);
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            executor.stop();
+        }
+    }
+
+    private static class QueueResult implements RemoteStoreQueueBuildOperationType.Result {
+        private final long queuedEntryCount;
+        private final long queuedBytes;
+        private final long skippedEntryCount;
+        private final long inlineEntryCount;
+        private final int maxQueueDepth;
+        private final int pendingEntryCount;
+
+        QueueResult(long queuedEntryCount, long queuedBytes, long skippedEntryCount, long inlineEntryCount, int maxQueueDepth, int pendingEntryCount) {
+            this.queuedEntryCount = queuedEntryCount;
+            this.queuedBytes = queuedBytes;
+            this.skippedEntryCount = skippedEntryCount;
+            this.inlineEntryCount = inlineEntryCount;
+            this.maxQueueDepth = maxQueueDepth;
+            this.pendingEntryCount = pendingEntryCount;
+        }
+
+        @Override
+        public long getQueuedEntryCount() {
+            return queuedEntryCount;
+        }
+
+        @Override
+        public long getQueuedBytes() {
+            return queuedBytes;
+        }
+
+        @Override
+        public long getSkippedEntryCount() {
+            return skippedEntryCount;
+        }
+
+        @Override
+        public long getInlineEntryCount() {
+            return inlineEntryCount;
+        }
+
+        @Override
+        public int getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+
+        @Override
+        public int getPendingEntryCount() {
+            return pendingEntryCount;
+        }
+    }
+}
@@ -65,11 +65,26 @@ public boolean isEmitDebugLogging() {
             return delegate.isEmitDebugLogging();
         }
 
+        @Override
+        public void prefetch(BuildCacheKey cacheKey) {
+            delegate.prefetch(cacheKey);
+        }
+
+        @Override
+        public void discardPrefetched(BuildCacheKey cacheKey) {
+            delegate.discardPrefetched(cacheKey);
+        }
+
         @Override
         public Optional<BuildCacheLoadResult> load(BuildCacheKey cacheKey, CacheableEntity cacheableEntity) {
             return delegate.load(cacheKey, cacheableEntity);
         }
 
+        @Override
+        public boolean isLoadedFromRemote(BuildCacheKey cacheKey) {
+            return delegate.isLoadedFromRemote(cacheKey);
+        }
+
         @Override
         public void store(BuildCacheKey cacheKey, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime) {
             delegate.store(cacheKey, entity, snapshots, executionTime);
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.operations;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Finishing the remote build cache prefetches of a build.
+ *
+ * The result describes how many of the prefetched entries were actually used, so the benefit of prefetching can be judged.
+ */
+public final class RemotePrefetchBuildOperationType implements BuildOperationType<RemotePrefetchBuildOperationType.Details, RemotePrefetchBuildOperationType.Result> {
+
+    public interface Details {
+    }
+
+    public interface Result {
+
+        /**
+         * The number of entries that were prefetched.
+         */
+        long getPrefetchedEntryCount();
+
+        /**
+         * The number of loads that used the outcome of a prefetch instead of going to the remote cache.
+         */
+        long getHitCount();
+
+        /**
+         * The number of loads for a prefetched entry that still went to the remote cache, because the prefetch had not started yet or failed.
+         */
+        long getMissCount();
+
+        /**
+         * The number of prefetched entries that were never loaded, because the task did not need to load them or its cache key was different.
+         */
+        long getUnusedEntryCount();
+
+    }
+
+    private RemotePrefetchBuildOperationType() {
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.operations;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Waiting for the asynchronous remote build cache stores of a build to finish.
+ *
+ * The result describes how the upload queue was used over the whole build.
+ */
+public final class RemoteStoreQueueBuildOperationType implements BuildOperationType<RemoteStoreQueueBuildOperationType.Details, RemoteStoreQueueBuildOperationType.Result> {
+
+    public interface Details {
+    }
+
+    public interface Result {
+
+        /**
+         * The number of entries that were queued for upload.
+         */
+        long getQueuedEntryCount();
+
+        /**
+         * The number of bytes of the entries that were queued for upload or stored without being queued.
+         */
+        long getQueuedBytes();
+
+        /**
+         * The number of entries that were not uploaded because the upload byte budget of the build was exhausted.
+         */
+        long getSkippedEntryCount();
+
+        /**
+         * The number of entries that were stored without being queued, because the queue was full.
+         */
+        long getInlineEntryCount();
+
+        /**
+         * The largest number of entries waiting in the queue or being uploaded at the same time.
+         */
+        int getMaxQueueDepth();
+
+        /**
+         * The number of entries still waiting in the queue or being uploaded when the build finished.
+         */
+        int getPendingEntryCount();
+
+    }
+
+    private RemoteStoreQueueBuildOperationType() {
+    }
+}
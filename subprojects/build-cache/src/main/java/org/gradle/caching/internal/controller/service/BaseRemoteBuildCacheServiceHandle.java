@@ -38,7 +38,7 @@ public class BaseRemoteBuildCacheServiceHandle implements RemoteBuildCacheServic
     private final boolean logStackTraces;
     private final boolean disableOnError;
 
-    private boolean disabled;
+    private volatile boolean disabled;
 
     public BaseRemoteBuildCacheServiceHandle(
         BuildCacheService service,
@@ -81,6 +81,36 @@ public final Optional<BuildCacheLoadResult> maybeLoad(BuildCacheKey key, File lo
         return maybeUnpack(loadTarget, unpackFunction);
     }
 
+    @Override
+    public final boolean maybeDownload(BuildCacheKey key, File loadTargetFile) {
+        if (!canLoad()) {
+            return false;
+        }
+        LOGGER.debug("Prefetch entry {} from {} build cache", key.getDisplayName(), role.getDisplayName());
+        LoadTarget loadTarget = new LoadTarget(loadTargetFile);
+        try {
+            loadInner(key, loadTarget);
+        } catch (Exception e) {
+            failure("load", "from", key, e);
+            return false;
+        }
+        return loadTarget.isLoaded();
+    }
+
+    @Override
+    public final Optional<BuildCacheLoadResult> maybeLoadPrefetched(BuildCacheKey key, @Nullable File prefetchedFile, Function<File, BuildCacheLoadResult> unpackFunction) {
+        String description = "Load entry " + key.getDisplayName() + " from " + role.getDisplayName() + " build cache";
+        LOGGER.debug("{} (prefetched)", description);
+        loadPrefetchedInner(description, key, prefetchedFile);
+        return prefetchedFile == null
+            ? Optional.empty()
+            : Optional.ofNullable(unpackFunction.apply(prefetchedFile));
+    }
+
+    protected void loadPrefetchedInner(String description, BuildCacheKey key, @Nullable File prefetchedFile) {
+        // The entry has already been downloaded
+    }
+
     protected void loadInner(String description, BuildCacheKey key, LoadTarget loadTarget) {
         service.load(key, loadTarget);
     }
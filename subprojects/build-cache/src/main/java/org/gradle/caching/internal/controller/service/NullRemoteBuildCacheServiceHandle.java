@@ -44,6 +44,16 @@ public Optional<BuildCacheLoadResult> maybeLoad(BuildCacheKey key, File toFile,
         return Optional.empty();
     }
 
+    @Override
+    public boolean maybeDownload(BuildCacheKey key, File toFile) {
+        return false;
+    }
+
+    @Override
+    public Optional<BuildCacheLoadResult> maybeLoadPrefetched(BuildCacheKey key, @Nullable File prefetchedFile, Function<File, BuildCacheLoadResult> unpackFunction) {
+        return Optional.empty();
+    }
+
     @Override
     public boolean canStore() {
         return false;
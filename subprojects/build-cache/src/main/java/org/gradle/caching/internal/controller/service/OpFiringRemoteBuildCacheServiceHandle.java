@@ -29,6 +29,8 @@
 import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 
+import javax.annotation.Nullable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -63,6 +65,28 @@ public BuildOperationDescriptor.Builder description() {
         });
     }
 
+    @Override
+    protected void loadPrefetchedInner(String description, BuildCacheKey key, @Nullable File prefetchedFile) {
+        // The download happened in the background, report the load as part of the work consuming the entry
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                context.setResult(
+                    prefetchedFile != null
+                        ? new LoadOperationHitResult(prefetchedFile.length())
+                        : LoadOperationMissResult.INSTANCE
+                );
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName(description)
+                    .details(new LoadOperationDetails(key))
+                    .progressDisplayName("Requesting from remote build cache");
+            }
+        });
+    }
+
     @Override
     protected void storeInner(final String description, final BuildCacheKey key, final StoreTarget storeTarget) {
         buildOperationExecutor.run(new RunnableBuildOperation() {
@@ -41,6 +41,24 @@ public interface RemoteBuildCacheServiceHandle extends Closeable {
      */
     Optional<BuildCacheLoadResult> maybeLoad(BuildCacheKey key, File toFile, Function<File, BuildCacheLoadResult> unpackFunction);
 
+    /**
+     * Downloads the cached entry corresponding to the given cache key to the given target file without unpacking it.
+     *
+     * Unlike {@link #maybeLoad(BuildCacheKey, File, Function)}, no build operations are fired, so this method can be called from background threads.
+     * If canLoad() returns false, then this method will do nothing and will return false.
+     *
+     * Returns true if the entry was downloaded.
+     */
+    boolean maybeDownload(BuildCacheKey key, File toFile);
+
+    /**
+     * Unpacks an entry downloaded earlier via {@link #maybeDownload(BuildCacheKey, File)}, reporting it like a load of the entry.
+     *
+     * A {@code null} file means that the remote cache did not have the entry.
+     * Must be called from the thread loading the entry, so the load is reported as part of the work loading it.
+     */
+    Optional<BuildCacheLoadResult> maybeLoadPrefetched(BuildCacheKey key, @Nullable File prefetchedFile, Function<File, BuildCacheLoadResult> unpackFunction);
+
     boolean canStore();
 
     /**
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.Action;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.PersistentCache;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.packaging.BuildCacheEntryCompression;
+import org.gradle.caching.internal.packaging.impl.CompressingBuildCacheEntryPacker;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.file.FileAccessTracker;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.util.internal.GFileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local build cache that stores the contents of files only once, no matter how many cache entries contain them.
+ *
+ * <p>
+ * Each cache entry is split into a small manifest stored under {@code manifests/<key>}, which lists the archive entries
+ * of the cache entry, and blobs stored under {@code blobs/<hash prefix>/<hash>} for the contents of the files.
+ * Blobs are stored compressed. When loading, the archive is reassembled from the manifest and the blobs while it is being read.
+ * </p>
+ *
+ * <p>
+ * Storing an entry splits, compresses and hashes it into a staging directory first, and only holds the lock while moving the results into place.
+ * </p>
+ *
+ * <p>
+ * Entries are accessed via their manifests, and blobs are only removed by {@link UnreferencedBlobCleanup} once no manifest refers to them anymore.
+ * </p>
+ */
+public class ContentAddressableBuildCacheService implements LocalBuildCacheService, BuildCacheService {
+    static final String MANIFESTS_DIR = "manifests";
+    static final String BLOBS_DIR = "blobs";
+    static final String TEMP_DIR = "tmp";
+    static final int FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP = 2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File baseDir;
+    private final PersistentCache persistentCache;
+    private final BuildCacheTempFileStore tempFileStore;
+    private final FileAccessTracker fileAccessTracker;
+    private final String failedFileSuffix;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ContentAddressableBuildCacheService(File baseDir, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix) {
+        this.baseDir = baseDir;
+        this.persistentCache = persistentCache;
+        this.tempFileStore = tempFileStore;
+        this.fileAccessTracker = fileAccessTracker;
+        this.failedFileSuffix = failedFileSuffix;
+    }
+
+    static File manifestsDir(File baseDir) {
+        return new File(baseDir, MANIFESTS_DIR);
+    }
+
+    static File blobsDir(File baseDir) {
+        return new File(baseDir, BLOBS_DIR);
+    }
+
+    static File blobFile(File baseDir, String blob) {
+        return new File(new File(blobsDir(baseDir), blob.substring(0, 2)), blob);
+    }
+
+    @Override
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        boolean[] loaded = new boolean[1];
+        loadInsideLock(key, input -> {
+            reader.readFrom(input);
+            loaded[0] = true;
+        });
+        return loaded[0];
+    }
+
+    @Override
+    public void loadLocally(BuildCacheKey key, Action<? super File> reader) {
+        loadInsideLock(key, input -> tempFileStore.withTempFile(key, file -> {
+            try {
+                try (OutputStream output = new FileOutputStream(file)) {
+                    IOUtils.copyLarge(input, output);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            reader.execute(file);
+        }));
+    }
+
+    @Override
+    public boolean containsLocally(BuildCacheKey key) {
+        return new File(manifestsDir(baseDir), key.getHashCode()).isFile();
+    }
+
+    private void loadInsideLock(BuildCacheKey key, EntryReader reader) {
+        // We need to lock other processes out here because garbage collection can be under way in another process
+        persistentCache.withFileLock(() -> {
+            lock.readLock().lock();
+            try {
+                File manifestFile = new File(manifestsDir(baseDir), key.getHashCode());
+                if (!manifestFile.isFile()) {
+                    return;
+                }
+                fileAccessTracker.markAccessed(manifestFile);
+
+                try (InputStream input = new AssembledEntryInputStream(ContentAddressableCacheManifest.read(manifestFile))) {
+                    reader.read(input);
+                } catch (Exception e) {
+                    // Try to move the manifest out of the way in case its permanently corrupt
+                    // Don't delete, so that it can be potentially used for debugging
+                    File failedFile = new File(manifestFile.getAbsolutePath() + failedFileSuffix);
+                    GFileUtils.deleteQuietly(failedFile);
+                    //noinspection ResultOfMethodCallIgnored
+                    manifestFile.renameTo(failedFile);
+
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public void store(BuildCacheKey key, BuildCacheEntryWriter result) throws BuildCacheException {
+        tempFileStore.withTempFile(key, file -> {
+            try {
+                try (OutputStream output = new FileOutputStream(file)) {
+                    result.writeTo(output);
+                }
+            } catch (IOException ex) {
+                throw UncheckedException.throwAsUncheckedException(ex);
+            }
+
+            storeLocally(key, file);
+        });
+    }
+
+    @Override
+    public void storeLocally(BuildCacheKey key, File file) {
+        // Split, compress and hash the entry before taking the lock, so only moving the results into place blocks other builds
+        File stagingDir;
+        ImmutableList.Builder<ContentAddressableCacheManifest.Entry> entries = ImmutableList.builder();
+        Map<String, File> stagedBlobs = new HashMap<>();
+        try {
+            File tempDir = new File(baseDir, TEMP_DIR);
+            GFileUtils.mkdirs(tempDir);
+            stagingDir = Files.createTempDirectory(tempDir.toPath(), key.getHashCode() + "-").toFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            try (InputStream input = CompressingBuildCacheEntryPacker.decompress(new FileInputStream(file));
+                 TarArchiveInputStream tarInput = new TarArchiveInputStream(input, StandardCharsets.UTF_8.name())) {
+                TarArchiveEntry tarEntry;
+                while ((tarEntry = tarInput.getNextTarEntry()) != null) {
+                    String blob = tarEntry.isDirectory() ? null : stageBlob(tarInput, stagingDir, stagedBlobs);
+                    entries.add(new ContentAddressableCacheManifest.Entry(tarEntry.getName(), tarEntry.getMode(), tarEntry.getSize(), blob));
+                }
+            }
+            File manifestFile = new File(stagingDir, key.getHashCode() + ".manifest");
+            new ContentAddressableCacheManifest(entries.build()).write(manifestFile);
+
+            persistentCache.withFileLock(() -> {
+                lock.writeLock().lock();
+                try {
+                    publishInsideLock(key, manifestFile, stagedBlobs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            GFileUtils.deleteQuietly(stagingDir);
+        }
+    }
+
+    /**
+     * Compresses the contents of the current archive entry into the staging directory, returning the hash of the uncompressed contents.
+     */
+    private static String stageBlob(InputStream input, File stagingDir, Map<String, File> stagedBlobs) throws IOException {
+        File stagedFile = new File(stagingDir, "blob-" + stagedBlobs.size());
+        Hasher hasher = Hashing.sha256().newHasher();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (OutputStream output = new GZIPOutputStream(new FileOutputStream(stagedFile), BUFFER_SIZE)) {
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                hasher.putBytes(buffer, 0, read);
+                output.write(buffer, 0, read);
+            }
+        }
+        String blob = hasher.hash().toString();
+        if (stagedBlobs.putIfAbsent(blob, stagedFile) != null) {
+            GFileUtils.deleteQuietly(stagedFile);
+        }
+        return blob;
+    }
+
+    private void publishInsideLock(BuildCacheKey key, File stagedManifestFile, Map<String, File> stagedBlobs) throws IOException {
+        for (Map.Entry<String, File> stagedBlob : stagedBlobs.entrySet()) {
+            File blobFile = blobFile(baseDir, stagedBlob.getKey());
+            if (!blobFile.isFile()) {
+                GFileUtils.mkdirs(blobFile.getParentFile());
+                Files.move(stagedBlob.getValue().toPath(), blobFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
+        File manifestFile = new File(manifestsDir(baseDir), key.getHashCode());
+        GFileUtils.mkdirs(manifestFile.getParentFile());
+        Files.move(stagedManifestFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        fileAccessTracker.markAccessed(manifestFile);
+    }
+
+    @Override
+    public void withTempFile(BuildCacheKey key, Action<? super File> action) {
+        persistentCache.withFileLock(() -> tempFileStore.withTempFile(key, action));
+    }
+
+    @Override
+    public void close() {
+        persistentCache.close();
+    }
+
+    private interface EntryReader {
+        void read(InputStream input) throws IOException;
+    }
+
+    /**
+     * Produces the archive of a cache entry from its manifest and blobs while it is being read, so the entry is never assembled on disk.
+     *
+     * The archive is written uncompressed, so the packer does not need to inflate it again.
+     */
+    private class AssembledEntryInputStream extends InputStream {
+        private final Iterator<ContentAddressableCacheManifest.Entry> entries;
+        private final ChunkBuffer chunk = new ChunkBuffer();
+        private final TarArchiveOutputStream tarOutput;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private InputStream currentBlob;
+        private int position;
+        private boolean finished;
+
+        AssembledEntryInputStream(ContentAddressableCacheManifest manifest) throws IOException {
+            this.entries = manifest.getEntries().iterator();
+            this.tarOutput = new TarArchiveOutputStream(CompressingBuildCacheEntryPacker.compress(BuildCacheEntryCompression.NONE, chunk), StandardCharsets.UTF_8.name());
+            tarOutput.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tarOutput.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+            tarOutput.setAddPaxHeadersForNonAsciiNames(true);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return chunk.byteAt(position++) & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(len, chunk.size() - position);
+            System.arraycopy(chunk.bytes(), position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        /**
+         * Makes sure there is data available to read, returns false when the whole archive has been read.
+         */
+        private boolean fill() throws IOException {
+            while (position >= chunk.size()) {
+                if (finished) {
+                    return false;
+                }
+                chunk.reset();
+                position = 0;
+                writeNext();
+            }
+            return true;
+        }
+
+        private void writeNext() throws IOException {
+            if (currentBlob != null) {
+                int read = currentBlob.read(buffer);
+                if (read >= 0) {
+                    tarOutput.write(buffer, 0, read);
+                } else {
+                    currentBlob.close();
+                    currentBlob = null;
+                    tarOutput.closeArchiveEntry();
+                }
+            } else if (entries.hasNext()) {
+                ContentAddressableCacheManifest.Entry entry = entries.next();
+                TarArchiveEntry tarEntry = new TarArchiveEntry(entry.getName(), true);
+                tarEntry.setSize(entry.getSize());
+                tarEntry.setMode(entry.getMode());
+                tarOutput.putArchiveEntry(tarEntry);
+                String blob = entry.getBlob();
+                if (blob != null) {
+                    currentBlob = new GZIPInputStream(new FileInputStream(blobFile(baseDir, blob)), BUFFER_SIZE);
+                } else {
+                    tarOutput.closeArchiveEntry();
+                }
+            } else {
+                tarOutput.close();
+                finished = true;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (currentBlob != null) {
+                currentBlob.close();
+                currentBlob = null;
+            }
+        }
+    }
+
+    private static class ChunkBuffer extends ByteArrayOutputStream {
+        byte[] bytes() {
+            return buf;
+        }
+
+        byte byteAt(int index) {
+            return buf[index];
+        }
+    }
+}
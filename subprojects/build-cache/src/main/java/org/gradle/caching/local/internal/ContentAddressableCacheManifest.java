@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Describes the contents of a build cache entry stored in a {@link ContentAddressableBuildCacheService}.
+ *
+ * The manifest lists the archive entries of the build cache entry in order. The contents of regular files are stored
+ * as blobs, identified by the hash of their contents.
+ */
+class ContentAddressableCacheManifest {
+    private static final int MAGIC = 0x4743414d;
+    private static final int VERSION = 1;
+
+    private final List<Entry> entries;
+
+    ContentAddressableCacheManifest(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public static ContentAddressableCacheManifest read(File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Build cache manifest " + file + " has an invalid format.");
+            }
+            int version = input.readInt();
+            if (version != VERSION) {
+                throw new IOException("Build cache manifest " + file + " has an unsupported version " + version + ".");
+            }
+            int count = input.readInt();
+            ImmutableList.Builder<Entry> entries = ImmutableList.builderWithExpectedSize(count);
+            for (int i = 0; i < count; i++) {
+                String name = input.readUTF();
+                int mode = input.readInt();
+                long size = input.readLong();
+                String blob = input.readBoolean() ? input.readUTF() : null;
+                entries.add(new Entry(name, mode, size, blob));
+            }
+            return new ContentAddressableCacheManifest(entries.build());
+        }
+    }
+
+    public void write(File file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(entries.size());
+            for (Entry entry : entries) {
+                output.writeUTF(entry.getName());
+                output.writeInt(entry.getMode());
+                output.writeLong(entry.getSize());
+                String blob = entry.getBlob();
+                output.writeBoolean(blob != null);
+                if (blob != null) {
+                    output.writeUTF(blob);
+                }
+            }
+        }
+    }
+
+    static class Entry {
+        private final String name;
+        private final int mode;
+        private final long size;
+        private final String blob;
+
+        Entry(String name, int mode, long size, @Nullable String blob) {
+            this.name = name;
+            this.mode = mode;
+            this.size = size;
+            this.blob = blob;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMode() {
+            return mode;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * The hash of the contents of the entry, or {@code null} for directories.
+         */
+        @Nullable
+        public String getBlob() {
+            return blob;
+        }
+    }
+}
@@ -101,6 +101,11 @@ public void loadLocally(final BuildCacheKey key, final Action<? super File> read
         });
     }
 
+    @Override
+    public boolean containsLocally(BuildCacheKey key) {
+        return fileStore.get(key.getHashCode()) != null;
+    }
+
     private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
         LocallyAvailableResource resource = fileStore.get(key.getHashCode());
         if (resource == null) {
@@ -20,8 +20,10 @@
 import org.gradle.api.internal.file.temp.TemporaryFileProvider;
 import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.CacheRepository;
+import org.gradle.cache.CleanupAction;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.internal.CleanupActionFactory;
+import org.gradle.cache.internal.CompositeCleanupAction;
 import org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup;
 import org.gradle.cache.internal.SingleDepthFilesFinder;
 import org.gradle.cache.scopes.GlobalScopedCache;
@@ -45,6 +47,10 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
 
     private static final String BUILD_CACHE_VERSION = "1";
     private static final String BUILD_CACHE_KEY = "build-cache-" + BUILD_CACHE_VERSION;
+    private static final String CONTENT_ADDRESSABLE_BUILD_CACHE_VERSION = "1";
+    private static final String CONTENT_ADDRESSABLE_BUILD_CACHE_KEY = "build-cache-cas-" + CONTENT_ADDRESSABLE_BUILD_CACHE_VERSION;
+    private static final String LAYOUT_PROPERTY = "org.gradle.caching.local.layout";
+    private static final String CONTENT_ADDRESSABLE_LAYOUT = "content-addressable";
     private static final String DIRECTORY_BUILD_CACHE_TYPE = "directory";
     private static final int FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP = 1;
 
@@ -70,12 +76,13 @@ public DirectoryBuildCacheServiceFactory(CacheRepository cacheRepository, Global
 
     @Override
     public BuildCacheService createBuildCacheService(DirectoryBuildCache configuration, Describer describer) {
+        boolean contentAddressable = CONTENT_ADDRESSABLE_LAYOUT.equals(System.getProperty(LAYOUT_PROPERTY));
         Object cacheDirectory = configuration.getDirectory();
         File target;
         if (cacheDirectory != null) {
             target = resolver.resolve(cacheDirectory);
         } else {
-            target = globalScopedCache.baseDirForCrossVersionCache(BUILD_CACHE_KEY);
+            target = globalScopedCache.baseDirForCrossVersionCache(contentAddressable ? CONTENT_ADDRESSABLE_BUILD_CACHE_KEY : BUILD_CACHE_KEY);
         }
         checkDirectory(target);
 
@@ -84,6 +91,11 @@ public BuildCacheService createBuildCacheService(DirectoryBuildCache configurati
             config("location", target.getAbsolutePath()).
             config("removeUnusedEntriesAfter", String.valueOf(removeUnusedEntriesAfterDays) + " days");
 
+        if (contentAddressable) {
+            describer.config("layout", CONTENT_ADDRESSABLE_LAYOUT);
+            return createContentAddressableBuildCacheService(target, removeUnusedEntriesAfterDays);
+        }
+
         PathKeyFileStore fileStore = fileStoreFactory.createFileStore(target);
         PersistentCache persistentCache = cacheRepository
             .cache(target)
@@ -98,6 +110,25 @@ public BuildCacheService createBuildCacheService(DirectoryBuildCache configurati
         return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
     }
 
+    private BuildCacheService createContentAddressableBuildCacheService(File target, int removeUnusedEntriesAfterDays) {
+        // Remove the manifests of unused entries first, so the blobs only they referenced are removed as well
+        CleanupAction cleanup = CompositeCleanupAction.builder()
+            .add(ContentAddressableBuildCacheService.manifestsDir(target), new LeastRecentlyUsedCacheCleanup(new SingleDepthFilesFinder(1), fileAccessTimeJournal, removeUnusedEntriesAfterDays))
+            .add(new UnreferencedBlobCleanup())
+            .build();
+        PersistentCache persistentCache = cacheRepository
+            .cache(target)
+            .withCleanup(cleanupActionFactory.create(cleanup))
+            .withDisplayName("Build cache")
+            .withLockOptions(mode(OnDemand))
+            .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
+            .open();
+        BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(temporaryFileProvider);
+        FileAccessTracker fileAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, target, ContentAddressableBuildCacheService.FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
+
+        return new ContentAddressableBuildCacheService(target, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
+    }
+
     private static void checkDirectory(File directory) {
         if (directory.exists()) {
             if (!directory.isDirectory()) {
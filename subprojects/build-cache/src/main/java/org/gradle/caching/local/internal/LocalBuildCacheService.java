@@ -34,6 +34,15 @@ public interface LocalBuildCacheService extends BuildCacheTempFileStore, Closeab
      */
     void loadLocally(BuildCacheKey key, Action<? super File> reader);
 
+    /**
+     * Checks whether the local file store has a cache artifact for the given key, without loading it.
+     *
+     * This is a hint only, the artifact may be removed by cleanup before it is loaded.
+     */
+    default boolean containsLocally(BuildCacheKey key) {
+        return false;
+    }
+
     /**
      * Store the given file in the local file store as a cache artifact.
      */
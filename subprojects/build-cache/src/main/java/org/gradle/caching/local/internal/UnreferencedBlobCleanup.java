@@ -0,0 +1,98 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.cache.CleanableStore;
+import org.gradle.cache.CleanupAction;
+import org.gradle.cache.CleanupProgressMonitor;
+import org.gradle.cache.internal.SingleDepthFilesFinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes the blobs of a {@link ContentAddressableBuildCacheService} which are not referenced by any manifest anymore.
+ *
+ * Needs to run after the manifests of unused entries have been cleaned up.
+ */
+public class UnreferencedBlobCleanup implements CleanupAction {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnreferencedBlobCleanup.class);
+
+    /**
+     * Entries are staged outside of the cache lock, so only staging directories which have not been touched for a while are considered abandoned.
+     */
+    private static final long ABANDONED_STAGING_DIRECTORY_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Override
+    public void clean(CleanableStore cleanableStore, CleanupProgressMonitor progressMonitor) {
+        File baseDir = cleanableStore.getBaseDir();
+        deleteAbandonedStagingDirectories(new File(baseDir, ContentAddressableBuildCacheService.TEMP_DIR));
+
+        Set<String> referencedBlobs = new HashSet<>();
+        for (File manifestFile : new SingleDepthFilesFinder(1).find(ContentAddressableBuildCacheService.manifestsDir(baseDir), file -> true)) {
+            try {
+                for (ContentAddressableCacheManifest.Entry entry : ContentAddressableCacheManifest.read(manifestFile).getEntries()) {
+                    String blob = entry.getBlob();
+                    if (blob != null) {
+                        referencedBlobs.add(blob);
+                    }
+                }
+            } catch (IOException e) {
+                // An unreadable manifest can never be loaded, so the blobs it refers to are not needed for it
+                LOGGER.warn("{} removing manifest {}, as it could not be read.", cleanableStore.getDisplayName(), manifestFile, e);
+                FileUtils.deleteQuietly(manifestFile);
+            }
+        }
+
+        int filesDeleted = 0;
+        for (File blobFile : new SingleDepthFilesFinder(2).find(ContentAddressableBuildCacheService.blobsDir(baseDir), file -> true)) {
+            if (referencedBlobs.contains(blobFile.getName())) {
+                progressMonitor.incrementSkipped();
+            } else {
+                progressMonitor.incrementDeleted();
+                if (FileUtils.deleteQuietly(blobFile)) {
+                    filesDeleted++;
+                    File blobDir = blobFile.getParentFile();
+                    String[] remaining = blobDir.list();
+                    if (remaining != null && remaining.length == 0 && blobDir.delete()) {
+                        filesDeleted++;
+                    }
+                }
+            }
+        }
+        LOGGER.info("{} cleanup deleted {} unreferenced files/directories.", cleanableStore.getDisplayName(), filesDeleted);
+    }
+
+    private static void deleteAbandonedStagingDirectories(File tempDir) {
+        File[] stagingDirs = tempDir.listFiles();
+        if (stagingDirs == null) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - ABANDONED_STAGING_DIRECTORY_AGE_MILLIS;
+        for (File stagingDir : stagingDirs) {
+            if (stagingDir.lastModified() < cutoff) {
+                FileUtils.deleteQuietly(stagingDir);
+            }
+        }
+    }
+}
@@ -24,23 +24,31 @@ import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
 import org.gradle.caching.internal.CacheableEntity
+import org.gradle.caching.internal.controller.operations.RemotePrefetchBuildOperationType
+import org.gradle.caching.internal.controller.operations.RemoteStoreQueueBuildOperationType
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
+import org.gradle.caching.internal.operations.BuildCacheRemoteLoadBuildOperationType
 import org.gradle.caching.internal.origin.OriginMetadataFactory
+import org.gradle.caching.internal.packaging.BuildCacheEntryCompression
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.FileSystemSnapshot
 import org.gradle.internal.vfs.FileSystemAccess
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
 import spock.lang.Specification
+import spock.lang.Timeout
 
 import java.time.Duration
+import java.util.concurrent.CountDownLatch
 
 class DefaultBuildCacheControllerTest extends Specification {
 
     def key = Mock(BuildCacheKey) {
         getHashCode() >> "key"
+        toByteArray() >> ([1, 2, 3] as byte[])
         toString() >> "key"
     }
 
@@ -62,6 +70,7 @@ class DefaultBuildCacheControllerTest extends Specification {
     BuildCacheEntryPacker packer = Stub(BuildCacheEntryPacker)
     OriginMetadataFactory originMetadataFactory = Stub(OriginMetadataFactory)
     StringInterner stringInterner = Stub(StringInterner)
+    BuildCacheEntryCompression compression = BuildCacheEntryCompression.GZIP
 
     def operations = new TestBuildOperationExecutor()
 
@@ -70,7 +79,7 @@ class DefaultBuildCacheControllerTest extends Specification {
 
     interface Local extends BuildCacheService, LocalBuildCacheService {}
 
-    BuildCacheController getController(boolean disableRemoteOnError = true) {
+    BuildCacheController getController(boolean disableRemoteOnError = true, boolean prefetchRemote = false, boolean storeRemoteAsynchronously = false, long remoteStoreByteBudget = Long.MAX_VALUE) {
         new DefaultBuildCacheController(
             new BuildCacheServicesConfiguration(
                 local,
@@ -83,8 +92,13 @@ class DefaultBuildCacheControllerTest extends Specification {
             false,
             false,
             disableRemoteOnError,
+            prefetchRemote,
+            storeRemoteAsynchronously,
+            remoteStoreByteBudget,
+            new DefaultExecutorFactory(),
             fileSystemAccess,
             packer,
+            { compression },
             originMetadataFactory,
             stringInterner
         )
@@ -118,6 +132,20 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * local.storeLocally(key, _)
     }
 
+    def "stores entries not compressed with gzip under a separate key"() {
+        given:
+        compression = BuildCacheEntryCompression.LZ4
+
+        when:
+        controller.store(key, cacheableEntity, snapshots, executionTime)
+
+        then:
+        1 * remote.store({ it.getHashCode() != "key" }, _)
+        1 * local.storeLocally({ it.getHashCode() != "key" }, _)
+        0 * remote.store(key, _)
+        0 * local.storeLocally(key, _)
+    }
+
     def "does not store to local if local push is disabled"() {
         given:
         localPush = false
@@ -170,6 +198,33 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * local.storeLocally(key, _)
     }
 
+    def "remembers keys loaded from remote"() {
+        given:
+        def controller = getController()
+        def localKey = Stub(BuildCacheKey) {
+            getHashCode() >> "local"
+            toByteArray() >> ([4] as byte[])
+        }
+        1 * local.loadLocally(key, _) // miss
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+        1 * local.loadLocally(localKey, _) >> { BuildCacheKey key, Action<File> action ->
+            def file = tmpDir.file("file")
+            file.text = "alma"
+            action.execute(file)
+        }
+
+        when:
+        controller.load(key, cacheableEntity)
+        controller.load(localKey, cacheableEntity)
+
+        then:
+        controller.isLoadedFromRemote(key)
+        !controller.isLoadedFromRemote(localKey)
+    }
+
     def "remote load does not store to local if local is disabled"() {
         given:
         local = null
@@ -265,6 +320,261 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * remote.store(key, _)
     }
 
+    def "prefetched remote entry is used by load and stored to local"() {
+        given:
+        def controller = getController(true, true)
+        _ * local.containsLocally(key) >> false
+
+        when:
+        controller.prefetch(key)
+        controller.load(key, cacheableEntity)
+
+        then:
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+        1 * local.loadLocally(key, _) // miss
+        1 * local.storeLocally(key, _)
+    }
+
+    def "prefetched remote entry is reported as a remote load"() {
+        given:
+        def controller = getController(true, true)
+        _ * local.containsLocally(key) >> false
+
+        when:
+        controller.prefetch(key)
+        controller.load(key, cacheableEntity)
+
+        then:
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+        def result = operations.log.mostRecentResult(BuildCacheRemoteLoadBuildOperationType)
+        result.hit
+        result.archiveSize == 3
+    }
+
+    def "discarded prefetch is not used by load and is deleted"() {
+        given:
+        def controller = getController(true, true)
+        _ * local.containsLocally(key) >> false
+        def downloading = new CountDownLatch(1)
+
+        when:
+        controller.prefetch(key)
+        downloading.await()
+        controller.discardPrefetched(key)
+        controller.load(key, cacheableEntity)
+        controller.close()
+
+        then:
+        2 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            downloading.countDown()
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+        def prefetchedFiles = []
+        tmpDir.root.eachFileRecurse { if (it.name.endsWith(".prefetched")) { prefetchedFiles << it } }
+        prefetchedFiles.empty
+    }
+
+    @Timeout(30)
+    def "load does not wait for a prefetch queued behind other prefetches"() {
+        given:
+        def controller = getController(true, true)
+        _ * local.containsLocally(_) >> false
+        def otherKeys = (1..8).collect { num ->
+            Stub(BuildCacheKey) {
+                getHashCode() >> "other$num"
+                toByteArray() >> ([num] as byte[])
+                toString() >> "other$num"
+            }
+        }
+        def otherDownloadsStarted = new CountDownLatch(otherKeys.size())
+        def releaseOtherDownloads = new CountDownLatch(1)
+        _ * remote.load({ it in otherKeys }, _) >> {
+            otherDownloadsStarted.countDown()
+            releaseOtherDownloads.await()
+            false
+        }
+
+        when:
+        otherKeys.each { controller.prefetch(it) }
+        otherDownloadsStarted.await()
+        controller.prefetch(key)
+        controller.load(key, cacheableEntity)
+
+        then:
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+        1 * local.storeLocally(key, _)
+
+        cleanup:
+        releaseOtherDownloads.countDown()
+        controller.close()
+    }
+
+    def "prefetched remote miss does not request the entry again"() {
+        given:
+        def controller = getController(true, true)
+        _ * local.containsLocally(key) >> false
+
+        when:
+        controller.prefetch(key)
+        def result = controller.load(key, cacheableEntity)
+
+        then:
+        1 * remote.load(key, _) >> false
+        0 * local.storeLocally(key, _)
+        !result.present
+    }
+
+    def "reports used and unused prefetches on close"() {
+        given:
+        def controller = getController(true, true)
+        _ * local.containsLocally(_) >> false
+        def unusedKey = Stub(BuildCacheKey) {
+            getHashCode() >> "unused"
+            toByteArray() >> ([4] as byte[])
+        }
+        def unusedDownloaded = new CountDownLatch(1)
+        def downloading = new CountDownLatch(1)
+
+        when:
+        controller.prefetch(unusedKey)
+        unusedDownloaded.await()
+        controller.prefetch(key)
+        downloading.await()
+        controller.load(key, cacheableEntity)
+        controller.close()
+
+        then:
+        1 * remote.load(unusedKey, _) >> {
+            unusedDownloaded.countDown()
+            false
+        }
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            downloading.countDown()
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+
+        and:
+        with(operations.log.mostRecentResult(RemotePrefetchBuildOperationType)) {
+            prefetchedEntryCount == 2
+            hitCount == 1
+            missCount == 0
+            unusedEntryCount == 1
+        }
+    }
+
+    def "does not prefetch entries available locally"() {
+        given:
+        def controller = getController(true, true)
+        _ * local.containsLocally(key) >> true
+
+        when:
+        controller.prefetch(key)
+        controller.close()
+
+        then:
+        0 * remote.load(key, _)
+    }
+
+    def "does not prefetch unless enabled"() {
+        when:
+        controller.prefetch(key)
+        controller.close()
+
+        then:
+        0 * local.containsLocally(key)
+        0 * remote.load(key, _)
+    }
+
+    def "stores to remote asynchronously and waits for stores on close"() {
+        given:
+        def controller = getController(true, false, true)
+
+        when:
+        controller.store(key, cacheableEntity, snapshots, executionTime)
+        controller.close()
+
+        then:
+        1 * remote.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            writer.writeTo(new ByteArrayOutputStream())
+        }
+        1 * local.storeLocally(key, _)
+
+        and:
+        with(operations.log.mostRecentResult(RemoteStoreQueueBuildOperationType)) {
+            queuedEntryCount == 1
+            skippedEntryCount == 0
+            pendingEntryCount <= 1
+        }
+    }
+
+    @Timeout(30)
+    def "stores to remote on the calling thread when the upload queue is full"() {
+        given:
+        def controller = getController(true, false, true)
+        def queuedKeys = (1..32).collect { num ->
+            Stub(BuildCacheKey) {
+                getHashCode() >> "queued$num"
+                toByteArray() >> ([num] as byte[])
+                toString() >> "queued$num"
+            }
+        }
+        def releaseQueuedStores = new CountDownLatch(1)
+        _ * remote.store({ it in queuedKeys }, _) >> {
+            releaseQueuedStores.await()
+        }
+        Thread storingThread = null
+
+        when:
+        queuedKeys.each { controller.store(it, cacheableEntity, snapshots, executionTime) }
+        controller.store(key, cacheableEntity, snapshots, executionTime)
+
+        then:
+        1 * remote.store(key, _) >> {
+            storingThread = Thread.currentThread()
+        }
+        storingThread == Thread.currentThread()
+
+        cleanup:
+        releaseQueuedStores.countDown()
+        controller.close()
+    }
+
+    def "does not store to remote asynchronously once the byte budget is exhausted"() {
+        given:
+        packer = Stub(BuildCacheEntryPacker) {
+            pack(*_) >> { args ->
+                (args[2] as OutputStream).write(new byte[16])
+                new BuildCacheEntryPacker.PackResult(1)
+            }
+        }
+        def controller = getController(true, false, true, 8)
+
+        when:
+        controller.store(key, cacheableEntity, snapshots, executionTime)
+        controller.close()
+
+        then:
+        0 * remote.store(key, _)
+        1 * local.storeLocally(key, _)
+
+        and:
+        with(operations.log.mostRecentResult(RemoteStoreQueueBuildOperationType)) {
+            queuedEntryCount == 0
+            skippedEntryCount == 1
+        }
+    }
+
     def "close only closes once"() {
         when:
         def controller = getController()
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import org.gradle.api.internal.file.temp.DefaultTemporaryFileProvider
+import org.gradle.cache.CleanableStore
+import org.gradle.cache.CleanupProgressMonitor
+import org.gradle.cache.PersistentCache
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.internal.packaging.BuildCacheEntryCompression
+import org.gradle.caching.internal.packaging.impl.CompressingBuildCacheEntryPacker
+import org.gradle.internal.file.FileAccessTracker
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+import java.util.zip.GZIPInputStream
+
+@CleanupTestDirectory
+class ContentAddressableBuildCacheServiceTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+    def cacheDir = temporaryFolder.createDir("cache")
+    def persistentCache = Mock(PersistentCache) {
+        getBaseDir() >> cacheDir
+        withFileLock(_) >> { Runnable r -> r.run() }
+    }
+    def tempFileStore = new DefaultBuildCacheTempFileStore(new DefaultTemporaryFileProvider(() -> temporaryFolder.createDir("tmp")))
+    def fileAccessTracker = Mock(FileAccessTracker)
+    def service = new ContentAddressableBuildCacheService(cacheDir, persistentCache, tempFileStore, fileAccessTracker, ".failed")
+
+    def "stores identical file contents only once"() {
+        def first = entry("first", ["tree-a/": null, "tree-a/lib.jar": "jar contents", "tree-a/first.txt": "first"])
+        def second = entry("second", ["tree-b/": null, "tree-b/lib.jar": "jar contents", "tree-b/second.txt": "second"])
+
+        when:
+        service.storeLocally(key("1111"), first)
+        service.storeLocally(key("2222"), second)
+
+        then:
+        blobs().size() == 3
+        new File(cacheDir, "manifests/1111").file
+        new File(cacheDir, "manifests/2222").file
+    }
+
+    def "can load stored #compression entry"() {
+        def contents = ["tree-out/": null, "tree-out/sub/": null, "tree-out/sub/file.txt": "file", "tree-out/empty.txt": ""]
+        def key = key("1234")
+
+        when:
+        service.storeLocally(key, entry("entry", contents, compression))
+
+        then:
+        1 * fileAccessTracker.markAccessed(new File(cacheDir, "manifests/1234"))
+
+        when:
+        Map<String, String> loaded = null
+        service.loadLocally(key) { File file -> loaded = read(file) }
+
+        then:
+        1 * fileAccessTracker.markAccessed(new File(cacheDir, "manifests/1234"))
+        loaded == contents
+
+        where:
+        compression << [BuildCacheEntryCompression.GZIP, BuildCacheEntryCompression.LZ4]
+    }
+
+    def "does not load missing entry"() {
+        def loaded = false
+
+        when:
+        service.loadLocally(key("1234")) { loaded = true }
+
+        then:
+        !loaded
+        0 * fileAccessTracker._
+    }
+
+    def "cleanup removes only blobs no longer referenced"() {
+        service.storeLocally(key("1111"), entry("first", ["tree-a": "shared"]))
+        service.storeLocally(key("2222"), entry("second", ["tree-b": "shared", "tree-c": "only second"]))
+        def store = Stub(CleanableStore) {
+            getBaseDir() >> cacheDir
+            getDisplayName() >> "test cache"
+        }
+
+        when:
+        assert new File(cacheDir, "manifests/2222").delete()
+        new UnreferencedBlobCleanup().clean(store, CleanupProgressMonitor.NO_OP)
+
+        then:
+        blobs().size() == 1
+
+        when:
+        Map<String, String> loaded = null
+        service.loadLocally(key("1111")) { File file -> loaded = read(file) }
+
+        then:
+        loaded == ["tree-a": "shared"]
+    }
+
+    def "stores blobs compressed"() {
+        def text = "compressible " * 1000
+
+        when:
+        service.storeLocally(key("1111"), entry("entry", ["tree-a": text]))
+
+        then:
+        blobs().size() == 1
+        blobs()[0].length() < text.length()
+        new GZIPInputStream(new FileInputStream(blobs()[0])).text == text
+    }
+
+    def "can load stored entry as a stream"() {
+        def contents = ["tree-out/": null, "tree-out/file.txt": "file " * 100_000]
+        service.storeLocally(key("1234"), entry("entry", contents))
+
+        when:
+        Map<String, String> loaded = null
+        def found = service.load(key("1234")) { InputStream input -> loaded = read(input) }
+
+        then:
+        found
+        loaded == contents
+    }
+
+    def "cleanup removes unreadable manifests and still removes unreferenced blobs"() {
+        service.storeLocally(key("1111"), entry("first", ["tree-a": "first"]))
+        service.storeLocally(key("2222"), entry("second", ["tree-b": "second"]))
+        def store = Stub(CleanableStore) {
+            getBaseDir() >> cacheDir
+            getDisplayName() >> "test cache"
+        }
+        def corruptManifest = new File(cacheDir, "manifests/3333.failed")
+        corruptManifest.text = "corrupt"
+
+        when:
+        assert new File(cacheDir, "manifests/2222").delete()
+        new UnreferencedBlobCleanup().clean(store, CleanupProgressMonitor.NO_OP)
+
+        then:
+        !corruptManifest.exists()
+        blobs().size() == 1
+    }
+
+    def "cleanup keeps recent staging directories"() {
+        def store = Stub(CleanableStore) {
+            getBaseDir() >> cacheDir
+            getDisplayName() >> "test cache"
+        }
+        def recent = new File(cacheDir, "tmp/recent")
+        def abandoned = new File(cacheDir, "tmp/abandoned")
+        assert recent.mkdirs() && abandoned.mkdirs()
+        abandoned.lastModified = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)
+
+        when:
+        new UnreferencedBlobCleanup().clean(store, CleanupProgressMonitor.NO_OP)
+
+        then:
+        recent.directory
+        !abandoned.exists()
+    }
+
+    private List<File> blobs() {
+        def blobs = []
+        new File(cacheDir, "blobs").eachFileRecurse { if (it.file) { blobs << it } }
+        return blobs
+    }
+
+    private BuildCacheKey key(String hashCode) {
+        Stub(BuildCacheKey) {
+            getHashCode() >> hashCode
+        }
+    }
+
+    private File entry(String name, Map<String, String> contents, BuildCacheEntryCompression compression = BuildCacheEntryCompression.GZIP) {
+        def file = temporaryFolder.file(name)
+        file.withOutputStream { output ->
+            def tarOutput = new TarArchiveOutputStream(CompressingBuildCacheEntryPacker.compress(compression, output))
+            contents.each { path, text ->
+                def entry = new TarArchiveEntry(path, true)
+                if (text != null) {
+                    def bytes = text.bytes
+                    entry.size = bytes.length
+                    tarOutput.putArchiveEntry(entry)
+                    tarOutput.write(bytes)
+                } else {
+                    tarOutput.putArchiveEntry(entry)
+                }
+                tarOutput.closeArchiveEntry()
+            }
+            tarOutput.close()
+        }
+        return file
+    }
+
+    private static Map<String, String> read(File file) {
+        file.withInputStream { input -> read(input) }
+    }
+
+    private static Map<String, String> read(InputStream input) {
+        Map<String, String> contents = [:]
+        def tarInput = new TarArchiveInputStream(CompressingBuildCacheEntryPacker.decompress(input))
+        TarArchiveEntry entry
+        while ((entry = tarInput.nextTarEntry) != null) {
+            contents[entry.name] = entry.directory ? null : new String(tarInput.bytes)
+        }
+        return contents
+    }
+}
@@ -114,4 +114,83 @@ class ConfigurationCacheMultiProjectIntegrationTest extends AbstractConfiguratio
         result.assertTasksExecuted(':ok', ':a:ok', ':b:ok')
         configurationCache.assertStateLoaded()
     }
+
+    def "restores tasks of all projects with their relationships and shared build services"() {
+        given:
+        settingsFile << """
+            include 'a', 'b', 'c'
+        """
+        buildScript """
+            abstract class CountingService implements BuildService<BuildServiceParameters.None> {
+                private int count
+
+                CountingService() {
+                    println("service created")
+                }
+
+                synchronized int next() {
+                    return ++count
+                }
+            }
+
+            abstract class CountingTask extends DefaultTask {
+                @Internal
+                abstract Property<CountingService> getService()
+
+                @TaskAction
+                def count() {
+                    println("\${path}: count \${service.get().next()}")
+                }
+            }
+
+            def counter = gradle.sharedServices.registerIfAbsent('counter', CountingService) {}
+            allprojects {
+                tasks.register('work', CountingTask) {
+                    service = counter
+                    usesService(counter)
+                }
+                tasks.register('cleanup', CountingTask) {
+                    service = counter
+                    usesService(counter)
+                }
+            }
+            project(':a') {
+                tasks.named('work') {
+                    finalizedBy(':c:cleanup')
+                }
+            }
+            project(':b') {
+                tasks.named('work') {
+                    dependsOn(':a:work')
+                }
+            }
+            project(':c') {
+                tasks.named('work') {
+                    mustRunAfter(':b:work')
+                }
+            }
+        """
+        def configurationCache = newConfigurationCacheFixture()
+
+        when:
+        configurationCacheRun ':c:work', ':b:work', ':work'
+
+        then:
+        configurationCache.assertStateStored()
+        result.assertTasksExecuted(':work', ':a:work', ':b:work', ':c:work', ':c:cleanup')
+        result.assertTaskOrder(':a:work', ':b:work', ':c:work')
+        result.assertTaskOrder(':a:work', ':c:cleanup')
+        output.count("service created") == 1
+
+        when:
+        configurationCacheRun ':c:work', ':b:work', ':work'
+
+        then:
+        configurationCache.assertStateLoaded()
+        result.assertTasksExecuted(':work', ':a:work', ':b:work', ':c:work', ':c:cleanup')
+        result.assertTaskOrder(':a:work', ':b:work', ':c:work')
+        result.assertTaskOrder(':a:work', ':c:cleanup')
+        output.count("service created") == 1
+        (1..5).each { outputContains(": count $it") }
+    }
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configurationcache
+
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream
+import java.io.InputStream
+import java.io.OutputStream
+
+
+/**
+ * The block compression applied to configuration cache state files.
+ *
+ * The compression used to write a file is recorded in its first byte, so that files can be read
+ * regardless of the compression currently requested.
+ */
+internal
+enum class ConfigurationCacheCompression(private val id: Int) {
+
+    NONE(0) {
+        override fun wrap(outputStream: OutputStream): OutputStream = outputStream
+        override fun wrap(inputStream: InputStream): InputStream = inputStream
+    },
+
+    LZ4(1) {
+        override fun wrap(outputStream: OutputStream): OutputStream = FramedLZ4CompressorOutputStream(outputStream)
+        override fun wrap(inputStream: InputStream): InputStream = FramedLZ4CompressorInputStream(inputStream.buffered())
+    };
+
+    abstract fun wrap(outputStream: OutputStream): OutputStream
+
+    abstract fun wrap(inputStream: InputStream): InputStream
+
+    fun compressing(outputStream: OutputStream): OutputStream {
+        outputStream.write(id)
+        return wrap(outputStream)
+    }
+
+    companion object {
+
+        const val PROPERTY_NAME = "org.gradle.internal.configuration-cache.compression"
+
+        fun of(value: String?): ConfigurationCacheCompression =
+            when {
+                value == null -> NONE
+                else -> values().find { it.name.equals(value, ignoreCase = true) }
+                    ?: throw IllegalArgumentException("Unknown configuration cache compression '$value', supported values are 'none' and 'lz4'.")
+            }
+
+        fun decompressing(inputStream: InputStream): InputStream {
+            val id = inputStream.read()
+            val compression = values().find { it.id == id }
+                ?: throw IllegalStateException("Unknown configuration cache compression id: $id.")
+            return compression.wrap(inputStream)
+        }
+    }
+}
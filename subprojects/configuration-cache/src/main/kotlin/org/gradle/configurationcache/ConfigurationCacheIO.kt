@@ -21,6 +21,7 @@ import org.gradle.cache.internal.streams.BlockAddressSerializer
 import org.gradle.configurationcache.cacheentry.EntryDetails
 import org.gradle.configurationcache.cacheentry.ModelKey
 import org.gradle.configurationcache.extensions.useToRun
+import org.gradle.configurationcache.initialization.ConfigurationCacheStartParameter
 import org.gradle.configurationcache.problems.ConfigurationCacheProblems
 import org.gradle.configurationcache.serialization.DefaultReadContext
 import org.gradle.configurationcache.serialization.DefaultWriteContext
@@ -63,6 +64,14 @@ class ConfigurationCacheIO internal constructor(
     private
     val codecs = codecs()
 
+    private
+    val compression: ConfigurationCacheCompression
+        get() = service<ConfigurationCacheStartParameter>().entryCompression
+
+    private
+    val isInterning: Boolean
+        get() = service<ConfigurationCacheStartParameter>().isEntryInterning
+
     internal
     fun writeCacheEntryDetailsTo(
         buildStateRegistry: BuildStateRegistry,
@@ -203,7 +212,7 @@ class ConfigurationCacheIO internal constructor(
 
     internal
     fun writerContextFor(outputStream: OutputStream, profile: String): Pair<DefaultWriteContext, Codecs> =
-        KryoBackedEncoder(outputStream).let { encoder ->
+        KryoBackedEncoder(compression.compressing(outputStream)).let { encoder ->
             writeContextFor(
                 encoder,
                 if (logger.isDebugEnabled) LoggingTracer(profile, encoder::getWritePosition, logger)
@@ -239,7 +248,7 @@ class ConfigurationCacheIO internal constructor(
     internal
     fun readerContextFor(
         inputStream: InputStream,
-    ) = readerContextFor(KryoBackedDecoder(inputStream))
+    ) = readerContextFor(KryoBackedDecoder(ConfigurationCacheCompression.decompressing(inputStream)))
 
     internal
     fun readerContextFor(
@@ -261,7 +270,8 @@ class ConfigurationCacheIO internal constructor(
         beanStateWriterLookup,
         logger,
         tracer,
-        problems
+        problems,
+        isInterning
     )
 
     private
@@ -273,7 +283,8 @@ class ConfigurationCacheIO internal constructor(
         decoder,
         beanStateReaderLookup,
         logger,
-        problems
+        problems,
+        isInterning
     )
 
     private
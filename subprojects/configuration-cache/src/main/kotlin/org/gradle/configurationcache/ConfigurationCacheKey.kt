@@ -50,6 +50,9 @@ class ConfigurationCacheKey(
     fun Hasher.putCacheKeyComponents() {
         putString(GradleVersion.current().version)
 
+        // Entries written with and without interning cannot be read with the other encoding
+        putBoolean(startParameter.isEntryInterning)
+
         putString(
             startParameter.settingsFile?.let {
                 relativePathOf(it, startParameter.rootDirectory)
@@ -250,14 +250,14 @@ class ConfigurationCacheState(
 
     private
     suspend fun DefaultWriteContext.writeWorkGraphOf(gradle: GradleInternal, scheduledNodes: List<Node>) {
-        WorkNodeCodec(gradle, internalTypesCodec).run {
+        WorkNodeCodec(gradle, internalTypesCodec, gradle.serviceOf()).run {
             writeWork(scheduledNodes)
         }
     }
 
     private
-    suspend fun DefaultReadContext.readWorkGraph(gradle: GradleInternal) =
-        WorkNodeCodec(gradle, internalTypesCodec).run {
+    fun DefaultReadContext.readWorkGraph(gradle: GradleInternal) =
+        WorkNodeCodec(gradle, internalTypesCodec, gradle.serviceOf()).run {
             readWork()
         }
 
@@ -29,6 +29,10 @@ import org.gradle.internal.hash.HashCode
 import org.gradle.internal.util.NumberUtil.ordinal
 import org.gradle.util.Path
 import java.io.File
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.function.Consumer
 
 
@@ -37,7 +41,13 @@ typealias InvalidationReason = String
 
 
 internal
-class ConfigurationCacheFingerprintChecker(private val host: Host) {
+class ConfigurationCacheFingerprintChecker(
+    private val host: Host,
+    /**
+     * Used to check the inputs that can be checked independently of the reading thread, see [isCheckedConcurrently].
+     */
+    private val executor: Executor = Executor { it.run() }
+) {
 
     interface Host {
         val gradleUserHomeDir: File
@@ -54,12 +64,14 @@ class ConfigurationCacheFingerprintChecker(private val host: Host) {
 
     suspend fun ReadContext.checkBuildScopedFingerprint(): CheckedFingerprint {
         // TODO: log some debug info
+        // The inputs are not specific to a project. If one is out-of-date, then invalidate the whole cache entry and skip any further checks
+        val checks = OrderedChecks(skipChecksAfterInvalidation = true)
         while (true) {
             when (val input = read()) {
                 null -> break
                 is ConfigurationCacheFingerprint -> {
-                    // An input that is not specific to a project. If it is out-of-date, then invalidate the whole cache entry and skip any further checks
-                    val reason = check(input)
+                    checks.submit(input)
+                    val reason = checks.reportCompleted()
                     if (reason != null) {
                         return CheckedFingerprint.EntryInvalid(reason)
                     }
@@ -67,26 +79,29 @@ class ConfigurationCacheFingerprintChecker(private val host: Host) {
                 else -> throw IllegalStateException("Unexpected configuration cache fingerprint: $input")
             }
         }
-        return CheckedFingerprint.Valid
+        val reason = checks.awaitAll()
+        return if (reason == null) {
+            CheckedFingerprint.Valid
+        } else {
+            CheckedFingerprint.EntryInvalid(reason)
+        }
     }
 
     suspend fun ReadContext.checkProjectScopedFingerprint(): CheckedFingerprint {
         // TODO: log some debug info
         var firstReason: InvalidationReason? = null
         val projects = mutableMapOf<Path, ProjectInvalidationState>()
+        val checks = OrderedChecks(skipChecksAfterInvalidation = false)
         while (true) {
             when (val input = read()) {
                 null -> break
                 is ProjectSpecificFingerprint.ProjectFingerprint -> input.run {
                     // An input that is specific to a project. If it is out-of-date, then invalidate that project's values and continue checking values
-                    // Don't check a value for a project that is already out-of-date
+                    // Don't check a value for a project that is already known to be out-of-date
                     val state = projects.entryFor(input.projectPath)
                     if (!state.isInvalid) {
-                        val reason = check(input.value)
-                        if (reason != null) {
-                            if (firstReason == null) {
-                                firstReason = reason
-                            }
+                        // The project can become out-of-date while the check is pending, so check its state again before running the check
+                        checks.submit(input.value, isObsolete = { state.isInvalid }) {
                             state.invalidate()
                         }
                     }
@@ -106,6 +121,14 @@ class ConfigurationCacheFingerprintChecker(private val host: Host) {
                 }
                 else -> throw IllegalStateException("Unexpected configuration cache fingerprint: $input")
             }
+            val reason = checks.reportCompleted()
+            if (firstReason == null) {
+                firstReason = reason
+            }
+        }
+        val reason = checks.awaitAll()
+        if (firstReason == null) {
+            firstReason = reason
         }
         return if (firstReason == null) {
             CheckedFingerprint.Valid
@@ -134,6 +157,133 @@ class ConfigurationCacheFingerprintChecker(private val host: Host) {
         }
     }
 
+    /**
+     * Checks the submitted inputs, concurrently where possible, and reports their outcome in submission order,
+     * so the first invalidation reason reported is the same as if the inputs had been checked one after the other.
+     *
+     * Inputs that are not checked concurrently are only checked once the outcome of all previously submitted inputs has been reported.
+     * All methods must be called from the thread reading the fingerprint.
+     */
+    private
+    inner class OrderedChecks(
+        /**
+         * When true, no input submitted after an out-of-date input is checked, as the outcome of the first invalidation is all that matters.
+         */
+        private val skipChecksAfterInvalidation: Boolean
+    ) {
+        private
+        val pending = ArrayDeque<PendingCheck>()
+
+        private
+        var submitted = 0
+
+        private
+        val firstInvalidIndex = AtomicInteger(Int.MAX_VALUE)
+
+        /**
+         * Submits the given input to be checked.
+         *
+         * @param isObsolete called on the reading thread before an input that is not checked concurrently is checked. The input is not checked when it returns true.
+         */
+        fun submit(input: ConfigurationCacheFingerprint, isObsolete: () -> Boolean = { false }, onInvalid: () -> Unit = {}) {
+            pending.addLast(PendingCheck(submitted++, input, isObsolete, onInvalid))
+        }
+
+        /**
+         * Reports the outcome of the checks completed so far, up to the first check that is still running.
+         *
+         * @return the first invalidation reason reported by this call, if any.
+         */
+        fun reportCompleted(): InvalidationReason? =
+            report { it.isDone }
+
+        /**
+         * Waits for and reports the outcome of all remaining checks.
+         *
+         * @return the first invalidation reason reported by this call, if any.
+         */
+        fun awaitAll(): InvalidationReason? =
+            report { true }
+
+        private
+        inline fun report(canReport: (PendingCheck) -> Boolean): InvalidationReason? {
+            var firstReason: InvalidationReason? = null
+            while (pending.isNotEmpty() && canReport(pending.first())) {
+                val check = pending.removeFirst()
+                val reason = check.await() ?: continue
+                check.onInvalid()
+                if (firstReason == null) {
+                    firstReason = reason
+                }
+                if (skipChecksAfterInvalidation) {
+                    cancelPending()
+                    break
+                }
+            }
+            return firstReason
+        }
+
+        private
+        fun checkAt(index: Int, input: ConfigurationCacheFingerprint): InvalidationReason? {
+            if (skipChecksAfterInvalidation && firstInvalidIndex.get() < index) {
+                return null
+            }
+            return check(input)?.also {
+                firstInvalidIndex.accumulateAndGet(index) { current, candidate -> minOf(current, candidate) }
+            }
+        }
+
+        private
+        fun cancelPending() {
+            for (check in pending) {
+                check.cancel()
+            }
+            pending.clear()
+        }
+
+        private
+        inner class PendingCheck(
+            private val index: Int,
+            private val input: ConfigurationCacheFingerprint,
+            private val isObsolete: () -> Boolean,
+            val onInvalid: () -> Unit
+        ) {
+            private
+            val result: CompletableFuture<InvalidationReason?>? =
+                if (isCheckedConcurrently(input)) CompletableFuture.supplyAsync({ checkAt(index, input) }, executor)
+                else null
+
+            val isDone: Boolean
+                get() = result?.isDone ?: true
+
+            fun await(): InvalidationReason? =
+                if (result == null) {
+                    if (isObsolete()) null
+                    else checkAt(index, input)
+                } else {
+                    try {
+                        result.join()
+                    } catch (e: CompletionException) {
+                        throw e.cause ?: e
+                    }
+                }
+
+            fun cancel() {
+                result?.cancel(false)
+            }
+        }
+    }
+
+    /**
+     * Inputs that only depend on the file system are checked concurrently,
+     * all other inputs, such as value sources that run build logic, are checked on the reading thread.
+     */
+    private
+    fun isCheckedConcurrently(input: ConfigurationCacheFingerprint) =
+        input is ConfigurationCacheFingerprint.InputFile ||
+            input is ConfigurationCacheFingerprint.WorkInputs ||
+            input is ConfigurationCacheFingerprint.InitScripts
+
     private
     fun MutableMap<Path, ProjectInvalidationState>.entryFor(path: Path) = getOrPut(path) { ProjectInvalidationState() }
 
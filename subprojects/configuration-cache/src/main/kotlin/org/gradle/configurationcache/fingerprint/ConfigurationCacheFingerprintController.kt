@@ -34,6 +34,8 @@ import org.gradle.configurationcache.problems.location
 import org.gradle.configurationcache.serialization.DefaultWriteContext
 import org.gradle.configurationcache.serialization.ReadContext
 import org.gradle.internal.buildtree.BuildModelParameters
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ManagedExecutor
 import org.gradle.internal.concurrent.Stoppable
 import org.gradle.internal.event.ListenerManager
 import org.gradle.internal.execution.TaskExecutionTracker
@@ -74,6 +76,7 @@ class ConfigurationCacheFingerprintController internal constructor(
     private val report: ConfigurationCacheReport,
     private val userCodeApplicationContext: UserCodeApplicationContext,
     private val taskExecutionTracker: TaskExecutionTracker,
+    private val executorFactory: ExecutorFactory,
 ) : Stoppable {
 
     interface Host {
@@ -84,6 +87,12 @@ class ConfigurationCacheFingerprintController internal constructor(
     private
     val fileCollectionFingerprinter = fingerprinterRegistry.getFingerprinter(DefaultFileNormalizationSpec.from(AbsolutePathInputNormalizer::class.java, DirectorySensitivity.DEFAULT, LineEndingSensitivity.DEFAULT))
 
+    /**
+     * Checks the file system inputs of the fingerprint, created on first use.
+     */
+    private
+    var checkExecutor: ManagedExecutor? = null
+
     private
     abstract class WritingState {
 
@@ -233,15 +242,19 @@ class ConfigurationCacheFingerprintController internal constructor(
 
     override fun stop() {
         writingState = writingState.dispose()
+        synchronized(this) {
+            checkExecutor?.stop()
+            checkExecutor = null
+        }
     }
 
     suspend fun ReadContext.checkBuildScopedFingerprint(host: Host): CheckedFingerprint =
-        ConfigurationCacheFingerprintChecker(CacheFingerprintCheckerHost(host)).run {
+        ConfigurationCacheFingerprintChecker(CacheFingerprintCheckerHost(host), checkExecutor()).run {
             checkBuildScopedFingerprint()
         }
 
     suspend fun ReadContext.checkProjectScopedFingerprint(host: Host): CheckedFingerprint =
-        ConfigurationCacheFingerprintChecker(CacheFingerprintCheckerHost(host)).run {
+        ConfigurationCacheFingerprintChecker(CacheFingerprintCheckerHost(host), checkExecutor()).run {
             checkProjectScopedFingerprint()
         }
 
@@ -252,6 +265,13 @@ class ConfigurationCacheFingerprintController internal constructor(
             }
         }
 
+    private
+    @Synchronized
+    fun checkExecutor(): ManagedExecutor =
+        checkExecutor ?: executorFactory.create("Configuration cache fingerprint checker", Runtime.getRuntime().availableProcessors()).also {
+            checkExecutor = it
+        }
+
     private
     fun addListener(listener: ConfigurationCacheFingerprintWriter) {
         listenerManager.addListener(listener)
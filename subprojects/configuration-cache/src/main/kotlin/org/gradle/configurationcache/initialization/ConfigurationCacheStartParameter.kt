@@ -18,6 +18,7 @@ package org.gradle.configurationcache.initialization
 
 import org.gradle.StartParameter
 import org.gradle.api.internal.StartParameterInternal
+import org.gradle.configurationcache.ConfigurationCacheCompression
 import org.gradle.configurationcache.extensions.unsafeLazy
 import org.gradle.initialization.StartParameterBuildOptions.ConfigurationCacheProblemsOption
 import org.gradle.initialization.layout.BuildLayout
@@ -93,4 +94,22 @@ class ConfigurationCacheStartParameter(
 
     val includedBuilds: List<File>
         get() = startParameter.includedBuilds
+
+    internal
+    val entryCompression: ConfigurationCacheCompression by unsafeLazy {
+        ConfigurationCacheCompression.of(startParameter.systemPropertiesArgs[ConfigurationCacheCompression.PROPERTY_NAME])
+    }
+
+    /**
+     * Whether strings and files are written once per context and referenced afterwards.
+     * Only disabled to compare the size and the loading time of entries with and without interning.
+     */
+    internal
+    val isEntryInterning: Boolean by unsafeLazy {
+        startParameter.systemPropertiesArgs[INTERNING_PROPERTY_NAME] != "false"
+    }
+
+    companion object {
+        const val INTERNING_PROPERTY_NAME = "org.gradle.internal.configuration-cache.interning"
+    }
 }
@@ -37,6 +37,7 @@ import org.gradle.configurationcache.serialization.readNonNull
 import org.gradle.configurationcache.serialization.runReadOperation
 import org.gradle.configurationcache.serialization.runWriteOperation
 import org.gradle.configurationcache.serialization.writeCollection
+import org.gradle.configurationcache.service
 import org.gradle.internal.Describables
 import org.gradle.internal.component.external.model.ImmutableCapabilities
 import org.gradle.internal.component.local.model.BuildableLocalConfigurationMetadata
@@ -57,7 +58,7 @@ class ProjectMetadataController(
     private val host: DefaultConfigurationCache.Host,
     private val cacheIO: ConfigurationCacheIO,
     store: ConfigurationCacheStateStore
-) : ProjectStateStore<Path, LocalComponentMetadata>(store, StateType.ProjectMetadata) {
+) : ProjectStateStore<Path, LocalComponentMetadata>(store, StateType.ProjectMetadata, host.service()) {
 
     override fun projectPathForKey(key: Path) = key
 
@@ -26,6 +26,7 @@ import org.gradle.configurationcache.serialization.IsolateOwner
 import org.gradle.configurationcache.serialization.readNonNull
 import org.gradle.configurationcache.serialization.runReadOperation
 import org.gradle.configurationcache.serialization.runWriteOperation
+import org.gradle.configurationcache.service
 import org.gradle.internal.serialize.Decoder
 import org.gradle.internal.serialize.Encoder
 import org.gradle.tooling.provider.model.UnknownModelException
@@ -41,7 +42,7 @@ class IntermediateModelController(
     private val cacheIO: ConfigurationCacheIO,
     store: ConfigurationCacheStateStore,
     private val cacheFingerprintController: ConfigurationCacheFingerprintController
-) : ProjectStateStore<ModelKey, IntermediateModel>(store, StateType.IntermediateModels) {
+) : ProjectStateStore<ModelKey, IntermediateModel>(store, StateType.IntermediateModels, host.service()) {
     override fun projectPathForKey(key: ModelKey) = key.identityPath
 
     override fun write(encoder: Encoder, value: IntermediateModel) {
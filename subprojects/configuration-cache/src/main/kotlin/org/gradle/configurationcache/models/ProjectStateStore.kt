@@ -24,10 +24,13 @@ import org.gradle.configurationcache.StateType
 import org.gradle.internal.concurrent.CompositeStoppable
 import org.gradle.internal.serialize.Decoder
 import org.gradle.internal.serialize.Encoder
+import org.gradle.internal.work.WorkerLeaseService
 import org.gradle.util.Path
 import java.io.Closeable
 import java.util.Collections
 import java.util.HashSet
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
 import java.util.concurrent.ConcurrentHashMap
 import java.util.function.Consumer
 
@@ -38,7 +41,8 @@ import java.util.function.Consumer
 internal
 abstract class ProjectStateStore<K, V>(
     private val store: ConfigurationCacheStateStore,
-    private val stateType: StateType
+    private val stateType: StateType,
+    private val workerLeaseService: WorkerLeaseService
 ) : Closeable {
     private
     val valuesStore by lazy {
@@ -57,6 +61,9 @@ abstract class ProjectStateStore<K, V>(
     private
     val currentValues = ConcurrentHashMap<K, BlockAddress>()
 
+    private
+    val valuesInCreation = ConcurrentHashMap<K, ValueInCreation<V>>()
+
     protected
     abstract fun projectPathForKey(key: K): Path?
 
@@ -103,19 +110,48 @@ abstract class ProjectStateStore<K, V>(
     fun loadOrCreateValue(key: K, creator: () -> V): V {
         val addressOfCached = locateCachedValue(key)
         if (addressOfCached != null) {
-            try {
-                return valuesStore.read(addressOfCached)
-            } catch (e: Exception) {
-                throw RuntimeException("Could not load entry for $key", e)
-            }
+            return loadValue(key, addressOfCached)
+        }
+        // Values of projects that are not reused can be requested concurrently, create each of them once
+        val valueInCreation = ValueInCreation<V>()
+        val existing = valuesInCreation.putIfAbsent(key, valueInCreation)
+        if (existing != null) {
+            return awaitValue(key, existing)
+        }
+        try {
+            val value = createValue(key, creator)
+            valueInCreation.result.complete(value)
+            return value
+        } catch (e: Throwable) {
+            valueInCreation.result.completeExceptionally(e)
+            throw e
+        } finally {
+            valuesInCreation.remove(key, valueInCreation)
+        }
+    }
+
+    private
+    fun createValue(key: K, creator: () -> V): V {
+        // The value may have been created by another thread, before this thread started creating it
+        val addressOfCached = locateCachedValue(key)
+        if (addressOfCached != null) {
+            return loadValue(key, addressOfCached)
         }
-        // TODO - should protect from concurrent creation
         val value = creator()
         val address = valuesStore.write(value)
         currentValues[key] = address
         return value
     }
 
+    private
+    fun loadValue(key: K, address: BlockAddress): V {
+        try {
+            return valuesStore.read(address)
+        } catch (e: Exception) {
+            throw RuntimeException("Could not load entry for $key", e)
+        }
+    }
+
     private
     fun locateCachedValue(key: K): BlockAddress? {
         val cachedInCurrent = currentValues[key]
@@ -129,7 +165,67 @@ abstract class ProjectStateStore<K, V>(
         return cachedInPrevious
     }
 
+    /**
+     * Waits for a value created by another thread.
+     *
+     * The project locks and the worker lease of this thread are released while waiting, as the creator of the value may need them.
+     * Waiting fails when the creator waits, directly or via other values, for a value created by this thread, as that would never complete.
+     */
+    private
+    fun awaitValue(key: K, valueInCreation: ValueInCreation<V>): V {
+        val thread = Thread.currentThread()
+        awaitedValues[thread] = valueInCreation
+        try {
+            check(!valueInCreation.waitsFor(thread)) {
+                "Entry for $key is requested while it is being created."
+            }
+            var value: V? = null
+            workerLeaseService.blocking {
+                value = valueInCreation.await()
+            }
+            @Suppress("UNCHECKED_CAST")
+            return value as V
+        } finally {
+            awaitedValues.remove(thread)
+        }
+    }
+
     override fun close() {
         CompositeStoppable.stoppable(valuesStore).stop()
     }
+
+    private
+    companion object {
+        /**
+         * The value each thread waits for, across all stores.
+         */
+        val awaitedValues = ConcurrentHashMap<Thread, ValueInCreation<*>>()
+    }
+
+    private
+    class ValueInCreation<V> {
+        val creator: Thread = Thread.currentThread()
+
+        val result = CompletableFuture<V>()
+
+        fun waitsFor(thread: Thread): Boolean {
+            val visited = HashSet<ValueInCreation<*>>()
+            var next: ValueInCreation<*>? = this
+            while (next != null && visited.add(next)) {
+                if (next.creator === thread) {
+                    return true
+                }
+                next = awaitedValues[next.creator]
+            }
+            return false
+        }
+
+        fun await(): V {
+            try {
+                return result.join()
+            } catch (e: CompletionException) {
+                throw e.cause ?: e
+            }
+        }
+    }
 }
@@ -29,8 +29,10 @@ import org.gradle.configurationcache.serialization.beans.BeanStateWriter
 import org.gradle.configurationcache.serialization.beans.BeanStateWriterLookup
 import org.gradle.initialization.ClassLoaderScopeRegistry
 import org.gradle.internal.hash.HashCode
+import org.gradle.internal.serialize.BaseSerializerFactory
 import org.gradle.internal.serialize.Decoder
 import org.gradle.internal.serialize.Encoder
+import java.io.File
 
 
 internal
@@ -50,11 +52,15 @@ class DefaultWriteContext(
 
     override val tracer: Tracer?,
 
-    problemsListener: ProblemsListener
+    private
+    val problemsListener: ProblemsListener,
 
-) : AbstractIsolateContext<WriteIsolate>(codec, problemsListener), WriteContext, Encoder by encoder, AutoCloseable {
+    private
+    val interning: Boolean = true,
 
-    override val sharedIdentities = WriteIdentities()
+    override val sharedIdentities: WriteIdentities = WriteIdentities()
+
+) : AbstractIsolateContext<WriteIsolate>(codec, problemsListener), WriteContext, Encoder by encoder, AutoCloseable {
 
     private
     val classes = WriteIdentities()
@@ -62,6 +68,13 @@ class DefaultWriteContext(
     private
     val scopes = WriteIdentities()
 
+    private
+    val strings = HashMap<String, Int>()
+
+    // Keyed by path, as `File.equals` ignores the case of paths on case-insensitive file systems
+    private
+    val files = HashMap<String, Int>()
+
     /**
      * Closes the given [encoder] if it is [AutoCloseable].
      */
@@ -69,6 +82,25 @@ class DefaultWriteContext(
         (encoder as? AutoCloseable)?.close()
     }
 
+    /**
+     * Creates a context writing a segment of the state to the given [encoder].
+     *
+     * The segment has its own class and class loader scope tables, so it can be read independently of the
+     * other segments, but it shares the [sharedIdentities] of this context.
+     */
+    internal
+    fun newSegmentContext(encoder: Encoder) = DefaultWriteContext(
+        getCodec(),
+        encoder,
+        scopeLookup,
+        beanStateWriterLookup,
+        logger,
+        null,
+        problemsListener,
+        interning,
+        sharedIdentities
+    )
+
     override fun beanStateWriterFor(beanType: Class<*>): BeanStateWriter =
         beanStateWriterLookup.beanStateWriterFor(beanType)
 
@@ -131,9 +163,54 @@ class DefaultWriteContext(
         }
     }
 
-    // TODO: consider interning strings
-    override fun writeString(string: CharSequence) =
-        encoder.writeString(string)
+    /**
+     * Writes each distinct string once, subsequent occurrences are written as a reference to the first one.
+     */
+    override fun writeString(string: CharSequence) {
+        if (!interning) {
+            encoder.writeString(string)
+            return
+        }
+        val value = string.toString()
+        val id = strings[value]
+        if (id != null) {
+            writeSmallInt(id)
+        } else {
+            val newId = strings.size
+            strings[value] = newId
+            writeSmallInt(newId)
+            encoder.writeString(value)
+        }
+    }
+
+    /**
+     * Writes each distinct file once, as a reference to its parent directory followed by its name,
+     * so that common path prefixes are only written once.
+     */
+    internal
+    fun writeFile(file: File) {
+        if (!interning) {
+            BaseSerializerFactory.FILE_SERIALIZER.write(encoder, file)
+            return
+        }
+        val id = files[file.path]
+        if (id != null) {
+            writeSmallInt(id)
+        } else {
+            val newId = files.size
+            files[file.path] = newId
+            writeSmallInt(newId)
+            val parent = file.parentFile
+            if (parent == null) {
+                writeBoolean(false)
+                writeString(file.path)
+            } else {
+                writeBoolean(true)
+                writeFile(parent)
+                writeString(file.name)
+            }
+        }
+    }
 
     override fun newIsolate(owner: IsolateOwner): WriteIsolate =
         DefaultWriteIsolate(owner)
@@ -200,11 +277,15 @@ class DefaultReadContext(
 
     override val logger: Logger,
 
-    problemsListener: ProblemsListener
+    private
+    val problemsListener: ProblemsListener,
 
-) : AbstractIsolateContext<ReadIsolate>(codec, problemsListener), ReadContext, Decoder by decoder, AutoCloseable {
+    private
+    val interning: Boolean = true,
 
-    override val sharedIdentities = ReadIdentities()
+    override val sharedIdentities: ReadIdentities = ReadIdentities()
+
+) : AbstractIsolateContext<ReadIsolate>(codec, problemsListener), ReadContext, Decoder by decoder, AutoCloseable {
 
     private
     val classes = ReadIdentities()
@@ -212,6 +293,12 @@ class DefaultReadContext(
     private
     val scopes = ReadIdentities()
 
+    private
+    val strings = ArrayList<String>()
+
+    private
+    val files = ArrayList<File?>()
+
     private
     lateinit var projectProvider: ProjectProvider
 
@@ -240,6 +327,23 @@ class DefaultReadContext(
     override val isolate: ReadIsolate
         get() = getIsolate()
 
+    /**
+     * Creates a context reading a segment written by [DefaultWriteContext.newSegmentContext] from the given [decoder].
+     */
+    internal
+    fun newSegmentContext(decoder: Decoder, sharedIdentities: ReadIdentities) = DefaultReadContext(
+        getCodec(),
+        decoder,
+        beanStateReaderLookup,
+        logger,
+        problemsListener,
+        interning,
+        sharedIdentities
+    ).also { segment ->
+        segment.initClassLoader(classLoader)
+        segment.initProjectProvider(projectProvider)
+    }
+
     override fun beanStateReaderFor(beanType: Class<*>): BeanStateReader =
         beanStateReaderLookup.beanStateReaderFor(beanType)
 
@@ -265,6 +369,40 @@ class DefaultReadContext(
         return newType
     }
 
+    override fun readString(): String {
+        if (!interning) {
+            return decoder.readString()
+        }
+        val id = readSmallInt()
+        if (id < strings.size) {
+            return strings[id]
+        }
+        val string = decoder.readString()
+        strings.add(string)
+        return string
+    }
+
+    internal
+    fun readFile(): File {
+        if (!interning) {
+            return BaseSerializerFactory.FILE_SERIALIZER.read(decoder)
+        }
+        val id = readSmallInt()
+        if (id < files.size) {
+            return files[id]!!
+        }
+        // Reserve the id before reading the parent, which gets the next id
+        files.add(null)
+        val file = if (readBoolean()) {
+            val parent = readFile()
+            File(parent, readString())
+        } else {
+            File(readString())
+        }
+        files[id] = file
+        return file
+    }
+
     private
     fun readScope(): ClassLoaderScope {
         val id = readSmallInt()
@@ -17,6 +17,8 @@
 package org.gradle.configurationcache.serialization
 
 import java.util.IdentityHashMap
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
 
 
 class WriteIdentities {
@@ -26,6 +28,12 @@ class WriteIdentities {
 
     fun getId(instance: Any) = instanceIds[instance]
 
+    /**
+     * The id assigned to the next instance.
+     */
+    val nextId: Int
+        get() = instanceIds.size
+
     fun putInstance(instance: Any): Int {
         val id = instanceIds.size
         instanceIds[instance] = id
@@ -34,14 +42,86 @@ class WriteIdentities {
 }
 
 
-class ReadIdentities {
+open class ReadIdentities {
 
     private
     val instanceIds = HashMap<Int, Any>()
 
-    fun getInstance(id: Int) = instanceIds[id]
+    open fun getInstance(id: Int): Any? = instanceIds[id]
 
-    fun putInstance(id: Int, instance: Any) {
+    open fun putInstance(id: Int, instance: Any) {
         instanceIds[id] = instance
     }
 }
+
+
+/**
+ * The shared identities of a segment that is read concurrently with other segments of the same state.
+ *
+ * Shared identities are numbered in the order they are written, so identities below [firstSegmentId]
+ * have been read by the enclosing context or by a previous segment and are awaited until published.
+ */
+internal
+class SegmentReadIdentities(
+    private val firstSegmentId: Int,
+    private val published: PublishedReadIdentities
+) : ReadIdentities() {
+
+    override fun getInstance(id: Int): Any? =
+        if (id < firstSegmentId) published.await(id)
+        else super.getInstance(id)
+
+    override fun putInstance(id: Int, instance: Any) {
+        super.putInstance(id, instance)
+        published.publish(id, instance)
+    }
+}
+
+
+/**
+ * Shared identities published by the segments of a state that are read concurrently.
+ */
+internal
+class PublishedReadIdentities(
+    private val enclosing: ReadIdentities
+) {
+    private
+    val instances = ConcurrentHashMap<Int, CompletableFuture<Any>>()
+
+    @Volatile
+    private
+    var failure: Throwable? = null
+
+    fun publish(id: Int, instance: Any) {
+        futureFor(id).complete(instance)
+    }
+
+    fun await(id: Int): Any =
+        enclosing.getInstance(id) ?: futureFor(id).let { future ->
+            failure?.let(future::completeExceptionally)
+            future.join()
+        }
+
+    /**
+     * Releases the segments awaiting an identity, which will never be published due to the given [failure].
+     */
+    fun fail(failure: Throwable) {
+        this.failure = failure
+        instances.values.forEach { it.completeExceptionally(failure) }
+    }
+
+    /**
+     * Makes the published identities available to the [enclosing] context, once all segments have been read.
+     */
+    fun publishToEnclosing() {
+        instances.forEach { (id, future) ->
+            if (future.isDone && !future.isCompletedExceptionally) {
+                enclosing.putInstance(id, future.join())
+            }
+        }
+    }
+
+    private
+    fun futureFor(id: Int) =
+        instances.computeIfAbsent(id) { CompletableFuture() }
+}
@@ -24,6 +24,17 @@ import org.gradle.configurationcache.serialization.ReadContext
 import org.gradle.configurationcache.serialization.WriteContext
 import org.gradle.configurationcache.serialization.readFile
 import org.gradle.configurationcache.serialization.writeFile
+import java.io.File
+
+
+object FileCodec : Codec<File> {
+    override suspend fun WriteContext.encode(value: File) {
+        writeFile(value)
+    }
+
+    override suspend fun ReadContext.decode(): File =
+        readFile()
+}
 
 
 class DirectoryCodec(private val fileFactory: FileFactory) : Codec<Directory> {
@@ -75,7 +75,10 @@ class TaskNodeCodec(
     override suspend fun ReadContext.decode(): LocalTaskNode {
         val task = readTask()
         val ordinal = readInt()
-        val node = taskNodeFactory.getOrCreateNode(task, ordinal) as LocalTaskNode
+        // Segments of the work graph are read concurrently
+        val node = synchronized(taskNodeFactory) {
+            taskNodeFactory.getOrCreateNode(task, ordinal) as LocalTaskNode
+        }
         node.isolated()
         return node
     }
@@ -17,74 +17,179 @@
 package org.gradle.configurationcache.serialization.codecs
 
 import org.gradle.api.internal.GradleInternal
+import org.gradle.configurationcache.extensions.useToRun
 import org.gradle.configurationcache.serialization.Codec
+import org.gradle.configurationcache.serialization.DefaultReadContext
+import org.gradle.configurationcache.serialization.DefaultWriteContext
+import org.gradle.configurationcache.serialization.PublishedReadIdentities
 import org.gradle.configurationcache.serialization.ReadContext
+import org.gradle.configurationcache.serialization.SegmentReadIdentities
 import org.gradle.configurationcache.serialization.WriteContext
 import org.gradle.configurationcache.serialization.readNonNull
+import org.gradle.configurationcache.serialization.runReadOperation
+import org.gradle.configurationcache.serialization.runWriteOperation
 import org.gradle.configurationcache.serialization.withGradleIsolate
+import org.gradle.execution.plan.LocalTaskNode
 import org.gradle.execution.plan.Node
 import org.gradle.execution.plan.TaskInAnotherBuild
 import org.gradle.execution.plan.TaskNode
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.operations.BuildOperationDescriptor
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.internal.operations.RunnableBuildOperation
+import org.gradle.internal.serialize.Encoder
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder
+import java.io.ByteArrayInputStream
+import java.io.SequenceInputStream
+import java.util.Collections
 
 
+/**
+ * Writes the scheduled nodes of a build in segments, one for the tasks of each project and one for all other nodes.
+ *
+ * Each segment has its own class tables and is read concurrently with the other segments. The relationships
+ * between the nodes and their execution state are written after the segments and restored once all nodes are read.
+ */
 internal
 class WorkNodeCodec(
     private val owner: GradleInternal,
-    private val internalTypesCodec: Codec<Any?>
+    private val internalTypesCodec: Codec<Any?>,
+    private val buildOperationExecutor: BuildOperationExecutor
 ) {
 
-    suspend fun WriteContext.writeWork(nodes: List<Node>) {
-        // Share bean instances across all nodes (except tasks, which have their own isolate)
-        withGradleIsolate(owner, internalTypesCodec) {
-            writeNodes(nodes)
+    suspend fun DefaultWriteContext.writeWork(nodes: List<Node>) {
+        writeSmallInt(nodes.size)
+        writeSegments(nodes)
+        writeRelationships(nodes)
+    }
+
+    fun DefaultReadContext.readWork(): List<Node> {
+        val nodeCount = readSmallInt()
+        val nodes = arrayOfNulls<Node>(nodeCount)
+        readSegments(nodes)
+        return nodes.map { it!! }.also { readRelationships(it) }
+    }
+
+    private
+    fun DefaultWriteContext.writeSegments(nodes: List<Node>) {
+        val segments = LinkedHashMap<String?, MutableList<Int>>()
+        nodes.forEachIndexed { nodeId, node ->
+            val projectPath = (node as? LocalTaskNode)?.owningProject?.identityPath?.path
+            segments.getOrPut(projectPath) { ArrayList() }.add(nodeId)
+        }
+        writeSmallInt(segments.size)
+        for ((projectPath, nodeIds) in segments) {
+            writeNullableString(projectPath)
+            writeSmallInt(nodeIds.size)
+            for (nodeId in nodeIds) {
+                writeSmallInt(nodeId)
+            }
+            // Shared identities are numbered in the order they are written, see `SegmentReadIdentities`
+            writeSmallInt(sharedIdentities.nextId)
+            writeSegment(nodeIds.map(nodes::get))
         }
     }
 
-    suspend fun ReadContext.readWork(): List<Node> =
-        withGradleIsolate(owner, internalTypesCodec) {
-            readNodes()
+    /**
+     * Writes the given nodes in chunks, so the segment is not buffered as a whole.
+     */
+    private
+    fun DefaultWriteContext.writeSegment(nodes: List<Node>) {
+        encodeChunked { encoder ->
+            // The chunked encoder is owned by the enclosing encoder, so the segment context must not close it
+            newSegmentContext(encoder).runWriteOperation {
+                // Share bean instances across all nodes of the segment (except tasks, which have their own isolate)
+                withGradleIsolate(owner, internalTypesCodec) {
+                    for (node in nodes) {
+                        write(node)
+                    }
+                }
+            }
         }
+    }
 
     private
-    suspend fun WriteContext.writeNodes(nodes: List<Node>) {
-        val nodeCount = nodes.size
-        writeSmallInt(nodeCount)
-        val scheduledNodeIds = HashMap<Node, Int>(nodeCount)
-        nodes.forEachIndexed { nodeId, node ->
-            writeNode(node, scheduledNodeIds)
-            scheduledNodeIds[node] = nodeId
+    fun DefaultReadContext.readSegments(nodes: Array<Node?>) {
+        val segments = (0 until readSmallInt()).map { _ ->
+            val projectPath = readNullableString()
+            val nodeIds = (0 until readSmallInt()).map { readSmallInt() }
+            val firstSharedId = readSmallInt()
+            EncodedSegment(projectPath, nodeIds, firstSharedId, readChunks())
         }
+        val publishedIdentities = PublishedReadIdentities(sharedIdentities)
+        // Segments only await the identities of previous segments, which are always started first
+        buildOperationExecutor.runAllWithAccessToProjectState<RunnableBuildOperation> { queue ->
+            for (segment in segments) {
+                queue.add(object : RunnableBuildOperation {
+                    override fun run(context: BuildOperationContext) {
+                        try {
+                            decodeSegment(segment, publishedIdentities, nodes)
+                        } catch (e: Throwable) {
+                            publishedIdentities.fail(e)
+                            throw e
+                        }
+                    }
+
+                    override fun description(): BuildOperationDescriptor.Builder =
+                        BuildOperationDescriptor.displayName("Load work graph of ${segment.projectPath ?: owner.identityPath.path}")
+                })
+            }
+        }
+        publishedIdentities.publishToEnclosing()
     }
 
+    /**
+     * Reads the chunks of a segment written by [Encoder.encodeChunked], so that the segment can be decoded concurrently.
+     */
     private
-    suspend fun ReadContext.readNodes(): List<Node> {
-        val nodeCount = readSmallInt()
-        val nodes = ArrayList<Node>(nodeCount)
-        val nodesById = HashMap<Int, Node>(nodeCount)
-        for (nodeId in 0 until nodeCount) {
-            val node = readNode(nodesById)
-            nodesById[nodeId] = node
-            nodes.add(node)
-        }
-        return nodes
+    fun ReadContext.readChunks(): List<ByteArray> {
+        val chunks = ArrayList<ByteArray>()
+        while (true) {
+            val count = readSmallInt()
+            if (count == 0) break
+            chunks.add(ByteArray(count).also { readBytes(it) })
+        }
+        return chunks
     }
 
     private
-    suspend fun WriteContext.writeNode(
-        node: Node,
-        scheduledNodeIds: Map<Node, Int>
-    ) {
-        write(node)
-        writeSuccessorReferencesOf(node, scheduledNodeIds)
-        writeExecutionStateOf(node)
+    fun DefaultReadContext.decodeSegment(segment: EncodedSegment, publishedIdentities: PublishedReadIdentities, nodes: Array<Node?>) {
+        val decoder = KryoBackedDecoder(SequenceInputStream(Collections.enumeration(segment.chunks.map(::ByteArrayInputStream))))
+        newSegmentContext(decoder, SegmentReadIdentities(segment.firstSharedId, publishedIdentities)).useToRun {
+            runReadOperation {
+                withGradleIsolate(owner, internalTypesCodec) {
+                    for (nodeId in segment.nodeIds) {
+                        nodes[nodeId] = readNonNull()
+                    }
+                }
+            }
+        }
     }
 
     private
-    suspend fun ReadContext.readNode(nodesById: Map<Int, Node>): Node {
-        val node = readNonNull<Node>()
-        readSuccessorReferencesOf(node, nodesById)
-        readExecutionStateOf(node)
-        return node
+    class EncodedSegment(
+        val projectPath: String?,
+        val nodeIds: List<Int>,
+        val firstSharedId: Int,
+        val chunks: List<ByteArray>
+    )
+
+    private
+    fun WriteContext.writeRelationships(nodes: List<Node>) {
+        val scheduledNodeIds = HashMap<Node, Int>(nodes.size)
+        nodes.forEachIndexed { nodeId, node ->
+            writeSuccessorReferencesOf(node, scheduledNodeIds)
+            writeExecutionStateOf(node)
+            scheduledNodeIds[node] = nodeId
+        }
+    }
+
+    private
+    fun ReadContext.readRelationships(nodes: List<Node>) {
+        for (node in nodes) {
+            readSuccessorReferencesOf(node, nodes)
+            readExecutionStateOf(node)
+        }
     }
 
     private
@@ -119,7 +224,7 @@ class WorkNodeCodec(
     }
 
     private
-    fun ReadContext.readSuccessorReferencesOf(node: Node, nodesById: Map<Int, Node>) {
+    fun ReadContext.readSuccessorReferencesOf(node: Node, nodesById: List<Node>) {
         readSuccessorReferences(nodesById) {
             node.addDependencySuccessor(it)
         }
@@ -155,11 +260,11 @@ class WorkNodeCodec(
     }
 
     private
-    fun ReadContext.readSuccessorReferences(nodesById: Map<Int, Node>, onSuccessor: (Node) -> Unit) {
+    fun ReadContext.readSuccessorReferences(nodesById: List<Node>, onSuccessor: (Node) -> Unit) {
         while (true) {
             val successorId = readSmallInt()
             if (successorId == -1) break
-            val successor = nodesById.getValue(successorId)
+            val successor = nodesById[successorId]
             onSuccessor(successor)
         }
     }
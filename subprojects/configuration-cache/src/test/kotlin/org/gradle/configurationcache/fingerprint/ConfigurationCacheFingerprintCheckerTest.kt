@@ -19,6 +19,8 @@ package org.gradle.configurationcache.fingerprint
 import com.nhaarman.mockitokotlin2.any
 import com.nhaarman.mockitokotlin2.doReturn
 import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.never
+import com.nhaarman.mockitokotlin2.verify
 import org.gradle.api.Describable
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.logging.Logger
@@ -44,12 +46,16 @@ import org.gradle.internal.Try
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.serialize.Decoder
 import org.gradle.internal.serialize.Encoder
+import org.gradle.util.Path
 import org.hamcrest.CoreMatchers.equalTo
+import org.hamcrest.CoreMatchers.instanceOf
 import org.hamcrest.MatcherAssert.assertThat
 import org.junit.Test
 import java.io.File
 import java.io.InputStream
 import java.io.OutputStream
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
 
 
 class ConfigurationCacheFingerprintCheckerTest {
@@ -198,6 +204,76 @@ class ConfigurationCacheFingerprintCheckerTest {
         )
     }
 
+    @Test
+    fun `first changed file is reported when files are checked concurrently`() {
+        val files = (1..20).map { File("file$it.txt") }
+        val changed = setOf(files[7], files[3], files[15])
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            assertThat(
+                checkFingerprintGiven(
+                    mock {
+                        on { hashCodeOf(any()) }.then { invocation ->
+                            val file = invocation.getArgument<File>(0)
+                            HashCode.fromInt(if (file in changed) 2 else 1)
+                        }
+                        on { displayNameOf(any()) }.then { invocation ->
+                            invocation.getArgument<File>(0).name
+                        }
+                    },
+                    files.map { ConfigurationCacheFingerprint.InputFile(it, HashCode.fromInt(1)) },
+                    executor
+                ),
+                equalTo("file 'file4.txt' has changed")
+            )
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test
+    fun `does not check inputs of a project which became invalid while they were pending`() {
+        val changedFile = File("build.gradle")
+        val project = Path.path(":a")
+        val host = mock<ConfigurationCacheFingerprintChecker.Host> {
+            on { hashCodeOf(changedFile) } doReturn HashCode.fromInt(2)
+            on { displayNameOf(changedFile) } doReturn "build.gradle"
+        }
+        val fingerprints = listOf(
+            ProjectSpecificFingerprint.ProjectFingerprint(project, ConfigurationCacheFingerprint.InputFile(changedFile, HashCode.fromInt(1))),
+            ProjectSpecificFingerprint.ProjectFingerprint(project, ConfigurationCacheFingerprint.ValueSource(obtainedValueMock())),
+            null
+        )
+        // Only check the file once the value source has been submitted, after all fingerprints have been read
+        val deferredChecks = mutableListOf<Runnable>()
+        val readContext = PlaybackReadContext(
+            Iterable {
+                val values = fingerprints.iterator()
+                object : Iterator<Any?> {
+                    override fun hasNext() = values.hasNext()
+                    override fun next() = values.next().also {
+                        if (!values.hasNext()) {
+                            deferredChecks.forEach(Runnable::run)
+                        }
+                    }
+                }
+            }
+        )
+
+        val checkedFingerprint = readContext.runReadOperation {
+            ConfigurationCacheFingerprintChecker(host, Executor { deferredChecks.add(it) }).run {
+                checkProjectScopedFingerprint()
+            }
+        }
+
+        assertThat(checkedFingerprint, instanceOf(CheckedFingerprint.ProjectsInvalid::class.java))
+        (checkedFingerprint as CheckedFingerprint.ProjectsInvalid).run {
+            assertThat(reason, equalTo("file 'build.gradle' has changed"))
+            assertThat(invalidProjects, equalTo(setOf(project)))
+        }
+        verify(host, never()).instantiateValueSourceOf(any())
+    }
+
     private
     fun invalidationReasonForInitScriptsChange(
         from: Iterable<Pair<File, HashCode?>>,
@@ -223,15 +299,23 @@ class ConfigurationCacheFingerprintCheckerTest {
     fun checkFingerprintGiven(
         host: ConfigurationCacheFingerprintChecker.Host,
         fingerprint: ConfigurationCacheFingerprint
+    ): InvalidationReason? =
+        checkFingerprintGiven(host, listOf(fingerprint), Executor { it.run() })
+
+    private
+    fun checkFingerprintGiven(
+        host: ConfigurationCacheFingerprintChecker.Host,
+        fingerprints: List<ConfigurationCacheFingerprint>,
+        executor: Executor
     ): InvalidationReason? {
 
         val readContext = recordWritingOf {
-            write(fingerprint)
+            fingerprints.forEach { write(it) }
             write(null)
         }
 
         val checkedFingerprint = readContext.runReadOperation {
-            ConfigurationCacheFingerprintChecker(host).run {
+            ConfigurationCacheFingerprintChecker(host, executor).run {
                 checkBuildScopedFingerprint()
             }
         }
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configurationcache.models
+
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.doAnswer
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.times
+import com.nhaarman.mockitokotlin2.verify
+import com.nhaarman.mockitokotlin2.whenever
+import org.gradle.cache.internal.streams.BlockAddress
+import org.gradle.cache.internal.streams.ValueStore
+import org.gradle.configurationcache.ConfigurationCacheStateStore
+import org.gradle.configurationcache.StateType
+import org.gradle.internal.serialize.Decoder
+import org.gradle.internal.serialize.Encoder
+import org.gradle.internal.work.WorkerLeaseService
+import org.gradle.util.Path
+import org.hamcrest.CoreMatchers.equalTo
+import org.hamcrest.CoreMatchers.instanceOf
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.Test
+import java.util.IdentityHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+
+class ProjectStateStoreTest {
+
+    private
+    val awaiting = CountDownLatch(1)
+
+    private
+    val workerLeaseService = mock<WorkerLeaseService>().also { workerLeaseService ->
+        doAnswer {
+            awaiting.countDown()
+            it.getArgument<Runnable>(0).run()
+        }.whenever(workerLeaseService).blocking(any<Runnable>())
+    }
+
+    private
+    val store = TestProjectStateStore(workerLeaseService)
+
+    @Test
+    fun `concurrent requests create a value once and wait without holding locks`() {
+        val creating = CountDownLatch(1)
+        val created = CountDownLatch(1)
+        val creations = AtomicInteger()
+        val results = arrayOfNulls<String>(2)
+
+        val creator = thread {
+            results[0] = store.loadOrCreateValue("a") {
+                creations.incrementAndGet()
+                creating.countDown()
+                created.await()
+                "value"
+            }
+        }
+        creating.await()
+        val waiter = thread {
+            results[1] = store.loadOrCreateValue("a") {
+                creations.incrementAndGet()
+                "other value"
+            }
+        }
+        assertThat(awaiting.await(10, TimeUnit.SECONDS), equalTo(true))
+        created.countDown()
+        creator.join()
+        waiter.join()
+
+        assertThat(results.toList(), equalTo(listOf<String?>("value", "value")))
+        assertThat(creations.get(), equalTo(1))
+        verify(workerLeaseService, times(1)).blocking(any<Runnable>())
+    }
+
+    @Test
+    fun `fails when a value is requested while the same thread creates it`() {
+        val failure = runCatching {
+            store.loadOrCreateValue("a") {
+                store.loadOrCreateValue("a") { "nested value" }
+            }
+        }.exceptionOrNull()
+
+        assertThat(failure, instanceOf(IllegalStateException::class.java))
+        assertThat(failure!!.message, equalTo("Entry for a is requested while it is being created."))
+    }
+
+    @Test
+    fun `fails instead of waiting forever when values created by different threads require each other`() {
+        val creatingA = CountDownLatch(1)
+        val creatingB = CountDownLatch(1)
+        val failures = arrayOfNulls<Throwable>(2)
+
+        val threadA = thread {
+            failures[0] = runCatching {
+                store.loadOrCreateValue("a") {
+                    creatingA.countDown()
+                    creatingB.await()
+                    store.loadOrCreateValue("b") { "b from a" }
+                }
+            }.exceptionOrNull()
+        }
+        val threadB = thread {
+            failures[1] = runCatching {
+                store.loadOrCreateValue("b") {
+                    creatingB.countDown()
+                    creatingA.await()
+                    store.loadOrCreateValue("a") { "a from b" }
+                }
+            }.exceptionOrNull()
+        }
+        threadA.join(TimeUnit.SECONDS.toMillis(10))
+        threadB.join(TimeUnit.SECONDS.toMillis(10))
+
+        assertThat(threadA.isAlive || threadB.isAlive, equalTo(false))
+        for (failure in failures) {
+            assertThat(failure, instanceOf(IllegalStateException::class.java))
+        }
+    }
+
+    private
+    class TestProjectStateStore(
+        workerLeaseService: WorkerLeaseService
+    ) : ProjectStateStore<String, String>(stateStore(), StateType.IntermediateModels, workerLeaseService) {
+
+        override fun projectPathForKey(key: String): Path = Path.path(":$key")
+
+        override fun write(encoder: Encoder, value: String) = throw UnsupportedOperationException()
+
+        override fun read(decoder: Decoder): String = throw UnsupportedOperationException()
+    }
+}
+
+
+private
+fun stateStore(): ConfigurationCacheStateStore {
+    val valueStore = object : ValueStore<String> {
+        private
+        val values = IdentityHashMap<BlockAddress, String>()
+
+        override fun write(value: String): BlockAddress = synchronized(values) {
+            BlockAddress(0, values.size.toLong(), 0).also { values[it] = value }
+        }
+
+        override fun read(blockAddress: BlockAddress): String = synchronized(values) {
+            values.getValue(blockAddress)
+        }
+    }
+    return mock<ConfigurationCacheStateStore>().also { store ->
+        whenever(store.createValueStore<String>(any(), any(), any())).thenReturn(valueStore)
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configurationcache.serialization
+
+import org.hamcrest.CoreMatchers.equalTo
+import org.hamcrest.CoreMatchers.nullValue
+import org.hamcrest.CoreMatchers.sameInstance
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.Test
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+
+class SegmentReadIdentitiesTest {
+
+    @Test
+    fun `resolves identities of the enclosing context`() {
+        val enclosing = ReadIdentities().apply { putInstance(0, "enclosing") }
+        val segment = SegmentReadIdentities(1, PublishedReadIdentities(enclosing))
+
+        assertThat(segment.getInstance(0), equalTo<Any>("enclosing"))
+        assertThat(segment.getInstance(1), nullValue())
+    }
+
+    @Test
+    fun `awaits identities published by previous segments`() {
+        val published = PublishedReadIdentities(ReadIdentities())
+        val first = SegmentReadIdentities(0, published)
+        val second = SegmentReadIdentities(2, published)
+        val instance = Any()
+
+        val awaited = CompletableFuture.supplyAsync { second.getInstance(1) }
+        first.putInstance(0, Any())
+        first.putInstance(1, instance)
+
+        assertThat(awaited.get(10, TimeUnit.SECONDS), sameInstance(instance))
+        assertThat(second.getInstance(2), nullValue())
+    }
+
+    @Test
+    fun `releases awaiting segments when a segment fails`() {
+        val published = PublishedReadIdentities(ReadIdentities())
+        val second = SegmentReadIdentities(1, published)
+        val failure = RuntimeException("broken")
+
+        val awaited = CompletableFuture.supplyAsync { second.getInstance(0) }
+        published.fail(failure)
+
+        val thrown = runCatching { awaited.get(10, TimeUnit.SECONDS) }.exceptionOrNull()
+        assertThat(thrown?.cause, sameInstance<Throwable>(failure))
+    }
+
+    @Test
+    fun `makes published identities available to the enclosing context`() {
+        val enclosing = ReadIdentities()
+        val published = PublishedReadIdentities(enclosing)
+        val instance = Any()
+        SegmentReadIdentities(0, published).putInstance(0, instance)
+
+        published.publishToEnclosing()
+
+        assertThat(enclosing.getInstance(0), sameInstance(instance))
+    }
+}
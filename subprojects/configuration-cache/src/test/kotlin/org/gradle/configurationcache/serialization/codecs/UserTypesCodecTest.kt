@@ -21,6 +21,7 @@ import org.hamcrest.CoreMatchers.equalTo
 import org.hamcrest.CoreMatchers.sameInstance
 import org.hamcrest.MatcherAssert.assertThat
 import org.junit.Test
+import java.io.File
 
 
 class UserTypesCodecTest : AbstractUserTypeCodecTest() {
@@ -89,6 +90,31 @@ class UserTypesCodecTest : AbstractUserTypeCodecTest() {
         }
     }
 
+    @Test
+    fun `can handle repeated strings and files`() {
+        val root = File("root").absoluteFile
+        val files = arrayListOf(
+            root,
+            File(root, "build/classes/java/main"),
+            File(root, "build/classes/java/test"),
+            File(root, "build/classes/java/main"),
+            File("relative/file.txt"),
+            File("relative")
+        )
+        val strings = arrayListOf("main", "test", "main", "", "test")
+
+        val read = configurationCacheRoundtripOf(files to strings)
+
+        assertThat(
+            read.first,
+            equalTo(files)
+        )
+        assertThat(
+            read.second,
+            equalTo(strings)
+        )
+    }
+
     @Test
     fun `Peano sanity check`() {
 
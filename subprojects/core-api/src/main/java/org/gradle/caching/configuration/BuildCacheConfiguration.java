@@ -17,6 +17,7 @@
 package org.gradle.caching.configuration;
 
 import org.gradle.api.Action;
+import org.gradle.api.Incubating;
 import org.gradle.caching.BuildCacheServiceFactory;
 import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.internal.HasInternalProtocol;
@@ -95,4 +96,32 @@ public interface BuildCacheConfiguration {
      * @throws IllegalStateException If no remote cache has been assigned yet
      */
     void remote(Action<? super BuildCache> configuration);
+
+    /**
+     * Returns the compression used for entries stored in the build cache.
+     *
+     * @see #setCompression(String)
+     * @since 7.5
+     */
+    @Incubating
+    String getCompression();
+
+    /**
+     * Sets the compression used for entries stored in the build cache.
+     * <p>
+     * Supported values are {@code gzip}, {@code gzip:<level>} with a level from 0 to 9, {@code lz4} and {@code none}.
+     * The default is {@code gzip}, unless overridden by the {@code org.gradle.caching.compression} system property.
+     * </p>
+     * <p>
+     * Entries are always loaded with the compression they were stored with.
+     * Gradle versions before 7.5 can only read {@code gzip} entries. To keep caches shared with such versions working,
+     * entries stored with any other compression are stored under different cache keys, and are only reused by builds
+     * that use the same compression.
+     * </p>
+     *
+     * @param compression the compression to use.
+     * @since 7.5
+     */
+    @Incubating
+    void setCompression(String compression);
 }
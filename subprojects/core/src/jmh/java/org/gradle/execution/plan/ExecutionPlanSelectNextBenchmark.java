@@ -0,0 +1,257 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.Stat;
+import org.gradle.internal.resources.ResourceLock;
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives {@link DefaultExecutionPlan#selectNext()} through synthetic plans the size of a large monorepo build.
+ *
+ * <p>Each node depends on a few random nodes added shortly before it and needs the lock of its project, like a task that is not
+ * run in parallel with other work of its project. The short dependency distance builds long chains, so that most of the queue
+ * is waiting for its dependencies at any time. A fixed number of simulated workers select nodes and finish them in order,
+ * so that the benchmark measures the scheduling overhead of executing the whole plan.</p>
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ExecutionPlanSelectNextBenchmark {
+
+    private static final int MAX_DEPENDENCIES = 3;
+    private static final int DEPENDENCY_WINDOW = 50;
+
+    @Param({"10000", "50000", "100000"})
+    int nodes;
+
+    /**
+     * Few projects means many nodes that are ready to run but wait for the lock of their project.
+     */
+    @Param({"20", "500"})
+    int projects;
+
+    @Param({"16"})
+    int workers;
+
+    private DefaultExecutionPlan plan;
+
+    @Setup(Level.Invocation)
+    public void createPlan() {
+        Random random = new Random(42);
+        List<ResourceLock> projectLocks = new ArrayList<>(projects);
+        for (int i = 0; i < projects; i++) {
+            projectLocks.add(new ProjectLock(":project" + i));
+        }
+        List<SyntheticNode> plannedNodes = new ArrayList<>(nodes);
+        for (int i = 0; i < nodes; i++) {
+            SyntheticNode node = new SyntheticNode(i, projectLocks.get(random.nextInt(projects)));
+            for (int j = random.nextInt(MAX_DEPENDENCIES + 1); j > 0 && i > 0; j--) {
+                node.addDependencySuccessor(plannedNodes.get(i - 1 - random.nextInt(Math.min(i, DEPENDENCY_WINDOW))));
+            }
+            node.require();
+            node.dependenciesProcessed();
+            plannedNodes.add(node);
+        }
+        Stat stat = new UnusedStat();
+        plan = new DefaultExecutionPlan(
+            "benchmark",
+            null,
+            new TaskDependencyResolver(Collections.emptyList()),
+            node -> false,
+            new ExecutionNodeAccessHierarchy(CaseSensitivity.CASE_SENSITIVE, stat),
+            new ExecutionNodeAccessHierarchy(CaseSensitivity.CASE_SENSITIVE, stat)
+        );
+        plan.addNodes(plannedNodes);
+        plan.determineExecutionPlan();
+    }
+
+    @Benchmark
+    public int executePlan() {
+        Deque<Node> running = new ArrayDeque<>(workers);
+        int executed = 0;
+        while (executed < nodes) {
+            if (running.size() < workers) {
+                Node node = plan.selectNext();
+                if (node != null) {
+                    running.add(node);
+                    continue;
+                }
+            }
+            Node finished = running.poll();
+            if (finished == null) {
+                throw new IllegalStateException("No node could be selected, but none is running either");
+            }
+            plan.finishedExecuting(finished);
+            executed++;
+        }
+        return executed;
+    }
+
+    private static class SyntheticNode extends Node {
+        private final int id;
+        private final ResourceLock projectLock;
+
+        SyntheticNode(int id, ResourceLock projectLock) {
+            this.id = id;
+            this.projectLock = projectLock;
+        }
+
+        @Nullable
+        @Override
+        public Throwable getNodeFailure() {
+            return null;
+        }
+
+        @Override
+        public void rethrowNodeFailure() {
+        }
+
+        @Override
+        public void prepareForExecution() {
+        }
+
+        @Override
+        public void resolveDependencies(TaskDependencyResolver dependencyResolver, Action<Node> processHardSuccessor) {
+        }
+
+        @Override
+        public Set<Node> getFinalizers() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void resolveMutations() {
+            getMutationInfo().resolved = true;
+        }
+
+        @Override
+        public boolean isPublicNode() {
+            return true;
+        }
+
+        @Override
+        public boolean requiresMonitoring() {
+            return false;
+        }
+
+        @Override
+        public ResourceLock getProjectToLock() {
+            return projectLock;
+        }
+
+        @Nullable
+        @Override
+        public ProjectInternal getOwningProject() {
+            return null;
+        }
+
+        @Override
+        public List<? extends ResourceLock> getResourcesToLock() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int compareTo(Node other) {
+            return Integer.compare(id, ((SyntheticNode) other).id);
+        }
+
+        @Override
+        public String toString() {
+            return "node " + id;
+        }
+    }
+
+    private static class ProjectLock implements ResourceLock {
+        private final String displayName;
+        private boolean locked;
+
+        ProjectLock(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public boolean isLocked() {
+            return locked;
+        }
+
+        @Override
+        public boolean isLockedByCurrentThread() {
+            return locked;
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (locked) {
+                return false;
+            }
+            locked = true;
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            locked = false;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private static class UnusedStat implements Stat {
+        @Override
+        public int getUnixMode(File f) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileMetadata stat(File f) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
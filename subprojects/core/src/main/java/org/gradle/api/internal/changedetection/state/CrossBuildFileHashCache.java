@@ -22,8 +22,10 @@
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
 import org.gradle.cache.scopes.ScopedCache;
+import org.gradle.internal.hash.Hashing;
 
 import java.io.Closeable;
+import java.util.Collections;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
@@ -36,6 +38,7 @@ public CrossBuildFileHashCache(ScopedCache scopedCache, InMemoryCacheDecoratorFa
         this.inMemoryCacheDecoratorFactory = inMemoryCacheDecoratorFactory;
         cache = scopedCache.cache(cacheKind.cacheId)
             .withDisplayName(cacheKind.description)
+            .withProperties(Collections.singletonMap("hash.function", Hashing.defaultFunction().getAlgorithm()))
             .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
             .open();
     }
@@ -19,8 +19,10 @@
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.scopes.ScopedCache;
 import org.gradle.internal.execution.history.ExecutionHistoryCacheAccess;
+import org.gradle.internal.hash.Hashing;
 
 import java.io.Closeable;
+import java.util.Collections;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
@@ -31,6 +33,7 @@ public DefaultExecutionHistoryCacheAccess(ScopedCache cacheRepository) {
         this.cache = cacheRepository
             .cache("executionHistory")
             .withDisplayName("execution history cache")
+            .withProperties(Collections.singletonMap("hash.function", Hashing.defaultFunction().getAlgorithm()))
             .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
             .open();
     }
@@ -666,6 +666,13 @@ public ImmutableActionSet<I> getOnCreateActions() {
             return onCreate;
         }
 
+        /**
+         * Returns the project that owns the task, without creating the task.
+         */
+        public ProjectInternal getOwningProject() {
+            return project;
+        }
+
         @Override
         public ValueProducer getProducer() {
             return ValueProducer.taskState(get());
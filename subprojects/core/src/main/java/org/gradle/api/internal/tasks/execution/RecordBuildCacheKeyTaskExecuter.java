@@ -0,0 +1,54 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.execution;
+
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.tasks.TaskExecuter;
+import org.gradle.api.internal.tasks.TaskExecuterResult;
+import org.gradle.api.internal.tasks.TaskExecutionContext;
+import org.gradle.api.internal.tasks.TaskExecutionOutcome;
+import org.gradle.api.internal.tasks.TaskStateInternal;
+import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.caching.internal.services.BuildCacheKeyHistory;
+
+/**
+ * A {@link TaskExecuter} which records the build cache keys of tasks loaded from the remote build cache, so the next build can prefetch their entries.
+ *
+ * Tasks which were executed or loaded from the local cache are not recorded, since prefetching their entries would only cost a round trip to the remote cache.
+ */
+public class RecordBuildCacheKeyTaskExecuter implements TaskExecuter {
+    private final BuildCacheController buildCacheController;
+    private final BuildCacheKeyHistory keyHistory;
+    private final TaskExecuter executer;
+
+    public RecordBuildCacheKeyTaskExecuter(BuildCacheController buildCacheController, BuildCacheKeyHistory keyHistory, TaskExecuter executer) {
+        this.buildCacheController = buildCacheController;
+        this.keyHistory = keyHistory;
+        this.executer = executer;
+    }
+
+    @Override
+    public TaskExecuterResult execute(TaskInternal task, TaskStateInternal state, TaskExecutionContext context) {
+        TaskExecuterResult result = executer.execute(task, state, context);
+        if (state.getOutcome() == TaskExecutionOutcome.FROM_CACHE) {
+            result.getCachingState().whenEnabled()
+                .filter(enabled -> buildCacheController.isLoadedFromRemote(enabled.getKey()))
+                .ifPresent(enabled -> keyHistory.recordKey(task.getIdentityPath().getPath(), enabled.getKey()));
+        }
+        return result;
+    }
+}
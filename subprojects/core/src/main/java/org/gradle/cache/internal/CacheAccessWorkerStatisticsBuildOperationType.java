@@ -0,0 +1,33 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Reports how the write-behind queues of persistent caches were used during a build.
+ *
+ * The result covers all caches of the process, from the start of the build until it completes.
+ */
+public final class CacheAccessWorkerStatisticsBuildOperationType implements BuildOperationType<CacheAccessWorkerStatisticsBuildOperationType.Details, CacheAccessWorkerStatistics> {
+
+    public interface Details {
+    }
+
+    private CacheAccessWorkerStatisticsBuildOperationType() {
+    }
+}
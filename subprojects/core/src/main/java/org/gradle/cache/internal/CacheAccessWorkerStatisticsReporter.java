@@ -0,0 +1,65 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.gradle.initialization.RootBuildLifecycleListener;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.internal.service.scopes.ServiceScope;
+
+/**
+ * Emits a {@link CacheAccessWorkerStatisticsBuildOperationType} build operation at the end of each build.
+ */
+@ServiceScope(Scopes.BuildSession.class)
+public class CacheAccessWorkerStatisticsReporter implements RootBuildLifecycleListener {
+    private static final CacheAccessWorkerStatisticsBuildOperationType.Details DETAILS = new CacheAccessWorkerStatisticsBuildOperationType.Details() {
+    };
+
+    private final CacheAccessWorkerStatistics.Collector statisticsCollector;
+    private final BuildOperationExecutor buildOperationExecutor;
+
+    public CacheAccessWorkerStatisticsReporter(CacheAccessWorkerStatistics.Collector statisticsCollector, BuildOperationExecutor buildOperationExecutor) {
+        this.statisticsCollector = statisticsCollector;
+        this.buildOperationExecutor = buildOperationExecutor;
+    }
+
+    @Override
+    public void afterStart() {
+        // Discard what has been recorded between builds
+        statisticsCollector.collect();
+    }
+
+    @Override
+    public void beforeComplete() {
+        CacheAccessWorkerStatistics statistics = statisticsCollector.collect();
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                context.setResult(statistics);
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Persistent cache write-behind statistics")
+                    .details(DETAILS);
+            }
+        });
+    }
+}
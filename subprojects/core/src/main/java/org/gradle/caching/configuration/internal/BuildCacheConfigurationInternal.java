@@ -19,6 +19,7 @@
 import org.gradle.caching.BuildCacheServiceFactory;
 import org.gradle.caching.configuration.BuildCache;
 import org.gradle.caching.configuration.BuildCacheConfiguration;
+import org.gradle.caching.internal.packaging.BuildCacheEntryCompression;
 import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.internal.service.scopes.Scopes;
 import org.gradle.internal.service.scopes.ServiceScope;
@@ -41,4 +42,11 @@ public interface BuildCacheConfigurationInternal extends BuildCacheConfiguration
      * Replaces remote build cache.
      */
     void setRemote(@Nullable BuildCache remote);
+
+    /**
+     * The compression used for build cache entries stored by this build.
+     *
+     * Entries are always loaded with the compression they were stored with.
+     */
+    BuildCacheEntryCompression getEntryCompression();
 }
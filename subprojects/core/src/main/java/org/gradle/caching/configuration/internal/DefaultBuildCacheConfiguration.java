@@ -22,6 +22,7 @@
 import org.gradle.api.GradleException;
 import org.gradle.caching.BuildCacheServiceFactory;
 import org.gradle.caching.configuration.BuildCache;
+import org.gradle.caching.internal.packaging.BuildCacheEntryCompression;
 import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.internal.Actions;
 import org.gradle.internal.Cast;
@@ -35,11 +36,13 @@
 
 public class DefaultBuildCacheConfiguration implements BuildCacheConfigurationInternal {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultBuildCacheConfiguration.class);
+    private static final String COMPRESSION_PROPERTY = "org.gradle.caching.compression";
 
     private final Instantiator instantiator;
 
     private DirectoryBuildCache local;
     private BuildCache remote;
+    private BuildCacheEntryCompression compression;
 
     private final Set<BuildCacheServiceRegistration> registrations;
 
@@ -47,6 +50,12 @@ public DefaultBuildCacheConfiguration(Instantiator instantiator, List<BuildCache
         this.instantiator = instantiator;
         this.registrations = Sets.newHashSet(allBuiltInBuildCacheServices);
         this.local = createLocalCacheConfiguration(instantiator, registrations);
+        this.compression = defaultCompression();
+    }
+
+    private static BuildCacheEntryCompression defaultCompression() {
+        String spec = System.getProperty(COMPRESSION_PROPERTY);
+        return spec == null ? BuildCacheEntryCompression.DEFAULT : BuildCacheEntryCompression.parse(spec);
     }
 
     @Override
@@ -84,6 +93,22 @@ public void setRemote(@Nullable BuildCache remote) {
         this.remote = remote;
     }
 
+    @Override
+    public BuildCacheEntryCompression getEntryCompression() {
+        return compression;
+    }
+
+    @Override
+    public String getCompression() {
+        return compression.toString();
+    }
+
+    @Override
+    public void setCompression(String compression) {
+        Preconditions.checkNotNull(compression, "compression cannot be null.");
+        this.compression = BuildCacheEntryCompression.parse(compression);
+    }
+
     @Override
     public <T extends BuildCache> T remote(Class<T> type) {
         return remote(type, Actions.doNothing());
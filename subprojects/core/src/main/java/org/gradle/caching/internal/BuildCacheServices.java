@@ -21,6 +21,7 @@
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.file.temp.TemporaryFileProvider;
 import org.gradle.api.logging.configuration.ShowStacktrace;
+import org.gradle.cache.scopes.BuildScopedCache;
 import org.gradle.caching.configuration.internal.BuildCacheConfigurationInternal;
 import org.gradle.caching.configuration.internal.BuildCacheServiceRegistration;
 import org.gradle.caching.configuration.internal.DefaultBuildCacheConfiguration;
@@ -29,16 +30,23 @@
 import org.gradle.caching.internal.controller.RootBuildCacheControllerRef;
 import org.gradle.caching.internal.origin.OriginMetadataFactory;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.CompressingBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.DefaultTarPackerFileSystemSupport;
 import org.gradle.caching.internal.packaging.impl.FilePermissionAccess;
-import org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.ParallelUnpackMemoryBudget;
 import org.gradle.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarPackerFileSystemSupport;
 import org.gradle.caching.internal.services.BuildCacheControllerFactory;
+import org.gradle.caching.internal.services.BuildCacheKeyHistory;
+import org.gradle.caching.internal.services.ParallelTarUnpackExecutor;
+import org.gradle.caching.internal.services.PrefetchingReadyNodeListener;
 import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.caching.local.internal.DirectoryBuildCacheFileStoreFactory;
 import org.gradle.caching.local.internal.DirectoryBuildCacheServiceFactory;
+import org.gradle.concurrent.ParallelismConfiguration;
+import org.gradle.execution.plan.ReadyNodeListener;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.FileException;
 import org.gradle.internal.hash.ChecksumService;
@@ -67,6 +75,15 @@
  */
 public final class BuildCacheServices extends AbstractPluginServiceRegistry {
 
+    @Override
+    public void registerGlobalServices(ServiceRegistration registration) {
+        registration.addProvider(new Object() {
+            ParallelUnpackMemoryBudget createParallelUnpackMemoryBudget() {
+                return new ParallelUnpackMemoryBudget(ParallelUnpackMemoryBudget.DEFAULT_MAX_PENDING_BYTES);
+            }
+        });
+    }
+
     @Override
     public void registerBuildTreeServices(ServiceRegistration registration) {
         registration.addProvider(new Object() {
@@ -100,6 +117,14 @@ BuildCacheServiceRegistration createDirectoryBuildCacheServiceRegistration() {
                 return new DefaultBuildCacheServiceRegistration(DirectoryBuildCache.class, DirectoryBuildCacheServiceFactory.class);
             }
 
+            BuildCacheKeyHistory createBuildCacheKeyHistory(BuildScopedCache cacheRepository) {
+                return new BuildCacheKeyHistory(cacheRepository);
+            }
+
+            ReadyNodeListener createPrefetchingReadyNodeListener(GradleInternal gradle, BuildCacheKeyHistory keyHistory) {
+                return new PrefetchingReadyNodeListener(Boolean.getBoolean(BuildCacheControllerFactory.REMOTE_PREFETCH_PROPERTY), gradle, keyHistory);
+            }
+
         });
     }
 
@@ -108,19 +133,31 @@ public void registerGradleServices(ServiceRegistration registration) {
         // Not build scoped because of dependency on GradleInternal for build path
         registration.addProvider(new Object() {
             private static final String GRADLE_VERSION_KEY = "gradleVersion";
+            private static final String PARALLEL_UNPACK_PROPERTY = "org.gradle.caching.unpack.parallel";
 
             TarPackerFileSystemSupport createPackerFileSystemSupport(Deleter deleter) {
                 return new DefaultTarPackerFileSystemSupport(deleter);
             }
 
+            ParallelTarUnpackExecutor createParallelTarUnpackExecutor(ExecutorFactory executorFactory, ParallelismConfiguration parallelismConfiguration) {
+                return new ParallelTarUnpackExecutor(executorFactory, parallelismConfiguration.getMaxWorkerCount());
+            }
+
             BuildCacheEntryPacker createResultPacker(
                 TarPackerFileSystemSupport fileSystemSupport,
                 FileSystem fileSystem,
                 StreamHasher fileHasher,
-                StringInterner stringInterner
+                StringInterner stringInterner,
+                BuildCacheConfigurationInternal buildCacheConfiguration,
+                ParallelismConfiguration parallelismConfiguration,
+                ParallelTarUnpackExecutor unpackExecutor,
+                ParallelUnpackMemoryBudget unpackMemoryBudget
             ) {
-                return new GZipBuildCacheEntryPacker(
-                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner));
+                boolean parallelUnpack = parallelismConfiguration.getMaxWorkerCount() > 1
+                    && Boolean.parseBoolean(System.getProperty(PARALLEL_UNPACK_PROPERTY, "true"));
+                return new CompressingBuildCacheEntryPacker(
+                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner, parallelUnpack ? unpackExecutor : null, unpackMemoryBudget),
+                    buildCacheConfiguration::getEntryCompression);
             }
 
             OriginMetadataFactory createOriginMetadataFactory(
@@ -145,13 +182,14 @@ BuildCacheController createBuildCacheController(
                 GradleInternal gradle,
                 RootBuildCacheControllerRef rootControllerRef,
                 TemporaryFileProvider temporaryFileProvider,
+                ExecutorFactory executorFactory,
                 FileSystemAccess fileSystemAccess,
                 BuildCacheEntryPacker packer,
                 OriginMetadataFactory originMetadataFactory,
                 StringInterner stringInterner
             ) {
                 if (isRoot(gradle) || isGradleBuildTaskRoot(rootControllerRef)) {
-                    return doCreateBuildCacheController(serviceRegistry, buildCacheConfiguration, buildOperationExecutor, instantiatorFactory, gradle, temporaryFileProvider, fileSystemAccess, packer, originMetadataFactory, stringInterner);
+                    return doCreateBuildCacheController(serviceRegistry, buildCacheConfiguration, buildOperationExecutor, instantiatorFactory, gradle, temporaryFileProvider, executorFactory, fileSystemAccess, packer, originMetadataFactory, stringInterner);
                 } else {
                     // must be an included build or buildSrc
                     return rootControllerRef.getForNonRootBuild();
@@ -173,7 +211,7 @@ private boolean isRoot(GradleInternal gradle) {
 
             private BuildCacheController doCreateBuildCacheController(
                 ServiceRegistry serviceRegistry, BuildCacheConfigurationInternal buildCacheConfiguration, BuildOperationExecutor buildOperationExecutor, InstantiatorFactory instantiatorFactory,
-                GradleInternal gradle, TemporaryFileProvider temporaryFileProvider, FileSystemAccess fileSystemAccess, BuildCacheEntryPacker packer, OriginMetadataFactory originMetadataFactory,
+                GradleInternal gradle, TemporaryFileProvider temporaryFileProvider, ExecutorFactory executorFactory, FileSystemAccess fileSystemAccess, BuildCacheEntryPacker packer, OriginMetadataFactory originMetadataFactory,
                 StringInterner stringInterner
             ) {
                 StartParameter startParameter = gradle.getStartParameter();
@@ -193,6 +231,7 @@ private BuildCacheController doCreateBuildCacheController(
                     logStackTraces,
                     emitDebugLogging,
                     instantiatorFactory.inject(serviceRegistry),
+                    executorFactory,
                     fileSystemAccess,
                     packer,
                     originMetadataFactory,
@@ -36,6 +36,7 @@
 import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.caching.local.internal.DirectoryBuildCacheService;
 import org.gradle.internal.Cast;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -55,6 +56,9 @@
 public final class BuildCacheControllerFactory {
 
     public static final String REMOTE_CONTINUE_ON_ERROR_PROPERTY = "org.gradle.unsafe.build-cache.remote-continue-on-error";
+    public static final String REMOTE_PREFETCH_PROPERTY = "org.gradle.caching.remote.prefetch";
+    public static final String REMOTE_STORE_ASYNC_PROPERTY = "org.gradle.caching.remote.store.async";
+    public static final String REMOTE_STORE_MAX_BYTES_PROPERTY = "org.gradle.caching.remote.store.max-bytes";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BuildCacheControllerFactory.class);
 
@@ -76,6 +80,7 @@ public static BuildCacheController create(
         final boolean logStackTraces,
         final boolean emitDebugLogging,
         final Instantiator instantiator,
+        final ExecutorFactory executorFactory,
         final FileSystemAccess fileSystemAccess,
         final BuildCacheEntryPacker packer,
         final OriginMetadataFactory originMetadataFactory,
@@ -132,8 +137,13 @@ public BuildCacheController call(BuildOperationContext context) {
                         logStackTraces,
                         emitDebugLogging,
                         !Boolean.getBoolean(REMOTE_CONTINUE_ON_ERROR_PROPERTY),
+                        Boolean.getBoolean(REMOTE_PREFETCH_PROPERTY),
+                        Boolean.getBoolean(REMOTE_STORE_ASYNC_PROPERTY),
+                        Long.getLong(REMOTE_STORE_MAX_BYTES_PROPERTY, Long.MAX_VALUE),
+                        executorFactory,
                         fileSystemAccess,
                         packer,
+                        buildCacheConfiguration::getEntryCompression,
                         originMetadataFactory,
                         stringInterner
                     );
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.services;
+
+import org.gradle.cache.FileLockManager;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.cache.scopes.BuildScopedCache;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.serialize.HashCodeSerializer;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+import static org.gradle.internal.serialize.BaseSerializerFactory.STRING_SERIALIZER;
+
+/**
+ * Stores the build cache keys of the tasks which were loaded from the remote build cache, in the build scoped cache next to the execution history.
+ *
+ * <p>A later build uses the keys to prefetch the entries of the tasks before they calculate their cache keys again.
+ * Each stored key is handed out at most once, so a task which is up-to-date in the next build does not cause a prefetch in every following build.
+ * Keys are collected in memory and written when the build finishes.</p>
+ */
+public class BuildCacheKeyHistory implements Stoppable {
+
+    private final BuildScopedCache cacheRepository;
+    private final Map<String, HashCode> recordedKeys = new ConcurrentHashMap<>();
+    private PersistentCache cache;
+    private PersistentIndexedCache<String, HashCode> store;
+
+    public BuildCacheKeyHistory(BuildScopedCache cacheRepository) {
+        this.cacheRepository = cacheRepository;
+    }
+
+    /**
+     * Returns and forgets the keys stored for the given task identity paths. Tasks without a stored key are not included.
+     */
+    public Map<String, BuildCacheKey> takeKeys(Collection<String> taskIdentityPaths) {
+        PersistentIndexedCache<String, HashCode> store = getStore();
+        return cache.useCache(() -> {
+            Map<String, BuildCacheKey> keys = new HashMap<>();
+            for (String taskIdentityPath : taskIdentityPaths) {
+                HashCode key = store.getIfPresent(taskIdentityPath);
+                if (key != null) {
+                    keys.put(taskIdentityPath, new PreviousBuildCacheKey(key));
+                    store.remove(taskIdentityPath);
+                }
+            }
+            return keys;
+        });
+    }
+
+    /**
+     * Records the key with which a task was loaded from the remote build cache, to be used by later builds.
+     */
+    public void recordKey(String taskIdentityPath, BuildCacheKey key) {
+        recordedKeys.put(taskIdentityPath, HashCode.fromBytes(key.toByteArray()));
+    }
+
+    private synchronized PersistentIndexedCache<String, HashCode> getStore() {
+        if (store == null) {
+            cache = cacheRepository
+                .cache("buildCacheKeys")
+                .withDisplayName("build cache keys cache")
+                .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
+                .open();
+            store = cache.createCache(PersistentIndexedCacheParameters.of("buildCacheKeys", STRING_SERIALIZER, new HashCodeSerializer()));
+        }
+        return store;
+    }
+
+    @Override
+    public void stop() {
+        if (!recordedKeys.isEmpty()) {
+            PersistentIndexedCache<String, HashCode> store = getStore();
+            cache.useCache(() -> recordedKeys.forEach(store::put));
+            recordedKeys.clear();
+        }
+        synchronized (this) {
+            if (cache != null) {
+                cache.close();
+            }
+        }
+    }
+
+    private static class PreviousBuildCacheKey implements BuildCacheKey {
+        private final HashCode hashCode;
+
+        PreviousBuildCacheKey(HashCode hashCode) {
+            this.hashCode = hashCode;
+        }
+
+        @Override
+        public String getHashCode() {
+            return hashCode.toString();
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return hashCode.toByteArray();
+        }
+
+        @Override
+        public String getDisplayName() {
+            return getHashCode();
+        }
+
+        @Override
+        public String toString() {
+            return getHashCode();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.services;
+
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.execution.plan.LocalTaskNode;
+import org.gradle.execution.plan.Node;
+import org.gradle.execution.plan.ReadyNodeListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prefetches the remote build cache entries of tasks as soon as they become ready, using the cache keys recorded for them by the previous build.
+ *
+ * <p>A task only knows its cache key once it has snapshotted its inputs, which happens just before it is loaded from the cache.
+ * The key recorded by the previous build is a prediction which is available as soon as the scheduler knows the task can run,
+ * so the download overlaps with the tasks still running. When the prediction is wrong or the task turns out to be up-to-date,
+ * the prefetched entry is discarded once the task has finished.</p>
+ */
+public class PrefetchingReadyNodeListener implements ReadyNodeListener {
+    private final boolean enabled;
+    private final GradleInternal gradle;
+    private final BuildCacheKeyHistory keyHistory;
+    private final Map<Node, BuildCacheKey> predictedKeys = new ConcurrentHashMap<>();
+    private volatile BuildCacheController buildCacheController;
+
+    public PrefetchingReadyNodeListener(boolean enabled, GradleInternal gradle, BuildCacheKeyHistory keyHistory) {
+        this.enabled = enabled;
+        this.gradle = gradle;
+        this.keyHistory = keyHistory;
+    }
+
+    @Override
+    public void planDetermined(Collection<Node> nodes) {
+        if (!enabled) {
+            return;
+        }
+        List<String> taskIdentityPaths = new ArrayList<>();
+        for (Node node : nodes) {
+            if (node instanceof LocalTaskNode) {
+                taskIdentityPaths.add(identityPathOf(node));
+            }
+        }
+        Map<String, BuildCacheKey> keys = keyHistory.takeKeys(taskIdentityPaths);
+        if (keys.isEmpty()) {
+            return;
+        }
+        for (Node node : nodes) {
+            if (node instanceof LocalTaskNode) {
+                BuildCacheKey key = keys.get(identityPathOf(node));
+                if (key != null) {
+                    predictedKeys.put(node, key);
+                }
+            }
+        }
+        // The build cache is configured by now, so the controller can be looked up
+        buildCacheController = gradle.getServices().get(BuildCacheController.class);
+    }
+
+    @Override
+    public void nodeReady(Node node) {
+        BuildCacheKey key = predictedKeys.get(node);
+        if (key != null) {
+            buildCacheController.prefetch(key);
+        }
+    }
+
+    @Override
+    public void nodeFinished(Node node) {
+        BuildCacheKey key = predictedKeys.remove(node);
+        if (key != null) {
+            // A matching key has been taken by the task already, anything else was not needed
+            buildCacheController.discardPrefetched(key);
+        }
+    }
+
+    private static String identityPathOf(Node node) {
+        return ((LocalTaskNode) node).getTask().getIdentityPath().getPath();
+    }
+}
@@ -31,11 +31,14 @@
 import org.gradle.api.internal.tasks.execution.EventFiringTaskExecuter;
 import org.gradle.api.internal.tasks.execution.ExecuteActionsTaskExecuter;
 import org.gradle.api.internal.tasks.execution.FinalizePropertiesTaskExecuter;
+import org.gradle.api.internal.tasks.execution.RecordBuildCacheKeyTaskExecuter;
 import org.gradle.api.internal.tasks.execution.ResolveTaskExecutionModeExecuter;
 import org.gradle.api.internal.tasks.execution.SkipOnlyIfTaskExecuter;
 import org.gradle.api.internal.tasks.execution.SkipTaskWithNoActionsExecuter;
 import org.gradle.api.internal.tasks.execution.TaskCacheabilityResolver;
 import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.caching.internal.services.BuildCacheControllerFactory;
+import org.gradle.caching.internal.services.BuildCacheKeyHistory;
 import org.gradle.execution.plan.ExecutionNodeAccessHierarchies;
 import org.gradle.execution.taskgraph.TaskExecutionGraphInternal;
 import org.gradle.execution.taskgraph.TaskListenerInternal;
@@ -111,7 +114,8 @@ TaskExecuter createTaskExecuter(
         TaskExecutionModeResolver repository,
         TaskListenerInternal taskListenerInternal,
         ExecutionEngine executionEngine,
-        InputFingerprinter inputFingerprinter
+        InputFingerprinter inputFingerprinter,
+        BuildCacheKeyHistory buildCacheKeyHistory
     ) {
         TaskExecuter executer = new ExecuteActionsTaskExecuter(
             buildCacheController.isEnabled()
@@ -133,6 +137,9 @@ TaskExecuter createTaskExecuter(
             fileCollectionFactory,
             fileOperations
         );
+        if (buildCacheController.isEnabled() && Boolean.getBoolean(BuildCacheControllerFactory.REMOTE_PREFETCH_PROPERTY)) {
+            executer = new RecordBuildCacheKeyTaskExecuter(buildCacheController, buildCacheKeyHistory, executer);
+        }
         executer = new CleanupStaleOutputsExecuter(
             buildOperationExecutor,
             cleanupRegistry,
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.internal.tasks.TaskExecutionOutcome;
+import org.gradle.cache.FileLockManager;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.cache.scopes.BuildScopedCache;
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+import static org.gradle.internal.serialize.BaseSerializerFactory.LONG_SERIALIZER;
+import static org.gradle.internal.serialize.BaseSerializerFactory.STRING_SERIALIZER;
+
+/**
+ * Stores the durations of the tasks executed by the build in the build scoped cache, next to the execution history.
+ *
+ * <p>The stored duration of a task is the average of its previous stored duration and the latest measured one, so that a single
+ * unusually fast or slow execution does not dominate. Durations are collected in memory and written when the build finishes.</p>
+ */
+public class DefaultExecutionDurationHistory implements ExecutionDurationHistory, Stoppable {
+
+    private final BuildScopedCache cacheRepository;
+    private final Map<String, Long> recordedDurations = new ConcurrentHashMap<>();
+    private PersistentCache cache;
+    private PersistentIndexedCache<String, Long> store;
+
+    public DefaultExecutionDurationHistory(BuildScopedCache cacheRepository) {
+        this.cacheRepository = cacheRepository;
+    }
+
+    @Override
+    public Map<Node, Long> getDurations(Collection<Node> nodes) {
+        PersistentIndexedCache<String, Long> store = getStore();
+        return cache.useCache(() -> {
+            Map<Node, Long> durations = new HashMap<>();
+            for (Node node : nodes) {
+                String key = keyFor(node);
+                if (key != null) {
+                    Long duration = store.getIfPresent(key);
+                    if (duration != null) {
+                        durations.put(node, duration);
+                    }
+                }
+            }
+            return durations;
+        });
+    }
+
+    @Override
+    public void recordDuration(Node node, long durationMillis) {
+        String key = keyFor(node);
+        if (key != null && didExecute((LocalTaskNode) node)) {
+            recordedDurations.put(key, durationMillis);
+        }
+    }
+
+    /**
+     * Only the durations of tasks which ran their actions are representative, the durations of up-to-date tasks or tasks loaded from the build cache are not.
+     */
+    private static boolean didExecute(LocalTaskNode node) {
+        return node.getTask().getState().getOutcome() == TaskExecutionOutcome.EXECUTED;
+    }
+
+    @Nullable
+    private static String keyFor(Node node) {
+        if (node instanceof LocalTaskNode) {
+            return ((LocalTaskNode) node).getTask().getIdentityPath().getPath();
+        }
+        return null;
+    }
+
+    private synchronized PersistentIndexedCache<String, Long> getStore() {
+        if (store == null) {
+            cache = cacheRepository
+                .cache("executionDurations")
+                .withDisplayName("execution durations cache")
+                .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
+                .open();
+            store = cache.createCache(PersistentIndexedCacheParameters.of("executionDurations", STRING_SERIALIZER, LONG_SERIALIZER));
+        }
+        return store;
+    }
+
+    @Override
+    public void stop() {
+        if (!recordedDurations.isEmpty()) {
+            PersistentIndexedCache<String, Long> store = getStore();
+            cache.useCache(() -> recordedDurations.forEach((key, duration) -> {
+                Long previousDuration = store.getIfPresent(key);
+                store.put(key, previousDuration == null ? duration : (previousDuration + duration) / 2);
+            }));
+            recordedDurations.clear();
+        }
+        synchronized (this) {
+            if (cache != null) {
+                cache.close();
+            }
+        }
+    }
+}
@@ -22,6 +22,7 @@
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import org.gradle.api.BuildCancelledException;
 import org.gradle.api.CircularReferenceException;
@@ -44,6 +45,8 @@
 import org.gradle.internal.reflect.validation.TypeValidationContext;
 import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.service.ServiceRegistry;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,8 +55,10 @@
 import java.util.AbstractCollection;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -77,7 +82,22 @@ public class DefaultExecutionPlan implements ExecutionPlan {
 
     private final Set<Node> entryNodes = new LinkedHashSet<>();
     private final NodeMapping nodeMapping = new NodeMapping();
-    private final List<Node> executionQueue = new LinkedList<>();
+    private final List<Node> executionQueue = new ArrayList<>();
+    private final Map<Node, Integer> executionQueuePositions = new HashMap<>();
+    /**
+     * The positions in the execution queue of the nodes which have not been selected yet.
+     */
+    private final BitSet queuedNodes = new BitSet();
+    /**
+     * The position of the first node in the execution queue which has not been selected yet, so that scanning the queue can skip the selected prefix.
+     */
+    private int firstQueuedNode;
+    /**
+     * The positions in the execution queue of the nodes which may be ready to run, i.e. whose dependencies were complete when last checked.
+     * Nodes are added when their dependencies complete and are dropped lazily by {@link #selectNext()} when they turn out to be no longer ready,
+     * so that selecting the next node does not need to walk the nodes that are still waiting for their dependencies.
+     */
+    private final BitSet readyNodes = new BitSet();
     private final FailureCollector failureCollector = new FailureCollector();
     private final String displayName;
     private final TaskNodeFactory taskNodeFactory;
@@ -85,6 +105,16 @@ public class DefaultExecutionPlan implements ExecutionPlan {
     private final NodeValidator nodeValidator;
     private final ExecutionNodeAccessHierarchy outputHierarchy;
     private final ExecutionNodeAccessHierarchy destroyableHierarchy;
+    /**
+     * When present, the execution queue is ordered by the longest remaining path of each node, weighted with the durations of previous builds.
+     */
+    @Nullable
+    private final ExecutionDurationHistory durationHistory;
+    private final Map<Node, Timer> executionTimers = new HashMap<>();
+    @Nullable
+    private final ParallelTaskPreparer taskPreparer;
+    @Nullable
+    private final ReadyNodeListener readyNodeListener;
     private Spec<? super Task> filter = Specs.satisfyAll();
     private int order = 0;
 
@@ -108,6 +138,20 @@ public DefaultExecutionPlan(
         NodeValidator nodeValidator,
         ExecutionNodeAccessHierarchy outputHierarchy,
         ExecutionNodeAccessHierarchy destroyableHierarchy
+    ) {
+        this(displayName, taskNodeFactory, dependencyResolver, nodeValidator, outputHierarchy, destroyableHierarchy, null, null, null);
+    }
+
+    public DefaultExecutionPlan(
+        String displayName,
+        TaskNodeFactory taskNodeFactory,
+        TaskDependencyResolver dependencyResolver,
+        NodeValidator nodeValidator,
+        ExecutionNodeAccessHierarchy outputHierarchy,
+        ExecutionNodeAccessHierarchy destroyableHierarchy,
+        @Nullable ExecutionDurationHistory durationHistory,
+        @Nullable ParallelTaskPreparer taskPreparer,
+        @Nullable ReadyNodeListener readyNodeListener
     ) {
         this.displayName = displayName;
         this.taskNodeFactory = taskNodeFactory;
@@ -115,6 +159,9 @@ public DefaultExecutionPlan(
         this.nodeValidator = nodeValidator;
         this.outputHierarchy = outputHierarchy;
         this.destroyableHierarchy = destroyableHierarchy;
+        this.durationHistory = durationHistory;
+        this.taskPreparer = taskPreparer;
+        this.readyNodeListener = readyNodeListener;
     }
 
     @Override
@@ -147,6 +194,9 @@ public void addEntryTasks(Collection<? extends Task> tasks) {
 
     @Override
     public void addEntryTasks(Collection<? extends Task> tasks, int ordinal) {
+        if (taskPreparer != null) {
+            taskPreparer.prepare(tasks, task -> !filter.isSatisfiedBy(task) || isWalked(task));
+        }
         final Deque<Node> queue = new ArrayDeque<>();
 
         for (Task task : sorted(tasks)) {
@@ -163,6 +213,11 @@ public void addEntryTasks(Collection<? extends Task> tasks, int ordinal) {
         doAddNodes(queue);
     }
 
+    private boolean isWalked(Task task) {
+        TaskNode node = taskNodeFactory.getNode(task);
+        return node != null && node.getDependenciesProcessed();
+    }
+
     private List<Task> sorted(Collection<? extends Task> tasks) {
         List<Task> sortedTasks = new ArrayList<>(tasks);
         Collections.sort(sortedTasks);
@@ -368,16 +423,65 @@ public NodeInVisitingSegment apply(Node node) {
         ordinalNodeAccess.createInterNodeRelationships();
         nodeMapping.addAll(ordinalNodeAccess.getAllNodes());
         executionQueue.clear();
+        executionQueuePositions.clear();
+        queuedNodes.clear();
+        readyNodes.clear();
         dependencyResolver.clear();
         nodeMapping.removeIf(Node::requiresMonitoring);
         executionQueue.addAll(nodeMapping);
+        if (durationHistory != null) {
+            prioritizeCriticalPath(durationHistory);
+        }
+        queuedNodes.set(0, executionQueue.size());
+        firstQueuedNode = 0;
+        if (readyNodeListener != null) {
+            readyNodeListener.planDetermined(executionQueue);
+        }
 
-        for (Node node : executionQueue) {
+        for (int position = 0; position < executionQueue.size(); position++) {
+            Node node = executionQueue.get(position);
+            executionQueuePositions.put(node, position);
             maybeNodesReady |= node.updateAllDependenciesComplete() && node.isReady();
+            maybeAddToReadyQueue(node);
         }
         this.dependenciesWhichRequireMonitoring.addAll(dependenciesWhichRequireMonitoring);
     }
 
+    /**
+     * Orders the execution queue by the longest remaining path from each node to the end of the plan, weighted with the durations recorded
+     * by previous builds, so that long chains of work start first. Nodes without a recorded duration have no weight and nodes with the same
+     * remaining path keep the order of the dependency walk, including the order of soft dependencies.
+     */
+    private void prioritizeCriticalPath(ExecutionDurationHistory durationHistory) {
+        Map<Node, Long> durations = durationHistory.getDurations(executionQueue);
+        if (durations.isEmpty()) {
+            return;
+        }
+        // Should run after relationships are ordering constraints for the sort, like dependencies. They only point from later to earlier nodes
+        // in the queue, the ones which would have introduced a cycle have been removed.
+        SetMultimap<Node, Node> shouldPredecessors = HashMultimap.create();
+        for (Node node : executionQueue) {
+            if (node instanceof TaskNode) {
+                for (Node shouldSuccessor : ((TaskNode) node).getShouldSuccessors()) {
+                    shouldPredecessors.put(shouldSuccessor, node);
+                }
+            }
+        }
+        Map<Node, Long> remainingPathDurations = new HashMap<>(executionQueue.size());
+        // The dependency walk adds the nodes depending on a node after the node itself, so walking backwards sees them first
+        for (int position = executionQueue.size() - 1; position >= 0; position--) {
+            Node node = executionQueue.get(position);
+            long longestPredecessorPath = 0;
+            for (Node predecessor : Iterables.concat(node.getAllPredecessors(), shouldPredecessors.get(node))) {
+                longestPredecessorPath = Math.max(longestPredecessorPath, remainingPathDurations.getOrDefault(predecessor, 0L));
+            }
+            remainingPathDurations.put(node, durations.getOrDefault(node, 0L) + longestPredecessorPath);
+        }
+        // A node's remaining path is at least as long as the one of every node that has to run after it, and the sort is stable,
+        // so nodes with equal remaining paths keep their order
+        executionQueue.sort(Comparator.comparingLong((Node node) -> remainingPathDurations.get(node)).reversed());
+    }
+
     private void createOrdinalRelationships(Node node) {
         if (node instanceof TaskNode && ((TaskNode) node).getOrdinal() != TaskNode.UNKNOWN_ORDINAL) {
             TaskNode taskNode = (TaskNode) node;
@@ -616,37 +720,46 @@ public Node selectNext() {
             return null;
         }
         List<ResourceLock> resources = new ArrayList<>();
-        Iterator<Node> iterator = executionQueue.iterator();
+        // Locks which could not be acquired during this selection, there is no point in trying them again for the next nodes
+        Set<ResourceLock> unavailableLocks = newIdentityHashSet();
         boolean foundReadyNode = false;
-        while (iterator.hasNext()) {
-            Node node = iterator.next();
-            if (node.isReady() && node.allDependenciesComplete()) {
-                foundReadyNode = true;
+        for (int position = readyNodes.nextSetBit(firstQueuedNode); position >= 0; position = readyNodes.nextSetBit(position + 1)) {
+            Node node = executionQueue.get(position);
+            if (!node.isReady() || !node.allDependenciesComplete()) {
+                // Skipped or waiting for dependencies again, the node is added back once it becomes ready
+                readyNodes.clear(position);
+                continue;
+            }
+            foundReadyNode = true;
 
-                if (!tryAcquireLocksForNode(node, resources)) {
-                    releaseLocks(resources);
-                    continue;
-                }
+            if (!tryAcquireLocksForNode(node, resources, unavailableLocks)) {
+                releaseLocks(resources);
+                continue;
+            }
 
-                MutationInfo mutations = getResolvedMutationInfo(node);
+            MutationInfo mutations = getResolvedMutationInfo(node);
 
-                if (conflictsWithOtherNodes(node, mutations)) {
-                    releaseLocks(resources);
-                    continue;
-                }
+            if (conflictsWithOtherNodes(node, mutations)) {
+                releaseLocks(resources);
+                continue;
+            }
 
-                if (node.allDependenciesSuccessful()) {
-                    node.startExecution(this::recordNodeExecutionStarted);
-                    if (mutations.hasValidationProblem) {
-                        invalidNodeRunning = true;
-                    }
-                } else {
-                    releaseLocks(resources);
-                    node.skipExecution(this::recordNodeCompleted);
+            if (node.allDependenciesSuccessful()) {
+                node.startExecution(this::recordNodeExecutionStarted);
+                if (mutations.hasValidationProblem) {
+                    invalidNodeRunning = true;
                 }
-                iterator.remove();
-                return node;
+            } else {
+                releaseLocks(resources);
+                node.skipExecution(this::recordNodeCompleted);
+            }
+            readyNodes.clear(position);
+            queuedNodes.clear(position);
+            if (position == firstQueuedNode) {
+                int nextQueuedNode = queuedNodes.nextSetBit(position);
+                firstQueuedNode = nextQueuedNode < 0 ? executionQueue.size() : nextQueuedNode;
             }
+            return node;
         }
         LOGGER.debug("No node could be selected, nodes ready: {}", foundReadyNode);
         maybeNodesReady = foundReadyNode;
@@ -659,12 +772,12 @@ private void releaseLocks(List<ResourceLock> resources) {
         }
     }
 
-    private boolean tryAcquireLocksForNode(Node node, List<ResourceLock> resources) {
+    private boolean tryAcquireLocksForNode(Node node, List<ResourceLock> resources, Set<ResourceLock> unavailableLocks) {
         resources.clear();
-        if (!tryLockProjectFor(node, resources)) {
+        if (!tryLockProjectFor(node, resources, unavailableLocks)) {
             LOGGER.debug("Cannot acquire project lock for node {}", node);
             return false;
-        } else if (!tryLockSharedResourceFor(node, resources)) {
+        } else if (!tryLockSharedResourceFor(node, resources, unavailableLocks)) {
             LOGGER.debug("Cannot acquire shared resource lock for node {}", node);
             return false;
         }
@@ -684,22 +797,42 @@ private boolean conflictsWithOtherNodes(Node node, MutationInfo mutations) {
 
     private void updateAllDependenciesCompleteForPredecessors(Node node) {
         for (Node predecessor : node.getAllPredecessors()) {
-            maybeNodesReady |= predecessor.updateAllDependenciesComplete() && predecessor.isReady();
+            if (predecessor.updateAllDependenciesComplete() && predecessor.isReady()) {
+                maybeNodesReady = true;
+                maybeAddToReadyQueue(predecessor);
+            }
         }
     }
 
-    private boolean tryLockProjectFor(Node node, List<ResourceLock> resources) {
-        ResourceLock toLock = node.getProjectToLock();
-        if (toLock == null) {
-            return true;
-        } else if (toLock.tryLock()) {
-            resources.add(toLock);
+    private void maybeAddToReadyQueue(Node node) {
+        if (node.isReady() && node.allDependenciesComplete()) {
+            Integer position = executionQueuePositions.get(node);
+            if (position != null && queuedNodes.get(position) && !readyNodes.get(position)) {
+                readyNodes.set(position);
+                if (readyNodeListener != null) {
+                    readyNodeListener.nodeReady(node);
+                }
+            }
+        }
+    }
+
+    private static boolean tryLock(ResourceLock lock, List<ResourceLock> resources, Set<ResourceLock> unavailableLocks) {
+        if (unavailableLocks.contains(lock)) {
+            return false;
+        } else if (lock.tryLock()) {
+            resources.add(lock);
             return true;
         } else {
+            unavailableLocks.add(lock);
             return false;
         }
     }
 
+    private boolean tryLockProjectFor(Node node, List<ResourceLock> resources, Set<ResourceLock> unavailableLocks) {
+        ResourceLock toLock = node.getProjectToLock();
+        return toLock == null || tryLock(toLock, resources, unavailableLocks);
+    }
+
     private void unlockProjectFor(Node node) {
         ResourceLock toUnlock = node.getProjectToLock();
         if (toUnlock != null) {
@@ -707,12 +840,11 @@ private void unlockProjectFor(Node node) {
         }
     }
 
-    private boolean tryLockSharedResourceFor(Node node, List<ResourceLock> resources) {
+    private boolean tryLockSharedResourceFor(Node node, List<ResourceLock> resources, Set<ResourceLock> unavailableLocks) {
         for (ResourceLock resource : node.getResourcesToLock()) {
-            if (!resource.tryLock()) {
+            if (!tryLock(resource, resources, unavailableLocks)) {
                 return false;
             }
-            resources.add(resource);
         }
         return true;
     }
@@ -817,6 +949,9 @@ private boolean doesConsumerDependOnDestroyer(Node consumer, Node destroyer) {
 
     private void recordNodeExecutionStarted(Node node) {
         runningNodes.add(node);
+        if (durationHistory != null) {
+            executionTimers.put(node, Time.startTimer());
+        }
     }
 
     private void recordNodeCompleted(Node node) {
@@ -850,6 +985,13 @@ public void finishedExecuting(Node node) {
                 }
 
                 runningNodes.remove(node);
+                if (readyNodeListener != null) {
+                    readyNodeListener.nodeFinished(node);
+                }
+                Timer executionTimer = executionTimers.remove(node);
+                if (executionTimer != null && !node.isFailed()) {
+                    durationHistory.recordDuration(node, executionTimer.getElapsedMillis());
+                }
                 node.finishExecution(this::recordNodeCompleted);
             } else {
                 LOGGER.debug("Already completed node {} reported as finished executing", node);
@@ -861,7 +1003,7 @@ public void finishedExecuting(Node node) {
         }
     }
 
-    private static void enforceFinalizers(Node node) {
+    private void enforceFinalizers(Node node) {
         for (Node finalizerNode : node.getFinalizers()) {
             if (finalizerNode.isRequired() || finalizerNode.isMustNotRun()) {
                 enforceWithDependencies(finalizerNode);
@@ -869,7 +1011,7 @@ private static void enforceFinalizers(Node node) {
         }
     }
 
-    private static void enforceWithDependencies(Node node) {
+    private void enforceWithDependencies(Node node) {
         Set<Node> enforcedNodes = new HashSet<>();
 
         Deque<Node> candidates = new ArrayDeque<>();
@@ -884,9 +1026,11 @@ private static void enforceWithDependencies(Node node) {
 
                 if (candidate.isMustNotRun() || candidate.isRequired()) {
                     candidate.enforceRun();
+                    maybeAddToReadyQueue(candidate);
                     // Completed changed from true to false - inform all nodes depending on this one.
                     for (Node predecessor : candidate.getAllPredecessors()) {
                         predecessor.forceAllDependenciesCompleteUpdate();
+                        maybeAddToReadyQueue(predecessor);
                     }
                 }
             }
@@ -970,8 +1114,8 @@ public boolean allNodesComplete() {
 
     @Override
     public boolean hasNodesRemaining() {
-        for (Node node : executionQueue) {
-            if (!node.isComplete()) {
+        for (int position = queuedNodes.nextSetBit(firstQueuedNode); position >= 0; position = queuedNodes.nextSetBit(position + 1)) {
+            if (!executionQueue.get(position).isComplete()) {
                 return true;
             }
         }
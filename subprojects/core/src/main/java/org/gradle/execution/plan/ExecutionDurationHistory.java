@@ -0,0 +1,40 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.internal.service.scopes.ServiceScope;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Keeps the execution durations of the nodes of previous builds, so that the execution plan can prioritize the nodes on its critical path.
+ */
+@ServiceScope(Scopes.Build.class)
+public interface ExecutionDurationHistory {
+
+    /**
+     * Returns the durations in milliseconds recorded for the given nodes. Nodes without a recorded duration are not included.
+     */
+    Map<Node, Long> getDurations(Collection<Node> nodes);
+
+    /**
+     * Records the duration of an executed node, to be used by later builds.
+     */
+    void recordDuration(Node node, long durationMillis);
+}
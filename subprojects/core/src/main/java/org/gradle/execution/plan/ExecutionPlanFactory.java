@@ -19,14 +19,28 @@
 import org.gradle.internal.service.scopes.Scopes;
 import org.gradle.internal.service.scopes.ServiceScope;
 
+import javax.annotation.Nullable;
+
 @ServiceScope(Scopes.Build.class)
 public class ExecutionPlanFactory {
+    /**
+     * Enables ordering the execution plan by the critical path, using the task durations of previous builds.
+     */
+    public static final String CRITICAL_PATH_SCHEDULING_PROPERTY = "org.gradle.scheduling.critical-path";
+    /**
+     * Enables preparing the tasks of the task graph concurrently across projects, when parallel execution is enabled.
+     */
+    public static final String PARALLEL_TASK_GRAPH_CALCULATION_PROPERTY = "org.gradle.scheduling.parallel-graph-calculation";
+
     private final String displayName;
     private final TaskNodeFactory taskNodeFactory;
     private final TaskDependencyResolver dependencyResolver;
     private final NodeValidator nodeValidator;
     private final ExecutionNodeAccessHierarchy outputHierarchy;
     private final ExecutionNodeAccessHierarchy destroyableHierarchy;
+    private final ExecutionDurationHistory durationHistory;
+    private final ParallelTaskPreparer taskPreparer;
+    private final ReadyNodeListener readyNodeListener;
 
     public ExecutionPlanFactory(
         String displayName,
@@ -34,7 +48,10 @@ public ExecutionPlanFactory(
         TaskDependencyResolver dependencyResolver,
         NodeValidator nodeValidator,
         ExecutionNodeAccessHierarchy outputHierarchy,
-        ExecutionNodeAccessHierarchy destroyableHierarchy
+        ExecutionNodeAccessHierarchy destroyableHierarchy,
+        @Nullable ExecutionDurationHistory durationHistory,
+        @Nullable ParallelTaskPreparer taskPreparer,
+        @Nullable ReadyNodeListener readyNodeListener
     ) {
         this.displayName = displayName;
         this.taskNodeFactory = taskNodeFactory;
@@ -42,9 +59,12 @@ public ExecutionPlanFactory(
         this.nodeValidator = nodeValidator;
         this.outputHierarchy = outputHierarchy;
         this.destroyableHierarchy = destroyableHierarchy;
+        this.durationHistory = durationHistory;
+        this.taskPreparer = taskPreparer;
+        this.readyNodeListener = readyNodeListener;
     }
 
     public ExecutionPlan createPlan() {
-        return new DefaultExecutionPlan(displayName, taskNodeFactory, dependencyResolver, nodeValidator, outputHierarchy, destroyableHierarchy);
+        return new DefaultExecutionPlan(displayName, taskNodeFactory, dependencyResolver, nodeValidator, outputHierarchy, destroyableHierarchy, durationHistory, taskPreparer, readyNodeListener);
     }
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.DomainObjectCollection;
+import org.gradle.api.Task;
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.internal.project.ProjectState;
+import org.gradle.api.internal.tasks.DefaultTaskContainer;
+import org.gradle.api.internal.tasks.DefaultTaskDependency;
+import org.gradle.api.internal.tasks.TaskContainerInternal;
+import org.gradle.api.tasks.TaskContainer;
+import org.gradle.api.tasks.TaskDependency;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.work.WorkerLeaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/**
+ * Prepares the tasks reachable from the entry tasks of an execution plan concurrently, before the plan walks them.
+ *
+ * <p>Preparing a task realizes and configures it, which dominates the time it takes to calculate the task graph of builds with many projects.
+ * Tasks are prepared in rounds: the tasks discovered by a round are grouped by project, and each group is prepared by a worker thread holding
+ * the lock of its project. A task is only ever realized or configured by a worker holding the lock of the project which owns the task.</p>
+ *
+ * <p>More tasks are discovered from the values declared via {@link Task#dependsOn(Object...)} and {@link Task#finalizedBy(Object...)} only:
+ * tasks, lazily registered tasks and the names of tasks of the same project. Other values, such as closures, callables, providers or paths,
+ * may run build logic or reach into other projects, so they are left to the execution plan, which resolves them with its own walk afterwards.
+ * The plan therefore contains the same nodes in the same order as without preparing. The order in which tasks are realized and configured,
+ * and so the order of the side effects of their configuration actions, can differ though.</p>
+ *
+ * <p>Failures are ignored, they are reported when the execution plan walks the failing task.</p>
+ */
+public class ParallelTaskPreparer implements Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelTaskPreparer.class);
+
+    private final GradleInternal thisBuild;
+    private final ExecutorFactory executorFactory;
+    private final WorkerLeaseService workerLeaseService;
+    private ManagedExecutor executor;
+
+    public ParallelTaskPreparer(GradleInternal thisBuild, ExecutorFactory executorFactory, WorkerLeaseService workerLeaseService) {
+        this.thisBuild = thisBuild;
+        this.executorFactory = executorFactory;
+        this.workerLeaseService = workerLeaseService;
+    }
+
+    /**
+     * Prepares the given tasks and the tasks they declare to depend on or to be finalized by.
+     *
+     * @param skip tasks which are not prepared, together with their dependencies, e.g. because the execution plan has already walked them or filters them out.
+     */
+    public void prepare(Collection<? extends Task> entryTasks, Predicate<? super Task> skip) {
+        Set<Object> seen = new HashSet<>();
+        List<Object> round = new ArrayList<>();
+        collectUnseen(entryTasks, skip, seen, round);
+        if (round.isEmpty()) {
+            return;
+        }
+        // Release the project locks of this thread, so that the workers can acquire them
+        workerLeaseService.blocking(() -> {
+            List<Object> nextRound = round;
+            while (!nextRound.isEmpty()) {
+                List<Future<List<Object>>> preparedGroups = new ArrayList<>();
+                for (Map.Entry<ProjectState, List<Object>> group : groupByProject(nextRound).entrySet()) {
+                    preparedGroups.add(getExecutor().submit(() -> prepareGroup(group.getKey(), group.getValue())));
+                }
+                nextRound = new ArrayList<>();
+                for (Future<List<Object>> preparedGroup : preparedGroups) {
+                    collectUnseen(getDone(preparedGroup), skip, seen, nextRound);
+                }
+            }
+        });
+    }
+
+    /**
+     * Collects the given tasks and lazily registered tasks which have not been seen yet. A lazily registered task is checked against {@code skip}
+     * once it has been realized by the worker of its project.
+     */
+    private void collectUnseen(Collection<?> items, Predicate<? super Task> skip, Set<Object> seen, List<Object> unseen) {
+        for (Object item : items) {
+            if (owningProject(item).getGradle() == thisBuild && !(item instanceof Task && skip.test((Task) item)) && seen.add(item)) {
+                unseen.add(item);
+            }
+        }
+    }
+
+    private static Map<ProjectState, List<Object>> groupByProject(List<Object> items) {
+        Map<ProjectState, List<Object>> groups = new LinkedHashMap<>();
+        for (Object item : items) {
+            groups.computeIfAbsent(owningProject(item).getOwner(), project -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    private static ProjectInternal owningProject(Object item) {
+        if (item instanceof DefaultTaskContainer.TaskCreatingProvider) {
+            return ((DefaultTaskContainer.TaskCreatingProvider<?>) item).getOwningProject();
+        }
+        return (ProjectInternal) ((Task) item).getProject();
+    }
+
+    private List<Object> prepareGroup(ProjectState project, List<Object> items) {
+        return workerLeaseService.runAsWorkerThread(() -> project.fromMutableState(p -> {
+            List<Object> discovered = new ArrayList<>();
+            for (Object item : items) {
+                discovered.addAll(prepareItem(item));
+            }
+            return discovered;
+        }));
+    }
+
+    private static Collection<?> prepareItem(Object item) {
+        try {
+            if (item instanceof DefaultTaskContainer.TaskCreatingProvider) {
+                // The realized task is prepared by the next round, unless it is skipped
+                return Collections.singletonList(((DefaultTaskContainer.TaskCreatingProvider<?>) item).get());
+            }
+            TaskInternal task = (TaskInternal) item;
+            ((TaskContainerInternal) task.getProject().getTasks()).prepareForExecution(task);
+            List<Object> discovered = new ArrayList<>();
+            collectDeclared(task.getLifecycleDependencies(), task, discovered);
+            collectDeclared(task.getFinalizedBy(), task, discovered);
+            return discovered;
+        } catch (Exception e) {
+            LOGGER.debug("Could not prepare {} ahead of the task graph calculation.", item, e);
+            return Collections.emptyList();
+        }
+    }
+
+    private static void collectDeclared(TaskDependency dependency, Task task, List<Object> discovered) {
+        if (dependency instanceof DefaultTaskDependency) {
+            for (Object value : ((DefaultTaskDependency) dependency).getMutableValues()) {
+                collectDeclaredValue(value, task, discovered);
+            }
+        }
+    }
+
+    private static void collectDeclaredValue(Object value, Task task, List<Object> discovered) {
+        if (value instanceof Task || value instanceof DefaultTaskContainer.TaskCreatingProvider) {
+            discovered.add(value);
+        } else if (value instanceof CharSequence) {
+            // A path can refer to another project, which this worker does not hold the lock of
+            String name = value.toString();
+            TaskContainer tasks = task.getProject().getTasks();
+            if (name.indexOf(':') < 0 && tasks.getNames().contains(name)) {
+                TaskProvider<Task> provider = tasks.named(name);
+                discovered.add(provider instanceof DefaultTaskContainer.TaskCreatingProvider ? provider : provider.get());
+            }
+        } else if (value instanceof Collection && !(value instanceof DomainObjectCollection)) {
+            for (Object element : (Collection<?>) value) {
+                collectDeclaredValue(element, task, discovered);
+            }
+        } else if (value instanceof Object[]) {
+            for (Object element : (Object[]) value) {
+                collectDeclaredValue(element, task, discovered);
+            }
+        }
+    }
+
+    private static List<Object> getDone(Future<List<Object>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+    }
+
+    private synchronized ManagedExecutor getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("Task graph preparation", workerLeaseService.getMaxWorkerCount());
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import java.util.Collection;
+
+/**
+ * Notified when nodes of an execution plan become ready, so that work for them can start before a worker picks them up.
+ *
+ * <p>The methods are called while the execution plan is locked, so implementations must not block.</p>
+ */
+public interface ReadyNodeListener {
+    /**
+     * Called when the nodes to execute have been determined, before any of them is reported as ready.
+     */
+    void planDetermined(Collection<Node> nodes);
+
+    /**
+     * Called when all dependencies of the node are complete, so it can be selected for execution.
+     */
+    void nodeReady(Node node);
+
+    /**
+     * Called when the node has finished executing, successfully or not.
+     */
+    void nodeFinished(Node node);
+}
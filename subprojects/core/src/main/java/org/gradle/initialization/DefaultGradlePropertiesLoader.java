@@ -18,6 +18,7 @@
 import org.gradle.api.Project;
 import org.gradle.api.internal.StartParameterInternal;
 import org.gradle.api.internal.properties.GradleProperties;
+import org.gradle.internal.hash.Hashing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +59,7 @@ GradleProperties loadProperties(File rootDir) {
         setSystemPropertiesFromGradleProperties(defaultProperties);
         setSystemPropertiesFromGradleProperties(overrideProperties);
         System.getProperties().putAll(startParameter.getSystemPropertiesArgs());
+        warnIfDefaultHashFunctionIsIgnored();
 
         overrideProperties.putAll(projectPropertiesFromEnvironmentVariables());
         overrideProperties.putAll(projectPropertiesFromSystemProperties());
@@ -66,6 +68,16 @@ GradleProperties loadProperties(File rootDir) {
         return new DefaultGradleProperties(defaultProperties, overrideProperties);
     }
 
+    private static void warnIfDefaultHashFunctionIsIgnored() {
+        String requested = System.getProperty(Hashing.DEFAULT_HASH_FUNCTION_PROPERTY);
+        if (requested != null && !requested.equals(Hashing.defaultFunctionName())) {
+            LOGGER.warn(
+                "Ignoring system property '{}={}', this Gradle process uses the '{}' hash function. The hash function can only be changed when the process starts, pass the property on the command line, via 'org.gradle.jvmargs' or via GRADLE_OPTS instead.",
+                Hashing.DEFAULT_HASH_FUNCTION_PROPERTY, requested, Hashing.defaultFunctionName()
+            );
+        }
+    }
+
     private void addGradlePropertiesFrom(File dir, Map<String, Object> target) {
         Map<String, String> propertiesFile = environment.propertiesFile(new File(dir, GRADLE_PROPERTIES));
         if (propertiesFile != null) {
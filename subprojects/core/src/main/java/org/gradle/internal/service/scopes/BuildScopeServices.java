@@ -102,9 +102,13 @@
 import org.gradle.execution.TaskNameResolver;
 import org.gradle.execution.TaskPathProjectEvaluator;
 import org.gradle.execution.TaskSelector;
+import org.gradle.execution.plan.DefaultExecutionDurationHistory;
 import org.gradle.execution.plan.DefaultNodeValidator;
+import org.gradle.execution.plan.ExecutionDurationHistory;
 import org.gradle.execution.plan.ExecutionNodeAccessHierarchies;
 import org.gradle.execution.plan.ExecutionPlanFactory;
+import org.gradle.execution.plan.ParallelTaskPreparer;
+import org.gradle.execution.plan.ReadyNodeListener;
 import org.gradle.execution.plan.TaskDependencyResolver;
 import org.gradle.execution.plan.TaskNodeDependencyResolver;
 import org.gradle.execution.plan.TaskNodeFactory;
@@ -196,6 +200,7 @@
 import org.gradle.internal.service.DefaultServiceRegistry;
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.model.internal.inspect.ModelRuleSourceDetector;
 import org.gradle.plugin.management.internal.autoapply.AutoAppliedPluginHandler;
 import org.gradle.plugin.use.internal.PluginRequestApplicator;
@@ -242,18 +247,34 @@ ExecutionPlanFactory createExecutionPlanFactory(
         GradleInternal gradleInternal,
         TaskNodeFactory taskNodeFactory,
         TaskDependencyResolver dependencyResolver,
-        ExecutionNodeAccessHierarchies executionNodeAccessHierarchies
+        ExecutionNodeAccessHierarchies executionNodeAccessHierarchies,
+        ExecutionDurationHistory executionDurationHistory,
+        ParallelTaskPreparer parallelTaskPreparer,
+        ReadyNodeListener readyNodeListener,
+        WorkerLeaseService workerLeaseService
     ) {
+        boolean parallelTaskGraphCalculation = Boolean.getBoolean(ExecutionPlanFactory.PARALLEL_TASK_GRAPH_CALCULATION_PROPERTY) && workerLeaseService.getAllowsParallelExecution();
         return new ExecutionPlanFactory(
             gradleInternal.getIdentityPath().toString(),
             taskNodeFactory,
             dependencyResolver,
             new DefaultNodeValidator(),
             executionNodeAccessHierarchies.getOutputHierarchy(),
-            executionNodeAccessHierarchies.getDestroyableHierarchy()
+            executionNodeAccessHierarchies.getDestroyableHierarchy(),
+            Boolean.getBoolean(ExecutionPlanFactory.CRITICAL_PATH_SCHEDULING_PROPERTY) ? executionDurationHistory : null,
+            parallelTaskGraphCalculation ? parallelTaskPreparer : null,
+            readyNodeListener
         );
     }
 
+    ParallelTaskPreparer createParallelTaskPreparer(GradleInternal gradleInternal, ExecutorFactory executorFactory, WorkerLeaseService workerLeaseService) {
+        return new ParallelTaskPreparer(gradleInternal, executorFactory, workerLeaseService);
+    }
+
+    ExecutionDurationHistory createExecutionDurationHistory(BuildScopedCache cacheRepository) {
+        return new DefaultExecutionDurationHistory(cacheRepository);
+    }
+
     ExecutionNodeAccessHierarchies createExecutionNodeAccessHierarchies(FileSystem fileSystem, Stat stat) {
         return new ExecutionNodeAccessHierarchies(fileSystem.isCaseSensitive() ? CaseSensitivity.CASE_SENSITIVE : CaseSensitivity.CASE_INSENSITIVE, stat);
     }
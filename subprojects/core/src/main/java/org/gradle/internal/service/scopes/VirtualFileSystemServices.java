@@ -31,6 +31,7 @@
 import org.gradle.api.internal.changedetection.state.DefaultResourceSnapshotterCacheService;
 import org.gradle.api.internal.changedetection.state.FileHasherStatistics;
 import org.gradle.api.internal.changedetection.state.GradleUserHomeScopeFileTimeStampInspector;
+import org.gradle.api.internal.changedetection.state.ParallelFileHashingExecutor;
 import org.gradle.api.internal.changedetection.state.PropertiesFileFilter;
 import org.gradle.api.internal.changedetection.state.ResourceEntryFilter;
 import org.gradle.api.internal.changedetection.state.ResourceFilter;
@@ -46,9 +47,11 @@
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
 import org.gradle.cache.scopes.BuildTreeScopedCache;
 import org.gradle.cache.scopes.GlobalScopedCache;
+import org.gradle.concurrent.ParallelismConfiguration;
 import org.gradle.initialization.RootBuildLifecycleListener;
 import org.gradle.internal.build.BuildAddedListener;
 import org.gradle.internal.classloader.ClasspathHasher;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.OutputChangeListener;
 import org.gradle.internal.execution.OutputSnapshotter;
@@ -119,6 +122,12 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
 
     public static final String MAX_HIERARCHIES_TO_WATCH_PROPERTY = "org.gradle.vfs.watch.hierarchies.max";
 
+    /**
+     * Whether the files found while snapshotting directories are hashed in parallel, enabled by default.
+     * Also controls whether the subdirectories of unfiltered directory trees are walked in parallel.
+     */
+    public static final String PARALLEL_FILE_HASHING_PROPERTY = "org.gradle.vfs.hashing.parallel";
+
     private static final int DEFAULT_MAX_HIERARCHIES_TO_WATCH = 50;
     private static final int FILE_HASHER_MEMORY_CACHE_SIZE = 400000;
 
@@ -134,6 +143,18 @@ public static int getMaximumNumberOfWatchedHierarchies(StartParameter startParam
             : DEFAULT_MAX_HIERARCHIES_TO_WATCH;
     }
 
+    public static boolean isParallelFileHashing(StartParameter startParameter) {
+        String parallelHashing = getSystemProperty(PARALLEL_FILE_HASHING_PROPERTY, startParameter.getSystemPropertiesArgs());
+        return parallelHashing == null || Boolean.parseBoolean(parallelHashing);
+    }
+
+    /**
+     * Memory mapped files cannot be deleted on Windows until the mapping has been garbage collected, so large files are only mapped elsewhere.
+     */
+    private static long memoryMappingThreshold() {
+        return OperatingSystem.current().isWindows() ? Long.MAX_VALUE : DefaultFileHasher.DEFAULT_MEMORY_MAPPING_THRESHOLD;
+    }
+
     @Nullable
     private static String getSystemProperty(String systemProperty, Map<String, String> systemPropertiesArgs) {
         return systemPropertiesArgs.getOrDefault(systemProperty, System.getProperty(systemProperty));
@@ -179,7 +200,7 @@ FileHasher createCachingFileHasher(
             StreamHasher streamHasher,
             StringInterner stringInterner
         ) {
-            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher, memoryMappingThreshold()), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
             fileTimeStampInspector.attach(fileHasher);
             return fileHasher;
         }
@@ -353,10 +374,14 @@ FileHasher createFileHasher(
             StringInterner stringInterner,
             FileHasherStatistics.Collector statisticsCollector
         ) {
-            CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), cacheAccess, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+            CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher, memoryMappingThreshold()), cacheAccess, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
             return new SplitFileHasher(globalHasher, localHasher, globalCacheLocations);
         }
 
+        ParallelFileHashingExecutor createParallelFileHashingExecutor(ExecutorFactory executorFactory, ParallelismConfiguration parallelismConfiguration) {
+            return new ParallelFileHashingExecutor(executorFactory, parallelismConfiguration.getMaxWorkerCount());
+        }
+
         FileSystemAccess createFileSystemAccess(
             FileHasher hasher,
             ListenerManager listenerManager,
@@ -364,8 +389,13 @@ FileSystemAccess createFileSystemAccess(
             StringInterner stringInterner,
             VirtualFileSystem root,
             FileSystemAccess.WriteListener writeListener,
-            DirectorySnapshotterStatistics.Collector statisticsCollector
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            ParallelismConfiguration parallelismConfiguration,
+            ParallelFileHashingExecutor hashingExecutor,
+            StartParameter startParameter
         ) {
+            boolean parallelHashing = parallelismConfiguration.getMaxWorkerCount() > 1
+                && isParallelFileHashing(startParameter);
             DefaultFileSystemAccess buildSessionsScopedVirtualFileSystem = new DefaultFileSystemAccess(
                 hasher,
                 stringInterner,
@@ -373,6 +403,7 @@ FileSystemAccess createFileSystemAccess(
                 root,
                 writeListener,
                 statisticsCollector,
+                parallelHashing ? hashingExecutor : null,
                 DirectoryScanner.getDefaultExcludes()
             );
 
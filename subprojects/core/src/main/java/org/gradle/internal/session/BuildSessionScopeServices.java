@@ -37,6 +37,8 @@
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.internal.BuildScopeCacheDir;
+import org.gradle.cache.internal.CacheAccessWorkerStatistics;
+import org.gradle.cache.internal.CacheAccessWorkerStatisticsReporter;
 import org.gradle.cache.internal.CleanupActionFactory;
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
 import org.gradle.cache.internal.scopes.DefaultBuildTreeScopedCache;
@@ -172,6 +174,10 @@ BuildSessionScopeFileTimeStampInspector createFileTimeStampInspector(BuildTreeSc
         return new BuildSessionScopeFileTimeStampInspector(workDir);
     }
 
+    CacheAccessWorkerStatisticsReporter createCacheAccessWorkerStatisticsReporter(CacheAccessWorkerStatistics.Collector statisticsCollector, BuildOperationExecutor buildOperationExecutor) {
+        return new CacheAccessWorkerStatisticsReporter(statisticsCollector, buildOperationExecutor);
+    }
+
     ScriptSourceHasher createScriptSourceHasher() {
         return new DefaultScriptSourceHasher();
     }
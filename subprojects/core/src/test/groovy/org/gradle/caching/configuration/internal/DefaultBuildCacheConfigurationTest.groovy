@@ -19,6 +19,7 @@ package org.gradle.caching.configuration.internal
 import org.gradle.caching.BuildCacheServiceFactory
 import org.gradle.caching.configuration.AbstractBuildCache
 import org.gradle.caching.configuration.BuildCache
+import org.gradle.caching.internal.packaging.BuildCacheEntryCompression
 import org.gradle.caching.local.DirectoryBuildCache
 import org.gradle.caching.local.internal.DirectoryBuildCacheServiceFactory
 import org.gradle.internal.reflect.Instantiator
@@ -101,6 +102,18 @@ class DefaultBuildCacheConfigurationTest extends Specification {
         ex.message == "A type for the remote build cache must be configured first."
     }
 
+    def 'can configure compression'() {
+        def buildCacheConfiguration = createConfig()
+        expect:
+        buildCacheConfiguration.compression == "gzip"
+
+        when:
+        buildCacheConfiguration.compression = "gzip:1"
+        then:
+        buildCacheConfiguration.compression == "gzip:1"
+        buildCacheConfiguration.entryCompression == BuildCacheEntryCompression.gzip(1)
+    }
+
     static class CustomBuildCache extends AbstractBuildCache {}
 
     static class OtherCustomBuildCache extends AbstractBuildCache {}
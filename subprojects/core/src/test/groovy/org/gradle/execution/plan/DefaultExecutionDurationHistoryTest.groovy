@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan
+
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.tasks.TaskExecutionOutcome
+import org.gradle.api.internal.tasks.TaskStateInternal
+import org.gradle.cache.CacheBuilder
+import org.gradle.cache.PersistentCache
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.cache.PersistentIndexedCacheParameters
+import org.gradle.cache.scopes.BuildScopedCache
+import org.gradle.util.Path
+import spock.lang.Specification
+
+class DefaultExecutionDurationHistoryTest extends Specification {
+    def cacheRepository = Mock(BuildScopedCache)
+    def cacheBuilder = Mock(CacheBuilder)
+    def cache = Mock(PersistentCache)
+    def store = Mock(PersistentIndexedCache)
+    def history = new DefaultExecutionDurationHistory(cacheRepository)
+
+    def setup() {
+        _ * cacheRepository.cache("executionDurations") >> cacheBuilder
+        _ * cacheBuilder.withDisplayName(_) >> cacheBuilder
+        _ * cacheBuilder.withLockOptions(_) >> cacheBuilder
+        _ * cacheBuilder.open() >> cache
+        _ * cache.createCache(_ as PersistentIndexedCacheParameters) >> store
+        _ * cache.useCache(_ as Runnable) >> { Runnable action -> action.run() }
+    }
+
+    def "stores the average of the previous and the latest duration of executed tasks"() {
+        when:
+        history.recordDuration(taskNode(":a", TaskExecutionOutcome.EXECUTED), 100)
+        history.recordDuration(taskNode(":b", TaskExecutionOutcome.EXECUTED), 40)
+        history.stop()
+
+        then:
+        1 * store.getIfPresent(":a") >> 50L
+        1 * store.put(":a", 75L)
+        1 * store.getIfPresent(":b") >> null
+        1 * store.put(":b", 40L)
+    }
+
+    def "does not record durations of tasks which did not execute their actions"() {
+        when:
+        history.recordDuration(taskNode(":executed", TaskExecutionOutcome.EXECUTED), 100)
+        history.recordDuration(taskNode(":upToDate", TaskExecutionOutcome.UP_TO_DATE), 1)
+        history.recordDuration(taskNode(":fromCache", TaskExecutionOutcome.FROM_CACHE), 2)
+        history.recordDuration(taskNode(":skipped", TaskExecutionOutcome.SKIPPED), 3)
+        history.stop()
+
+        then:
+        1 * store.getIfPresent(":executed") >> null
+        1 * store.put(":executed", 100L)
+        0 * store.put(_, _)
+    }
+
+    private LocalTaskNode taskNode(String path, TaskExecutionOutcome outcome) {
+        def state = Stub(TaskStateInternal) {
+            getOutcome() >> outcome
+        }
+        def task = Stub(TaskInternal) {
+            getIdentityPath() >> Path.path(path)
+            getState() >> state
+        }
+        return Stub(LocalTaskNode) {
+            getTask() >> task
+        }
+    }
+}
@@ -26,6 +26,7 @@ import org.gradle.api.specs.Spec
 import org.gradle.api.tasks.TaskDependency
 import org.gradle.composite.internal.BuildTreeWorkGraphController
 import org.gradle.internal.file.Stat
+import org.gradle.internal.resources.ResourceLock
 import org.gradle.util.Path
 import org.gradle.util.internal.TextUtil
 import spock.lang.Issue
@@ -822,6 +823,186 @@ class DefaultExecutionPlanTest extends AbstractExecutionPlanSpec {
         executesNodes(node1, node2, node3)
     }
 
+    def "schedules tasks on the longest path of previous durations first when critical path scheduling is enabled"() {
+        given:
+        def durationHistory = Mock(ExecutionDurationHistory)
+        def taskNodeFactory = new TaskNodeFactory(thisBuild, Stub(DocumentationRegistry), Stub(BuildTreeWorkGraphController))
+        def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
+        executionPlan = new DefaultExecutionPlan(Path.ROOT.toString(), taskNodeFactory, dependencyResolver, nodeValidator, new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, Stub(Stat)), new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, Stub(Stat)), durationHistory, null, null)
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [b])
+        Task d = task("d", dependsOn: [c])
+        def durations = [a: 45L, b: 10L, c: 10L, d: 40L]
+
+        when:
+        addToGraphAndPopulate([a, d])
+
+        then:
+        1 * durationHistory.getDurations(_) >> { Collection<Node> nodes -> nodes.collectEntries { [it, durations[it.task.name]] } }
+
+        when:
+        def executed = executedTasks
+
+        then:
+        executed == [b, c, a, d]
+        4 * durationHistory.recordDuration(_, _)
+    }
+
+    def "keeps should run after ordering when scheduling tasks on the longest path first"() {
+        given:
+        def durationHistory = Mock(ExecutionDurationHistory)
+        def taskNodeFactory = new TaskNodeFactory(thisBuild, Stub(DocumentationRegistry), Stub(BuildTreeWorkGraphController))
+        def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
+        executionPlan = new DefaultExecutionPlan(Path.ROOT.toString(), taskNodeFactory, dependencyResolver, nodeValidator, new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, Stub(Stat)), new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, Stub(Stat)), durationHistory, null, null)
+        Task a = task("a")
+        Task b = task("b", shouldRunAfter: [a])
+        Task c = task("c")
+        def durations = [a: 1L, b: 100L, c: 50L]
+
+        when:
+        addToGraphAndPopulate([a, b, c])
+
+        then:
+        1 * durationHistory.getDurations(_) >> { Collection<Node> nodes -> nodes.collectEntries { [it, durations[it.task.name]] } }
+
+        when:
+        def executed = executedTasks
+
+        then:
+        // b alone is the longest path, but it should run after a
+        executed == [a, b, c]
+    }
+
+    def "notifies ready node listener when nodes become ready and finish"() {
+        given:
+        def listener = Mock(ReadyNodeListener)
+        def taskNodeFactory = new TaskNodeFactory(thisBuild, Stub(DocumentationRegistry), Stub(BuildTreeWorkGraphController))
+        def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
+        executionPlan = new DefaultExecutionPlan(Path.ROOT.toString(), taskNodeFactory, dependencyResolver, nodeValidator, new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, Stub(Stat)), new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, Stub(Stat)), null, null, listener)
+        Task a = task("a")
+        Task b = task("b", dependsOn: [a])
+        def ready = []
+
+        when:
+        addToGraphAndPopulate([b])
+
+        then:
+        1 * listener.planDetermined(_)
+        1 * listener.nodeReady(_) >> { Node node -> ready << node.task }
+        ready == [a]
+
+        when:
+        def executed = executedTasks
+
+        then:
+        executed == [a, b]
+        1 * listener.nodeReady(_) >> { Node node -> ready << node.task }
+        2 * listener.nodeFinished(_)
+        ready == [a, b]
+    }
+
+    def "node dropped from the ready nodes while waiting for an enforced finalizer is selected once the finalizer completes"() {
+        given:
+        Task finalizerDependency = task("finalizerDependency")
+        Task finalizer = task("finalizer", dependsOn: [finalizerDependency])
+        Task finalized = task("finalized", finalizedBy: [finalizer])
+        Task waiting = task("waiting", mustRunAfter: [finalizer])
+        addToGraphAndPopulate([finalized, waiting])
+
+        when:
+        def finalizedNode = executionPlan.selectNext()
+        executionPlan.finishedExecuting(finalizedNode)
+        def finalizerDependencyNode = executionPlan.selectNext()
+
+        then:
+        finalizedNode.task == finalized
+        // The finalizer and its dependency are enforced, so the waiting node, which was ready before, no longer is
+        finalizerDependencyNode.task == finalizerDependency
+        executionPlan.selectNext() == null
+
+        when:
+        executionPlan.finishedExecuting(finalizerDependencyNode)
+        def finalizerNode = executionPlan.selectNext()
+
+        then:
+        finalizerNode.task == finalizer
+        executionPlan.selectNext() == null
+
+        when:
+        executionPlan.finishedExecuting(finalizerNode)
+        def waitingNode = executionPlan.selectNext()
+        executionPlan.finishedExecuting(waitingNode)
+
+        then:
+        waitingNode.task == waiting
+        !executionPlan.hasNodesRemaining()
+    }
+
+    def "does not try to acquire a lock for other nodes after it was unavailable during a selection"() {
+        given:
+        def sharedLock = Mock(ResourceLock)
+        Task a = task("a", resources: [sharedLock])
+        Task b = task("b", resources: [sharedLock])
+        Task c = task("c")
+        addToGraphAndPopulate([a, b, c])
+
+        when:
+        def selected = executionPlan.selectNext()
+
+        then:
+        selected.task == c
+        1 * sharedLock.tryLock() >> false
+
+        when:
+        executionPlan.finishedExecuting(selected)
+        selected = executionPlan.selectNext()
+
+        then:
+        selected.task == a
+        1 * sharedLock.tryLock() >> true
+    }
+
+    def "has nodes remaining while nodes before the selected ones are still queued"() {
+        given:
+        def sharedLock = Mock(ResourceLock)
+        Task a = task("a", resources: [sharedLock])
+        Task b = task("b")
+        Task c = task("c")
+        addToGraphAndPopulate([a, b, c])
+        _ * sharedLock.tryLock() >> false
+
+        when:
+        def selectedB = executionPlan.selectNext()
+        def selectedC = executionPlan.selectNext()
+
+        then:
+        selectedB.task == b
+        selectedC.task == c
+        executionPlan.hasNodesRemaining()
+
+        when:
+        executionPlan.finishedExecuting(selectedB)
+        executionPlan.finishedExecuting(selectedC)
+
+        then:
+        executionPlan.hasNodesRemaining()
+        executionPlan.selectNext() == null
+
+        when:
+        def selectedA = executionPlan.selectNext()
+
+        then:
+        1 * sharedLock.tryLock() >> true
+        selectedA.task == a
+        executionPlan.hasNodesRemaining()
+
+        when:
+        executionPlan.finishedExecuting(selectedA)
+
+        then:
+        !executionPlan.hasNodesRemaining()
+    }
 
     private Node requiredNode(Node... dependencies) {
         node(dependencies).tap {
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan
+
+import org.gradle.api.Task
+import org.gradle.api.internal.GradleInternal
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.project.ProjectInternal
+import org.gradle.api.internal.project.ProjectState
+import org.gradle.api.internal.tasks.DefaultTaskContainer
+import org.gradle.api.internal.tasks.DefaultTaskDependency
+import org.gradle.api.internal.tasks.TaskContainerInternal
+import org.gradle.api.provider.Provider
+import org.gradle.internal.Factory
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.work.WorkerLeaseService
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.function.Function
+
+class ParallelTaskPreparerTest extends Specification {
+    def gradle = Stub(GradleInternal)
+    def tasks = Mock(TaskContainerInternal)
+    def lockHeld = new ThreadLocal<ProjectInternal>()
+    def project = project(tasks)
+    def workerLeaseService = Stub(WorkerLeaseService) {
+        getMaxWorkerCount() >> 4
+        blocking(_) >> { Runnable action -> action.run() }
+        runAsWorkerThread(_ as Factory) >> { Factory factory -> factory.create() }
+    }
+    def executorFactory = new DefaultExecutorFactory()
+    def preparer = new ParallelTaskPreparer(gradle, executorFactory, workerLeaseService)
+
+    def cleanup() {
+        preparer.stop()
+        executorFactory.stop()
+    }
+
+    def "prepares entry tasks and the tasks they depend on or are finalized by"() {
+        given:
+        def c = task("c")
+        def d = task("d")
+        def b = task("b", [c], [d])
+        def a = task("a", [b, c])
+
+        when:
+        preparer.prepare([a], { false })
+
+        then:
+        1 * tasks.prepareForExecution(a)
+        1 * tasks.prepareForExecution(b)
+        1 * tasks.prepareForExecution(c)
+        1 * tasks.prepareForExecution(d)
+        0 * tasks.prepareForExecution(_)
+    }
+
+    def "does not prepare skipped tasks or their dependencies"() {
+        given:
+        def c = task("c")
+        def b = task("b", [c])
+        def a = task("a", [b])
+
+        when:
+        preparer.prepare([a], { it == b })
+
+        then:
+        1 * tasks.prepareForExecution(a)
+        0 * tasks.prepareForExecution(_)
+    }
+
+    def "ignores failures to prepare a task"() {
+        given:
+        def b = task("b")
+        def a = task("a", [b])
+        tasks.prepareForExecution(a) >> { throw new RuntimeException("broken") }
+
+        when:
+        preparer.prepare([a], { false })
+
+        then:
+        noExceptionThrown()
+    }
+
+    def "realizes and prepares tasks of other projects with the lock of their own project held"() {
+        given:
+        def otherTasks = Mock(TaskContainerInternal)
+        def otherProject = project(otherTasks)
+        def c = task("c", [], [], otherProject)
+        def b = task("b", [], [], otherProject)
+        def realizedIn = []
+        def providerOfB = Stub(DefaultTaskContainer.TaskCreatingProvider) {
+            getOwningProject() >> otherProject
+            get() >> {
+                realizedIn << lockHeld.get()
+                b
+            }
+        }
+        def a = task("a", [providerOfB], [c])
+
+        when:
+        preparer.prepare([a], { false })
+
+        then:
+        1 * tasks.prepareForExecution(a) >> { assert lockHeld.get() == project }
+        1 * otherTasks.prepareForExecution(b) >> { assert lockHeld.get() == otherProject }
+        1 * otherTasks.prepareForExecution(c) >> { assert lockHeld.get() == otherProject }
+        0 * _.prepareForExecution(_)
+        realizedIn == [otherProject]
+    }
+
+    def "does not prepare skipped tasks realized from providers of other projects"() {
+        given:
+        def otherTasks = Mock(TaskContainerInternal)
+        def otherProject = project(otherTasks)
+        def b = task("b", [], [], otherProject)
+        def providerOfB = Stub(DefaultTaskContainer.TaskCreatingProvider) {
+            getOwningProject() >> otherProject
+            get() >> b
+        }
+        def a = task("a", [providerOfB])
+
+        when:
+        preparer.prepare([a], { it == b })
+
+        then:
+        1 * tasks.prepareForExecution(a)
+        0 * _.prepareForExecution(_)
+    }
+
+    def "does not run build logic to discover dependencies"() {
+        given:
+        def closure = Mock(Closure)
+        def callable = Mock(Callable)
+        def provider = Mock(Provider)
+        def a = task("a", [closure, callable, provider, ":other:b"])
+
+        when:
+        preparer.prepare([a], { false })
+
+        then:
+        1 * tasks.prepareForExecution(a)
+        0 * closure._
+        0 * callable._
+        0 * provider._
+        0 * tasks.prepareForExecution(_)
+    }
+
+    private ProjectInternal project(TaskContainerInternal tasks) {
+        def projectState = Stub(ProjectState)
+        def project = Stub(ProjectInternal) {
+            getGradle() >> gradle
+            getTasks() >> tasks
+            getOwner() >> projectState
+        }
+        projectState.fromMutableState(_) >> { Function function ->
+            lockHeld.set(project)
+            try {
+                function.apply(project)
+            } finally {
+                lockHeld.remove()
+            }
+        }
+        return project
+    }
+
+    private TaskInternal task(String name, List<?> dependencies = [], List<?> finalizers = [], ProjectInternal taskProject = project) {
+        def dependsOn = new DefaultTaskDependency()
+        dependsOn.getMutableValues().addAll(dependencies)
+        def finalizedBy = new DefaultTaskDependency()
+        finalizedBy.getMutableValues().addAll(finalizers)
+        Stub(TaskInternal) {
+            getName() >> name
+            getProject() >> taskProject
+            getLifecycleDependencies() >> dependsOn
+            getFinalizedBy() >> finalizedBy
+        }
+    }
+}
@@ -18,6 +18,9 @@ package org.gradle.initialization
 import org.gradle.api.Project
 import org.gradle.api.internal.StartParameterInternal
 import org.gradle.api.internal.properties.GradleProperties
+import org.gradle.internal.hash.Hashing
+import org.gradle.internal.logging.ConfigureLogging
+import org.gradle.internal.logging.TestOutputEventListener
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.util.SetSystemProperties
 import org.junit.Rule
@@ -49,6 +52,9 @@ class DefaultGradlePropertiesLoaderTest extends Specification {
     public TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
     @Rule
     public SetSystemProperties sysProp = new SetSystemProperties()
+    private final TestOutputEventListener outputEventListener = new TestOutputEventListener()
+    @Rule
+    public ConfigureLogging logging = new ConfigureLogging(outputEventListener)
 
     def setup() {
         gradleUserHomeDir = tmpDir.createDir("gradleUserHome")
@@ -324,6 +330,31 @@ class DefaultGradlePropertiesLoaderTest extends Specification {
         "commandline value" == System.getProperty("prop")
     }
 
+    def warnsWhenSystemPropertiesSelectDifferentDefaultHashFunction() {
+        given:
+        def otherFunction = Hashing.defaultFunctionName() == "md5" ? "murmur3" : "md5"
+        1 * environment.propertiesFile(fromDir(settingsDir)) >> [
+            (SYSTEM_PROP_PREFIX + "." + Hashing.DEFAULT_HASH_FUNCTION_PROPERTY): otherFunction
+        ]
+
+        when:
+        loadProperties()
+
+        then:
+        outputEventListener.toString().contains("[WARN] [${DefaultGradlePropertiesLoader.name}] Ignoring system property '${Hashing.DEFAULT_HASH_FUNCTION_PROPERTY}=${otherFunction}', this Gradle process uses the '${Hashing.defaultFunctionName()}' hash function.")
+    }
+
+    def doesNotWarnWhenSystemPropertiesSelectCurrentDefaultHashFunction() {
+        given:
+        systemPropertiesArgs = [(Hashing.DEFAULT_HASH_FUNCTION_PROPERTY): Hashing.defaultFunctionName()]
+
+        when:
+        loadProperties()
+
+        then:
+        !outputEventListener.toString().contains("Ignoring system property")
+    }
+
     private Map<String, String> loadAndMergePropertiesWith(Map<String, String> projectProperties) {
         return loadProperties().mergeProperties(projectProperties)
     }
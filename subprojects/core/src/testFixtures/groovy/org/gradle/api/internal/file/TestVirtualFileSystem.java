@@ -20,12 +20,19 @@
 import org.gradle.internal.vfs.impl.AbstractVirtualFileSystem;
 import org.gradle.internal.vfs.impl.VfsRootReference;
 
+import java.util.List;
+
 public class TestVirtualFileSystem extends AbstractVirtualFileSystem {
 
     public TestVirtualFileSystem(SnapshotHierarchy root) {
         super(new VfsRootReference(root));
     }
 
+    @Override
+    protected boolean tryUpdateConcurrentlyNotifyingListeners(List<RootUpdateFunction> updateSteps) {
+        return rootReference.tryUpdateConcurrently(() -> true, root -> updateWithoutListeners(root, updateSteps));
+    }
+
     @Override
     protected SnapshotHierarchy updateNotifyingListeners(UpdateFunction updateFunction) {
         return updateFunction.update(SnapshotHierarchy.NodeDiffListener.NOOP);
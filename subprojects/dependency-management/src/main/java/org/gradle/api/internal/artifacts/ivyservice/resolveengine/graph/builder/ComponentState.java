@@ -62,6 +62,8 @@ public class ComponentState implements ComponentResolutionState, DependencyGraph
     private final int hashCode;
 
     private volatile ComponentResolveMetadata metadata;
+    // The download of the metadata started ahead of time, not yet applied to this component
+    private DownloadMetadataOperation pendingDownload;
 
     private ComponentSelectionState state = ComponentSelectionState.Selectable;
     private ModuleVersionResolveException metadataResolveFailure;
@@ -181,20 +183,17 @@ public void resolve() {
             return;
         }
 
-        ComponentOverrideMetadata componentOverrideMetadata;
-        if (selectors != null && selectors.size() > 0) {
-            // Taking the first selector here to determine the 'changing' status and 'client module' is our best bet to get the selector that will most likely be chosen in the end.
-            // As selectors are sorted accordingly (see ModuleSelectors.SELECTOR_COMPARATOR).
-            SelectorState firstSelector = selectors.first();
-            componentOverrideMetadata = DefaultComponentOverrideMetadata.forDependency(firstSelector.isChanging(), selectors.getFirstDependencyArtifact(), firstSelector.getClientModule());
-        } else {
-            componentOverrideMetadata = DefaultComponentOverrideMetadata.EMPTY;
-        }
-        DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
         if (tryResolveVirtualPlatform()) {
             return;
         }
-        resolver.resolve(componentIdentifier, componentOverrideMetadata, result);
+        DefaultBuildableComponentResolveResult result;
+        if (pendingDownload != null) {
+            result = pendingDownload.takeResult();
+            pendingDownload = null;
+        } else {
+            result = new DefaultBuildableComponentResolveResult();
+            resolver.resolve(componentIdentifier, getComponentOverrideMetadata(), result);
+        }
 
         if (result.getFailure() != null) {
             metadataResolveFailure = result.getFailure();
@@ -203,6 +202,29 @@ public void resolve() {
         metadata = result.getMetadata();
     }
 
+    /**
+     * Starts downloading the metadata of this component in the background, the result is applied once the metadata is needed.
+     */
+    DownloadMetadataOperation startMetadataDownload() {
+        pendingDownload = new DownloadMetadataOperation(toString(), componentIdentifier, getComponentOverrideMetadata(), resolver);
+        return pendingDownload;
+    }
+
+    boolean isMetadataDownloadPending() {
+        return pendingDownload != null;
+    }
+
+    private ComponentOverrideMetadata getComponentOverrideMetadata() {
+        if (selectors != null && selectors.size() > 0) {
+            // Taking the first selector here to determine the 'changing' status and 'client module' is our best bet to get the selector that will most likely be chosen in the end.
+            // As selectors are sorted accordingly (see ModuleSelectors.SELECTOR_COMPARATOR).
+            SelectorState firstSelector = selectors.first();
+            return DefaultComponentOverrideMetadata.forDependency(firstSelector.isChanging(), selectors.getFirstDependencyArtifact(), firstSelector.getClientModule());
+        } else {
+            return DefaultComponentOverrideMetadata.EMPTY;
+        }
+    }
+
     private boolean tryResolveVirtualPlatform() {
         if (module.isVirtualPlatform()) {
             for (ComponentState version : module.getAllVersions()) {
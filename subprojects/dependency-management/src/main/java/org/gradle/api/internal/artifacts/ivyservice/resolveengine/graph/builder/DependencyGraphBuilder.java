@@ -49,6 +49,7 @@
 import org.gradle.api.internal.attributes.ImmutableAttributes;
 import org.gradle.api.internal.attributes.ImmutableAttributesFactory;
 import org.gradle.api.specs.Spec;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.component.IncompatibleVariantsSelectionException;
 import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
 import org.gradle.internal.component.local.model.RootLocalComponentMetadata;
@@ -59,6 +60,7 @@
 import org.gradle.internal.id.LongIdGenerator;
 import org.gradle.internal.operations.BuildOperationConstraint;
 import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationQueue;
 import org.gradle.internal.resolve.ModuleVersionResolveException;
 import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
 import org.gradle.internal.resolve.resolver.DependencyToComponentIdResolver;
@@ -179,8 +181,30 @@ private static int estimateSize(ResolveContext resolveContext) {
 
     /**
      * Traverses the dependency graph, resolving conflicts and building the paths from the root configuration.
+     *
+     * The metadata of remote components is downloaded in the background as soon as the components are selected, across the whole graph,
+     * while the traversal itself stays serial. The traversal applies the downloaded metadata once it needs it, so the resulting graph does
+     * not depend on the order in which downloads complete.
      */
     private void traverseGraph(final ResolveState resolveState, final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+        Throwable[] traversalFailure = new Throwable[1];
+        buildOperationExecutor.runAll((BuildOperationQueue<DownloadMetadataOperation> metadataDownloads) -> {
+            try {
+                traverseGraph(resolveState, componentIdentifierCache, metadataDownloads);
+            } catch (Throwable t) {
+                // Rethrown as is below, rather than as a failure to populate the queue
+                traversalFailure[0] = t;
+            } finally {
+                // Downloads that have not started yet are no longer needed
+                metadataDownloads.cancel();
+            }
+        }, BuildOperationConstraint.UNCONSTRAINED);
+        if (traversalFailure[0] != null) {
+            throw UncheckedException.throwAsUncheckedException(traversalFailure[0]);
+        }
+    }
+
+    private void traverseGraph(ResolveState resolveState, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, BuildOperationQueue<DownloadMetadataOperation> metadataDownloads) {
         resolveState.onMoreSelected(resolveState.getRoot());
         final List<EdgeState> dependencies = Lists.newArrayList();
 
@@ -195,9 +219,9 @@ private void traverseGraph(final ResolveState resolveState, final Map<ModuleVers
                 // Initialize and collect any new outgoing edges of this node
                 dependencies.clear();
                 node.visitOutgoingDependencies(dependencies);
-                boolean edgeWasProcessed = resolveEdges(node, dependencies, ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, false, resolveState, componentIdentifierCache);
+                boolean edgeWasProcessed = resolveEdges(node, dependencies, ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, false, resolveState, componentIdentifierCache, metadataDownloads);
                 node.collectEndorsedStrictVersions(dependencies);
-                resolveEdges(node, dependencies, NOT_ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, edgeWasProcessed, resolveState, componentIdentifierCache);
+                resolveEdges(node, dependencies, NOT_ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, edgeWasProcessed, resolveState, componentIdentifierCache, metadataDownloads);
             } else {
                 // We have some batched up conflicts. Resolve the first, and continue traversing the graph
                 if (moduleConflictHandler.hasConflicts()) {
@@ -254,12 +278,13 @@ private boolean resolveEdges(final NodeState node,
                                  final Spec<EdgeState> dependencyFilter,
                                  final boolean recomputeSelectors,
                                  final ResolveState resolveState,
-                                 final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+                                 final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache,
+                                 final BuildOperationQueue<DownloadMetadataOperation> metadataDownloads) {
         if (dependencies.isEmpty()) {
             return false;
         }
         if (performSelectionSerially(dependencies, dependencyFilter, resolveState, recomputeSelectors)) {
-            maybeDownloadMetadataInParallel(node, componentIdentifierCache, dependencies, dependencyFilter);
+            startMetadataDownloads(node, componentIdentifierCache, dependencies, dependencyFilter, metadataDownloads);
             attachToTargetRevisionsSerially(dependencies, dependencyFilter);
             return true;
         } else {
@@ -330,35 +355,26 @@ private void checkForModuleConflicts(ResolveState resolveState, ModuleResolveSta
     }
 
     /**
-     * Prepares the resolution of edges, either serially or concurrently.
-     * It uses a simple heuristic to determine if we should perform concurrent resolution, based on the the number of edges, and whether they have unresolved metadata.
+     * Starts downloading the metadata of the newly selected target components of the given dependencies, unless the metadata is cheap to fetch.
+     * The traversal does not wait for the downloads, they are awaited once the metadata is needed.
      */
-    private void maybeDownloadMetadataInParallel(NodeState node, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, List<EdgeState> dependencies, Spec<EdgeState> dependencyFilter) {
-        List<ComponentState> requiringDownload = null;
+    private void startMetadataDownloads(NodeState node, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, List<EdgeState> dependencies, Spec<EdgeState> dependencyFilter, BuildOperationQueue<DownloadMetadataOperation> metadataDownloads) {
+        int started = 0;
         for (EdgeState dependency : dependencies) {
             if (!dependencyFilter.isSatisfiedBy(dependency)) {
                 continue;
             }
             ComponentState targetComponent = dependency.getTargetComponent();
-            if (targetComponent != null && targetComponent.isSelected() && !targetComponent.alreadyResolved()) {
+            if (targetComponent != null && targetComponent.isSelected() && !targetComponent.alreadyResolved() && !targetComponent.isMetadataDownloadPending()
+                && !targetComponent.getModule().isVirtualPlatform()) {
                 if (!metaDataResolver.isFetchingMetadataCheap(toComponentId(targetComponent.getId(), componentIdentifierCache))) {
-                    // Avoid initializing the list if there are no components requiring download (a common case)
-                    if (requiringDownload == null) {
-                        requiringDownload = Lists.newArrayList();
-                    }
-                    requiringDownload.add(targetComponent);
+                    metadataDownloads.add(targetComponent.startMetadataDownload());
+                    started++;
                 }
             }
         }
-        // Only download in parallel if there is more than 1 component to download
-        if (requiringDownload != null && requiringDownload.size() > 1) {
-            final ImmutableList<ComponentState> toDownloadInParallel = ImmutableList.copyOf(requiringDownload);
-            LOGGER.debug("Submitting {} metadata files to resolve in parallel for {}", toDownloadInParallel.size(), node);
-            buildOperationExecutor.runAll(buildOperationQueue -> {
-                for (final ComponentState componentState : toDownloadInParallel) {
-                    buildOperationQueue.add(new DownloadMetadataOperation(componentState));
-                }
-            }, BuildOperationConstraint.UNCONSTRAINED);
+        if (started > 0) {
+            LOGGER.debug("Started downloading {} metadata files for {}", started, node);
         }
     }
 
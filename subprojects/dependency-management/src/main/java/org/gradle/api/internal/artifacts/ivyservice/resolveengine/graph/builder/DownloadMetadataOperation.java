@@ -15,24 +15,78 @@
  */
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
 
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
 import org.gradle.internal.operations.BuildOperationContext;
-import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Downloads the metadata of a component ahead of the graph traversal needing it.
+ *
+ * The download is run either by a build operation worker or by the traversal itself, via {@link #takeResult()},
+ * when the traversal needs the metadata before a worker has started the download. The result is only applied to
+ * the component by the traversal, so the component state is never touched by the worker.
+ */
 class DownloadMetadataOperation implements RunnableBuildOperation {
-    private final ComponentState state;
+    private final String displayName;
+    private final ComponentIdentifier componentIdentifier;
+    private final ComponentOverrideMetadata componentOverrideMetadata;
+    private final ComponentMetaDataResolver resolver;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+    private Throwable failure;
 
-    DownloadMetadataOperation(ComponentState state) {
-        this.state = state;
+    DownloadMetadataOperation(String displayName, ComponentIdentifier componentIdentifier, ComponentOverrideMetadata componentOverrideMetadata, ComponentMetaDataResolver resolver) {
+        this.displayName = displayName;
+        this.componentIdentifier = componentIdentifier;
+        this.componentOverrideMetadata = componentOverrideMetadata;
+        this.resolver = resolver;
     }
 
     @Override
     public void run(BuildOperationContext context) {
-        state.getMetadata();
+        // Failures are reported by the traversal, if it ends up needing the metadata
+        download();
+    }
+
+    /**
+     * Returns the result of the download, running it on the calling thread if no worker has started it yet.
+     */
+    DefaultBuildableComponentResolveResult takeResult() {
+        if (!download()) {
+            Uninterruptibles.awaitUninterruptibly(finished);
+        }
+        if (failure != null) {
+            throw UncheckedException.throwAsUncheckedException(failure);
+        }
+        return result;
+    }
+
+    private boolean download() {
+        if (!started.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            resolver.resolve(componentIdentifier, componentOverrideMetadata, result);
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            finished.countDown();
+        }
+        return true;
     }
 
     @Override
     public BuildOperationDescriptor.Builder description() {
-        return BuildOperationDescriptor.displayName("Resolve " + state);
+        return BuildOperationDescriptor.displayName("Resolve " + displayName);
     }
 }
@@ -107,6 +107,10 @@ class DependencyGraphBuilderTest extends Specification {
         runAll(_) >> { args ->
             args[0].execute(queue)
         }
+        // Metadata downloaded ahead of time is never picked up by a worker, so the traversal downloads it when it needs it
+        runAll(_, _) >> { args ->
+            args[0].execute(Mock(BuildOperationQueue))
+        }
     }
     def dependencySubstitutionApplicator = new DefaultDependencySubstitutionApplicator(DependencyManagementTestUtil.componentSelectionDescriptorFactory(), Mock(Action), TestUtil.instantiatorFactory().decorateScheme().instantiator())
     def componentSelectorConverter = Mock(ComponentSelectorConverter) {
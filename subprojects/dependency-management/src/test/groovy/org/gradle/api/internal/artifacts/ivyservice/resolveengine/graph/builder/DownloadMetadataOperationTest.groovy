@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
+
+import org.gradle.api.artifacts.component.ComponentIdentifier
+import org.gradle.internal.component.model.ComponentResolveMetadata
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult
+import spock.lang.Specification
+
+class DownloadMetadataOperationTest extends Specification {
+    def componentId = Stub(ComponentIdentifier)
+    def metadata = Stub(ComponentResolveMetadata)
+    def resolver = Mock(ComponentMetaDataResolver)
+    def operation = new DownloadMetadataOperation("test", componentId, DefaultComponentOverrideMetadata.EMPTY, resolver)
+
+    def "result of a download run by a worker is used by the traversal"() {
+        when:
+        operation.run(Stub(BuildOperationContext))
+
+        then:
+        1 * resolver.resolve(componentId, DefaultComponentOverrideMetadata.EMPTY, _) >> { ComponentIdentifier id, def override, BuildableComponentResolveResult resolveResult ->
+            resolveResult.resolved(metadata)
+        }
+
+        when:
+        def result = operation.takeResult()
+
+        then:
+        result.metadata == metadata
+        0 * resolver._
+    }
+
+    def "traversal downloads metadata when no worker has started the download"() {
+        when:
+        def result = operation.takeResult()
+
+        then:
+        1 * resolver.resolve(componentId, DefaultComponentOverrideMetadata.EMPTY, _) >> { ComponentIdentifier id, def override, BuildableComponentResolveResult resolveResult ->
+            resolveResult.resolved(metadata)
+        }
+        result.metadata == metadata
+
+        when:
+        operation.run(Stub(BuildOperationContext))
+
+        then:
+        0 * resolver._
+    }
+
+    def "failure of a download run by a worker is rethrown to the traversal"() {
+        def failure = new RuntimeException("broken")
+
+        when:
+        operation.run(Stub(BuildOperationContext))
+
+        then:
+        1 * resolver.resolve(componentId, DefaultComponentOverrideMetadata.EMPTY, _) >> { throw failure }
+        noExceptionThrown()
+
+        when:
+        operation.takeResult()
+
+        then:
+        def e = thrown(RuntimeException)
+        e.is(failure)
+    }
+}
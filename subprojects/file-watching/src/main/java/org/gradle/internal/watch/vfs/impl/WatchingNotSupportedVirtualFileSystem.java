@@ -35,6 +35,7 @@
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.List;
 
 /**
  * A {@link VirtualFileSystem} which is not able to register any watches.
@@ -47,6 +48,11 @@ public WatchingNotSupportedVirtualFileSystem(VfsRootReference rootReference) {
         super(rootReference);
     }
 
+    @Override
+    protected boolean tryUpdateConcurrentlyNotifyingListeners(List<RootUpdateFunction> updateSteps) {
+        return rootReference.tryUpdateConcurrently(() -> true, root -> updateWithoutListeners(root, updateSteps));
+    }
+
     @Override
     protected SnapshotHierarchy updateNotifyingListeners(UpdateFunction updateFunction) {
         return updateFunction.update(SnapshotHierarchy.NodeDiffListener.NOOP);
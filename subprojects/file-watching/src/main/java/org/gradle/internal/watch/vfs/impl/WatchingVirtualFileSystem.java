@@ -77,6 +77,11 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
     private final Set<File> watchableHierarchiesRegisteredEarly = new LinkedHashSet<>();
 
     private FileWatcherRegistry watchRegistry;
+    /**
+     * The watch registry which failed to receive the changes of a concurrent update.
+     * Watching is stopped by the next exclusive update, concurrent updates are not possible until then.
+     */
+    private volatile FileWatcherRegistry failedWatchRegistry;
     private Exception reasonForNotWatchingFiles;
     private boolean stateInvalidatedAtStartOfBuild;
 
@@ -96,6 +101,56 @@ public WatchingVirtualFileSystem(
         this.fileChangeListeners = fileChangeListeners;
     }
 
+    @Override
+    protected boolean tryUpdateConcurrentlyNotifyingListeners(List<RootUpdateFunction> updateSteps) {
+        boolean updated = rootReference.tryUpdateConcurrentlyInOrder(() -> failedWatchRegistry == null, currentRoot -> {
+            FileWatcherRegistry currentWatchRegistry = watchRegistry;
+            if (currentWatchRegistry == null) {
+                return VfsRootReference.ConcurrentUpdate.withoutSideEffects(updateWithoutListeners(currentRoot, updateSteps));
+            }
+            // The watch registry needs to see the changes of each step, in the order in which they have been applied to the VFS
+            List<Runnable> publications = new ArrayList<>(updateSteps.size());
+            SnapshotHierarchy result = currentRoot;
+            for (RootUpdateFunction updateStep : updateSteps) {
+                SnapshotCollectingDiffListener diffListener = new SnapshotCollectingDiffListener();
+                SnapshotHierarchy newRoot = updateStep.update(result, diffListener);
+                publications.add(() -> diffListener.publishSnapshotDiff((removedSnapshots, addedSnapshots) ->
+                    currentWatchRegistry.virtualFileSystemContentsChanged(removedSnapshots, addedSnapshots, newRoot)
+                ));
+                result = newRoot;
+            }
+            return VfsRootReference.ConcurrentUpdate.publishing(result, () -> publishToWatchRegistry(currentWatchRegistry, publications));
+        });
+        if (updated && failedWatchRegistry != null) {
+            stopWatchingAfterFailedPublication();
+        }
+        return updated;
+    }
+
+    private void publishToWatchRegistry(FileWatcherRegistry currentWatchRegistry, List<Runnable> publications) {
+        if (failedWatchRegistry != null) {
+            // Watching is about to stop and the VFS is about to be invalidated, so the remaining changes don't matter
+            return;
+        }
+        try {
+            publications.forEach(Runnable::run);
+        } catch (Exception ex) {
+            logWatchingError(ex, FILE_WATCHING_ERROR_MESSAGE_DURING_BUILD, null);
+            failedWatchRegistry = currentWatchRegistry;
+        }
+    }
+
+    private void stopWatchingAfterFailedPublication() {
+        rootReference.update(currentRoot -> {
+            FileWatcherRegistry failed = failedWatchRegistry;
+            failedWatchRegistry = null;
+            // Some other update may have stopped watching already
+            return failed != null && failed == watchRegistry
+                ? stopWatchingAndInvalidateHierarchyAfterError(currentRoot)
+                : currentRoot;
+        });
+    }
+
     @Override
     protected SnapshotHierarchy updateNotifyingListeners(UpdateFunction updateFunction) {
         if (watchRegistry == null) {
@@ -17,8 +17,12 @@
 package org.gradle.internal.watch.vfs.impl
 
 import net.rubygrapefruit.platform.NativeException
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.HashCode
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.RegularFileSnapshot
 import org.gradle.internal.snapshot.SnapshotHierarchy
 import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
 import org.gradle.internal.vfs.impl.VfsRootReference
@@ -126,6 +130,51 @@ class WatchingVirtualFileSystemTest extends Specification {
         rootReference.getRoot() == nonEmptySnapshotHierarchy
     }
 
+    def "notifies the watch registry about stores and invalidations while watching"() {
+        def snapshot = fileSnapshot("/root/file.txt")
+
+        when:
+        watchingVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> watcherRegistry
+        1 * watcherRegistry.updateVfsOnBuildStarted(_, _, _) >> emptySnapshotHierarchy
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+        0 * _
+
+        when:
+        watchingVirtualFileSystem.store(snapshot.absolutePath, snapshot)
+        then:
+        1 * watcherRegistry.virtualFileSystemContentsChanged([], [snapshot], { it.findSnapshot(snapshot.absolutePath).present })
+        0 * _
+
+        when:
+        watchingVirtualFileSystem.invalidate([snapshot.absolutePath])
+        then:
+        1 * watcherRegistry.virtualFileSystemContentsChanged([snapshot], [], { !it.findSnapshot(snapshot.absolutePath).present })
+        0 * _
+    }
+
+    def "stops watching when the watch registry fails to receive the changes of a store"() {
+        def snapshot = fileSnapshot("/root/file.txt")
+
+        when:
+        watchingVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> watcherRegistry
+        1 * watcherRegistry.updateVfsOnBuildStarted(_, _, _) >> emptySnapshotHierarchy
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+        0 * _
+
+        when:
+        watchingVirtualFileSystem.store(snapshot.absolutePath, snapshot)
+        then:
+        1 * watcherRegistry.virtualFileSystemContentsChanged(_, _, _) >> { throw new RuntimeException("broken") }
+        1 * watcherRegistry.close()
+        0 * _
+
+        !rootReference.root.findSnapshot(snapshot.absolutePath).present
+    }
+
     def "collects hierarchies to watch and notifies the vfs"() {
         def watchableHierarchy = new File("watchable")
         def watcherProbe = new File(watchableHierarchy, ".gradle/watch-probe")
@@ -230,4 +279,8 @@ class WatchingVirtualFileSystemTest extends Specification {
         1 * watcherRegistry.close()
         0 * _
     }
+
+    private static RegularFileSnapshot fileSnapshot(String absolutePath) {
+        new RegularFileSnapshot(absolutePath, absolutePath.substring(absolutePath.lastIndexOf('/') + 1), HashCode.fromInt(1234), DefaultFileMetadata.file(1, 1, AccessType.DIRECT))
+    }
 }
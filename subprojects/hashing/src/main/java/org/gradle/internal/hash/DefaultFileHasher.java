@@ -21,12 +21,29 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 
 public class DefaultFileHasher implements FileHasher {
+    /**
+     * Files at least this large are hashed via a memory mapping instead of being copied through a heap buffer.
+     */
+    public static final long DEFAULT_MEMORY_MAPPING_THRESHOLD = 8 * 1024 * 1024;
+
     private final StreamHasher streamHasher;
+    private final long memoryMappingThreshold;
 
     public DefaultFileHasher(StreamHasher streamHasher) {
+        this(streamHasher, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param memoryMappingThreshold the minimum length of files hashed via a memory mapping, {@link Long#MAX_VALUE} disables memory mapping.
+     */
+    public DefaultFileHasher(StreamHasher streamHasher, long memoryMappingThreshold) {
         this.streamHasher = streamHasher;
+        this.memoryMappingThreshold = memoryMappingThreshold;
     }
 
     @Override
@@ -35,7 +52,7 @@ public HashCode hash(File file) {
         try {
             inputStream = new FileInputStream(file);
         } catch (FileNotFoundException e) {
-            throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s' as it does not exist.", file), e);
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s' as it does not exist.", algorithm(), file), e);
         }
         try {
             return streamHasher.hash(inputStream);
@@ -50,6 +67,26 @@ public HashCode hash(File file) {
 
     @Override
     public HashCode hash(File file, long length, long lastModified) {
+        if (length >= memoryMappingThreshold) {
+            return hashMapped(file);
+        }
         return hash(file);
     }
+
+    private HashCode hashMapped(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return streamHasher.hash(channel);
+        } catch (NoSuchFileException e) {
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s' as it does not exist.", algorithm(), file), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s'.", algorithm(), file), e);
+        } catch (InternalError e) {
+            // Accessing a mapping of a file that has been truncated concurrently raises SIGBUS, which the JVM reports as an InternalError
+            return hash(file);
+        }
+    }
+
+    private static String algorithm() {
+        return Hashing.defaultFunction().getAlgorithm();
+    }
 }
@@ -15,26 +15,45 @@
  */
 package org.gradle.internal.hash;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.io.ByteStreams;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 
 public class DefaultStreamHasher implements StreamHasher {
     private static final HashCode SIGNATURE = Hashing.signature(DefaultStreamHasher.class);
 
+    /**
+     * Large files are mapped region by region, to limit the address space reserved at once.
+     * Each region is unmapped as soon as it has been hashed, so the address space is not held until the buffer is garbage collected.
+     */
+    private static final long MAX_MAPPED_REGION_SIZE = 256 * 1024 * 1024;
+
     private final Queue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(16);
+    private final long maxMappedRegionSize;
+
+    public DefaultStreamHasher() {
+        this(MAX_MAPPED_REGION_SIZE);
+    }
+
+    @VisibleForTesting
+    DefaultStreamHasher(long maxMappedRegionSize) {
+        this.maxMappedRegionSize = maxMappedRegionSize;
+    }
 
     @Override
     public HashCode hash(InputStream inputStream) {
         try {
             return doHash(inputStream, ByteStreams.nullOutputStream());
         } catch (IOException e) {
-            throw new UncheckedIOException("Failed to create MD5 hash for file content.", e);
+            throw new UncheckedIOException("Failed to create " + Hashing.defaultFunction().getAlgorithm() + " hash for file content.", e);
         }
     }
 
@@ -43,6 +62,25 @@ public HashCode hashCopy(InputStream inputStream, OutputStream outputStream) thr
         return doHash(inputStream, outputStream);
     }
 
+    @Override
+    public HashCode hash(FileChannel channel) throws IOException {
+        PrimitiveHasher hasher = Hashing.newPrimitiveHasher();
+        hasher.putHash(SIGNATURE);
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+            long regionSize = Math.min(size - position, maxMappedRegionSize);
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, regionSize);
+            try {
+                hasher.putBytes(region);
+            } finally {
+                MappedByteBufferUnmapper.unmap(region);
+            }
+            position += regionSize;
+        }
+        return hasher.hash();
+    }
+
     private HashCode doHash(InputStream inputStream, OutputStream outputStream) throws IOException {
         byte[] buffer = takeBuffer();
         try {
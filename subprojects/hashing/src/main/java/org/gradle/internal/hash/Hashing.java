@@ -45,7 +45,32 @@ private Hashing() {
 
     private static final HashFunction SHA512 = MessageDigestHashFunction.of("SHA-512");
 
-    private static final HashFunction DEFAULT = MD5;
+    private static final HashFunction MURMUR3 = Murmur3HashFunction.INSTANCE;
+
+    /**
+     * System property selecting the default hash function, either {@code md5} (the default) or {@code murmur3}.
+     *
+     * The property is read once, when this class is initialized. A long-lived process such as the daemon keeps the function it was started with,
+     * so the property has to be passed as a JVM argument of the process, for example via {@code org.gradle.jvmargs}.
+     *
+     * Persistent caches that store hashes record the algorithm of the default hash function, so that they are invalidated when it changes.
+     */
+    public static final String DEFAULT_HASH_FUNCTION_PROPERTY = "org.gradle.internal.hash.function";
+
+    private static final String DEFAULT_NAME = System.getProperty(DEFAULT_HASH_FUNCTION_PROPERTY, "md5");
+
+    private static final HashFunction DEFAULT = defaultFunctionFor(DEFAULT_NAME);
+
+    private static HashFunction defaultFunctionFor(String name) {
+        switch (name) {
+            case "md5":
+                return MD5;
+            case "murmur3":
+                return MURMUR3;
+            default:
+                throw new IllegalArgumentException("Unsupported hash function '" + name + "' in system property '" + DEFAULT_HASH_FUNCTION_PROPERTY + "'. Supported values are 'md5' and 'murmur3'.");
+        }
+    }
 
     /**
      * Returns a new {@link Hasher} based on the default hashing implementation.
@@ -113,6 +138,13 @@ public static HashFunction defaultFunction() {
         return DEFAULT;
     }
 
+    /**
+     * The name the default hashing function was selected with, as it would be passed in {@link #DEFAULT_HASH_FUNCTION_PROPERTY}.
+     */
+    public static String defaultFunctionName() {
+        return DEFAULT_NAME;
+    }
+
     /**
      * MD5 hashing function.
      */
@@ -120,6 +152,13 @@ public static HashFunction md5() {
         return MD5;
     }
 
+    /**
+     * 128-bit MurmurHash3 hashing function. Much faster than the cryptographic hash functions, but not suitable for security purposes.
+     */
+    public static HashFunction murmur3() {
+        return MURMUR3;
+    }
+
     /**
      * SHA1 hashing function.
      */
@@ -296,6 +335,11 @@ public void putBytes(byte[] bytes, int off, int len) {
             getDigest().update(bytes, off, len);
         }
 
+        @Override
+        public void putBytes(ByteBuffer bytes) {
+            getDigest().update(bytes);
+        }
+
         private void update(int length) {
             getDigest().update(buffer.array(), 0, length);
             castBuffer(buffer).clear();
@@ -351,7 +395,7 @@ public HashCode hash() {
         }
     }
 
-    private static class DefaultHasher implements Hasher {
+    static class DefaultHasher implements Hasher {
         private final PrimitiveHasher hasher;
 
         public DefaultHasher(PrimitiveHasher unsafeHasher) {
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The 128-bit x64 variant of MurmurHash3, a fast non-cryptographic hash function.
+ *
+ * Produces the same hashes as Guava's {@code Hashing.murmur3_128()} for the same input bytes.
+ */
+final class Murmur3HashFunction implements HashFunction {
+
+    static final HashFunction INSTANCE = new Murmur3HashFunction();
+
+    private Murmur3HashFunction() {
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return "MURMUR3-128";
+    }
+
+    @Override
+    public PrimitiveHasher newPrimitiveHasher() {
+        return new Murmur3Hasher();
+    }
+
+    @Override
+    public Hasher newHasher() {
+        return new Hashing.DefaultHasher(newPrimitiveHasher());
+    }
+
+    @Override
+    public HashCode hashBytes(byte[] bytes) {
+        PrimitiveHasher hasher = newPrimitiveHasher();
+        hasher.putBytes(bytes);
+        return hasher.hash();
+    }
+
+    @Override
+    public HashCode hashString(CharSequence string) {
+        PrimitiveHasher hasher = newPrimitiveHasher();
+        hasher.putString(string);
+        return hasher.hash();
+    }
+
+    @Override
+    public HashCode hashStream(InputStream stream) throws IOException {
+        HashingOutputStream hashingOutputStream = new HashingOutputStream(this, ByteStreams.nullOutputStream());
+        ByteStreams.copy(stream, hashingOutputStream);
+        return hashingOutputStream.hash();
+    }
+
+    @Override
+    public HashCode hashFile(File file) throws IOException {
+        HashingOutputStream hashingOutputStream = new HashingOutputStream(this, ByteStreams.nullOutputStream());
+        Files.copy(file, hashingOutputStream);
+        return hashingOutputStream.hash();
+    }
+
+    @Override
+    public int getHexDigits() {
+        return 32;
+    }
+
+    @Override
+    public String toString() {
+        return getAlgorithm();
+    }
+
+    private static class Murmur3Hasher implements PrimitiveHasher {
+        private static final int BLOCK_SIZE = 16;
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private final byte[] tail = new byte[BLOCK_SIZE];
+        private int tailLength;
+        private long length;
+        private long h1;
+        private long h2;
+        private boolean done;
+
+        @Override
+        public void putByte(byte b) {
+            checkNotDone();
+            tail[tailLength++] = b;
+            if (tailLength == BLOCK_SIZE) {
+                processBlock(getLongLittleEndian(tail, 0), getLongLittleEndian(tail, 8));
+                tailLength = 0;
+            }
+        }
+
+        @Override
+        public void putBytes(byte[] bytes) {
+            putBytes(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void putBytes(byte[] bytes, int off, int len) {
+            checkNotDone();
+            int pos = off;
+            int end = off + len;
+            if (tailLength > 0) {
+                int toCopy = Math.min(BLOCK_SIZE - tailLength, len);
+                System.arraycopy(bytes, pos, tail, tailLength, toCopy);
+                tailLength += toCopy;
+                pos += toCopy;
+                if (tailLength < BLOCK_SIZE) {
+                    return;
+                }
+                processBlock(getLongLittleEndian(tail, 0), getLongLittleEndian(tail, 8));
+                tailLength = 0;
+            }
+            while (end - pos >= BLOCK_SIZE) {
+                processBlock(getLongLittleEndian(bytes, pos), getLongLittleEndian(bytes, pos + 8));
+                pos += BLOCK_SIZE;
+            }
+            tailLength = end - pos;
+            System.arraycopy(bytes, pos, tail, 0, tailLength);
+        }
+
+        @Override
+        public void putBytes(ByteBuffer buffer) {
+            checkNotDone();
+            ByteOrder originalOrder = buffer.order();
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                while (tailLength > 0 && buffer.hasRemaining()) {
+                    putByte(buffer.get());
+                }
+                while (buffer.remaining() >= BLOCK_SIZE) {
+                    processBlock(buffer.getLong(), buffer.getLong());
+                }
+                while (buffer.hasRemaining()) {
+                    putByte(buffer.get());
+                }
+            } finally {
+                buffer.order(originalOrder);
+            }
+        }
+
+        @Override
+        public void putInt(int value) {
+            for (int i = 0; i < 4; i++) {
+                putByte((byte) (value >>> (i * 8)));
+            }
+        }
+
+        @Override
+        public void putLong(long value) {
+            for (int i = 0; i < 8; i++) {
+                putByte((byte) (value >>> (i * 8)));
+            }
+        }
+
+        @Override
+        public void putDouble(double value) {
+            putLong(Double.doubleToRawLongBits(value));
+        }
+
+        @Override
+        public void putBoolean(boolean value) {
+            putByte((byte) (value ? 1 : 0));
+        }
+
+        @Override
+        public void putString(CharSequence value) {
+            putBytes(value.toString().getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public void putHash(HashCode hashCode) {
+            putBytes(hashCode.getBytes());
+        }
+
+        @Override
+        public HashCode hash() {
+            checkNotDone();
+            done = true;
+            if (tailLength > 0) {
+                long k1 = 0;
+                long k2 = 0;
+                for (int i = tailLength - 1; i >= BLOCK_SIZE / 2; i--) {
+                    k2 ^= (long) (tail[i] & 0xff) << ((i - BLOCK_SIZE / 2) * 8);
+                }
+                for (int i = Math.min(tailLength, BLOCK_SIZE / 2) - 1; i >= 0; i--) {
+                    k1 ^= (long) (tail[i] & 0xff) << (i * 8);
+                }
+                length += tailLength;
+                h1 ^= mixK1(k1);
+                h2 ^= mixK2(k2);
+            }
+
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+
+            byte[] bytes = new byte[16];
+            putLongLittleEndian(bytes, 0, h1);
+            putLongLittleEndian(bytes, 8, h2);
+            return HashCode.fromBytesNoCopy(bytes);
+        }
+
+        private void checkNotDone() {
+            if (done) {
+                throw new IllegalStateException("Cannot reuse hasher!");
+            }
+        }
+
+        private void processBlock(long k1, long k2) {
+            length += BLOCK_SIZE;
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            return k1;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            return k2;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+
+        private static long getLongLittleEndian(byte[] bytes, int off) {
+            return (bytes[off] & 0xffL)
+                | (bytes[off + 1] & 0xffL) << 8
+                | (bytes[off + 2] & 0xffL) << 16
+                | (bytes[off + 3] & 0xffL) << 24
+                | (bytes[off + 4] & 0xffL) << 32
+                | (bytes[off + 5] & 0xffL) << 40
+                | (bytes[off + 6] & 0xffL) << 48
+                | (bytes[off + 7] & 0xffL) << 56;
+        }
+
+        private static void putLongLittleEndian(byte[] bytes, int off, long value) {
+            for (int i = 0; i < 8; i++) {
+                bytes[off + i] = (byte) (value >>> (i * 8));
+            }
+        }
+    }
+}
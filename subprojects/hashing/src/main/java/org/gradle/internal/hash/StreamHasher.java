@@ -18,6 +18,7 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 public interface StreamHasher {
     /**
@@ -30,4 +31,10 @@ public interface StreamHasher {
      * The method will not close either stream.
      */
     HashCode hashCopy(InputStream inputStream, OutputStream outputStream) throws IOException;
+
+    /**
+     * Returns the hash of the whole content of the given channel by memory mapping it.
+     * Produces the same hash as {@link #hash(InputStream)} for the same content. The channel will not be closed by the method.
+     */
+    HashCode hash(FileChannel channel) throws IOException;
 }
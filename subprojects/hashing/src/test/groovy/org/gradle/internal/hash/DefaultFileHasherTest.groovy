@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.channels.FileChannel
+
+class DefaultFileHasherTest extends Specification {
+    @TempDir
+    File tmpDir
+
+    def "memory mapped hash of #length bytes matches streamed hash"() {
+        def file = new File(tmpDir, "file.bin")
+        def content = new byte[length]
+        new Random(length).nextBytes(content)
+        file.bytes = content
+        def streamHasher = new DefaultStreamHasher()
+
+        expect:
+        new DefaultFileHasher(streamHasher, 0).hash(file, length, 0) == new DefaultFileHasher(streamHasher).hash(file, length, 0)
+        new DefaultFileHasher(streamHasher, 0).hash(file, length, 0) == streamHasher.hash(new ByteArrayInputStream(content))
+
+        where:
+        length << [0, 1, 15, 16, 17, 8191, 8193, 100_003]
+    }
+
+    def "does not memory map files below the threshold"() {
+        def file = new File(tmpDir, "file.bin")
+        file.bytes = "hello".bytes
+        def streamHasher = Mock(StreamHasher)
+        def expectedHash = HashCode.fromInt(1234)
+
+        when:
+        def hash = new DefaultFileHasher(streamHasher, 6).hash(file, 5, 0)
+
+        then:
+        1 * streamHasher.hash(_ as InputStream) >> expectedHash
+        0 * streamHasher.hash(_ as FileChannel)
+        hash == expectedHash
+    }
+
+    def "falls back to streaming when the memory mapped file is truncated concurrently"() {
+        def file = new File(tmpDir, "file.bin")
+        file.bytes = "hello".bytes
+        def streamHasher = Mock(StreamHasher)
+        def expectedHash = HashCode.fromInt(1234)
+
+        when:
+        def hash = new DefaultFileHasher(streamHasher, 0).hash(file, 5, 0)
+
+        then:
+        1 * streamHasher.hash(_ as FileChannel) >> { throw new InternalError("a fault occurred in an unsafe memory access operation") }
+        1 * streamHasher.hash(_ as InputStream) >> expectedHash
+        hash == expectedHash
+    }
+
+    def "reports the default hash function when the file does not exist"() {
+        def file = new File(tmpDir, "missing.bin")
+
+        when:
+        new DefaultFileHasher(new DefaultStreamHasher(), threshold).hash(file, 10, 0)
+
+        then:
+        def e = thrown(UncheckedIOException)
+        e.message == "Failed to create ${Hashing.defaultFunction().algorithm} hash for file '${file}' as it does not exist."
+
+        where:
+        threshold << [0, Long.MAX_VALUE]
+    }
+}
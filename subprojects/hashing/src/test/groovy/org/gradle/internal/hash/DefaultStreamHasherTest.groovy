@@ -17,8 +17,14 @@
 package org.gradle.internal.hash
 
 import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.channels.FileChannel
 
 class DefaultStreamHasherTest extends Specification {
+    @TempDir
+    File tmpDir
+
     def "can hash input"() {
         def input = new ByteArrayInputStream("hello".bytes)
         when:
@@ -36,4 +42,18 @@ class DefaultStreamHasherTest extends Specification {
         hash.toString() == "af67a92e9f73b51572e9b94e343d2840"
         output.toByteArray() == "hello".bytes
     }
+
+    def "hashes file mapped in several regions"() {
+        def file = new File(tmpDir, "file.bin")
+        def content = new byte[10_000]
+        new Random(1).nextBytes(content)
+        file.bytes = content
+        def hasher = new DefaultStreamHasher(4096)
+
+        when:
+        def hash = FileChannel.open(file.toPath()).withCloseable { hasher.hash(it) }
+
+        then:
+        hash == hasher.hash(new ByteArrayInputStream(content))
+    }
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import spock.lang.Specification
+
+class Murmur3HashFunctionTest extends Specification {
+    def random = new Random(1234L)
+
+    def "produces the same hashes as Guava for input of #length bytes"() {
+        def bytes = new byte[length]
+        random.nextBytes(bytes)
+
+        expect:
+        Hashing.murmur3().hashBytes(bytes).toString() == com.google.common.hash.Hashing.murmur3_128().hashBytes(bytes).toString()
+
+        where:
+        length << [0, 1, 7, 8, 15, 16, 17, 31, 32, 33, 1000, 65536]
+    }
+
+    def "produces the same hash regardless of how input is split"() {
+        def bytes = new byte[1000]
+        random.nextBytes(bytes)
+        def hasher = Hashing.murmur3().newPrimitiveHasher()
+
+        when:
+        int pos = 0
+        while (pos < bytes.length) {
+            int chunk = Math.min(bytes.length - pos, random.nextInt(40))
+            if (chunk == 1) {
+                hasher.putByte(bytes[pos])
+            } else {
+                hasher.putBytes(bytes, pos, chunk)
+            }
+            pos += chunk
+        }
+
+        then:
+        hasher.hash() == Hashing.murmur3().hashBytes(bytes)
+    }
+
+    def "hashes primitives in little endian byte order"() {
+        def hasher = Hashing.murmur3().newPrimitiveHasher()
+        hasher.putInt(42)
+        hasher.putLong(1234L)
+        hasher.putBoolean(true)
+
+        expect:
+        hasher.hash().toString() == com.google.common.hash.Hashing.murmur3_128().newHasher()
+            .putInt(42)
+            .putLong(1234L)
+            .putBoolean(true)
+            .hash()
+            .toString()
+    }
+
+    def "cannot call hash multiple times"() {
+        def hasher = Hashing.murmur3().newPrimitiveHasher()
+        hasher.putInt(1)
+        hasher.hash()
+
+        when:
+        hasher.hash()
+
+        then:
+        thrown(IllegalStateException)
+    }
+}
@@ -19,6 +19,7 @@ package org.gradle.launcher.daemon
 import org.gradle.cache.internal.HeapProportionalCacheSizer
 import org.gradle.integtests.fixtures.daemon.DaemonIntegrationSpec
 import org.gradle.integtests.fixtures.executer.GradleContextualExecuter
+import org.gradle.internal.hash.Hashing
 import spock.lang.IgnoreIf
 import spock.lang.Issue
 
@@ -232,6 +233,33 @@ task verify {
         daemons(gradleVersion).daemons.size() == 2
     }
 
+    def "forks new daemon when default hash function is set to different value via commandline"() {
+        setup:
+        buildScript """
+            task verify {
+                doFirst {
+                    println "verified = " + ${Hashing.name}.defaultFunction().algorithm
+                }
+            }
+        """
+
+        when:
+        run("verify")
+
+        then:
+        output.contains("verified = MD5")
+        daemons.daemons.size() == 1
+
+        when:
+        executer.withArgument("-D${Hashing.DEFAULT_HASH_FUNCTION_PROPERTY}=murmur3")
+        run("verify")
+
+        then:
+        output.contains("verified = MURMUR3-128")
+        !output.contains("Ignoring system property")
+        daemons.daemons.size() == 2
+    }
+
     String tempFolder(String folderName) {
         def dir = temporaryFolder.createDir(folderName)
         dir.mkdirs();
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.performance.experiment.java
+
+import org.gradle.initialization.StartParameterBuildOptions.ConfigurationCacheOption
+import org.gradle.performance.AbstractCrossBuildPerformanceTest
+import org.gradle.performance.annotations.RunFor
+import org.gradle.performance.annotations.Scenario
+import org.gradle.performance.fixture.GradleBuildExperimentSpec
+import org.gradle.profiler.BuildContext
+import org.gradle.profiler.BuildMutator
+import org.gradle.profiler.InvocationSettings
+import org.gradle.profiler.ScenarioContext
+
+import static org.gradle.performance.annotations.ScenarioType.PER_WEEK
+import static org.gradle.performance.results.OperatingSystem.LINUX
+
+@RunFor(
+    @Scenario(type = PER_WEEK, operatingSystems = [LINUX], testProjects = ["largeJavaMultiProjectNoBuildSrc"])
+)
+class ConfigurationCacheEntryEncodingPerformanceTest extends AbstractCrossBuildPerformanceTest {
+
+    private static final String COMPRESSION_PROPERTY = "org.gradle.internal.configuration-cache.compression"
+    private static final String INTERNING_PROPERTY = "org.gradle.internal.configuration-cache.interning"
+
+    def "assemble loading configuration cache state with compressed entry"() {
+        given:
+        runner.testGroup = "configuration cache"
+        runner.addBuildMutator { InvocationSettings invocationSettings ->
+            new ConfigurationCacheEntrySizeReporter(invocationSettings)
+        }
+        runner.buildSpec {
+            displayName("lz4 compressed entry")
+            invocation {
+                args("-D${COMPRESSION_PROPERTY}=lz4")
+            }
+        }
+        runner.baseline {
+            displayName("uncompressed entry")
+            invocation {
+                args("-D${COMPRESSION_PROPERTY}=none")
+            }
+        }
+
+        when:
+        def results = runner.run()
+
+        then:
+        results
+    }
+
+    def "assemble loading configuration cache state with interned strings and files"() {
+        given:
+        runner.testGroup = "configuration cache"
+        runner.addBuildMutator { InvocationSettings invocationSettings ->
+            new ConfigurationCacheEntrySizeReporter(invocationSettings)
+        }
+        runner.buildSpec {
+            displayName("interned strings and files")
+            invocation {
+                args("-D${INTERNING_PROPERTY}=true")
+            }
+        }
+        runner.baseline {
+            displayName("strings and files written as is")
+            invocation {
+                args("-D${INTERNING_PROPERTY}=false")
+            }
+        }
+
+        when:
+        def results = runner.run()
+
+        then:
+        results
+    }
+
+    @Override
+    protected void defaultSpec(GradleBuildExperimentSpec.GradleBuilder builder) {
+        super.defaultSpec(builder)
+        builder.warmUpCount = 2
+        builder.invocationCount = 10
+        builder.invocation {
+            tasksToRun("assemble")
+            args("-D${ConfigurationCacheOption.PROPERTY_NAME}=true")
+        }
+    }
+
+    /**
+     * Reports the size of the configuration cache entry, the first build of each experiment stores the entry and the others load it.
+     */
+    private static class ConfigurationCacheEntrySizeReporter implements BuildMutator {
+        private final InvocationSettings invocationSettings
+
+        ConfigurationCacheEntrySizeReporter(InvocationSettings invocationSettings) {
+            this.invocationSettings = invocationSettings
+        }
+
+        @Override
+        void beforeScenario(ScenarioContext context) {
+            new File(invocationSettings.projectDir, ".gradle/configuration-cache").deleteDir()
+        }
+
+        @Override
+        void afterBuild(BuildContext context, Throwable error) {
+            if (context.iteration == 1) {
+                def stateDirectory = new File(invocationSettings.projectDir, ".gradle/configuration-cache")
+                def size = stateDirectory.directory
+                    ? stateDirectory.listFiles().findAll { it.directory }.sum(0L) { File entry -> entry.directorySize() }
+                    : 0L
+                println("Configuration cache entry size in ${invocationSettings.projectDir}: $size bytes")
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.cache.FileLock;
+import org.gradle.cache.FileLockManager;
+import org.gradle.cache.FileLockReleasedSignal;
+import org.gradle.cache.internal.locklistener.DefaultFileLockContentionHandler;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.remote.internal.inet.InetAddressFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+
+/**
+ * Stress test for cross-process lock contention: several processes, each acting like a daemon that holds a cache lock
+ * until another process asks for it, access the same cache in a tight loop.
+ *
+ * <p>The benchmark measures the time one of these processes needs for a single cache access, including any lock handover.</p>
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class FileLockContentionBenchmark {
+
+    private static final int WORK_TOKENS = 1000;
+    private static final long PAUSE_BETWEEN_ACCESSES_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    /**
+     * The number of processes accessing the cache, including the one running the benchmark.
+     */
+    @Param({"1", "2", "4", "8"})
+    int processes;
+
+    private File tempDir;
+    private ContendedCache cache;
+    private final List<Process> otherProcesses = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tempDir = Files.createTempDirectory("file-lock-contention").toFile();
+        File lockTarget = new File(tempDir, "cache");
+        for (int i = 1; i < processes; i++) {
+            otherProcesses.add(new ProcessBuilder(javaExecutable(), "-cp", System.getProperty("java.class.path"), FileLockContentionBenchmark.class.getName(), lockTarget.getAbsolutePath())
+                .inheritIO()
+                .redirectInput(ProcessBuilder.Redirect.PIPE)
+                .start());
+        }
+        cache = new ContendedCache(lockTarget);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (Process process : otherProcesses) {
+            process.getOutputStream().close();
+            process.waitFor(1, TimeUnit.MINUTES);
+            process.destroyForcibly();
+        }
+        otherProcesses.clear();
+        cache.close();
+        FileUtils.deleteQuietly(tempDir);
+    }
+
+    @Benchmark
+    public void access() {
+        cache.access();
+    }
+
+    /**
+     * Entry point of the other processes. Accesses the cache until the benchmark closes the standard input of the process.
+     */
+    public static void main(String[] args) throws IOException {
+        ContendedCache cache = new ContendedCache(new File(args[0]));
+        AtomicBoolean stopped = new AtomicBoolean();
+        AtomicLong accesses = new AtomicLong();
+        Thread accessor = new Thread(() -> {
+            while (!stopped.get()) {
+                cache.access();
+                accesses.incrementAndGet();
+                LockSupport.parkNanos(PAUSE_BETWEEN_ACCESSES_NANOS);
+            }
+        });
+        accessor.start();
+        while (System.in.read() != -1) {
+            // Wait for the benchmark to finish
+        }
+        stopped.set(true);
+        try {
+            accessor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        cache.close();
+        // Lets the other processes be checked for starvation
+        System.out.println("Contending process finished " + accesses.get() + " cache accesses");
+        System.exit(0);
+    }
+
+    private static String javaExecutable() {
+        return new File(System.getProperty("java.home"), "bin/java").getAbsolutePath();
+    }
+
+    /**
+     * Holds the cache lock between accesses and gives it up when another process asks for it, like the on demand cache locking of a daemon.
+     */
+    private static class ContendedCache {
+        private final DefaultFileLockContentionHandler contentionHandler = new DefaultFileLockContentionHandler(new DefaultExecutorFactory(), new InetAddressFactory());
+        private final FileLockManager lockManager;
+        private final File lockTarget;
+        private final Lock lock = new ReentrantLock();
+        private FileLock fileLock;
+
+        ContendedCache(File lockTarget) {
+            this.lockTarget = lockTarget;
+            this.lockManager = new DefaultFileLockManager(new ProcessMetaDataProvider() {
+                private final String identifier = UUID.randomUUID().toString();
+
+                @Override
+                public String getProcessIdentifier() {
+                    return identifier;
+                }
+
+                @Override
+                public String getProcessDisplayName() {
+                    return "benchmark process " + identifier;
+                }
+            }, contentionHandler);
+        }
+
+        void access() {
+            lock.lock();
+            try {
+                if (fileLock == null) {
+                    fileLock = lockManager.lock(lockTarget, mode(FileLockManager.LockMode.Exclusive), "contended cache", "", this::release);
+                }
+                fileLock.writeFile(() -> Blackhole.consumeCPU(WORK_TOKENS));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void release(FileLockReleasedSignal signal) {
+            lock.lock();
+            try {
+                if (fileLock != null) {
+                    fileLock.close();
+                    fileLock = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+            signal.trigger();
+        }
+
+        void close() {
+            release(() -> {
+            });
+            contentionHandler.stop();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.cache.PersistentIndexedCacheParameters.Storage;
+import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.logstructured.LogStructuredPersistentIndexedCache;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Compares the backends of persistent indexed caches on workloads shaped like the hottest caches of a build.
+ *
+ * <ul>
+ *     <li>{@code FILE_HASHES}: absolute paths mapped to small values, like the file hash cache used by {@code CachingFileHasher}.</li>
+ *     <li>{@code EXECUTION_HISTORY}: work identities mapped to values of a few kilobytes, like the execution history of tasks and transforms.</li>
+ * </ul>
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class PersistentIndexedCacheBenchmark {
+
+    public enum Workload {
+        FILE_HASHES(48),
+        EXECUTION_HISTORY(4096);
+
+        private final int valueSize;
+
+        Workload(int valueSize) {
+            this.valueSize = valueSize;
+        }
+
+        String key(int index) {
+            return this == FILE_HASHES
+                ? "/home/user/projects/app/module" + (index % 100) + "/src/main/java/org/example/Type" + index + ".java"
+                : ":module" + (index % 100) + ":compileJava" + index;
+        }
+    }
+
+    @Param({"BTREE", "LOG_STRUCTURED"})
+    Storage storage;
+
+    @Param({"FILE_HASHES", "EXECUTION_HISTORY"})
+    Workload workload;
+
+    @Param({"10000"})
+    int entries;
+
+    File tempDir;
+    File cacheFile;
+    IndexedCacheBackend<String, byte[]> cache;
+    String[] keys;
+    byte[][] values;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        tempDir = Files.createTempDirectory("persistent-cache-benchmark").toFile();
+        cacheFile = new File(tempDir, "cache.bin");
+        Random random = new Random(1234);
+        keys = new String[entries];
+        values = new byte[entries][];
+        for (int i = 0; i < entries; i++) {
+            keys[i] = workload.key(i);
+            values[i] = new byte[workload.valueSize];
+            random.nextBytes(values[i]);
+        }
+        cache = open();
+        for (int i = 0; i < entries; i++) {
+            cache.put(keys[i], values[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        cache.close();
+        FileUtils.forceDelete(tempDir);
+    }
+
+    @Benchmark
+    public void get(Blackhole blackhole) {
+        blackhole.consume(cache.get(nextKey()));
+    }
+
+    @Benchmark
+    public void getMissing(Blackhole blackhole) {
+        blackhole.consume(cache.get(nextKey() + "-missing"));
+    }
+
+    @Benchmark
+    public void update() {
+        int index = nextIndex();
+        cache.put(keys[index], values[(index + 1) % entries]);
+    }
+
+    /**
+     * Closing and reopening happens whenever the cross-process lock of a cache is handed over to another process.
+     */
+    @Benchmark
+    public void reopenAndGet(Blackhole blackhole) {
+        cache.close();
+        cache = open();
+        blackhole.consume(cache.get(nextKey()));
+    }
+
+    private IndexedCacheBackend<String, byte[]> open() {
+        switch (storage) {
+            case BTREE:
+                return new BTreePersistentIndexedCache<>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.BYTE_ARRAY_SERIALIZER);
+            case LOG_STRUCTURED:
+                return new LogStructuredPersistentIndexedCache<>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.BYTE_ARRAY_SERIALIZER);
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    private String nextKey() {
+        return keys[nextIndex()];
+    }
+
+    private int nextIndex() {
+        next = (next + 7919) % entries;
+        return next;
+    }
+}
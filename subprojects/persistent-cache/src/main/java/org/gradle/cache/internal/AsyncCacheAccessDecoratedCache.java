@@ -21,6 +21,8 @@
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
 import java.util.function.Function;
 
 public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsyncPersistentIndexedCache<K, V> {
@@ -50,30 +52,27 @@ public V get(K key, Function<? super K, ? extends V> producer, Runnable completi
 
     @Override
     public void putLater(final K key, final V value, final Runnable completion) {
-        try {
-            asyncCacheAccess.enqueue(() -> {
-                try {
-                    persistentCache.put(key, value);
-                } finally {
-                    completion.run();
-                }
-            });
-        } catch (RuntimeException e) {
-            completion.run();
-            throw e;
-        }
+        enqueue(new EntryUpdate(key, completion) {
+            @Override
+            void update() {
+                persistentCache.put(key, value);
+            }
+        }, completion);
     }
 
     @Override
     public void removeLater(final K key, final Runnable completion) {
+        enqueue(new EntryUpdate(key, completion) {
+            @Override
+            void update() {
+                persistentCache.remove(key);
+            }
+        }, completion);
+    }
+
+    private void enqueue(EntryUpdate update, Runnable completion) {
         try {
-            asyncCacheAccess.enqueue(() -> {
-                try {
-                    persistentCache.remove(key);
-                } finally {
-                    completion.run();
-                }
-            });
+            asyncCacheAccess.enqueue(update);
         } catch (RuntimeException e) {
             completion.run();
             throw e;
@@ -94,4 +93,35 @@ public void finishWork() {
     public void beforeLockRelease(FileLock.State currentCacheState) {
         persistentCache.beforeLockRelease(currentCacheState);
     }
+
+    private abstract class EntryUpdate implements CacheEntryUpdate {
+        private final List<Object> entryId;
+        private final Runnable completion;
+
+        EntryUpdate(K key, Runnable completion) {
+            this.entryId = Arrays.asList(persistentCache, key);
+            this.completion = completion;
+        }
+
+        abstract void update();
+
+        @Override
+        public Object getEntryId() {
+            return entryId;
+        }
+
+        @Override
+        public void run() {
+            try {
+                update();
+            } finally {
+                completion.run();
+            }
+        }
+
+        @Override
+        public void superseded() {
+            completion.run();
+        }
+    }
 }
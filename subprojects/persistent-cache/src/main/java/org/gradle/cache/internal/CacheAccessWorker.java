@@ -26,7 +26,9 @@
 import org.gradle.internal.time.Time;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
@@ -35,12 +37,21 @@
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Runs the queued operations of a cache on a single thread, in batches that each hold the cache lock once.
+ *
+ * <p>Within a batch, consecutive updates of the same cache entry are coalesced: only the last one is written.
+ * Any other operation, such as a read or a flush, ends such a run of updates, so reads always see all updates queued before them.</p>
+ */
 class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final BlockingQueue<Runnable> workQueue;
     private final String displayName;
     private final CacheAccess cacheAccess;
     private final long batchWindowMillis;
     private final long maximumLockingTimeMillis;
+    private final CacheAccessWorkerStatistics.Collector statisticsCollector;
     private boolean closed;
     private boolean workerCompleted;
     private boolean stopSeen;
@@ -48,8 +59,13 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
     private final ExecutorPolicy.CatchAndRecordFailures failureHandler = new ExecutorPolicy.CatchAndRecordFailures();
 
     CacheAccessWorker(String displayName, CacheAccess cacheAccess) {
+        this(displayName, cacheAccess, new CacheAccessWorkerStatistics.Collector());
+    }
+
+    CacheAccessWorker(String displayName, CacheAccess cacheAccess, CacheAccessWorkerStatistics.Collector statisticsCollector) {
         this.displayName = displayName;
         this.cacheAccess = cacheAccess;
+        this.statisticsCollector = statisticsCollector;
         this.batchWindowMillis = 200;
         this.maximumLockingTimeMillis = 5000;
         HeapProportionalCacheSizer heapProportionalCacheSizer = new HeapProportionalCacheSizer();
@@ -67,10 +83,15 @@ private void addToQueue(Runnable task) {
             throw new IllegalStateException("The worker has already been closed. Cannot add more work to queue.");
         }
         try {
-            workQueue.put(task);
+            if (!workQueue.offer(task)) {
+                long start = System.nanoTime();
+                workQueue.put(task);
+                statisticsCollector.reportProducerStall(System.nanoTime() - start);
+            }
         } catch (InterruptedException e) {
             throw UncheckedException.throwAsUncheckedException(e);
         }
+        statisticsCollector.reportQueueDepth(workQueue.size());
     }
 
     @Override
@@ -176,25 +197,21 @@ private void flushOperations(final Runnable updateOperation) {
                 @Override
                 public void run() {
                     CountdownTimer timer = Time.startCountdownTimer(maximumLockingTimeMillis, TimeUnit.MILLISECONDS);
-                    if (updateOperation != null) {
-                        failureHandler.onExecute(updateOperation);
-                    }
-                    Runnable otherOperation;
+                    List<Runnable> batch = new ArrayList<Runnable>();
+                    batch.add(updateOperation);
                     try {
-                        while ((otherOperation = workQueue.poll(batchWindowMillis, TimeUnit.MILLISECONDS)) != null) {
-                            failureHandler.onExecute(otherOperation);
-                            final Class<? extends Runnable> runnableClass = otherOperation.getClass();
-                            if (runnableClass == FlushOperationsCommand.class) {
-                                flushOperations.add((FlushOperationsCommand) otherOperation);
-                            }
-                            if (runnableClass == ShutdownOperationsCommand.class) {
-                                stopSeen = true;
+                        while (true) {
+                            workQueue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+                            boolean lockReleaseRequested = runBatch(batch, flushOperations);
+                            batch.clear();
+                            if (lockReleaseRequested || timer.hasExpired()) {
+                                break;
                             }
-                            if (runnableClass == ShutdownOperationsCommand.class
-                                    || runnableClass == FlushOperationsCommand.class
-                                    || timer.hasExpired()) {
+                            Runnable nextOperation = workQueue.poll(batchWindowMillis, TimeUnit.MILLISECONDS);
+                            if (nextOperation == null) {
                                 break;
                             }
+                            batch.add(nextOperation);
                         }
                     } catch (InterruptedException e) {
                         throw UncheckedException.throwAsUncheckedException(e);
@@ -208,6 +225,63 @@ public void run() {
         }
     }
 
+    /**
+     * Runs the given operations in order, skipping updates that are superseded by a later update of the same entry
+     * without any other operation in between.
+     *
+     * @return true when the batch contained a flush or shutdown command, which means the cache lock should be released.
+     */
+    private boolean runBatch(List<Runnable> batch, List<FlushOperationsCommand> flushOperations) {
+        boolean lockReleaseRequested = false;
+        int coalescedUpdates = 0;
+        Map<Object, Integer> lastUpdateOfEntry = new HashMap<Object, Integer>();
+        int firstUpdate = 0;
+        for (int i = 0; i <= batch.size(); i++) {
+            Runnable operation = i < batch.size() ? batch.get(i) : null;
+            if (operation instanceof CacheEntryUpdate) {
+                lastUpdateOfEntry.put(((CacheEntryUpdate) operation).getEntryId(), i);
+                continue;
+            }
+            coalescedUpdates += runUpdates(batch, firstUpdate, i, lastUpdateOfEntry);
+            lastUpdateOfEntry.clear();
+            firstUpdate = i + 1;
+            if (operation == null) {
+                break;
+            }
+            failureHandler.onExecute(operation);
+            Class<? extends Runnable> runnableClass = operation.getClass();
+            if (runnableClass == FlushOperationsCommand.class) {
+                flushOperations.add((FlushOperationsCommand) operation);
+                lockReleaseRequested = true;
+            }
+            if (runnableClass == ShutdownOperationsCommand.class) {
+                stopSeen = true;
+                lockReleaseRequested = true;
+            }
+        }
+        statisticsCollector.reportBatch(batch.size() - coalescedUpdates, coalescedUpdates);
+        return lockReleaseRequested;
+    }
+
+    private int runUpdates(List<Runnable> batch, int from, int to, Map<Object, Integer> lastUpdateOfEntry) {
+        int coalescedUpdates = 0;
+        for (int i = from; i < to; i++) {
+            final CacheEntryUpdate update = (CacheEntryUpdate) batch.get(i);
+            if (lastUpdateOfEntry.get(update.getEntryId()) == i) {
+                failureHandler.onExecute(update);
+            } else {
+                coalescedUpdates++;
+                failureHandler.onExecute(new Runnable() {
+                    @Override
+                    public void run() {
+                        update.superseded();
+                    }
+                });
+            }
+        }
+        return coalescedUpdates;
+    }
+
     @Override
     public synchronized void stop() {
         if (!closed && !workerCompleted) {
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import java.text.MessageFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics about the write-behind queues of persistent caches.
+ */
+public interface CacheAccessWorkerStatistics {
+    /**
+     * Number of batches of queued operations that have been run, each while holding the cache lock once.
+     */
+    long getBatchCount();
+
+    /**
+     * Number of queued operations that have been run.
+     */
+    long getOperationCount();
+
+    /**
+     * Size of the largest batch.
+     */
+    long getMaxBatchSize();
+
+    /**
+     * Number of entry updates that have been skipped because a later update of the same entry was queued.
+     */
+    long getCoalescedUpdateCount();
+
+    /**
+     * The largest number of operations waiting in a queue.
+     */
+    long getMaxQueueDepth();
+
+    /**
+     * Number of times an operation could not be queued right away because the queue was full.
+     */
+    long getProducerStallCount();
+
+    /**
+     * Total time spent waiting for space in a full queue.
+     */
+    long getProducerStallTimeMillis();
+
+    class Collector {
+        private final AtomicLong batchCount = new AtomicLong();
+        private final AtomicLong operationCount = new AtomicLong();
+        private final AtomicLong maxBatchSize = new AtomicLong();
+        private final AtomicLong coalescedUpdateCount = new AtomicLong();
+        private final AtomicLong maxQueueDepth = new AtomicLong();
+        private final AtomicLong producerStallCount = new AtomicLong();
+        private final AtomicLong producerStallTimeNanos = new AtomicLong();
+
+        public void reportBatch(int operations, int coalescedUpdates) {
+            batchCount.incrementAndGet();
+            operationCount.addAndGet(operations);
+            maxBatchSize.accumulateAndGet(operations, Math::max);
+            coalescedUpdateCount.addAndGet(coalescedUpdates);
+        }
+
+        public void reportQueueDepth(int depth) {
+            maxQueueDepth.accumulateAndGet(depth, Math::max);
+        }
+
+        public void reportProducerStall(long nanos) {
+            producerStallCount.incrementAndGet();
+            producerStallTimeNanos.addAndGet(nanos);
+        }
+
+        public CacheAccessWorkerStatistics collect() {
+            long batchCount = this.batchCount.getAndSet(0);
+            long operationCount = this.operationCount.getAndSet(0);
+            long maxBatchSize = this.maxBatchSize.getAndSet(0);
+            long coalescedUpdateCount = this.coalescedUpdateCount.getAndSet(0);
+            long maxQueueDepth = this.maxQueueDepth.getAndSet(0);
+            long producerStallCount = this.producerStallCount.getAndSet(0);
+            long producerStallTimeMillis = TimeUnit.NANOSECONDS.toMillis(this.producerStallTimeNanos.getAndSet(0));
+            return new CacheAccessWorkerStatistics() {
+                @Override
+                public long getBatchCount() {
+                    return batchCount;
+                }
+
+                @Override
+                public long getOperationCount() {
+                    return operationCount;
+                }
+
+                @Override
+                public long getMaxBatchSize() {
+                    return maxBatchSize;
+                }
+
+                @Override
+                public long getCoalescedUpdateCount() {
+                    return coalescedUpdateCount;
+                }
+
+                @Override
+                public long getMaxQueueDepth() {
+                    return maxQueueDepth;
+                }
+
+                @Override
+                public long getProducerStallCount() {
+                    return producerStallCount;
+                }
+
+                @Override
+                public long getProducerStallTimeMillis() {
+                    return producerStallTimeMillis;
+                }
+
+                @Override
+                public String toString() {
+                    return MessageFormat.format("Ran {0,number,integer} cache operations in {1,number,integer} batches (max {2,number,integer}), "
+                            + "coalesced {3,number,integer} updates, max queue depth {4,number,integer}, "
+                            + "producers stalled {5,number,integer} times ({6,number,integer} ms)",
+                        operationCount, batchCount, maxBatchSize, coalescedUpdateCount, maxQueueDepth, producerStallCount, producerStallTimeMillis
+                    );
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+/**
+ * An operation queued on a {@link CacheAccessWorker} that replaces or removes a single cache entry.
+ *
+ * <p>The worker may skip an update when a later update of the same entry is queued right behind it,
+ * in which case only {@link #superseded()} is called.</p>
+ */
+interface CacheEntryUpdate extends Runnable {
+    /**
+     * Identifies the updated entry. Updates of the same entry in the same cache have equal entry ids.
+     */
+    Object getEntryId();
+
+    /**
+     * Called instead of {@link #run()} when the update has been replaced by a later update of the same entry.
+     */
+    void superseded();
+}
@@ -421,14 +421,26 @@ static class AwaitableFileLockReleasedSignal implements FileLockReleasedSignal,
         private final Lock lock = new ReentrantLock();
         private final Condition condition = lock.newCondition();
         private int waiting;
+        private boolean triggeredWhileNotWaiting;
 
+        /**
+         * Waits for the signal to be triggered. Returns immediately if the signal was triggered since the last call,
+         * so that a release that is confirmed while the waiting thread is still checking the lock is not missed.
+         */
         public boolean await(long millis) throws InterruptedException {
             lock.lock();
             try {
+                if (triggeredWhileNotWaiting) {
+                    triggeredWhileNotWaiting = false;
+                    return true;
+                }
                 waiting++;
-                return condition.await(millis, MILLISECONDS);
+                try {
+                    return condition.await(millis, MILLISECONDS);
+                } finally {
+                    waiting--;
+                }
             } finally {
-                waiting--;
                 lock.unlock();
             }
         }
@@ -439,6 +451,8 @@ public void trigger() {
             try {
                 if (waiting > 0) {
                     condition.signalAll();
+                } else {
+                    triggeredWhileNotWaiting = true;
                 }
             } finally {
                 lock.unlock();
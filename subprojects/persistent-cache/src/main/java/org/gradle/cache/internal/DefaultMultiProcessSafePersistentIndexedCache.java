@@ -19,17 +19,17 @@
 import org.gradle.cache.FileIntegrityViolationException;
 import org.gradle.cache.FileLock;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
-import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.internal.Factory;
 
 import java.util.function.Function;
 
 public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements MultiProcessSafePersistentIndexedCache<K, V> {
     private final FileAccess fileAccess;
-    private final Factory<BTreePersistentIndexedCache<K, V>> factory;
-    private BTreePersistentIndexedCache<K, V> cache;
+    private final Factory<? extends IndexedCacheBackend<K, V>> factory;
+    private IndexedCacheBackend<K, V> cache;
+    private boolean released;
 
-    public DefaultMultiProcessSafePersistentIndexedCache(Factory<BTreePersistentIndexedCache<K, V>> factory, FileAccess fileAccess) {
+    public DefaultMultiProcessSafePersistentIndexedCache(Factory<? extends IndexedCacheBackend<K, V>> factory, FileAccess fileAccess) {
         this.factory = factory;
         this.fileAccess = fileAccess;
     }
@@ -41,7 +41,7 @@ public String toString() {
 
     @Override
     public V getIfPresent(final K key) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        final IndexedCacheBackend<K, V> cache = getCache();
         try {
             return fileAccess.readFile((Factory<V>) () -> cache.get(key));
         } catch (FileIntegrityViolationException e) {
@@ -61,7 +61,7 @@ public V get(K key, Function<? super K, ? extends V> producer) {
 
     @Override
     public void put(final K key, final V value) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        final IndexedCacheBackend<K, V> cache = getCache();
         // Use writeFile because the cache can internally recover from datafile
         // corruption, so we don't care at this level if it's corrupt
         fileAccess.writeFile(() -> cache.put(key, value));
@@ -69,7 +69,7 @@ public void put(final K key, final V value) {
 
     @Override
     public void remove(final K key) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        final IndexedCacheBackend<K, V> cache = getCache();
         // Use writeFile because the cache can internally recover from datafile
         // corruption, so we don't care at this level if it's corrupt
         fileAccess.writeFile(() -> cache.remove(key));
@@ -81,12 +81,24 @@ public void afterLockAcquire(FileLock.State currentCacheState) {
 
     @Override
     public void finishWork() {
-        if (cache != null) {
+        if (cache == null || released) {
+            return;
+        }
+        if (cache instanceof ReopenableIndexedCacheBackend) {
+            ReopenableIndexedCacheBackend<K, V> reopenableCache = (ReopenableIndexedCacheBackend<K, V>) cache;
             try {
-                fileAccess.writeFile(() -> cache.close());
-            } finally {
+                fileAccess.writeFile(reopenableCache::release);
+                released = true;
+            } catch (RuntimeException e) {
                 cache = null;
+                throw e;
             }
+            return;
+        }
+        try {
+            fileAccess.writeFile(() -> cache.close());
+        } finally {
+            cache = null;
         }
     }
 
@@ -94,11 +106,21 @@ public void finishWork() {
     public void beforeLockRelease(FileLock.State currentCacheState) {
     }
 
-    private BTreePersistentIndexedCache<K, V> getCache() {
+    private IndexedCacheBackend<K, V> getCache() {
         if (cache == null) {
             // Use writeFile because the cache can internally recover from datafile
             // corruption, so we don't care at this level if it's corrupt
             fileAccess.writeFile(() -> cache = factory.create());
+        } else if (released) {
+            ReopenableIndexedCacheBackend<K, V> reopenableCache = (ReopenableIndexedCacheBackend<K, V>) cache;
+            try {
+                fileAccess.writeFile(reopenableCache::reopen);
+            } catch (RuntimeException e) {
+                cache = null;
+                throw e;
+            } finally {
+                released = false;
+            }
         }
         return cache;
     }
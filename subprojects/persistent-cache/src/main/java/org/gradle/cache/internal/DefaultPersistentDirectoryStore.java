@@ -53,6 +53,7 @@ public class DefaultPersistentDirectoryStore implements ReferencablePersistentCa
     private final CleanupAction cleanupAction;
     private final FileLockManager lockManager;
     private final ExecutorFactory executorFactory;
+    private final CacheAccessWorkerStatistics.Collector workerStatisticsCollector;
     private final String displayName;
     protected final File propertiesFile;
     private final File gcFile;
@@ -68,6 +69,20 @@ public DefaultPersistentDirectoryStore(
         FileLockManager fileLockManager,
         ExecutorFactory executorFactory,
         ProgressLoggerFactory progressLoggerFactory
+    ) {
+        this(dir, displayName, lockTarget, lockOptions, cleanupAction, fileLockManager, executorFactory, progressLoggerFactory, new CacheAccessWorkerStatistics.Collector());
+    }
+
+    public DefaultPersistentDirectoryStore(
+        File dir,
+        @Nullable String displayName,
+        CacheBuilder.LockTarget lockTarget,
+        LockOptions lockOptions,
+        @Nullable CleanupAction cleanupAction,
+        FileLockManager fileLockManager,
+        ExecutorFactory executorFactory,
+        ProgressLoggerFactory progressLoggerFactory,
+        CacheAccessWorkerStatistics.Collector workerStatisticsCollector
     ) {
         this.dir = dir;
         this.lockTarget = lockTarget;
@@ -75,6 +90,7 @@ public DefaultPersistentDirectoryStore(
         this.cleanupAction = cleanupAction;
         this.lockManager = fileLockManager;
         this.executorFactory = executorFactory;
+        this.workerStatisticsCollector = workerStatisticsCollector;
         this.propertiesFile = new File(dir, "cache.properties");
         this.gcFile = new File(dir, "gc.properties");
         this.progressLoggerFactory = progressLoggerFactory;
@@ -95,7 +111,7 @@ public DefaultPersistentDirectoryStore open() {
     }
 
     private CacheCoordinator createCacheAccess() {
-        return new DefaultCacheAccess(displayName, getLockTarget(), lockOptions, dir, lockManager, getInitAction(), getCleanupAction(), executorFactory);
+        return new DefaultCacheAccess(displayName, getLockTarget(), lockOptions, dir, lockManager, getInitAction(), getCleanupAction(), executorFactory, workerStatisticsCollector);
     }
 
     private File getLockTarget() {
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+/**
+ * An {@link IndexedCacheBackend} that keeps its in-memory state while the cross-process lock is not held.
+ *
+ * <p>When the lock is acquired again, the backend checks whether other processes changed the file in the meantime and only reads what it does not know yet.</p>
+ */
+public interface ReopenableIndexedCacheBackend<K, V> extends IndexedCacheBackend<K, V> {
+    /**
+     * Releases the file before the cross-process lock is released, keeping the in-memory state.
+     */
+    void release();
+
+    /**
+     * Reopens the file after the cross-process lock has been acquired again, validating the in-memory state against the file.
+     */
+    void reopen();
+}
@@ -27,6 +27,7 @@
 
 import java.net.DatagramPacket;
 import java.net.SocketAddress;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -35,6 +36,7 @@
 import java.util.concurrent.locks.ReentrantLock;
 
 import static org.gradle.cache.internal.locklistener.FileLockPacketType.LOCK_RELEASE_CONFIRMATION;
+import static org.gradle.cache.internal.locklistener.FileLockPacketType.UNLOCK_REQUEST;
 
 /**
  * The contention handler is responsible for negotiating the transfer of a lock from one process to another.
@@ -72,6 +74,9 @@
  * <p>
  * As Lock Requester, the state of the request is always stored per lock (lockId) and Lock Holder (port). The Lock Holder
  * for a lock might change without acquiring the lock if several Lock Requester compete for the same lock.
+ * <p>
+ * If a Lock Requester asks for a lock that has already been released, or that this process never held, the release is
+ * confirmed right away so that the Lock Requester retries immediately instead of waiting for its next ping.
  */
 public class DefaultFileLockContentionHandler implements FileLockContentionHandler, Stoppable {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultFileLockContentionHandler.class);
@@ -126,13 +131,18 @@ private void doRun() {
                     try {
                         ContendedAction contendedAction = contendedActions.get(payload.getLockId());
                         if (contendedAction == null) {
-                            acceptConfirmationAsLockRequester(payload, packet.getPort());
-                        } else {
-                            contendedAction.addRequester(packet.getSocketAddress());
+                            if (payload.getType() == UNLOCK_REQUEST) {
+                                confirmLockAlreadyReleased(packet.getSocketAddress(), payload.getLockId());
+                            } else {
+                                acceptConfirmationAsLockRequester(payload, packet.getPort());
+                            }
+                        } else if (contendedAction.addRequester(packet.getSocketAddress())) {
                             if (!contendedAction.running) {
                                 startLockReleaseAsLockHolder(contendedAction);
                             }
                             communicator.confirmUnlockRequest(packet.getSocketAddress(), payload.getLockId());
+                        } else {
+                            confirmLockAlreadyReleased(packet.getSocketAddress(), payload.getLockId());
                         }
                     } finally {
                         lock.unlock();
@@ -142,6 +152,11 @@ private void doRun() {
         };
     }
 
+    private void confirmLockAlreadyReleased(SocketAddress requester, long lockId) {
+        LOGGER.debug("Received unlock request for lock with id {} which is not held by this process.", lockId);
+        communicator.confirmLockRelease(Collections.singleton(requester), lockId);
+    }
+
     private void startLockReleaseAsLockHolder(ContendedAction contendedAction) {
         contendedAction.running = true;
         unlockActionExecutor.execute(contendedAction);
@@ -173,10 +188,7 @@ public void start(long lockId, Action<FileLockReleasedSignal> whenContended) {
             if (communicator == null) {
                 throw new IllegalStateException("Must initialize the handler by reserving the port first.");
             }
-            if (fileLockRequestListener == null) {
-                fileLockRequestListener = executorFactory.create("File lock request listener");
-                fileLockRequestListener.execute(listener());
-            }
+            startListener();
             if (unlockActionExecutor == null) {
                 unlockActionExecutor = executorFactory.create("File lock release action executor");
             }
@@ -200,12 +212,20 @@ public boolean maybePingOwner(int port, long lockId, String displayName, long ti
             return false;
         }
 
-        boolean pingSentSuccessfully = getCommunicator().pingOwner(port, lockId, displayName);
+        FileLockCommunicator communicator = getCommunicator();
+        lock.lock();
+        try {
+            // Register the signal and make sure the answer can be received before pinging, the owner may answer right away
+            lockReleasedSignals.put(lockId, signal);
+            startListener();
+        } finally {
+            lock.unlock();
+        }
+        boolean pingSentSuccessfully = communicator.pingOwner(port, lockId, displayName);
         if (pingSentSuccessfully) {
             lock.lock();
             try {
                 unlocksRequestedFrom.put(lockId, port);
-                lockReleasedSignals.put(lockId, signal);
             } finally {
                 lock.unlock();
             }
@@ -213,6 +233,13 @@ public boolean maybePingOwner(int port, long lockId, String displayName, long ti
         return pingSentSuccessfully;
     }
 
+    private void startListener() {
+        if (fileLockRequestListener == null) {
+            fileLockRequestListener = executorFactory.create("File lock request listener");
+            fileLockRequestListener.execute(listener());
+        }
+    }
+
     private void assertNotStopped() {
         if (stopped) {
             throw new IllegalStateException(
@@ -294,12 +321,17 @@ public void trigger() {
             });
         }
 
-        private void addRequester(SocketAddress contender) {
+        /**
+         * @return false if the lock has already been released.
+         */
+        private boolean addRequester(SocketAddress contender) {
             lock.lock();
             try {
-                if (requesters != null) {
-                    requesters.add(contender);
+                if (requesters == null) {
+                    return false;
                 }
+                requesters.add(contender);
+                return true;
             } finally {
                 lock.unlock();
             }
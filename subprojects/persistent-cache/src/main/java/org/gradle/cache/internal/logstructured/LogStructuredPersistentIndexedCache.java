@@ -0,0 +1,537 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstructured;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.IndexedCacheBackend;
+import org.gradle.cache.internal.ReopenableIndexedCacheBackend;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * An {@link IndexedCacheBackend} that stores entries in a memory mapped, append-only log and keeps an in-memory index
+ * from serialized keys to the position of the latest record for each key.
+ *
+ * <p>Updates and removals append a new record that supersedes the previous records for the key, so writes never touch existing data.
+ * Every record carries a checksum. On open, the log is replayed up to the last complete record, discarding anything written
+ * by an interrupted process after that. When the cache is closed and most of the log consists of superseded records,
+ * the live records are copied to a new log which then atomically replaces the old one.</p>
+ *
+ * <p>The index is kept in memory while the cross-process lock is not held. Each log carries a random identifier that changes
+ * whenever the log is replaced. When the log is reopened with the same identifier and was closed cleanly at or after the known end,
+ * only the records other processes appended in the meantime are replayed.</p>
+ *
+ * <p>The log is limited to 2 GB, the maximum size of a single mapping.</p>
+ */
+public class LogStructuredPersistentIndexedCache<K, V> implements ReopenableIndexedCacheBackend<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStructuredPersistentIndexedCache.class);
+
+    private static final int MAGIC = 0x474c4f47;
+    private static final int VERSION = 2;
+    /**
+     * Magic, version, log identifier and the end of the log as of the last clean close, or 0 while the log is open.
+     */
+    private static final int HEADER_SIZE = 24;
+    private static final int LOG_ID_OFFSET = 8;
+    private static final int CLEAN_END_OFFSET = 16;
+    /**
+     * Payload length and checksum.
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+    /**
+     * Record type and key length.
+     */
+    private static final int PAYLOAD_HEADER_SIZE = 5;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int MAX_CAPACITY_INCREMENT = 64 * 1024 * 1024;
+    private static final int MIN_COMPACTION_SIZE = 1024 * 1024;
+    private static final int MAX_DECODER_BUFFER_SIZE = 4096;
+
+    private final File cacheFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final SerializationBuffer keyBuffer = new SerializationBuffer();
+    private final KryoBackedEncoder keyEncoder = new KryoBackedEncoder(keyBuffer);
+    private final SerializationBuffer valueBuffer = new SerializationBuffer();
+    private final KryoBackedEncoder valueEncoder = new KryoBackedEncoder(valueBuffer);
+    private final CRC32 checksum = new CRC32();
+    private final Map<RecordKey, Integer> index = new HashMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer log;
+    private int end;
+    private long logId;
+    /**
+     * The number of bytes taken up by records that are still referenced from the index.
+     */
+    private long liveBytes;
+
+    public LogStructuredPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this.cacheFile = cacheFile;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        try {
+            open();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + cacheFile.getName() + " (" + cacheFile + ")";
+    }
+
+    private void open() throws IOException {
+        LOGGER.debug("Opening {}", this);
+        boolean valid = openLog();
+        if (valid) {
+            logId = log.getLong(LOG_ID_OFFSET);
+            recover(HEADER_SIZE);
+        } else {
+            initialize();
+        }
+        log.putLong(CLEAN_END_OFFSET, 0);
+    }
+
+    @Override
+    public void reopen() {
+        if (channel != null) {
+            return;
+        }
+        try {
+            boolean valid = openLog();
+            long cleanEnd = valid ? log.getLong(CLEAN_END_OFFSET) : 0;
+            if (valid && log.getLong(LOG_ID_OFFSET) == logId && cleanEnd >= end) {
+                // Other processes only appended records after the ones already indexed
+                LOGGER.debug("Reopening {}, replaying {} bytes of records appended since it was released.", this, cleanEnd - end);
+                recover(end);
+            } else {
+                LOGGER.debug("Reopening {}, the log was replaced or not closed cleanly since it was released.", this);
+                index.clear();
+                liveBytes = 0;
+                if (valid) {
+                    logId = log.getLong(LOG_ID_OFFSET);
+                    recover(HEADER_SIZE);
+                } else {
+                    initialize();
+                }
+            }
+            log.putLong(CLEAN_END_OFFSET, 0);
+        } catch (Exception e) {
+            closeQuietly();
+            index.clear();
+            liveBytes = 0;
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    /**
+     * Opens and maps the log file.
+     *
+     * @return whether the file contains a log of the current version.
+     */
+    private boolean openLog() throws IOException {
+        Files.deleteIfExists(compactionFile().toPath());
+        channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            LOGGER.warn("{} is corrupt. Discarding.", this);
+            channel.truncate(0);
+            size = 0;
+        }
+        map(Math.max((int) size, INITIAL_CAPACITY));
+        if (size >= HEADER_SIZE && log.getInt(0) == MAGIC && log.getInt(4) == VERSION) {
+            return true;
+        }
+        if (size > 0) {
+            LOGGER.warn("{} is corrupt. Discarding.", this);
+        }
+        return false;
+    }
+
+    private void initialize() {
+        clear(0, log.capacity());
+        logId = newLogId();
+        log.putInt(0, MAGIC);
+        log.putInt(4, VERSION);
+        log.putLong(LOG_ID_OFFSET, logId);
+        end = HEADER_SIZE;
+    }
+
+    private static long newLogId() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Replays the records from the given position on.
+     */
+    private void recover(int from) {
+        long cleanEnd = log.getLong(CLEAN_END_OFFSET);
+        int position = from;
+        while (true) {
+            int recordLength = replayRecord(position);
+            if (recordLength < 0) {
+                break;
+            }
+            position += recordLength;
+        }
+        end = position;
+        if (cleanEnd != end) {
+            // The log was not closed cleanly. Records after the first incomplete one may have been persisted
+            // out of order, so they must not be mistaken for records appended later.
+            LOGGER.debug("{} was not closed cleanly, recovered {} bytes of records.", this, end - from);
+            clear(end, log.capacity());
+        }
+    }
+
+    /**
+     * Adds the record at the given position to the index.
+     *
+     * @return the length of the record, or -1 if there is no valid record at the position.
+     */
+    private int replayRecord(int position) {
+        if (position > log.capacity() - RECORD_HEADER_SIZE - PAYLOAD_HEADER_SIZE) {
+            return -1;
+        }
+        int payloadLength = log.getInt(position);
+        if (payloadLength < PAYLOAD_HEADER_SIZE || payloadLength > log.capacity() - position - RECORD_HEADER_SIZE) {
+            return -1;
+        }
+        if (log.getInt(position + 4) != checksumOf(position + RECORD_HEADER_SIZE, payloadLength)) {
+            return -1;
+        }
+        byte type = log.get(position + RECORD_HEADER_SIZE);
+        int keyLength = log.getInt(position + RECORD_HEADER_SIZE + 1);
+        if ((type != PUT && type != REMOVE) || keyLength < 0 || keyLength > payloadLength - PAYLOAD_HEADER_SIZE) {
+            return -1;
+        }
+        byte[] key = new byte[keyLength];
+        region(position + RECORD_HEADER_SIZE + PAYLOAD_HEADER_SIZE, keyLength).get(key);
+        RecordKey recordKey = new RecordKey(key);
+        if (type == PUT) {
+            supersede(index.put(recordKey, position));
+            liveBytes += RECORD_HEADER_SIZE + payloadLength;
+        } else {
+            supersede(index.remove(recordKey));
+        }
+        return RECORD_HEADER_SIZE + payloadLength;
+    }
+
+    @Override
+    @Nullable
+    public V get(K key) {
+        try {
+            Integer position = index.get(serializeKey(key));
+            if (position == null) {
+                return null;
+            }
+            int payloadLength = log.getInt(position);
+            int keyLength = log.getInt(position + RECORD_HEADER_SIZE + 1);
+            int valueLength = payloadLength - PAYLOAD_HEADER_SIZE - keyLength;
+            ByteBuffer value = region(position + RECORD_HEADER_SIZE + PAYLOAD_HEADER_SIZE + keyLength, valueLength);
+            return valueSerializer.read(new KryoBackedDecoder(new ByteBufferInputStream(value), Math.max(1, Math.min(valueLength, MAX_DECODER_BUFFER_SIZE))));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            RecordKey recordKey = serializeKey(key);
+            valueBuffer.reset();
+            valueSerializer.write(valueEncoder, value);
+            valueEncoder.flush();
+            int position = append(PUT, recordKey.bytes, valueBuffer.getBuffer(), valueBuffer.size());
+            supersede(index.put(recordKey, position));
+            liveBytes += recordLength(position);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            RecordKey recordKey = serializeKey(key);
+            Integer previous = index.remove(recordKey);
+            if (previous == null) {
+                return;
+            }
+            append(REMOVE, recordKey.bytes, new byte[0], 0);
+            supersede(previous);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void release() {
+        if (channel == null) {
+            return;
+        }
+        LOGGER.debug("Releasing {}", this);
+        try {
+            closeLog();
+        } catch (Exception e) {
+            index.clear();
+            liveBytes = 0;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (channel != null) {
+                LOGGER.debug("Closing {}", this);
+                closeLog();
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            index.clear();
+            liveBytes = 0;
+        }
+    }
+
+    private void closeLog() throws IOException {
+        try {
+            int size = end - HEADER_SIZE;
+            if (size >= MIN_COMPACTION_SIZE && liveBytes < size / 2) {
+                compact();
+            } else {
+                log.putLong(CLEAN_END_OFFSET, end);
+            }
+            channel.close();
+        } finally {
+            channel = null;
+            log = null;
+        }
+    }
+
+    private void closeQuietly() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Ignore
+            }
+        }
+        channel = null;
+        log = null;
+    }
+
+    public boolean isOpen() {
+        return channel != null;
+    }
+
+    /**
+     * Copies the live records in log order to a new log, replaces the current log with it and updates the index to point into the new log.
+     */
+    private void compact() throws IOException {
+        int compactedEnd = (int) (HEADER_SIZE + liveBytes);
+        long compactedLogId = newLogId();
+        int[] positions = index.values().stream().mapToInt(Integer::intValue).sorted().toArray();
+        Map<Integer, Integer> compactedPositions = new HashMap<>(positions.length * 2);
+        File compactionFile = compactionFile();
+        try (FileChannel target = FileChannel.open(compactionFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(compactedLogId).putLong(compactedEnd);
+            ((Buffer) header).flip();
+            writeFully(target, header);
+            int compactedPosition = HEADER_SIZE;
+            for (int position : positions) {
+                int recordLength = recordLength(position);
+                writeFully(target, region(position, recordLength));
+                compactedPositions.put(position, compactedPosition);
+                compactedPosition += recordLength;
+            }
+            // The compacted log must be on disk before it replaces the current one
+            target.force(false);
+        }
+        Files.move(compactionFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.debug("Compacted {} from {} to {} bytes.", this, end, compactedEnd);
+        index.replaceAll((key, position) -> compactedPositions.get(position));
+        end = compactedEnd;
+        logId = compactedLogId;
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private int append(byte type, byte[] key, byte[] value, int valueLength) throws IOException {
+        int payloadLength = PAYLOAD_HEADER_SIZE + key.length + valueLength;
+        ensureCapacity((long) RECORD_HEADER_SIZE + payloadLength);
+        int position = end;
+        region(position + RECORD_HEADER_SIZE, payloadLength)
+            .put(type)
+            .putInt(key.length)
+            .put(key)
+            .put(value, 0, valueLength);
+        log.putInt(position + 4, checksumOf(position + RECORD_HEADER_SIZE, payloadLength));
+        log.putInt(position, payloadLength);
+        end += RECORD_HEADER_SIZE + payloadLength;
+        return position;
+    }
+
+    private void ensureCapacity(long recordLength) throws IOException {
+        long required = end + recordLength;
+        if (required <= log.capacity()) {
+            return;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException("The log has reached its maximum size.");
+        }
+        long grown = (long) log.capacity() + Math.min(log.capacity(), MAX_CAPACITY_INCREMENT);
+        map((int) Math.min(Math.max(grown, required), Integer.MAX_VALUE));
+    }
+
+    private void map(int capacity) throws IOException {
+        log = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void supersede(@Nullable Integer previousPosition) {
+        if (previousPosition != null) {
+            liveBytes -= recordLength(previousPosition);
+        }
+    }
+
+    private int recordLength(int position) {
+        return RECORD_HEADER_SIZE + log.getInt(position);
+    }
+
+    private int checksumOf(int offset, int length) {
+        checksum.reset();
+        checksum.update(region(offset, length));
+        return (int) checksum.getValue();
+    }
+
+    private ByteBuffer region(int offset, int length) {
+        ByteBuffer region = log.duplicate();
+        ((Buffer) region).position(offset);
+        ((Buffer) region).limit(offset + length);
+        return region;
+    }
+
+    private void clear(int from, int to) {
+        int position = from;
+        for (; position + 8 <= to; position += 8) {
+            log.putLong(position, 0);
+        }
+        for (; position < to; position++) {
+            log.put(position, (byte) 0);
+        }
+    }
+
+    private RecordKey serializeKey(K key) throws Exception {
+        keyBuffer.reset();
+        keySerializer.write(keyEncoder, key);
+        keyEncoder.flush();
+        return new RecordKey(keyBuffer.toByteArray());
+    }
+
+    private File compactionFile() {
+        return new File(cacheFile.getParentFile(), cacheFile.getName() + ".compacting");
+    }
+
+    private static class RecordKey {
+        private final byte[] bytes;
+        private final int hashCode;
+
+        RecordKey(byte[] bytes) {
+            this.bytes = bytes;
+            this.hashCode = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            RecordKey that = (RecordKey) o;
+            return hashCode == that.hashCode && Arrays.equals(bytes, that.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static class SerializationBuffer extends ByteArrayOutputStream {
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, count);
+            return count;
+        }
+    }
+}
@@ -198,4 +198,53 @@ class CacheAccessWorkerTest extends ConcurrentSpec {
         def e = thrown(RuntimeException)
         e == failure
     }
+
+    def "coalesces consecutive updates of the same entry"() {
+        given:
+        def statisticsCollector = new CacheAccessWorkerStatistics.Collector()
+        cacheAccessWorker = new CacheAccessWorker("<cache>", cacheAccess, statisticsCollector)
+        def writes = []
+        def completed = []
+        cacheAccessWorker.enqueue(update("a", 1, writes, completed))
+        cacheAccessWorker.enqueue(update("b", 1, writes, completed))
+        cacheAccessWorker.enqueue(update("a", 2, writes, completed))
+        cacheAccessWorker.enqueue { writes << "read" }
+        cacheAccessWorker.enqueue(update("a", 3, writes, completed))
+
+        when:
+        start(cacheAccessWorker)
+        cacheAccessWorker.flush()
+
+        then:
+        writes == ["b=1", "a=2", "read", "a=3"]
+        completed.sort() == ["a=1", "a=2", "a=3", "b=1"]
+
+        and:
+        def statistics = statisticsCollector.collect()
+        statistics.coalescedUpdateCount == 1
+        statistics.maxQueueDepth >= 5
+
+        cleanup:
+        cacheAccessWorker?.stop()
+    }
+
+    private static CacheEntryUpdate update(String key, int value, List<String> writes, List<String> completed) {
+        return new CacheEntryUpdate() {
+            @Override
+            Object getEntryId() {
+                return key
+            }
+
+            @Override
+            void run() {
+                writes << "$key=$value".toString()
+                completed << "$key=$value".toString()
+            }
+
+            @Override
+            void superseded() {
+                completed << "$key=$value".toString()
+            }
+        }
+    }
 }
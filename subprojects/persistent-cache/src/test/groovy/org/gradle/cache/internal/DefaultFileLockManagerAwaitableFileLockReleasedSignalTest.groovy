@@ -71,4 +71,13 @@ class DefaultFileLockManagerAwaitableFileLockReleasedSignalTest extends Concurre
         then:
         notThrown(Exception)
     }
+
+    def "trigger without anyone waiting releases the next await only"() {
+        when:
+        signal.trigger()
+
+        then:
+        signal.await(10000)
+        !signal.await(10)
+    }
 }
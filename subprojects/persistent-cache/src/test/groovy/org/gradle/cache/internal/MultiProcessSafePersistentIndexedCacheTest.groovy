@@ -129,6 +129,42 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         0 * _._
     }
 
+    def "releases and reopens reopenable cache instead of closing it"() {
+        given:
+        def reopenableFactory = Mock(Factory)
+        def reopenableBackingCache = Mock(ReopenableIndexedCacheBackend)
+        def reopenableCache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(reopenableFactory, fileAccess)
+        2 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * reopenableFactory.create() >> reopenableBackingCache
+        1 * reopenableBackingCache.put("key", "value")
+        reopenableCache.put("key", "value")
+
+        when:
+        reopenableCache.finishWork()
+
+        then:
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * reopenableBackingCache.release()
+        0 * _._
+
+        when:
+        reopenableCache.finishWork()
+
+        then:
+        0 * _._
+
+        when:
+        def result = reopenableCache.getIfPresent("key")
+
+        then:
+        result == "value"
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * reopenableBackingCache.reopen()
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        1 * reopenableBackingCache.get("key") >> "value"
+        0 * _._
+    }
+
     def cacheOpened() {
         1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
         1 * factory.create() >> backingCache
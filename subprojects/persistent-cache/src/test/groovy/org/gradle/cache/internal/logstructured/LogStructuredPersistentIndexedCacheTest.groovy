@@ -0,0 +1,271 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstructured
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
+import org.junit.Rule
+import spock.lang.Specification
+
+@Requires(TestPrecondition.NOT_WINDOWS)
+class LogStructuredPersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def serializerFactory = new BaseSerializerFactory()
+    def cacheFile = tmpDir.file("cache.log")
+    LogStructuredPersistentIndexedCache<String, String> cache
+
+    def cleanup() {
+        cache?.close()
+    }
+
+    def "persists added, updated and removed entries"() {
+        given:
+        open()
+        100.times { cache.put("key$it", "value$it") }
+        cache.put("key1", "updated")
+        cache.remove("key2")
+
+        expect:
+        cache.get("key1") == "updated"
+        cache.get("key2") == null
+        cache.get("key99") == "value99"
+        cache.get("unknown") == null
+
+        when:
+        reopen()
+
+        then:
+        cache.get("key1") == "updated"
+        cache.get("key2") == null
+        cache.get("key99") == "value99"
+    }
+
+    def "recovers entries up to the first incomplete record when not closed"() {
+        given:
+        open()
+        cache.put("complete", "value")
+        cache.put("torn", "x")
+        corruptLastOccurrenceOf("x")
+
+        when:
+        open()
+
+        then:
+        cache.get("complete") == "value"
+        cache.get("torn") == null
+
+        when:
+        cache.put("next", "value")
+        reopen()
+
+        then:
+        cache.get("complete") == "value"
+        cache.get("torn") == null
+        cache.get("next") == "value"
+    }
+
+    def "discards corrupt log"() {
+        given:
+        cacheFile.text = "not a log"
+
+        when:
+        open()
+
+        then:
+        cache.get("key") == null
+
+        when:
+        cache.put("key", "value")
+        reopen()
+
+        then:
+        cache.get("key") == "value"
+    }
+
+    def "compacts log on close when most records are superseded"() {
+        given:
+        def largeValue = "x" * 4096
+        open()
+        5.times { round ->
+            500.times { cache.put("key$it", largeValue + round) }
+        }
+        cache.put("other", "value")
+        def sizeBeforeCompaction = cacheFile.length()
+
+        when:
+        reopen()
+
+        then:
+        cacheFile.length() < sizeBeforeCompaction
+        !new File(cacheFile.parentFile, cacheFile.name + ".compacting").exists()
+        cache.get("key0") == largeValue + 4
+        cache.get("key499") == largeValue + 4
+        cache.get("other") == "value"
+    }
+
+    def "keeps index when released and reopened without changes by other processes"() {
+        given:
+        open()
+        cache.put("key1", "value1")
+        cache.put("key2", "value2")
+
+        when:
+        cache.release()
+        corruptChecksumOfFirstRecord()
+        cache.reopen()
+
+        then:
+        // The records are not replayed, otherwise the corrupt first record would discard the whole log
+        cache.get("key1") == "value1"
+        cache.get("key2") == "value2"
+    }
+
+    def "replays records appended by another process after release"() {
+        given:
+        open()
+        cache.put("key1", "value1")
+        cache.put("key2", "value2")
+        cache.release()
+
+        when:
+        def other = newCache()
+        other.put("key2", "updated")
+        other.put("key3", "value3")
+        other.close()
+        cache.reopen()
+
+        then:
+        cache.get("key1") == "value1"
+        cache.get("key2") == "updated"
+        cache.get("key3") == "value3"
+
+        when:
+        cache.put("key4", "value4")
+        reopen()
+
+        then:
+        cache.get("key1") == "value1"
+        cache.get("key2") == "updated"
+        cache.get("key3") == "value3"
+        cache.get("key4") == "value4"
+    }
+
+    def "rebuilds index after release when another process replaced the log"() {
+        given:
+        def largeValue = "x" * 4096
+        open()
+        cache.put("key0", "value")
+        cache.put("other", "value")
+        cache.release()
+
+        when:
+        def other = newCache()
+        5.times { round ->
+            500.times { other.put("key$it", largeValue + round) }
+        }
+        other.remove("other")
+        other.close()
+        cache.reopen()
+
+        then:
+        cache.get("key0") == largeValue + 4
+        cache.get("key499") == largeValue + 4
+        cache.get("other") == null
+    }
+
+    def "rebuilds index after release when another process did not close the log cleanly"() {
+        given:
+        open()
+        cache.put("key1", "value1")
+        cache.release()
+
+        when:
+        def other = newCache()
+        other.put("key2", "value2")
+        // Not closed
+        cache.reopen()
+
+        then:
+        cache.get("key1") == "value1"
+        cache.get("key2") == "value2"
+
+        cleanup:
+        other?.close()
+    }
+
+    def "keeps index valid when log is compacted on release"() {
+        given:
+        def largeValue = "x" * 4096
+        open()
+        5.times { round ->
+            500.times { cache.put("key$it", largeValue + round) }
+        }
+        cache.put("other", "value")
+        def sizeBeforeCompaction = cacheFile.length()
+
+        when:
+        cache.release()
+        cache.reopen()
+
+        then:
+        cacheFile.length() < sizeBeforeCompaction
+        cache.get("key0") == largeValue + 4
+        cache.get("key499") == largeValue + 4
+        cache.get("other") == "value"
+
+        when:
+        cache.put("key0", "updated")
+        reopen()
+
+        then:
+        cache.get("key0") == "updated"
+        cache.get("key499") == largeValue + 4
+        cache.get("other") == "value"
+    }
+
+    private void open() {
+        cache = newCache()
+    }
+
+    private LogStructuredPersistentIndexedCache<String, String> newCache() {
+        new LogStructuredPersistentIndexedCache<String, String>(cacheFile, serializerFactory.getSerializerFor(String), serializerFactory.getSerializerFor(String))
+    }
+
+    private void reopen() {
+        cache.close()
+        open()
+    }
+
+    private void corruptChecksumOfFirstRecord() {
+        def bytes = cacheFile.bytes
+        // Header of 24 bytes, followed by the payload length and the checksum of the first record
+        bytes[28] = (byte) (bytes[28] + 1)
+        cacheFile.bytes = bytes
+    }
+
+    private void corruptLastOccurrenceOf(String value) {
+        def bytes = cacheFile.bytes
+        def target = value.bytes[0]
+        def position = bytes.findLastIndexOf { it == target }
+        bytes[position] = (byte) (target + 1)
+        cacheFile.bytes = bytes
+    }
+}
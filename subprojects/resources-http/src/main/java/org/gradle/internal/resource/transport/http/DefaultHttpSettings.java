@@ -140,7 +140,7 @@ public Builder withAuthenticationSettings(Collection<Authentication> authenticat
 
         public Builder withSslContextFactory(SslContextFactory sslContextFactory) {
             this.sslContextFactory = sslContextFactory;
-            this.hostnameVerifier = new DefaultHostnameVerifier(null);
+            this.hostnameVerifier = DEFAULT_HOSTNAME_VERIFIER;
             return this;
         }
 
@@ -171,6 +171,11 @@ public HttpSettings build() {
         }
     }
 
+    /**
+     * Stateless, shared by all settings so that clients using the default verifier can share their connection pools.
+     */
+    private static final HostnameVerifier DEFAULT_HOSTNAME_VERIFIER = new DefaultHostnameVerifier(null);
+
     private static final HostnameVerifier ALL_TRUSTING_HOSTNAME_VERIFIER = new HostnameVerifier() {
         @Override
         public boolean verify(String hostname, SSLSession session) {
@@ -75,6 +75,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import java.net.ProxySelector;
@@ -87,7 +88,7 @@
 public class HttpClientConfigurer {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientConfigurer.class);
     private static final String HTTPS_PROTOCOLS = "https.protocols";
-    private static final int MAX_HTTP_CONNECTIONS = 20;
+    static final int MAX_HTTP_CONNECTIONS = 20;
 
     /**
      * Determines the HTTPS protocols to support for the client.
@@ -129,15 +130,28 @@ static Collection<String> supportedTlsVersions() {
 
     private final String[] sslProtocols;
     private final HttpSettings httpSettings;
+    private final HttpConnectionPools connectionPools;
 
     public HttpClientConfigurer(HttpSettings httpSettings) {
+        this(httpSettings, null);
+    }
+
+    /**
+     * @param connectionPools the pools to lease connections from, or {@code null} to let the client create a pool of its own.
+     */
+    public HttpClientConfigurer(HttpSettings httpSettings, @Nullable HttpConnectionPools connectionPools) {
         this.sslProtocols = determineHttpsProtocols();
         this.httpSettings = httpSettings;
+        this.connectionPools = connectionPools;
     }
 
     public void configure(HttpClientBuilder builder) {
         SystemDefaultCredentialsProvider credentialsProvider = new SystemDefaultCredentialsProvider();
-        configureSslSocketConnectionFactory(builder, httpSettings.getSslContextFactory(), httpSettings.getHostnameVerifier());
+        if (connectionPools != null) {
+            configureSharedConnectionManager(builder, httpSettings.getSslContextFactory(), httpSettings.getHostnameVerifier());
+        } else {
+            configureSslSocketConnectionFactory(builder, httpSettings.getSslContextFactory(), httpSettings.getHostnameVerifier());
+        }
         configureAuthSchemeRegistry(builder);
         configureCredentials(builder, credentialsProvider, httpSettings.getAuthenticationSettings());
         configureProxy(builder, credentialsProvider, httpSettings);
@@ -152,6 +166,12 @@ public void configure(HttpClientBuilder builder) {
         builder.setConnectionTimeToLive(httpSettings.getTimeoutSettings().getIdleConnectionTimeoutMs(), TimeUnit.MILLISECONDS);
     }
 
+    private void configureSharedConnectionManager(HttpClientBuilder builder, SslContextFactory sslContextFactory, HostnameVerifier hostnameVerifier) {
+        // The socket factories, socket config and connection limits set on the builder are ignored when a connection manager is set
+        // The client shuts down the connection manager when closed, which releases its lease on the shared pool
+        builder.setConnectionManager(connectionPools.connectionManagerFor(sslContextFactory.createSslContext(), sslProtocols, hostnameVerifier, httpSettings.getTimeoutSettings()));
+    }
+
     private void configureSslSocketConnectionFactory(HttpClientBuilder builder, SslContextFactory sslContextFactory, HostnameVerifier hostnameVerifier) {
         builder.setSSLSocketFactory(new SSLConnectionSocketFactory(sslContextFactory.createSslContext(), sslProtocols, null, hostnameVerifier));
     }
@@ -56,6 +56,7 @@ public class HttpClientHelper implements Closeable {
     private CloseableHttpClient client;
     private final DocumentationRegistry documentationRegistry;
     private final HttpSettings settings;
+    private final HttpConnectionPools connectionPools;
 
     /**
      * Maintains a queue of contexts which are shared between threads when authentication
@@ -71,8 +72,14 @@ public class HttpClientHelper implements Closeable {
      */
     @VisibleForTesting
     HttpClientHelper(DocumentationRegistry documentationRegistry, HttpSettings settings) {
+        this(documentationRegistry, settings, null);
+    }
+
+    @VisibleForTesting
+    HttpClientHelper(DocumentationRegistry documentationRegistry, HttpSettings settings, @Nullable HttpConnectionPools connectionPools) {
         this.documentationRegistry = documentationRegistry;
         this.settings = settings;
+        this.connectionPools = connectionPools;
         if (!settings.getAuthenticationSettings().isEmpty()) {
             sharedContext = new ConcurrentLinkedQueue<HttpContext>();
         } else {
@@ -221,7 +228,7 @@ private HttpClientResponse processResponse(HttpClientResponse response) {
     private synchronized CloseableHttpClient getClient() {
         if (client == null) {
             HttpClientBuilder builder = HttpClientBuilder.create();
-            new HttpClientConfigurer(settings).configure(builder);
+            new HttpClientConfigurer(settings, connectionPools).configure(builder);
             this.client = builder.build();
         }
         return client;
@@ -281,6 +288,15 @@ public interface Factory {
         static Factory createFactory(DocumentationRegistry documentationRegistry) {
             return settings -> new HttpClientHelper(documentationRegistry, settings);
         }
+
+        /**
+         * Creates a factory whose clients lease their connections from the given pools, so that connections to the same host are reused across clients.
+         *
+         * Method should only be used for DI registry and testing.
+         */
+        static Factory createFactory(DocumentationRegistry documentationRegistry, HttpConnectionPools connectionPools) {
+            return settings -> new HttpClientHelper(documentationRegistry, settings, connectionPools);
+        }
     }
 
 }
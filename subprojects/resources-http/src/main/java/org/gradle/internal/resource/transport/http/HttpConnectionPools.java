@@ -0,0 +1,222 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Connection pools shared by all HTTP clients which use the same TLS and timeout settings.
+ *
+ * <p>Each repository and each remote build cache gets its own {@link HttpClientHelper}. Sharing the pools
+ * allows a connection opened by one of them to be reused by the others when they talk to the same host,
+ * instead of every client going through its own TCP and TLS handshakes.
+ * Connections carrying per-user state, e.g. NTLM authenticated connections, are only leased again
+ * to requests with the same user token, so it is safe to share them across clients with different credentials.</p>
+ *
+ * <p>Each client leases a pool, and the limits of a pool grow and shrink with the number of clients leasing it,
+ * so that clients sharing a pool can open as many connections as clients with a pool of their own.
+ * A pool is shut down once the last client leasing it is closed.</p>
+ */
+public class HttpConnectionPools implements Closeable {
+    private final ConcurrentMap<PoolKey, SharedPool> pools = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * Leases the pool for the given settings. The pool is released when the returned connection manager is shut down,
+     * which happens when the client using it is closed, so the client must not be configured to share its connection manager.
+     */
+    public HttpClientConnectionManager connectionManagerFor(SSLContext sslContext, String[] sslProtocols, HostnameVerifier hostnameVerifier, HttpTimeoutSettings timeoutSettings) {
+        if (closed) {
+            throw new IllegalStateException("HTTP connection pools have been closed.");
+        }
+        PoolKey key = new PoolKey(sslContext, sslProtocols, hostnameVerifier, timeoutSettings.getSocketTimeoutMs(), timeoutSettings.getIdleConnectionTimeoutMs());
+        SharedPool pool = pools.compute(key, (k, existing) -> {
+            SharedPool leased = existing != null ? existing : new SharedPool(k.createConnectionManager());
+            leased.setClients(leased.clients + 1);
+            return leased;
+        });
+        return new LeasedConnectionManager(key, pool.connectionManager);
+    }
+
+    private void release(PoolKey key) {
+        pools.computeIfPresent(key, (k, pool) -> {
+            if (pool.clients == 1) {
+                pool.connectionManager.shutdown();
+                return null;
+            }
+            pool.setClients(pool.clients - 1);
+            return pool;
+        });
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (SharedPool pool : pools.values()) {
+            pool.connectionManager.shutdown();
+        }
+        pools.clear();
+    }
+
+    private static class SharedPool {
+        private final PoolingHttpClientConnectionManager connectionManager;
+        private int clients;
+
+        SharedPool(PoolingHttpClientConnectionManager connectionManager) {
+            this.connectionManager = connectionManager;
+        }
+
+        void setClients(int clients) {
+            this.clients = clients;
+            connectionManager.setMaxTotal(HttpClientConfigurer.MAX_HTTP_CONNECTIONS * clients);
+            connectionManager.setDefaultMaxPerRoute(HttpClientConfigurer.MAX_HTTP_CONNECTIONS * clients);
+        }
+    }
+
+    /**
+     * The connection manager of a client, which releases the lease of the client on the shared pool when shut down.
+     */
+    class LeasedConnectionManager implements HttpClientConnectionManager {
+        private final PoolKey key;
+        private final PoolingHttpClientConnectionManager pool;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        LeasedConnectionManager(PoolKey key, PoolingHttpClientConnectionManager pool) {
+            this.key = key;
+            this.pool = pool;
+        }
+
+        PoolingHttpClientConnectionManager getPool() {
+            return pool;
+        }
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            return pool.requestConnection(route, state);
+        }
+
+        @Override
+        public void releaseConnection(HttpClientConnection conn, Object newState, long validDuration, TimeUnit timeUnit) {
+            pool.releaseConnection(conn, newState, validDuration, timeUnit);
+        }
+
+        @Override
+        public void connect(HttpClientConnection conn, HttpRoute route, int connectTimeout, HttpContext context) throws IOException {
+            pool.connect(conn, route, connectTimeout, context);
+        }
+
+        @Override
+        public void upgrade(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+            pool.upgrade(conn, route, context);
+        }
+
+        @Override
+        public void routeComplete(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+            pool.routeComplete(conn, route, context);
+        }
+
+        @Override
+        public void closeIdleConnections(long idletime, TimeUnit timeUnit) {
+            pool.closeIdleConnections(idletime, timeUnit);
+        }
+
+        @Override
+        public void closeExpiredConnections() {
+            pool.closeExpiredConnections();
+        }
+
+        @Override
+        public void shutdown() {
+            if (released.compareAndSet(false, true)) {
+                release(key);
+            }
+        }
+    }
+
+    private static class PoolKey {
+        private final SSLContext sslContext;
+        private final String[] sslProtocols;
+        private final HostnameVerifier hostnameVerifier;
+        private final int socketTimeoutMs;
+        private final int idleConnectionTimeoutMs;
+
+        PoolKey(SSLContext sslContext, String[] sslProtocols, HostnameVerifier hostnameVerifier, int socketTimeoutMs, int idleConnectionTimeoutMs) {
+            this.sslContext = sslContext;
+            this.sslProtocols = sslProtocols;
+            this.hostnameVerifier = hostnameVerifier;
+            this.socketTimeoutMs = socketTimeoutMs;
+            this.idleConnectionTimeoutMs = idleConnectionTimeoutMs;
+        }
+
+        PoolingHttpClientConnectionManager createConnectionManager() {
+            Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new SSLConnectionSocketFactory(sslContext, sslProtocols, null, hostnameVerifier))
+                .build();
+            PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactories, null, null, null, idleConnectionTimeoutMs, TimeUnit.MILLISECONDS);
+            connectionManager.setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(socketTimeoutMs).setSoKeepAlive(true).build());
+            return connectionManager;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            PoolKey that = (PoolKey) o;
+            return socketTimeoutMs == that.socketTimeoutMs
+                && idleConnectionTimeoutMs == that.idleConnectionTimeoutMs
+                && sslContext == that.sslContext
+                && hostnameVerifier == that.hostnameVerifier
+                && Arrays.equals(sslProtocols, that.sslProtocols);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(sslContext);
+            result = 31 * result + Arrays.hashCode(sslProtocols);
+            result = 31 * result + System.identityHashCode(hostnameVerifier);
+            result = 31 * result + socketTimeoutMs;
+            result = 31 * result + idleConnectionTimeoutMs;
+            return result;
+        }
+    }
+}
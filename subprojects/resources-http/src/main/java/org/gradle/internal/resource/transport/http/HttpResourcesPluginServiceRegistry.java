@@ -44,8 +44,12 @@ SslContextFactory createSslContextFactory() {
             return new DefaultSslContextFactory();
         }
 
-        HttpClientHelper.Factory createHttpClientHelperFactory(DocumentationRegistry documentationRegistry) {
-            return HttpClientHelper.Factory.createFactory(documentationRegistry);
+        HttpConnectionPools createHttpConnectionPools() {
+            return new HttpConnectionPools();
+        }
+
+        HttpClientHelper.Factory createHttpClientHelperFactory(DocumentationRegistry documentationRegistry, HttpConnectionPools connectionPools) {
+            return HttpClientHelper.Factory.createFactory(documentationRegistry, connectionPools);
         }
 
         ResourceConnectorFactory createHttpConnectorFactory(SslContextFactory sslContextFactory, HttpClientHelper.Factory httpClientHelperFactory) {
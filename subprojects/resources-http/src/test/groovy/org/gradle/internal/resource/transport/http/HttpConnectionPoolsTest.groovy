@@ -0,0 +1,133 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http
+
+import org.apache.http.HttpHost
+import org.apache.http.conn.routing.HttpRoute
+import org.apache.http.conn.ssl.DefaultHostnameVerifier
+import org.apache.http.impl.client.HttpClientBuilder
+import org.apache.http.ssl.SSLContexts
+import spock.lang.Specification
+
+class HttpConnectionPoolsTest extends Specification {
+    def pools = new HttpConnectionPools()
+    def sslContext = SSLContexts.createDefault()
+    def hostnameVerifier = new DefaultHostnameVerifier(null)
+
+    def cleanup() {
+        pools.close()
+    }
+
+    def "clients with the same settings share a pool"() {
+        expect:
+        pools.connectionManagerFor(sslContext, ["TLSv1.2"] as String[], hostnameVerifier, timeouts(30000)).pool.is(
+            pools.connectionManagerFor(sslContext, ["TLSv1.2"] as String[], hostnameVerifier, timeouts(30000)).pool)
+    }
+
+    def "clients with different settings use different pools"() {
+        def pool = pools.connectionManagerFor(sslContext, ["TLSv1.2"] as String[], hostnameVerifier, timeouts(30000)).pool
+
+        expect:
+        !pool.is(pools.connectionManagerFor(sslContext, ["TLSv1.2"] as String[], hostnameVerifier, timeouts(10000)).pool)
+        !pool.is(pools.connectionManagerFor(sslContext, ["TLSv1.2", "TLSv1.3"] as String[], hostnameVerifier, timeouts(30000)).pool)
+        !pool.is(pools.connectionManagerFor(SSLContexts.createDefault(), ["TLSv1.2"] as String[], hostnameVerifier, timeouts(30000)).pool)
+        !pool.is(pools.connectionManagerFor(sslContext, ["TLSv1.2"] as String[], new DefaultHostnameVerifier(null), timeouts(30000)).pool)
+    }
+
+    def "limits of a pool scale with the clients leasing it"() {
+        def first = pools.connectionManagerFor(sslContext, ["TLSv1.2"] as String[], hostnameVerifier, timeouts(30000))
+        def second = pools.connectionManagerFor(sslContext, ["TLSv1.2"] as String[], hostnameVerifier, timeouts(30000))
+
+        expect:
+        first.pool.maxTotal == 2 * HttpClientConfigurer.MAX_HTTP_CONNECTIONS
+        first.pool.defaultMaxPerRoute == 2 * HttpClientConfigurer.MAX_HTTP_CONNECTIONS
+
+        when:
+        second.shutdown()
+
+        then:
+        first.pool.maxTotal == HttpClientConfigurer.MAX_HTTP_CONNECTIONS
+        first.pool.defaultMaxPerRoute == HttpClientConfigurer.MAX_HTTP_CONNECTIONS
+
+        when:
+        second.shutdown()
+
+        then:
+        first.pool.maxTotal == HttpClientConfigurer.MAX_HTTP_CONNECTIONS
+    }
+
+    def "releases a pool once the last client leasing it shuts down"() {
+        def first = pools.connectionManagerFor(sslContext, ["TLSv1.2"] as String[], hostnameVerifier, timeouts(30000))
+        def second = pools.connectionManagerFor(sslContext, ["TLSv1.2"] as String[], hostnameVerifier, timeouts(30000))
+        def route = new HttpRoute(new HttpHost("localhost", 80))
+
+        when:
+        first.shutdown()
+        second.requestConnection(route, null).cancel()
+
+        then:
+        noExceptionThrown()
+
+        when:
+        second.shutdown()
+        second.pool.requestConnection(route, null)
+
+        then:
+        thrown(IllegalStateException)
+
+        and:
+        !pools.connectionManagerFor(sslContext, ["TLSv1.2"] as String[], hostnameVerifier, timeouts(30000)).pool.is(second.pool)
+    }
+
+    def "configures the shared pool on the client"() {
+        def builder = HttpClientBuilder.create()
+        HttpSettings settings = Stub() {
+            getAuthenticationSettings() >> []
+            getProxySettings() >> Stub(HttpProxySettings)
+            getSecureProxySettings() >> Stub(HttpProxySettings)
+            getTimeoutSettings() >> timeouts(30000)
+            getSslContextFactory() >> Stub(SslContextFactory) {
+                createSslContext() >> sslContext
+            }
+            getHostnameVerifier() >> hostnameVerifier
+        }
+
+        when:
+        new HttpClientConfigurer(settings, pools).configure(builder)
+
+        then:
+        builder.connManager.pool.is(pools.connectionManagerFor(sslContext, HttpClientConfigurer.supportedTlsVersions() as String[], hostnameVerifier, timeouts(30000)).pool)
+        !builder.connManagerShared
+    }
+
+    def "cannot lease pools once closed"() {
+        when:
+        pools.close()
+        pools.connectionManagerFor(sslContext, ["TLSv1.2"] as String[], hostnameVerifier, timeouts(30000))
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    private HttpTimeoutSettings timeouts(int socketTimeoutMs) {
+        return Stub(HttpTimeoutSettings) {
+            getConnectionTimeoutMs() >> 10000
+            getSocketTimeoutMs() >> socketTimeoutMs
+            getIdleConnectionTimeoutMs() >> 60000
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interners;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Snapshots a generated source tree with and without walking subdirectories in parallel.
+ *
+ * <p>The tree mimics a source set: a few levels of packages with some small files in each.</p>
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class FileWalkingBenchmark {
+
+    private static final int PACKAGES_PER_LEVEL = 6;
+    private static final int PACKAGE_DEPTH = 3;
+    private static final int FILES_PER_PACKAGE = 20;
+
+    @Param({"sequential", "parallel"})
+    String walkMode;
+
+    private Path root;
+    private ExecutorService executor;
+    private DirectorySnapshotter snapshotter;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("file-walking");
+        createPackages(root, PACKAGE_DEPTH);
+        executor = walkMode.equals("parallel") ? Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()) : null;
+        snapshotter = new DirectorySnapshotter(new ContentHasher(), Interners.newWeakInterner(), ImmutableList.of(), new DirectorySnapshotterStatistics.Collector(), executor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public FileSystemLocationSnapshot snapshot() {
+        return snapshotter.snapshot(root.toString(), null, new AtomicBoolean(), snapshot -> {});
+    }
+
+    private static void createPackages(Path dir, int depth) throws IOException {
+        for (int i = 0; i < FILES_PER_PACKAGE; i++) {
+            Files.write(dir.resolve("File" + i + ".java"), ("class File" + i + " {}").getBytes());
+        }
+        if (depth > 0) {
+            for (int i = 0; i < PACKAGES_PER_LEVEL; i++) {
+                createPackages(Files.createDirectory(dir.resolve("package" + i)), depth - 1);
+            }
+        }
+    }
+
+    private static class ContentHasher implements FileHasher {
+        @Override
+        public HashCode hash(File file) {
+            try {
+                return Hashing.hashFile(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public HashCode hash(File file, long length, long lastModified) {
+            return hash(file);
+        }
+    }
+}
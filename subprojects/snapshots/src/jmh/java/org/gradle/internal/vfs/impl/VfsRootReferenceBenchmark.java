@@ -0,0 +1,130 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * Concurrent store and invalidate traffic on the VFS root, like many workers snapshotting their outputs at the same time.
+ *
+ * <p>Each thread stores and invalidates files in its own subtree of a root which already contains some unrelated snapshots.</p>
+ */
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class VfsRootReferenceBenchmark {
+
+    private static final int PREPOPULATED_DIRECTORIES = 1000;
+    private static final int FILES_PER_THREAD = 100;
+
+    /**
+     * {@code concurrentInOrder} publishes the changes of each update in order, like the VFS does while watching the file system.
+     */
+    @Param({"exclusive", "concurrent", "concurrentInOrder"})
+    String updateMode;
+
+    private VfsRootReference rootReference;
+    private long publishedUpdates;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        SnapshotHierarchy root = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE);
+        for (int i = 0; i < PREPOPULATED_DIRECTORIES; i++) {
+            String path = "/project/unrelated" + i + "/file.txt";
+            root = root.store(path, fileSnapshot(path), SnapshotHierarchy.NodeDiffListener.NOOP);
+        }
+        rootReference = new VfsRootReference(root);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        List<String> files;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setup(VfsRootReferenceBenchmark benchmark) {
+            int thread = benchmark.threadCount.getAndIncrement();
+            ImmutableList.Builder<String> builder = ImmutableList.builderWithExpectedSize(FILES_PER_THREAD);
+            for (int i = 0; i < FILES_PER_THREAD; i++) {
+                builder.add("/project/worker" + thread + "/build/output" + i + ".class");
+            }
+            files = builder.build();
+        }
+
+        String nextFile() {
+            String file = files.get(next);
+            next = (next + 1) % files.size();
+            return file;
+        }
+    }
+
+    @Benchmark
+    public void store(ThreadState state) {
+        String path = state.nextFile();
+        update(root -> root.store(path, fileSnapshot(path), SnapshotHierarchy.NodeDiffListener.NOOP));
+    }
+
+    @Benchmark
+    public void storeAndInvalidate(ThreadState state) {
+        String path = state.nextFile();
+        update(root -> root.store(path, fileSnapshot(path), SnapshotHierarchy.NodeDiffListener.NOOP));
+        update(root -> root.invalidate(path, SnapshotHierarchy.NodeDiffListener.NOOP));
+    }
+
+    private void update(UnaryOperator<SnapshotHierarchy> updateFunction) {
+        if ("concurrent".equals(updateMode)) {
+            rootReference.tryUpdateConcurrently(() -> true, updateFunction);
+        } else if ("concurrentInOrder".equals(updateMode)) {
+            rootReference.tryUpdateConcurrentlyInOrder(() -> true, root -> VfsRootReference.ConcurrentUpdate.publishing(updateFunction.apply(root), () -> publishedUpdates++));
+        } else {
+            rootReference.update(updateFunction);
+        }
+    }
+
+    private static RegularFileSnapshot fileSnapshot(String absolutePath) {
+        return new RegularFileSnapshot(absolutePath, absolutePath.substring(absolutePath.lastIndexOf('/') + 1), HashCode.fromInt(absolutePath.hashCode()), DefaultFileMetadata.file(1, 1, AccessType.DIRECT));
+    }
+}
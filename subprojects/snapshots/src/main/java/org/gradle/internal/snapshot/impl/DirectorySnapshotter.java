@@ -17,10 +17,13 @@
 package org.gradle.internal.snapshot.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Interner;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.file.FileMetadata.AccessType;
 import org.gradle.internal.file.FileType;
@@ -48,12 +51,17 @@
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -83,16 +91,31 @@ public Iterable<String> getRemappedSegments(Iterable<String> segments) {
         }
     };
 
+    /**
+     * Files smaller than this are hashed on the walking thread, since handing them off would cost more than hashing them.
+     */
+    private static final long MIN_PARALLEL_HASHING_FILE_SIZE = 64 * 1024;
+
     private final FileHasher hasher;
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
     private final DirectorySnapshotterStatistics.Collector collector;
+    private final Executor snapshottingExecutor;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector) {
+        this(hasher, stringInterner, defaultExcludes, collector, null);
+    }
+
+    /**
+     * @param snapshottingExecutor when not {@code null}, the contents of larger files are hashed on this executor while the walk continues.
+     * Subdirectories of trees snapshotted without a predicate are walked in parallel on this executor, too.
+     */
+    public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector, @Nullable Executor snapshottingExecutor) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
         this.collector = collector;
+        this.snapshottingExecutor = snapshottingExecutor;
     }
 
     /**
@@ -113,14 +136,9 @@ public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner,
      * @return The (possible filtered) snapshot of the directory.
      */
     public FileSystemLocationSnapshot snapshot(String absolutePath, @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate, final AtomicBoolean hasBeenFiltered, Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer) {
-        try {
-            Path rootPath = Paths.get(absolutePath);
-            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, unfilteredSnapshotConsumer);
-            Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
-            return visitor.getResult();
-        } catch (IOException e) {
-            throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", absolutePath), e);
-        }
+        Path rootPath = Paths.get(absolutePath);
+        PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, snapshottingExecutor, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, unfilteredSnapshotConsumer, new ArrayDeque<>(), false);
+        return visitor.walk(rootPath);
     }
 
     private interface SymbolicLinkMapping {
@@ -246,32 +264,52 @@ private static class PathVisitor extends DirectorySnapshotterStatistics.Collecti
         private final SnapshottingFilter.DirectoryWalkerPredicate predicate;
         private final AtomicBoolean hasBeenFiltered;
         private final FileHasher hasher;
+        private final Executor snapshottingExecutor;
         private final Interner<String> stringInterner;
         private final DefaultExcludes defaultExcludes;
         private final SymbolicLinkMapping symbolicLinkMapping;
-        private final Deque<String> parentDirectories = new ArrayDeque<>();
+        private final Deque<String> parentDirectories;
         private final Set<FileSystemLocationSnapshot> filteredDirectorySnapshots = new HashSet<>();
         private final Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer;
+        /**
+         * Once the first file is hashed or the first subdirectory is walked asynchronously, all further builder operations are recorded here
+         * and replayed in walk order when the result is requested. This keeps the result deterministic.
+         */
+        private List<Consumer<FilteredTrackingMerkleDirectorySnapshotBuilder>> deferredOperations;
 
         public PathVisitor(
             @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
             AtomicBoolean hasBeenFiltered,
             FileHasher hasher,
+            @Nullable Executor snapshottingExecutor,
             Interner<String> stringInterner,
             DefaultExcludes defaultExcludes,
             DirectorySnapshotterStatistics.Collector statisticsCollector,
             SymbolicLinkMapping symbolicLinkMapping,
-            Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer
+            Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer,
+            Deque<String> parentDirectories,
+            boolean continuesWalk
         ) {
-            super(statisticsCollector);
+            super(statisticsCollector, continuesWalk);
             this.builder = FilteredTrackingMerkleDirectorySnapshotBuilder.sortingRequired(this::consumeUnfilteredSnapshot);
             this.predicate = predicate;
             this.hasBeenFiltered = hasBeenFiltered;
             this.hasher = hasher;
+            this.snapshottingExecutor = snapshottingExecutor;
             this.stringInterner = stringInterner;
             this.defaultExcludes = defaultExcludes;
             this.symbolicLinkMapping = symbolicLinkMapping;
             this.unfilteredSnapshotConsumer = unfilteredSnapshotConsumer;
+            this.parentDirectories = parentDirectories;
+        }
+
+        public FileSystemLocationSnapshot walk(Path root) {
+            try {
+                Files.walkFileTree(root, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, this);
+                return getResult();
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", root), e);
+            }
         }
 
         private void consumeUnfilteredSnapshot(FileSystemLocationSnapshot snapshot) {
@@ -289,7 +327,13 @@ protected FileVisitResult doPreVisitDirectory(Path dir, BasicFileAttributes attr
             String fileName = getInternedFileName(dir);
             pathTracker.enter(fileName);
             if (shouldVisitDirectory(dir, fileName)) {
-                builder.enterDirectory(AccessType.DIRECT, intern(symbolicLinkMapping.remapAbsolutePath(dir)), fileName, INCLUDE_EMPTY_DIRS);
+                if (!pathTracker.isRoot() && canWalkSubdirectoriesInParallel()) {
+                    walkSubdirectoryInParallel(dir);
+                    pathTracker.leave();
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                String internedAbsolutePath = intern(symbolicLinkMapping.remapAbsolutePath(dir));
+                apply(builder -> builder.enterDirectory(AccessType.DIRECT, internedAbsolutePath, fileName, INCLUDE_EMPTY_DIRS));
                 parentDirectories.addFirst(dir.toString());
                 return FileVisitResult.CONTINUE;
             } else {
@@ -298,6 +342,31 @@ protected FileVisitResult doPreVisitDirectory(Path dir, BasicFileAttributes attr
             }
         }
 
+        /**
+         * Subdirectories are only walked in parallel when there is no predicate, since the predicate may not be safe to call from multiple threads.
+         * Without a predicate nothing in the tree is filtered, so the parallel walks don't need to report filtered directories back.
+         */
+        private boolean canWalkSubdirectoriesInParallel() {
+            return snapshottingExecutor != null && predicate == null;
+        }
+
+        private void walkSubdirectoryInParallel(Path dir) {
+            PathVisitor subdirectoryVisitor = new PathVisitor(
+                null,
+                hasBeenFiltered,
+                hasher,
+                snapshottingExecutor,
+                stringInterner,
+                defaultExcludes,
+                collector,
+                symbolicLinkMapping,
+                unfilteredSnapshotConsumer,
+                new ArrayDeque<>(parentDirectories),
+                true);
+            ForkedTask<FileSystemLocationSnapshot> subdirectorySnapshot = fork(() -> subdirectoryVisitor.walk(dir));
+            defer(builder -> builder.visitDirectory((DirectorySnapshot) subdirectorySnapshot.join()));
+        }
+
         @Override
         protected FileVisitResult doPostVisitDirectory(Path dir, IOException exc) {
             pathTracker.leave();
@@ -307,11 +376,13 @@ protected FileVisitResult doPostVisitDirectory(Path dir, IOException exc) {
             if (isNotFileSystemLoopException(exc)) {
                 throw new UncheckedIOException(String.format("Could not read directory path '%s'.", dir), exc);
             }
-            boolean currentLevelComplete = builder.isCurrentLevelUnfiltered();
-            FileSystemLocationSnapshot currentLevel = builder.leaveDirectory();
-            if (!currentLevelComplete) {
-                filteredDirectorySnapshots.add(currentLevel);
-            }
+            apply(builder -> {
+                boolean currentLevelComplete = builder.isCurrentLevelUnfiltered();
+                FileSystemLocationSnapshot currentLevel = builder.leaveDirectory();
+                if (!currentLevelComplete) {
+                    filteredDirectorySnapshots.add(currentLevel);
+                }
+            });
             parentDirectories.removeFirst();
             return FileVisitResult.CONTINUE;
         }
@@ -334,11 +405,15 @@ protected FileVisitResult doVisitFile(Path file, BasicFileAttributes attrs) {
                                 targetSnapshot.getHash(),
                                 targetSnapshot.getChildren()
                             );
-                            builder.visitDirectory(directorySnapshotAccessedViaSymlink);
                             boolean symlinkFiltered = symlinkHasBeenFiltered.get();
+                            apply(builder -> {
+                                builder.visitDirectory(directorySnapshotAccessedViaSymlink);
+                                if (symlinkFiltered) {
+                                    filteredDirectorySnapshots.add(directorySnapshotAccessedViaSymlink);
+                                    builder.markCurrentLevelAsFiltered();
+                                }
+                            });
                             if (symlinkFiltered) {
-                                filteredDirectorySnapshots.add(directorySnapshotAccessedViaSymlink);
-                                builder.markCurrentLevelAsFiltered();
                                 hasBeenFiltered.set(true);
                             }
                         }
@@ -364,11 +439,14 @@ private DirectorySnapshot followSymlink(Path file, String internedFileName, Atom
                         predicate,
                         symlinkHasBeenFiltered,
                         hasher,
+                        snapshottingExecutor,
                         stringInterner,
                         defaultExcludes,
                         collector,
                         symbolicLinkMapping.withNewMapping(file.toString(), targetDirString, pathTracker),
-                        unfilteredSnapshotConsumer);
+                        unfilteredSnapshotConsumer,
+                        new ArrayDeque<>(),
+                        false);
                     Files.walkFileTree(targetDir, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, subtreeVisitor);
                     return (DirectorySnapshot) subtreeVisitor.getResult();
                 } else {
@@ -386,10 +464,37 @@ private boolean introducesCycle(String targetDirString) {
         private void visitResolvedFile(Path file, BasicFileAttributes targetAttributes, AccessType accessType) {
             String internedName = intern(file.getFileName().toString());
             if (shouldVisitFile(file, internedName)) {
-                builder.visitLeafElement(snapshotFile(file, internedName, targetAttributes, accessType));
+                if (snapshottingExecutor != null && targetAttributes.isRegularFile() && targetAttributes.size() >= MIN_PARALLEL_HASHING_FILE_SIZE) {
+                    ForkedTask<FileSystemLeafSnapshot> snapshot = fork(() -> snapshotFile(file, internedName, targetAttributes, accessType));
+                    defer(builder -> builder.visitLeafElement(snapshot.join()));
+                } else {
+                    FileSystemLeafSnapshot snapshot = snapshotFile(file, internedName, targetAttributes, accessType);
+                    apply(builder -> builder.visitLeafElement(snapshot));
+                }
+            }
+        }
+
+        private void apply(Consumer<FilteredTrackingMerkleDirectorySnapshotBuilder> operation) {
+            if (deferredOperations == null) {
+                operation.accept(builder);
+            } else {
+                deferredOperations.add(operation);
             }
         }
 
+        private void defer(Consumer<FilteredTrackingMerkleDirectorySnapshotBuilder> operation) {
+            if (deferredOperations == null) {
+                deferredOperations = new ArrayList<>();
+            }
+            deferredOperations.add(operation);
+        }
+
+        private <T> ForkedTask<T> fork(Callable<T> work) {
+            ForkedTask<T> task = new ForkedTask<>(work);
+            snapshottingExecutor.execute(task);
+            return task;
+        }
+
         private boolean shouldVisitDirectory(Path dir, String internedName) {
             return pathTracker.isRoot() || shouldVisit(dir, internedName, true);
         }
@@ -470,7 +575,7 @@ private boolean shouldVisit(Path path, String internedName, boolean isDirectory)
             }
             boolean allowed = predicate.test(path, internedName, isDirectory, symbolicLinkMapping.getRemappedSegments(pathTracker.getSegments()));
             if (!allowed) {
-                builder.markCurrentLevelAsFiltered();
+                apply(FilteredTrackingMerkleDirectorySnapshotBuilder::markCurrentLevelAsFiltered);
                 hasBeenFiltered.set(true);
             }
             return allowed;
@@ -482,7 +587,35 @@ private String getInternedFileName(Path dir) {
         }
 
         public FileSystemLocationSnapshot getResult() {
+            if (deferredOperations != null) {
+                deferredOperations.forEach(operation -> operation.accept(builder));
+                deferredOperations = null;
+            }
             return builder.getResult();
         }
     }
+
+    /**
+     * Work handed off to the snapshotting executor.
+     *
+     * <p>Joining runs the work on the joining thread when no thread of the executor has picked it up yet.
+     * So a thread only ever waits for work which is already running, and walks waiting for their subdirectories
+     * can't use up all the threads of the executor.</p>
+     */
+    private static class ForkedTask<T> extends FutureTask<T> {
+        ForkedTask(Callable<T> work) {
+            super(work);
+        }
+
+        T join() {
+            // Does nothing when the work has already been started by another thread
+            run();
+            try {
+                return Uninterruptibles.getUninterruptibly(this);
+            } catch (ExecutionException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+                throw new UncheckedExecutionException(e.getCause());
+            }
+        }
+    }
 }
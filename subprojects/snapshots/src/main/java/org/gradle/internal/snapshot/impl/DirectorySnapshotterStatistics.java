@@ -105,15 +105,30 @@ public String toString() {
 
     abstract class CollectingFileVisitor implements FileVisitor<Path> {
         protected final Collector collector;
+        private boolean rootDirectoryRecorded;
 
         public CollectingFileVisitor(Collector collector) {
+            this(collector, false);
+        }
+
+        /**
+         * @param continuesWalk whether this visitor continues the walk of another visitor at a directory that visitor has already recorded.
+         */
+        protected CollectingFileVisitor(Collector collector, boolean continuesWalk) {
             this.collector = collector;
-            collector.recordVisitHierarchy();
+            this.rootDirectoryRecorded = continuesWalk;
+            if (!continuesWalk) {
+                collector.recordVisitHierarchy();
+            }
         }
 
         @Override
         public final FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-            collector.recordVisitDirectory();
+            if (rootDirectoryRecorded) {
+                rootDirectoryRecorded = false;
+            } else {
+                collector.recordVisitDirectory();
+            }
             return doPreVisitDirectory(dir, attrs);
         }
 
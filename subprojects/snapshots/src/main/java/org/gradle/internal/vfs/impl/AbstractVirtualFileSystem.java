@@ -16,6 +16,7 @@
 
 package org.gradle.internal.vfs.impl;
 
+import com.google.common.collect.ImmutableList;
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.MetadataSnapshot;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
@@ -23,6 +24,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Optional;
 
 public abstract class AbstractVirtualFileSystem implements VirtualFileSystem {
@@ -46,17 +48,28 @@ public Optional<MetadataSnapshot> findMetadata(String absolutePath) {
 
     @Override
     public void store(String absolutePath, FileSystemLocationSnapshot snapshot) {
-        rootReference.update(root -> updateNotifyingListeners(diffListener -> root.store(absolutePath, snapshot, diffListener)));
+        updateConcurrently(ImmutableList.of((root, diffListener) -> root.store(absolutePath, snapshot, diffListener)));
     }
 
     @Override
     public void invalidate(Iterable<String> locations) {
         LOGGER.debug("Invalidating VFS paths: {}", locations);
+        ImmutableList.Builder<RootUpdateFunction> updateSteps = ImmutableList.builder();
+        for (String location : locations) {
+            updateSteps.add((root, diffListener) -> root.invalidate(location, diffListener));
+        }
+        updateConcurrently(updateSteps.build());
+    }
+
+    private void updateConcurrently(List<RootUpdateFunction> updateSteps) {
+        if (tryUpdateConcurrentlyNotifyingListeners(updateSteps)) {
+            return;
+        }
         rootReference.update(root -> {
             SnapshotHierarchy result = root;
-            for (String location : locations) {
+            for (RootUpdateFunction updateStep : updateSteps) {
                 SnapshotHierarchy currentRoot = result;
-                result = updateNotifyingListeners(diffListener -> currentRoot.invalidate(location, diffListener));
+                result = updateNotifyingListeners(diffListener -> updateStep.update(currentRoot, diffListener));
             }
             return result;
         });
@@ -72,6 +85,29 @@ public void invalidateAll() {
         }));
     }
 
+    /**
+     * Tries to apply the steps of a store or an invalidation concurrently with other stores and invalidations,
+     * notifying the currently active listeners about the changes of each step in order.
+     * The listeners of concurrent updates are notified in the order in which the updates have been applied,
+     * see {@link VfsRootReference#tryUpdateConcurrentlyInOrder(java.util.function.BooleanSupplier, java.util.function.Function)}.
+     *
+     * @return whether the update has been applied. When {@code false}, the steps are applied by an exclusive update instead.
+     */
+    protected boolean tryUpdateConcurrentlyNotifyingListeners(List<RootUpdateFunction> updateSteps) {
+        return false;
+    }
+
+    /**
+     * Applies the steps of a store or an invalidation to the given root, without notifying any listeners.
+     */
+    protected static SnapshotHierarchy updateWithoutListeners(SnapshotHierarchy root, List<RootUpdateFunction> updateSteps) {
+        SnapshotHierarchy result = root;
+        for (RootUpdateFunction updateStep : updateSteps) {
+            result = updateStep.update(result, SnapshotHierarchy.NodeDiffListener.NOOP);
+        }
+        return result;
+    }
+
     /**
      * Runs a single update on a {@link SnapshotHierarchy} and notifies the currently active listeners after the update.
      */
@@ -85,4 +121,14 @@ public interface UpdateFunction {
          */
         SnapshotHierarchy update(SnapshotHierarchy.NodeDiffListener diffListener);
     }
+
+    public interface RootUpdateFunction {
+        /**
+         * Runs a single update on the given root, notifying the diffListener about changes.
+         * Must not have any other side effects, since it may run more than once.
+         *
+         * @return updated ${@link SnapshotHierarchy}.
+         */
+        SnapshotHierarchy update(SnapshotHierarchy root, SnapshotHierarchy.NodeDiffListener diffListener);
+    }
 }
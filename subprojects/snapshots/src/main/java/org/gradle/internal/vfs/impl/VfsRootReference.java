@@ -18,28 +18,153 @@
 
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 
+import javax.annotation.Nullable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 import java.util.function.UnaryOperator;
 
+/**
+ * Holds the root of the virtual file system.
+ *
+ * <p>Readers never block. Updates come in two flavours: exclusive updates run one at a time and may have side effects,
+ * e.g. notifying the file watchers. Concurrent updates don't wait for each other, but are retried when another update
+ * replaced the root in the meantime. Their side effects are published separately, in the order in which the updates have been applied.</p>
+ */
 public class VfsRootReference {
-    private volatile SnapshotHierarchy root;
-    private final ReentrantLock updateLock = new ReentrantLock();
+    private final AtomicReference<VersionedRoot> root;
+    private final ReentrantReadWriteLock updateLock = new ReentrantReadWriteLock();
+    private final ReentrantLock publicationLock = new ReentrantLock();
+    private final ConcurrentMap<Long, Runnable> pendingPublications = new ConcurrentHashMap<>();
+    private volatile long lastPublishedVersion;
 
     public SnapshotHierarchy getRoot() {
-        return root;
+        return root.get().root;
     }
 
     public VfsRootReference(SnapshotHierarchy root) {
-        this.root = root;
+        this.root = new AtomicReference<>(new VersionedRoot(root, 0));
     }
 
+    /**
+     * Runs the update function exactly once, while no other update is running.
+     */
     public void update(UnaryOperator<SnapshotHierarchy> updateFunction) {
-        updateLock.lock();
+        Lock lock = updateLock.writeLock();
+        lock.lock();
+        try {
+            VersionedRoot currentRoot = root.get();
+            VersionedRoot newRoot = new VersionedRoot(updateFunction.apply(currentRoot.root), currentRoot.version + 1);
+            root.set(newRoot);
+            // All publications of concurrent updates have run before the write lock has been granted
+            lastPublishedVersion = newRoot.version;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the update function concurrently with other concurrent updates, unless the given condition does not hold.
+     *
+     * <p>The update function may be applied more than once, so it must not have side effects.
+     * The condition is checked while no exclusive update is running, so it can depend on state which is only changed by exclusive updates.</p>
+     *
+     * @return whether the update has been applied. When {@code false}, the caller needs to fall back to an exclusive {@link #update(UnaryOperator)}.
+     */
+    public boolean tryUpdateConcurrently(BooleanSupplier canUpdateConcurrently, UnaryOperator<SnapshotHierarchy> updateFunction) {
+        return tryUpdateConcurrentlyInOrder(canUpdateConcurrently, currentRoot -> ConcurrentUpdate.withoutSideEffects(updateFunction.apply(currentRoot)));
+    }
+
+    /**
+     * Like {@link #tryUpdateConcurrently(BooleanSupplier, UnaryOperator)}, for updates which need to publish their changes.
+     *
+     * <p>Only the publication of the update which has been applied runs, and publications run one at a time in the order in which their updates have been applied.
+     * They run before the next exclusive update starts, though not necessarily on the calling thread.</p>
+     */
+    public boolean tryUpdateConcurrentlyInOrder(BooleanSupplier canUpdateConcurrently, Function<SnapshotHierarchy, ConcurrentUpdate> updateFunction) {
+        Lock lock = updateLock.readLock();
+        lock.lock();
         try {
-            SnapshotHierarchy currentRoot = root;
-            root = updateFunction.apply(currentRoot);
+            if (!canUpdateConcurrently.getAsBoolean()) {
+                return false;
+            }
+            VersionedRoot currentRoot;
+            VersionedRoot newRoot;
+            ConcurrentUpdate update;
+            do {
+                currentRoot = root.get();
+                update = updateFunction.apply(currentRoot.root);
+                // Updates without a publication don't need a slot in the publication order
+                long newVersion = update.publication == null ? currentRoot.version : currentRoot.version + 1;
+                newRoot = new VersionedRoot(update.updatedRoot, newVersion);
+            } while (!root.compareAndSet(currentRoot, newRoot));
+            if (update.publication != null) {
+                pendingPublications.put(newRoot.version, update.publication);
+                runPendingPublications();
+            }
+            return true;
         } finally {
-            updateLock.unlock();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the publications which are next in line.
+     *
+     * <p>Only one thread publishes at a time. Other threads leave their publications behind for it,
+     * unless it has already finished, in which case they take over.</p>
+     */
+    private void runPendingPublications() {
+        while (pendingPublications.containsKey(lastPublishedVersion + 1) && publicationLock.tryLock()) {
+            try {
+                Runnable publication;
+                while ((publication = pendingPublications.remove(lastPublishedVersion + 1)) != null) {
+                    lastPublishedVersion++;
+                    publication.run();
+                }
+            } finally {
+                publicationLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * The new root computed by a concurrent update, together with the side effects to run once the new root has been applied.
+     */
+    public static class ConcurrentUpdate {
+        private final SnapshotHierarchy updatedRoot;
+        @Nullable
+        private final Runnable publication;
+
+        private ConcurrentUpdate(SnapshotHierarchy updatedRoot, @Nullable Runnable publication) {
+            this.updatedRoot = updatedRoot;
+            this.publication = publication;
+        }
+
+        public static ConcurrentUpdate withoutSideEffects(SnapshotHierarchy updatedRoot) {
+            return new ConcurrentUpdate(updatedRoot, null);
+        }
+
+        /**
+         * The publication must not throw, since that would leave the publications of other updates behind.
+         */
+        public static ConcurrentUpdate publishing(SnapshotHierarchy updatedRoot, Runnable publication) {
+            return new ConcurrentUpdate(updatedRoot, publication);
+        }
+    }
+
+    private static class VersionedRoot {
+        private final SnapshotHierarchy root;
+        private final long version;
+
+        VersionedRoot(SnapshotHierarchy root, long version) {
+            this.root = root;
+            this.version = version;
         }
     }
 }
@@ -39,6 +39,7 @@ import spock.lang.Issue
 import spock.lang.Specification
 
 import java.nio.file.Paths
+import java.util.concurrent.Executors
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.function.Consumer
 
@@ -177,6 +178,152 @@ class DirectorySnapshotterTest extends Specification {
         ]*.absolutePath
     }
 
+    def "hashing files in parallel produces the same snapshot"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        def random = new Random(1)
+        ["a.txt", "a/b/c.txt", "a/b/large.txt", "a/c/c.txt", "a/c/large.html", "large.txt", "subdir1/a/b/large.txt"].each { path ->
+            def content = new byte[path.contains("large") ? 100_000 : 10]
+            random.nextBytes(content)
+            rootDir.file(path).createFile().bytes = content
+        }
+        def patterns = new PatternSet()
+        patterns.include("**/*.txt")
+        patterns.exclude("subdir1/**")
+        def executor = Executors.newFixedThreadPool(4)
+        def parallelSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], statisticsCollector, executor)
+        def parallelFiltered = new AtomicBoolean(false)
+        List<FileSystemLocationSnapshot> parallelUnfilteredSubsnapshots = []
+
+        when:
+        def sequential = directorySnapshotter.snapshot(rootDir.absolutePath, directoryWalkerPredicate(patterns), actuallyFiltered, unfilteredSubSnapshotsCollector)
+        def parallel = parallelSnapshotter.snapshot(rootDir.absolutePath, directoryWalkerPredicate(patterns), parallelFiltered, { parallelUnfilteredSubsnapshots.add(it) })
+
+        then:
+        parallel.hash == sequential.hash
+        SnapshotVisitorUtil.getRelativePaths(parallel, true) == SnapshotVisitorUtil.getRelativePaths(sequential, true)
+        parallelFiltered.get() == actuallyFiltered.get()
+        parallelUnfilteredSubsnapshots*.absolutePath == unfilteredSubsnapshots*.absolutePath
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "walking directories in parallel produces the same snapshot"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        def random = new Random(1)
+        ["a.txt", "a/b/c.txt", "a/b/large.txt", "a/c/c.txt", "a/c/d/e/f.txt", "a/empty/", "large.txt", "subdir1/a/b/large.txt", "subdir2/.git/config", "subdir2/.gitignore"].each { path ->
+            if (path.endsWith("/")) {
+                rootDir.createDir(path)
+                return
+            }
+            def content = new byte[path.contains("large") ? 100_000 : 10]
+            random.nextBytes(content)
+            rootDir.file(path).createFile().bytes = content
+        }
+        def defaultExcludes = DirectoryScanner.getDefaultExcludes() as List
+        def sequentialSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), defaultExcludes, statisticsCollector)
+        def executor = Executors.newFixedThreadPool(4)
+        def parallelSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), defaultExcludes, statisticsCollector, executor)
+        def parallelFiltered = new AtomicBoolean(false)
+        List<FileSystemLocationSnapshot> parallelUnfilteredSubsnapshots = []
+
+        when:
+        def sequential = sequentialSnapshotter.snapshot(rootDir.absolutePath, null, actuallyFiltered, unfilteredSubSnapshotsCollector)
+        def parallel = parallelSnapshotter.snapshot(rootDir.absolutePath, null, parallelFiltered, { parallelUnfilteredSubsnapshots.add(it) })
+
+        then:
+        parallel.hash == sequential.hash
+        SnapshotVisitorUtil.getRelativePaths(parallel, true) == SnapshotVisitorUtil.getRelativePaths(sequential, true)
+        !SnapshotVisitorUtil.getRelativePaths(parallel, true).contains("subdir2/.git")
+        !parallelFiltered.get()
+        parallelUnfilteredSubsnapshots.empty
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "walking directories in parallel applies default excludes inside forked subdirectories"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        ["a/b/c/File.java", "a/b/c/File.java~", "a/b/c/#File.java#", "a/b/c/.#File.java", "a/b/c/.gitignore", "a/b/.git/config", "a/b/.svn/entries", "a/b/CVS/Entries", "a/.DS_Store"].each { path ->
+            rootDir.file(path).createFile().text = path
+        }
+        def defaultExcludes = DirectoryScanner.getDefaultExcludes() as List
+        def sequentialSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), defaultExcludes, statisticsCollector)
+        def executor = Executors.newFixedThreadPool(4)
+        def parallelSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), defaultExcludes, statisticsCollector, executor)
+
+        when:
+        def sequential = sequentialSnapshotter.snapshot(rootDir.absolutePath, null, actuallyFiltered, unfilteredSubSnapshotsCollector)
+        def parallel = parallelSnapshotter.snapshot(rootDir.absolutePath, null, new AtomicBoolean(false), { assert false })
+
+        then:
+        parallel.hash == sequential.hash
+        SnapshotVisitorUtil.getRelativePaths(parallel) == SnapshotVisitorUtil.getRelativePaths(sequential)
+        SnapshotVisitorUtil.getRelativePaths(parallel) as Set == ["a", "a/b", "a/b/c", "a/b/c/File.java"] as Set
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    @Requires(TestPrecondition.SYMLINKS)
+    def "walking directories in parallel detects symlink cycles across forked subdirectories"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        def a = rootDir.file("a").createDir()
+        a.file("b/file.txt").createFile().text = "content"
+        // Point back to the parent of the forked walk and to the root of the whole walk
+        a.file("b/parent").createLink(a)
+        a.file("b/root").createLink(rootDir)
+        def first = rootDir.file("c/first")
+        def second = rootDir.file("c/second")
+        first.createLink(second)
+        second.createLink(first)
+        def sequentialSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], statisticsCollector)
+        def executor = Executors.newFixedThreadPool(4)
+        def parallelSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], statisticsCollector, executor)
+
+        when:
+        def sequential = sequentialSnapshotter.snapshot(rootDir.absolutePath, null, actuallyFiltered, unfilteredSubSnapshotsCollector)
+        def parallel = parallelSnapshotter.snapshot(rootDir.absolutePath, null, new AtomicBoolean(false), { assert false })
+
+        then:
+        parallel.hash == sequential.hash
+        SnapshotVisitorUtil.getRelativePaths(parallel) == SnapshotVisitorUtil.getRelativePaths(sequential)
+        SnapshotVisitorUtil.getRelativePaths(parallel) as Set == ["a", "a/b", "a/b/file.txt", "c", "c/first", "c/second"] as Set
+        def c = parallel.children.find { it.name == "c" } as DirectorySnapshot
+        c.children.every { it.class == MissingFileSnapshot && it.accessType == AccessType.VIA_SYMLINK }
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "walking directories in parallel completes on a single thread"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        ["a", "b", "c"].each { first ->
+            ["d", "e", "f"].each { second ->
+                rootDir.file("$first/$second/g/file.txt").createFile().text = "$first$second"
+            }
+        }
+        // Walks waiting for their subdirectories must not take up the only thread
+        def executor = Executors.newFixedThreadPool(1)
+        def parallelSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], statisticsCollector, executor)
+
+        when:
+        def sequential = directorySnapshotter.snapshot(rootDir.absolutePath, null, actuallyFiltered, unfilteredSubSnapshotsCollector)
+        def parallel = parallelSnapshotter.snapshot(rootDir.absolutePath, null, new AtomicBoolean(false), { assert false })
+
+        then:
+        parallel.hash == sequential.hash
+        SnapshotVisitorUtil.getRelativePaths(parallel) == SnapshotVisitorUtil.getRelativePaths(sequential)
+
+        cleanup:
+        executor.shutdown()
+    }
+
     @Requires(TestPrecondition.SYMLINKS)
     def "symlinked directories in tree are marked as accessed via symlink"() {
         def rootDir = tmpDir.createDir("root")
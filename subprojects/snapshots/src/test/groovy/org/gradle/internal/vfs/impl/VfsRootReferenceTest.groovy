@@ -0,0 +1,114 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs.impl
+
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.internal.snapshot.SnapshotHierarchy
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class VfsRootReferenceTest extends Specification {
+    def rootReference = new VfsRootReference(DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE))
+
+    def "concurrent updates are not lost"() {
+        def executorService = Executors.newFixedThreadPool(16)
+        def start = new CountDownLatch(1)
+
+        when:
+        def futures = (1..1000).collect { num ->
+            executorService.submit {
+                start.await()
+                def path = "/root/dir${num % 10}/file${num}.txt"
+                assert rootReference.tryUpdateConcurrently({ true }) { root -> root.store(path, fileSnapshot(path), SnapshotHierarchy.NodeDiffListener.NOOP) }
+            }
+        }
+        start.countDown()
+        futures*.get(10, TimeUnit.SECONDS)
+
+        then:
+        (1..1000).every { num ->
+            rootReference.root.findSnapshot("/root/dir${num % 10}/file${num}.txt").present
+        }
+
+        cleanup:
+        executorService.shutdown()
+    }
+
+    def "publishes concurrent updates once in the order in which they have been applied"() {
+        def executorService = Executors.newFixedThreadPool(16)
+        def start = new CountDownLatch(1)
+        def published = Collections.synchronizedList([])
+
+        when:
+        def futures = (1..1000).collect { num ->
+            executorService.submit {
+                start.await()
+                def path = "/root/dir${num % 10}/file${num}.txt"
+                assert rootReference.tryUpdateConcurrentlyInOrder({ true }) { root ->
+                    def newRoot = root.store(path, fileSnapshot(path), SnapshotHierarchy.NodeDiffListener.NOOP)
+                    VfsRootReference.ConcurrentUpdate.publishing(newRoot) { published << [path, newRoot] }
+                }
+            }
+        }
+        start.countDown()
+        futures*.get(10, TimeUnit.SECONDS)
+
+        then:
+        published.size() == 1000
+        (1..<1000).every { index ->
+            def (previousPath, previousRoot) = published[index - 1]
+            def (path, root) = published[index]
+            root.findSnapshot(previousPath).present && !previousRoot.findSnapshot(path).present
+        }
+
+        cleanup:
+        executorService.shutdown()
+    }
+
+    def "does not apply update concurrently when not allowed"() {
+        def root = rootReference.root
+
+        expect:
+        !rootReference.tryUpdateConcurrently({ false }) { throw new AssertionError("should not be called") }
+        rootReference.root.is(root)
+    }
+
+    def "exclusive update runs the update function once"() {
+        def calls = 0
+
+        when:
+        rootReference.update { root ->
+            calls++
+            root.store("/root/file.txt", fileSnapshot("/root/file.txt"), SnapshotHierarchy.NodeDiffListener.NOOP)
+        }
+
+        then:
+        calls == 1
+        rootReference.root.findSnapshot("/root/file.txt").present
+    }
+
+    private static RegularFileSnapshot fileSnapshot(String absolutePath) {
+        new RegularFileSnapshot(absolutePath, absolutePath.substring(absolutePath.lastIndexOf('/') + 1), HashCode.fromInt(1234), DefaultFileMetadata.file(1, 1, AccessType.DIRECT))
+    }
+}
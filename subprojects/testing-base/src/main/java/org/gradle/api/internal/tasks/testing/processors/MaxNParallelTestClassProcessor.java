@@ -27,18 +27,26 @@
 import org.gradle.internal.dispatch.DispatchException;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Manages a set of parallel TestClassProcessors. Uses a simple round-robin algorithm to assign test classes to
- * processors.
+ * Manages a set of parallel TestClassProcessors. Assigns each test class to the processor with the least estimated
+ * amount of work, using the durations of the test classes in the previous run. Classes without a previous duration are
+ * estimated to take the average duration, so without any previous durations the test classes are assigned round-robin.
+ *
+ * <p>Classes are assigned as soon as they are received, since some test frameworks only run the classes they have
+ * received once the processor is stopped, and thus cannot ask for more work when they become idle.</p>
  */
 public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     private final int maxProcessors;
     private final Factory<TestClassProcessor> factory;
     private final ActorFactory actorFactory;
+    private final Map<String, Long> previousTestClassDurations;
+    private final long averageDuration;
+    private final long[] assignedDurations;
     private TestResultProcessor resultProcessor;
-    private int pos;
     private List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
     private List<TestClassProcessor> rawProcessors = new ArrayList<TestClassProcessor>();
     private List<Actor> actors = new ArrayList<Actor>();
@@ -46,9 +54,27 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     private volatile boolean stoppedNow;
 
     public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory) {
+        this(maxProcessors, factory, actorFactory, Collections.<String, Long>emptyMap());
+    }
+
+    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory, Map<String, Long> previousTestClassDurations) {
         this.maxProcessors = maxProcessors;
         this.factory = factory;
         this.actorFactory = actorFactory;
+        this.previousTestClassDurations = previousTestClassDurations;
+        this.averageDuration = averageDuration(previousTestClassDurations);
+        this.assignedDurations = new long[maxProcessors];
+    }
+
+    private static long averageDuration(Map<String, Long> durations) {
+        if (durations.isEmpty()) {
+            return 1;
+        }
+        long total = 0;
+        for (Long duration : durations.values()) {
+            total += duration;
+        }
+        return Math.max(1, total / durations.size());
     }
 
     @Override
@@ -64,20 +90,36 @@ public void processTestClass(TestClassRunInfo testClass) {
             return;
         }
 
-        TestClassProcessor processor;
+        int index;
         if (processors.size() < maxProcessors) {
-            processor = factory.create();
+            TestClassProcessor processor = factory.create();
             rawProcessors.add(processor);
             Actor actor = actorFactory.createActor(processor);
             processor = actor.getProxy(TestClassProcessor.class);
             actors.add(actor);
             processors.add(processor);
             processor.startProcessing(resultProcessor);
+            index = processors.size() - 1;
         } else {
-            processor = processors.get(pos);
-            pos = (pos + 1) % processors.size();
+            index = leastBusyProcessor();
+        }
+        assignedDurations[index] += estimateDuration(testClass);
+        processors.get(index).processTestClass(testClass);
+    }
+
+    private int leastBusyProcessor() {
+        int leastBusy = 0;
+        for (int i = 1; i < processors.size(); i++) {
+            if (assignedDurations[i] < assignedDurations[leastBusy]) {
+                leastBusy = i;
+            }
         }
-        processor.processTestClass(testClass);
+        return leastBusy;
+    }
+
+    private long estimateDuration(TestClassRunInfo testClass) {
+        Long duration = previousTestClassDurations.get(testClass.getTestClassName());
+        return duration == null ? averageDuration : Math.max(1, duration);
     }
 
     @Override